@@ -11,7 +11,9 @@ import java.util.Stack;
 
 /**
  * Detect the undirected graph contain cycle or not. This class is implemented because the {@link org.jgrapht.alg.cycle.CycleDetector}
- * provided by jgrapht only work for directed graph.
+ * provided by jgrapht only work for directed graph. <br/>
+ * For factor graphs, {@link BeliefPropagation.graph.FactorGraphStructure} also reports the components and the cycle
+ * rank, and it is cached on the {@link BeliefPropagation.graph.CompiledFactorGraph}.
  * @param <V> Graph node type.
  * @param <E> Graph edge type.
  */
@@ -1,9 +1,14 @@
 package BeliefPropagation.alg.interfaces;
 
 
+import BeliefPropagation.graph.BeliefTable;
 import BeliefPropagation.graph.Message;
 import BeliefPropagation.graph.Variable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Interface of Belief Propagation algorithm.
  */
@@ -16,4 +21,18 @@ public interface BeliefPropagationAlgorithm {
      */
     Message getBelief(final Variable<?> variable);
 
+    /**
+     * Get the beliefs of given {@code variables} together. The default implementation calls
+     * {@link #getBelief(Variable)} for each variable; algorithms override it to compute all the beliefs in one pass.
+     * @param variables Target random variables.
+     * @return Beliefs of the variables, in the iteration order of the collection.
+     */
+    default BeliefTable getBeliefs(final Collection<? extends Variable<?>> variables) {
+        final List<Message> beliefs = new ArrayList<>(variables.size());
+        for (Variable<?> variable : variables) {
+            beliefs.add(this.getBelief(variable));
+        }
+        return BeliefTable.of(beliefs);
+    }
+
 }
@@ -3,9 +3,9 @@ package BeliefPropagation.alg.propagation;
 import BeliefPropagation.alg.interfaces.BeliefPropagationAlgorithm;
 import BeliefPropagation.graph.*;
 import BeliefPropagation.utils.Log;
-import org.jgrapht.alg.util.Pair;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * Base class of all Belief Propagation algorithm.
@@ -14,64 +14,621 @@ import java.util.*;
 abstract public class BaseBeliefPropagationAlgorithm<E> implements BeliefPropagationAlgorithm {
 
     /**
-     * Factor graph to run.
+     * Factor graph to run. It is {@code null} if this algorithm is constructed from a {@link CompiledFactorGraph}.
      */
     protected final FactorGraph<E> graph;
     /**
-     * Message cache used to save computation cast.
+     * Compiled form of the factor graph, on which the messages are computed.
      */
-    protected final Map<Pair<FactorGraphNode, FactorGraphNode>, Message> messageTable;
+    protected final CompiledFactorGraph compiledGraph;
+    /**
+     * Message cache used to save computation cast, indexed by directed edge id. A message not computed yet is
+     * {@code null}. See {@link CompiledFactorGraph#directedEdge(int, boolean)}.
+     */
+    protected final Message[] messages;
+    /**
+     * Probability table of each factor as a message in the domain used by this algorithm, indexed by factor id.
+     * A message not created yet is {@code null}.
+     */
+    protected final Message[] factorMessages;
+    /**
+     * Compiled update plan of the message along each directed edge, indexed by directed edge id.
+     * See {@link MessageUpdatePlan}.
+     */
+    protected final MessageUpdatePlan[] updatePlans;
+    /**
+     * Observed state of each variable indexed by variable id, or {@code -1} if the variable is not observed.
+     */
+    protected final int[] evidence;
+    /**
+     * {@code True} if the messages are computed in log domain. See {@link Message#isLogDomain()}.
+     */
+    protected boolean logDomain = false;
+    /**
+     * Precision of the computed messages. See {@link Precision}.
+     */
+    protected Precision precision = Precision.DOUBLE;
+    /**
+     * Number of variables whose beliefs are computed by one task of the parallel bulk belief pass.
+     */
+    protected final static int BELIEF_CHUNK_SIZE = 1024;
 
     /**
-     *  Constructor.
+     *  Constructor. The graph is compiled into a {@link CompiledFactorGraph}, so that modifying the graph afterward
+     *  does not affect this algorithm. See {@link FactorGraph#compile()}.
      * @param graph Factor graph.
      * @throws NullPointerException if {@code graph} is null.
      * @throws IllegalArgumentException if {@code graph} is invalid. See {@link FactorGraph#isValid()}.
      */
     public BaseBeliefPropagationAlgorithm(FactorGraph<E> graph) {
         Objects.requireNonNull(graph, "Graph cannot be null");
-        if (!graph.isValid()) {
+        this.graph = graph;
+        this.compiledGraph = graph.compile();
+        this.messages = new Message[2 * this.compiledGraph.edgeCount()];
+        this.factorMessages = new Message[this.compiledGraph.factorCount()];
+        this.updatePlans = this.compileUpdatePlans();
+        this.evidence = new int[this.compiledGraph.variableCount()];
+        Arrays.fill(this.evidence, -1);
+    }
+
+    /**
+     * Constructor running on a compiled factor graph directly.
+     * @param graph Compiled factor graph.
+     * @throws NullPointerException if {@code graph} is null.
+     * @throws IllegalArgumentException if {@code graph} does not contain any factor.
+     */
+    public BaseBeliefPropagationAlgorithm(CompiledFactorGraph graph) {
+        Objects.requireNonNull(graph, "Graph cannot be null");
+        if (graph.factorCount() == 0) {
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Given factor graph is not valid"));
         }
-        this.graph = graph;
-        this.messageTable = new HashMap<>();
+        this.graph = null;
+        this.compiledGraph = graph;
+        this.messages = new Message[2 * this.compiledGraph.edgeCount()];
+        this.factorMessages = new Message[this.compiledGraph.factorCount()];
+        this.updatePlans = this.compileUpdatePlans();
+        this.evidence = new int[this.compiledGraph.variableCount()];
+        Arrays.fill(this.evidence, -1);
     }
 
     abstract public Message getBelief(final Variable<?> variable);
 
     /**
-     * Get the message from {@code variable} to {@code factor} from the {@code messageTable}. If the message is not in
-     * the cache table, it will call {@link #computeVariableToFactorMessage(Variable, Factor)} to calculate the message.
-     * The calculated message will store into the {@code memoryTable} afterward.
+     * Get the compiled factor graph this algorithm runs on.
+     * @return Compiled factor graph.
+     */
+    public CompiledFactorGraph getCompiledGraph() {
+        return this.compiledGraph;
+    }
+
+    /**
+     * Compile the update plans of the messages along every directed edge of the graph.
+     * @return Update plans indexed by directed edge id.
+     * @see MessageUpdatePlan#compile(CompiledFactorGraph, int)
+     */
+    protected MessageUpdatePlan[] compileUpdatePlans() {
+        final MessageUpdatePlan[] plans = new MessageUpdatePlan[2 * this.compiledGraph.edgeCount()];
+        for (int edge = 0; edge < plans.length; edge++) {
+            plans[edge] = MessageUpdatePlan.compile(this.compiledGraph, edge);
+        }
+        return plans;
+    }
+
+    /**
+     * Get the update plan of the message from {@code source} to {@code target}.
+     * @param source Source node.
+     * @param target Target node.
+     * @return Update plan.
+     * @throws IllegalArgumentException if the nodes are not a connected factor and variable of the graph.
+     */
+    protected MessageUpdatePlan getUpdatePlan(final FactorGraphNode source, final FactorGraphNode target) {
+        final boolean fromFactor = source instanceof Factor;
+        final FactorGraphNode factor = fromFactor ? source : target;
+        final FactorGraphNode variable = fromFactor ? target : source;
+        if (!(factor instanceof Factor) || !(variable instanceof Variable<?>)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                    "Message should be sent between a factor and a variable, but given " + source + " and " + target));
+        }
+        final int edge = this.compiledGraph.findEdge(this.compiledGraph.factorId((Factor) factor),
+                this.compiledGraph.variableId((Variable<?>) variable));
+        if (edge < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                    "Given factor " + factor + " and variable " + variable + " are not connected"));
+        }
+        return this.updatePlans[CompiledFactorGraph.directedEdge(edge, fromFactor)];
+    }
+
+    /**
+     * Check whether the messages are computed in log domain.
+     * @return {@code True} if the messages are computed in log domain.
+     */
+    public boolean isLogDomain() {
+        return this.logDomain;
+    }
+
+    /**
+     * Set whether the messages are computed in log domain. In log domain, products of messages become sums of log
+     * probabilities, so that deep or loopy graph can be run without underflow. The computed beliefs are always
+     * returned in probability domain. Changing the domain discards all computed messages.
+     * @param logDomain {@code True} to compute the messages in log domain.
+     */
+    public void setLogDomain(final boolean logDomain) {
+        if (this.logDomain != logDomain) {
+            this.logDomain = logDomain;
+            this.resetMessages();
+        }
+    }
+
+    /**
+     * Get the precision of the computed messages.
+     * @return Precision of the computed messages.
+     */
+    public Precision getPrecision() {
+        return this.precision;
+    }
+
+    /**
+     * Set the precision of the computed messages. {@link Precision#FLOAT} halves the memory used by the messages,
+     * at the cost of about {@code 1e-7} relative error per element. The computed beliefs are always returned in
+     * {@link Precision#DOUBLE}. Changing the precision discards all computed messages.
+     * @param precision Precision of the computed messages.
+     * @throws NullPointerException if given precision is null.
+     */
+    public void setPrecision(final Precision precision) {
+        Objects.requireNonNull(precision, Log.genLogMsg(this.getClass(), "Given precision cannot be null"));
+        if (this.precision != precision) {
+            this.precision = precision;
+            this.resetMessages();
+        }
+    }
+
+    /**
+     * Clamp given {@code variable} to an observed state. The messages from the variable to its factors become the
+     * indicator of the state, and its belief puts all the probability on it. Only the messages affected by the
+     * change are discarded, see {@link #invalidateEvidence(int)}. Observing the same state again does nothing.
+     * @param variable Observed variable.
+     * @param state Index of the observed state.
+     * @throws NullPointerException if {@code variable} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code variable}.
+     * @throws IndexOutOfBoundsException if {@code state} is not a state of the variable.
+     */
+    public void observe(final Variable<?> variable, final int state) {
+        final int variableId = this.getVariableId(variable);
+        Objects.checkIndex(state, variable.getStateCount());
+        if (this.evidence[variableId] != state) {
+            this.evidence[variableId] = state;
+            this.invalidateEvidence(variableId);
+        }
+    }
+
+    /**
+     * Remove the observation of given {@code variable}. Retracting a variable which is not observed does nothing.
+     * @param variable Target variable.
+     * @throws NullPointerException if {@code variable} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code variable}.
+     */
+    public void retract(final Variable<?> variable) {
+        final int variableId = this.getVariableId(variable);
+        if (this.evidence[variableId] >= 0) {
+            this.evidence[variableId] = -1;
+            this.invalidateEvidence(variableId);
+        }
+    }
+
+    /**
+     * Remove the observations of all variables.
+     */
+    public void retractAll() {
+        for (int v = 0; v < this.evidence.length; v++) {
+            if (this.evidence[v] >= 0) {
+                this.evidence[v] = -1;
+                this.invalidateEvidence(v);
+            }
+        }
+    }
+
+    /**
+     * Get the observed state of given {@code variable}.
+     * @param variable Target variable.
+     * @return Index of the observed state, or {@code -1} if the variable is not observed.
+     * @throws NullPointerException if {@code variable} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code variable}.
+     */
+    public int getObservedState(final Variable<?> variable) {
+        return this.evidence[this.getVariableId(variable)];
+    }
+
+    /**
+     * Discard the messages affected by a change of the observation of given variable. By default, all computed
+     * messages are discarded.
+     * @param variableId Id of the variable whose observation changed.
+     */
+    protected void invalidateEvidence(final int variableId) {
+        this.resetMessages();
+    }
+
+    /**
+     * Get the id of given variable in the compiled graph.
+     * @param variable Target variable.
+     * @return Variable id.
+     * @throws NullPointerException if {@code variable} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code variable}.
+     */
+    protected int getVariableId(final Variable<?> variable) {
+        Objects.requireNonNull(variable, Log.genLogMsg(this.getClass(), "Given variable cannot be null"));
+        final int variableId = this.compiledGraph.variableId(variable);
+        if (variableId < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain variable: " + variable));
+        }
+        return variableId;
+    }
+
+    /**
+     * Discard all computed messages.
+     */
+    protected void resetMessages() {
+        Arrays.fill(this.messages, null);
+        Arrays.fill(this.factorMessages, null);
+    }
+
+    /**
+     * Compute the belief of given {@code variable} by joining all the messages sending to it.
+     * @param variable Target variable.
+     * @return Normalized belief in probability domain.
+     */
+    protected Message computeBelief(final Variable<?> variable) {
+        final int variableId = this.compiledGraph.variableId(variable);
+        if (variableId < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain variable: " + variable));
+        }
+        if (this.evidence[variableId] >= 0) {
+            final double[] data = new double[variable.getStateCount()];
+            data[this.evidence[variableId]] = 1.0d;
+            return new Message(new HDArray(new int[]{data.length}, data), variable);
+        }
+        if (this.compiledGraph.variableDegree(variableId) == 0) {
+            // A variable without factor keeps the uniform distribution
+            final Message belief = Message.createUniform(false, List.of(variable));
+            belief.normalize();
+            return belief;
+        }
+        List<Message> incomingMessages = new ArrayList<>();
+        for (int i = 0; i < this.compiledGraph.variableDegree(variableId); i++) {
+            final int edge = this.compiledGraph.variableEdge(variableId, i);
+            incomingMessages.add(this.getMessage(CompiledFactorGraph.directedEdge(edge, true)));
+        }
+        Message jointedMessage = Message.messageProduct(incomingMessages);
+        jointedMessage.normalize();
+        if (this.logDomain) {
+            jointedMessage = jointedMessage.toProbabilityDomain();
+        }
+        return jointedMessage.getPrecision() == Precision.DOUBLE ? jointedMessage : jointedMessage.toPrecision(Precision.DOUBLE);
+    }
+
+    /**
+     * Get the beliefs of given {@code variables} in one pass. See {@link #getBeliefs(Collection, boolean)}.
+     * @param variables Target variables.
+     * @return Beliefs of the variables, in the iteration order of the collection.
+     */
+    @Override
+    public BeliefTable getBeliefs(final Collection<? extends Variable<?>> variables) {
+        return this.getBeliefs(variables, false);
+    }
+
+    /**
+     * Get the beliefs of given {@code variables} in one pass. The incoming messages of each variable are multiplied
+     * and normalized directly into the flat array of the result, without creating any intermediate {@link Message}.
+     * @param variables Target variables.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return Beliefs of the variables, in the iteration order of the collection.
+     * @throws NullPointerException if {@code variables} or any variable is null.
+     * @throws IllegalArgumentException if the graph does not contain any of the variables.
+     */
+    public BeliefTable getBeliefs(final Collection<? extends Variable<?>> variables, final boolean parallel) {
+        Objects.requireNonNull(variables, Log.genLogMsg(this.getClass(), "Given variables cannot be null"));
+        final List<Variable<?>> variableList = new ArrayList<>(variables);
+        final int[] variableIds = new int[variableList.size()];
+        for (int i = 0; i < variableIds.length; i++) {
+            final Variable<?> variable = Objects.requireNonNull(variableList.get(i),
+                    Log.genLogMsg(this.getClass(), "Given variable cannot be null"));
+            variableIds[i] = this.compiledGraph.variableId(variable);
+            if (variableIds[i] < 0) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain variable: " + variable));
+            }
+        }
+        this.prepareBeliefs();
+        return this.computeBeliefs(variableList, variableIds, parallel);
+    }
+
+    /**
+     * Get the beliefs of all variables of the graph in one pass. See {@link #getAllBeliefs(boolean)}.
+     * @return Beliefs indexed by variable id of the compiled graph.
+     */
+    public BeliefTable getAllBeliefs() {
+        return this.getAllBeliefs(false);
+    }
+
+    /**
+     * Get the beliefs of all variables of the graph in one pass. See {@link #getBeliefs(Collection, boolean)}.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return Beliefs indexed by variable id of the compiled graph.
+     */
+    public BeliefTable getAllBeliefs(final boolean parallel) {
+        this.prepareBeliefs();
+        return this.computeAllBeliefs(parallel);
+    }
+
+    /**
+     * Make sure every message is computed, so that the variable and factor beliefs can be computed from the
+     * {@code messages} alone, in any order and from any thread. By default, every missing message is computed by
+     * {@link #getMessage(int)}.
+     */
+    protected void prepareBeliefs() {
+        for (int edge = 0; edge < this.messages.length; edge++) {
+            this.getMessage(edge);
+        }
+    }
+
+    /**
+     * Compute the beliefs of all variables of the graph from the computed messages.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return Beliefs indexed by variable id.
+     */
+    protected BeliefTable computeAllBeliefs(final boolean parallel) {
+        final List<Variable<?>> variables = new ArrayList<>(this.compiledGraph.variableCount());
+        for (int v = 0; v < this.compiledGraph.variableCount(); v++) {
+            variables.add(this.compiledGraph.getVariable(v));
+        }
+        return this.computeBeliefs(variables, IntStream.range(0, variables.size()).toArray(), parallel);
+    }
+
+    /**
+     * Compute the beliefs of given variables from the computed messages. The variables are split into chunks of
+     * {@link #BELIEF_CHUNK_SIZE}, each filling its own slices of the result with its own scratch buffer.
+     * @param variables Target variables.
+     * @param variableIds Id of each target variable.
+     * @param parallel {@code True} to run the chunks on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return Beliefs of the variables.
+     */
+    protected BeliefTable computeBeliefs(final List<Variable<?>> variables, final int[] variableIds,
+                                         final boolean parallel) {
+        final int[] offsets = BeliefTable.offsetsOf(variables);
+        final double[] values = new double[offsets[offsets.length - 1]];
+        final int chunkCount = (variableIds.length + BELIEF_CHUNK_SIZE - 1) / BELIEF_CHUNK_SIZE;
+        IntStream chunks = IntStream.range(0, chunkCount);
+        if (parallel) {
+            chunks = chunks.parallel();
+        }
+        chunks.forEach(chunk -> {
+            final int end = Math.min(variableIds.length, (chunk + 1) * BELIEF_CHUNK_SIZE);
+            double[] scratch = new double[0];
+            for (int i = chunk * BELIEF_CHUNK_SIZE; i < end; i++) {
+                scratch = this.computeBelief(variableIds[i], values, offsets[i], scratch);
+            }
+        });
+        return new BeliefTable(variables, values);
+    }
+
+    /**
+     * Compute the normalized belief of given variable in probability domain into {@code values}, by multiplying (or
+     * adding in log domain) the messages sending to it. A variable without factor gets the uniform distribution, and
+     * an observed variable gets the indicator of its observed state.
+     * @param variableId Id of the target variable.
+     * @param values Array to store the belief.
+     * @param offset Index of {@code values} of the first state.
+     * @param scratch Buffer for the incoming messages. It is replaced if it is shorter than the number of states.
+     * @return Buffer to reuse for the next variable.
+     */
+    protected double[] computeBelief(final int variableId, final double[] values, final int offset, double[] scratch) {
+        final int stateCount = this.compiledGraph.getVariable(variableId).getStateCount();
+        final int degree = this.compiledGraph.variableDegree(variableId);
+        if (this.evidence[variableId] >= 0) {
+            Arrays.fill(values, offset, offset + stateCount, 0.0d);
+            values[offset + this.evidence[variableId]] = 1.0d;
+            return scratch;
+        }
+        if (degree == 0) {
+            Arrays.fill(values, offset, offset + stateCount, 1.0d / stateCount);
+            return scratch;
+        }
+        if (scratch.length < stateCount) {
+            scratch = new double[stateCount];
+        }
+        this.getMessage(CompiledFactorGraph.directedEdge(this.compiledGraph.variableEdge(variableId, 0), true))
+                .getProbability().copyTo(values, offset);
+        for (int i = 1; i < degree; i++) {
+            final int edge = this.compiledGraph.variableEdge(variableId, i);
+            this.getMessage(CompiledFactorGraph.directedEdge(edge, true)).getProbability().copyTo(scratch, 0);
+            for (int s = 0; s < stateCount; s++) {
+                if (this.logDomain) {
+                    values[offset + s] += scratch[s];
+                } else {
+                    values[offset + s] *= scratch[s];
+                }
+            }
+        }
+        if (this.logDomain) {
+            // Subtract the largest log probability before exponentiating, so that the belief does not underflow
+            double max = Double.NEGATIVE_INFINITY;
+            for (int s = 0; s < stateCount; s++) {
+                max = Math.max(max, values[offset + s]);
+            }
+            for (int s = 0; s < stateCount; s++) {
+                values[offset + s] = Math.exp(values[offset + s] - max);
+            }
+        }
+        double sum = 0.0d;
+        for (int s = 0; s < stateCount; s++) {
+            sum += values[offset + s];
+        }
+        for (int s = 0; s < stateCount; s++) {
+            values[offset + s] /= sum;
+        }
+        return scratch;
+    }
+
+    /**
+     * Get the joint belief over the variables of given {@code factor}.
+     * See {@link #computeFactorBelief(int)}.
+     * @param factor Target factor.
+     * @return Normalized belief over the variables of the factor, in their order, in probability domain.
+     * @throws NullPointerException if {@code factor} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code factor}.
+     */
+    public Message getFactorBelief(final Factor factor) {
+        final int factorId = this.getFactorId(factor);
+        this.prepareBeliefs();
+        return this.computeFactorBelief(factorId);
+    }
+
+    /**
+     * Get the joint beliefs over the variables of given {@code factors}. See {@link #getFactorBeliefs(Collection, boolean)}.
+     * @param factors Target factors.
+     * @return Beliefs of the factors, in the iteration order of the collection.
+     */
+    public List<Message> getFactorBeliefs(final Collection<? extends Factor> factors) {
+        return this.getFactorBeliefs(factors, false);
+    }
+
+    /**
+     * Get the joint beliefs over the variables of given {@code factors} in one pass over the computed messages.
+     * See {@link #computeFactorBelief(int)}.
+     * @param factors Target factors.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return Beliefs of the factors, in the iteration order of the collection.
+     * @throws NullPointerException if {@code factors} or any factor is null.
+     * @throws IllegalArgumentException if the graph does not contain any of the factors.
+     */
+    public List<Message> getFactorBeliefs(final Collection<? extends Factor> factors, final boolean parallel) {
+        Objects.requireNonNull(factors, Log.genLogMsg(this.getClass(), "Given factors cannot be null"));
+        final int[] factorIds = factors.stream().mapToInt(this::getFactorId).toArray();
+        this.prepareBeliefs();
+        return this.computeFactorBeliefs(factorIds, parallel);
+    }
+
+    /**
+     * Get the joint beliefs over the variables of every factor of the graph. See {@link #getAllFactorBeliefs(boolean)}.
+     * @return Beliefs indexed by factor id of the compiled graph.
+     */
+    public List<Message> getAllFactorBeliefs() {
+        return this.getAllFactorBeliefs(false);
+    }
+
+    /**
+     * Get the joint beliefs over the variables of every factor of the graph in one pass over the computed messages.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return Beliefs indexed by factor id of the compiled graph.
+     */
+    public List<Message> getAllFactorBeliefs(final boolean parallel) {
+        this.prepareBeliefs();
+        return this.computeFactorBeliefs(IntStream.range(0, this.compiledGraph.factorCount()).toArray(), parallel);
+    }
+
+    /**
+     * Get the id of given factor in the compiled graph.
+     * @param factor Target factor.
+     * @return Factor id.
+     * @throws NullPointerException if {@code factor} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code factor}.
+     */
+    protected int getFactorId(final Factor factor) {
+        Objects.requireNonNull(factor, Log.genLogMsg(this.getClass(), "Given factor cannot be null"));
+        final int factorId = this.compiledGraph.factorId(factor);
+        if (factorId < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain factor: " + factor));
+        }
+        return factorId;
+    }
+
+    /**
+     * Compute the joint beliefs of given factors from the computed messages.
+     * @param factorIds Id of each target factor.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return Beliefs of the factors.
+     */
+    protected List<Message> computeFactorBeliefs(final int[] factorIds, final boolean parallel) {
+        final Message[] beliefs = new Message[factorIds.length];
+        IntStream indices = IntStream.range(0, factorIds.length);
+        if (parallel) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> beliefs[i] = this.computeFactorBelief(factorIds[i]));
+        return Arrays.asList(beliefs);
+    }
+
+    /**
+     * Compute the joint belief of given factor by joining its probability table with the messages from all its
+     * variables, without summing out any of them. Only the computed variable to factor messages are read, so a
+     * converged message table gives every factor belief in one extra pass.
+     * @param factorId Id of the target factor.
+     * @return Normalized belief over the variables of the factor, in their order, in probability domain.
+     */
+    protected Message computeFactorBelief(final int factorId) {
+        final int start = this.compiledGraph.factorEdgeStart(factorId);
+        final int end = this.compiledGraph.factorEdgeEnd(factorId);
+        final Message[] incomingMessages = new Message[end - start];
+        final int[][] incomingAxes = new int[end - start][];
+        for (int edge = start; edge < end; edge++) {
+            incomingMessages[edge - start] = this.getMessage(CompiledFactorGraph.directedEdge(edge, false));
+            incomingAxes[edge - start] = new int[]{this.compiledGraph.edgeAxis(edge)};
+        }
+        final Message factorMessage = this.getFactorMessage(factorId);
+        Message belief = Message.messageProductMarginalization(factorMessage, incomingMessages, incomingAxes,
+                new int[0], factorMessage.getVariables());
+        belief.normalize();
+        if (this.logDomain) {
+            belief = belief.toProbabilityDomain();
+        }
+        return belief.getPrecision() == Precision.DOUBLE ? belief : belief.toPrecision(Precision.DOUBLE);
+    }
+
+    /**
+     * Get the probability table of given {@code factor} as a message in the domain and precision used by this
+     * algorithm.
+     * @param factorId Id of the target factor.
+     * @return Message of the factor. It is shared, so it should not be modified.
+     */
+    protected Message getFactorMessage(final int factorId) {
+        if (this.factorMessages[factorId] == null) {
+            final Message message = new Message(this.compiledGraph.getFactor(factorId)).toPrecision(this.precision);
+            this.factorMessages[factorId] = this.logDomain ? message.toLogDomain() : message;
+        }
+        return this.factorMessages[factorId];
+    }
+
+    /**
+     * Create a uniform message over given {@code variable} in the domain and precision used by this algorithm.
+     * @param variable Target variable.
+     * @return Uniform message.
+     */
+    protected Message createUniformMessage(final Variable<?> variable) {
+        return Message.createUniform(this.logDomain, this.precision, List.of(variable));
+    }
+
+    /**
+     * Get the message from {@code variable} to {@code factor} from the {@code messages}. If the message is not in
+     * the cache, it will be computed and stored afterward. See {@link #getMessage(int)}.
      * @param variable Source random variable.
      * @param factor Target factor.
      * @return Message send from {@code variable} to {@code factor}.
      * @throws NullPointerException if {@code variable} or {@code factor} is null.
      * @throws IllegalArgumentException if the graph does not contain {@code variable} or {@code factor}.
-     * @see #computeVariableToFactorMessage(Variable, Factor)
      */
     protected Message getVariableToFactorMessage(final Variable<?> variable, final Factor factor) {
         Objects.requireNonNull(variable, Log.genLogMsg(this.getClass(), "Given variable cannot be null"));
         Objects.requireNonNull(factor, Log.genLogMsg(this.getClass(), "Given factor cannot be null"));
 
         // Check is graph contain variable
-        if (!this.graph.containsVertex(variable)) {
+        if (this.compiledGraph.variableId(variable) < 0) {
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain variable: " + variable));
         }
 
         // Check is graph contain factor
-        if (!this.graph.containsVertex(factor)) {
+        if (this.compiledGraph.factorId(factor) < 0) {
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain factor: " + factor));
         }
 
-        // If the cache table does not have required message, compute it.
-        Pair<FactorGraphNode, FactorGraphNode> key = this.genKey(variable, factor);
-        if (!this.messageTable.containsKey(key)) {
-            final Message message = this.computeVariableToFactorMessage(variable, factor);
-            this.messageTable.put(key, message);
-        }
-        return this.messageTable.get(key);
-
+        return this.getMessage(this.getUpdatePlan(variable, factor).getEdge());
     }
 
     /**
@@ -81,57 +638,46 @@ abstract public class BaseBeliefPropagationAlgorithm<E> implements BeliefPropaga
      * @return Message send from {@code variable} to {@code factor}.
      */
     protected Message computeVariableToFactorMessage(final Variable<?> variable, final Factor factor) {
-
-        // To compute the message send from given variable, we need to calculate the messages
-        // send to that variable first.
-        List<Message> incomingMessages = new ArrayList<>();
-        for (Factor neighborFactor : this.graph.getIncomingFactors(variable, factor)) {
-            Message message = this.getFactorToVariableMessage(neighborFactor, variable);
-            incomingMessages.add(message);
-        }
-
-        // Afterward, join all the incoming message together.
-        if (incomingMessages.isEmpty()) {
-            return new Message(variable);
-        } else {
-            Message message = Message.messageProduct(incomingMessages);
-            message.normalize();
-            return message;
-        }
+        return this.computeMessage(this.getUpdatePlan(variable, factor));
     }
 
     /**
-     * Get the message from {@code factor} to {@code variable} from the {@code messageTable}. If the message is not in
-     * the cache table, it will call {@link #computeFactorToVariableMessage(Factor, Variable)} to calculate the message.
-     * The calculated message will store into the {@code memoryTable} afterward.
+     * Get the message from {@code factor} to {@code variable} from the {@code messages}. If the message is not in
+     * the cache, it will be computed and stored afterward. See {@link #getMessage(int)}.
      * @param factor Source factor.
      * @param variable Target variable.
      * @return Message from {@code factor} to {@code variable}
      * @throws NullPointerException if {@code factor} or {@code variable} is null.
      * @throws IllegalArgumentException if graph does not contain {@code factor}  or {@code varaible}.
-     * @see #computeFactorToVariableMessage(Factor, Variable)
      */
     protected Message getFactorToVariableMessage(final Factor factor, Variable<?> variable) {
         Objects.requireNonNull(variable, Log.genLogMsg(this.getClass(), "Given variable cannot be null"));
         Objects.requireNonNull(factor, Log.genLogMsg(this.getClass(), "Given factor cannot be null"));
 
         // Check is graph contain variable
-        if (!this.graph.containsVertex(variable)) {
+        if (this.compiledGraph.variableId(variable) < 0) {
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain variable: " + variable));
         }
 
         // Check is graph contain factor
-        if (!this.graph.containsVertex(factor)) {
+        if (this.compiledGraph.factorId(factor) < 0) {
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain factor: " + factor));
         }
 
-        // Check the cache table contain the required message. If not, compute it.
-        Pair<FactorGraphNode, FactorGraphNode> key = this.genKey(factor, variable);
-        if (!this.messageTable.containsKey(key)) {
-            final Message message = this.computeFactorToVariableMessage(factor, variable);
-            this.messageTable.put(key, message);
+        return this.getMessage(this.getUpdatePlan(factor, variable).getEdge());
+    }
+
+    /**
+     * Get the message along given directed edge from the {@code messages}. If the message is not computed yet, it is
+     * computed by {@link #computeMessage(MessageUpdatePlan)} and stored afterward.
+     * @param edge Directed edge id.
+     * @return Message along given directed edge.
+     */
+    protected Message getMessage(final int edge) {
+        if (this.messages[edge] == null) {
+            this.messages[edge] = this.computeMessage(this.updatePlans[edge]);
         }
-        return this.messageTable.get(key);
+        return this.messages[edge];
     }
 
     /**
@@ -141,36 +687,72 @@ abstract public class BaseBeliefPropagationAlgorithm<E> implements BeliefPropaga
      * @return Message from {@code factor} to {@code variable}.
      */
     protected Message computeFactorToVariableMessage(final Factor factor, Variable<?> variable) {
-        // To compute the message send from given factor, we need to get the messages sending to that factor first.
-        // Note that we also need to join the probability distribution of the factor itself.
-        List<Message> incomingMessages = new ArrayList<>();
-        incomingMessages.add(new Message(factor));
-        List<Variable<?>> marginalizationVariables = new ArrayList<>();
-        for (Variable<?> variableNeighbor : this.graph.getIncomingVariables(factor, variable)) {
-            marginalizationVariables.add(variableNeighbor);
-            Message message = this.getVariableToFactorMessage(variableNeighbor, factor);
-            incomingMessages.add(message);
-        }
+        return this.computeMessage(this.getUpdatePlan(factor, variable));
+    }
 
-        // Afterward, joni all the message together.
-        if (incomingMessages.size() == 1) {
-            return incomingMessages.get(0);
-        } else {
-            Message joinedMessage = Message.messageProduct(incomingMessages);
-            Message marginalizedMessage = Message.messageMarginalization(joinedMessage, marginalizationVariables);
-            marginalizedMessage.normalize();
-            return marginalizedMessage;
-        }
+    /**
+     * Compute the largest absolute difference between two messages over the same variable, compared in probability
+     * domain, so that the same tolerance applies to both domains.
+     * @param oldMessage Previous message.
+     * @param newMessage New message.
+     * @return Residual of the new message.
+     */
+    protected static double messageResidual(final Message oldMessage, final Message newMessage) {
+        return newMessage.getProbability().maxAbsDifference(oldMessage.getProbability(), newMessage.isLogDomain());
     }
 
     /**
-     * Generated the key to the cache table. The key is a pair of {@link FactorGraphNode}, where the first element is
-     * the source, and the second element is the target.
-     * @param sourceNode Source node.
-     * @param targetNode Target node.
-     * @return Generated key to cache table.
+     * Compute the message by given update plan into a new message. See
+     * {@link #computeMessage(MessageUpdatePlan, Message)}.
+     * @param plan Update plan of the message.
+     * @return Normalized message send along the edge of given plan.
      */
-    protected Pair<FactorGraphNode, FactorGraphNode> genKey(final FactorGraphNode sourceNode, final FactorGraphNode targetNode) {
-        return new Pair<>(sourceNode, targetNode);
+    protected Message computeMessage(final MessageUpdatePlan plan) {
+        return this.computeMessage(plan, plan.takeOutputBuffer(this.logDomain, this.precision));
+    }
+
+    /**
+     * Compute the message by given update plan into given output message, whose elements are overwritten. The
+     * incoming messages are got by {@link #getMessage(int)}.
+     * @param plan Update plan of the message.
+     * @param output Message over the variable of the edge in the domain used by this algorithm. It should not be
+     *               any message read by the update, e.g. a buffer from
+     *               {@link MessageUpdatePlan#takeOutputBuffer(boolean, Precision)}.
+     * @return Given output message, normalized.
+     */
+    protected Message computeMessage(final MessageUpdatePlan plan, final Message output) {
+        if (!plan.isFactorToVariable()) {
+            // An observed variable sends its evidence regardless of the other messages
+            final int variableId = this.compiledGraph.edgeVariable(CompiledFactorGraph.undirectedEdge(plan.getEdge()));
+            if (this.evidence[variableId] >= 0) {
+                output.getProbability().fill(this.logDomain ? Double.NEGATIVE_INFINITY : 0.0d);
+                output.getProbability().set(this.logDomain ? 0.0d : 1.0d, this.evidence[variableId]);
+                return output;
+            }
+        }
+        final int[] incomingEdges = plan.getIncomingEdges();
+        final Message[] incomingMessages = new Message[incomingEdges.length];
+        for (int i = 0; i < incomingMessages.length; i++) {
+            incomingMessages[i] = this.getMessage(incomingEdges[i]);
+        }
+        if (plan.isFactorToVariable()) {
+            // The messages sending to the factor are joined with the probability distribution of the factor itself,
+            // and the other variables are summed out in a single pass over the probability table of the factor.
+            final int factorId = this.compiledGraph.edgeFactor(CompiledFactorGraph.undirectedEdge(plan.getEdge()));
+            plan.execute(this.getFactorMessage(factorId), incomingMessages, output);
+            if (incomingMessages.length > 0) {
+                output.normalize();
+            }
+            return output;
+        }
+
+        // Join all the messages sending to the variable together. Without any, the message is uniform.
+        if (incomingMessages.length == 0) {
+            output.getProbability().fill(this.logDomain ? 0.0d : 1.0d);
+            return output;
+        }
+        plan.execute(null, incomingMessages, output);
+        output.normalize();
+        return output;
     }
 }
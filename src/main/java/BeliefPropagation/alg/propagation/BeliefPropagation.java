@@ -1,42 +1,235 @@
 package BeliefPropagation.alg.propagation;
 
-import BeliefPropagation.alg.cycle.UndirectedCycleDetector;
 import BeliefPropagation.graph.*;
 import BeliefPropagation.utils.Log;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
- * Belief Propagation algorithm is run in recursive manner. It requires {@link FactorGraph} to be a tree (without any cycle) or else
- * this algorithm will run into infinite loop.
+ * Belief Propagation algorithm computes the exact beliefs of a {@link FactorGraph} without any cycle. <br/>
+ * All the messages are computed iteratively in one collect and distribute sweep of each tree, see
+ * {@link MessageSchedule#twoPass(CompiledFactorGraph)}, and the beliefs of all variables are computed right after,
+ * so that long chains do not overflow the stack. <br/>
+ * A change of evidence only discards the messages sent away from the observed variable, which are recomputed on the
+ * next query together with the beliefs they affect.
  *
  * @param <E> Edge type.
  */
 public class BeliefPropagation<E> extends BaseBeliefPropagationAlgorithm<E> {
+    /**
+     * Two-pass schedule of all the messages.
+     */
+    protected final MessageSchedule schedule;
+    /**
+     * Beliefs of all variables indexed by variable id, or {@code null} if the messages are not propagated yet.
+     */
+    protected BeliefTable beliefs;
+    /**
+     * Positions in the schedule of the messages to compute. See {@link MessageSchedule#getPosition(int)}.
+     */
+    protected final BitSet pendingPositions = new BitSet();
+    /**
+     * Ids of the variables whose belief should be recomputed.
+     */
+    protected final BitSet staleBeliefs = new BitSet();
     /**
      * Constructor.
      * @param graph Factor graph.
      * @throws IllegalArgumentException if the given graph contain cycle.
-     * @see UndirectedCycleDetector#detectCycles()
+     * @see CompiledFactorGraph#isForest()
      */
     public BeliefPropagation(FactorGraph<E> graph) {
         super(graph);
-        UndirectedCycleDetector<FactorGraphNode, E> cycleDetector = new UndirectedCycleDetector<>(this.graph);
-        if (cycleDetector.detectCycles()) {
+        this.schedule = this.createSchedule();
+    }
+
+    /**
+     * Constructor running on a compiled factor graph.
+     * @param graph Compiled factor graph.
+     * @see #create(CompiledFactorGraph)
+     */
+    private BeliefPropagation(CompiledFactorGraph graph) {
+        super(graph);
+        this.schedule = this.createSchedule();
+    }
+
+    /**
+     * Create the two-pass schedule of the compiled graph, with every message pending. Shared by the constructors.
+     * @return Two-pass schedule.
+     * @throws IllegalArgumentException if the compiled graph contains cycle.
+     */
+    private MessageSchedule createSchedule() {
+        if (!this.compiledGraph.isForest()) {
             throw new IllegalArgumentException(Log.genLogMsg(getClass(), "Given factor graph should not contain cycle"));
         }
+        final MessageSchedule schedule = MessageSchedule.twoPass(this.compiledGraph);
+        this.pendingPositions.set(0, schedule.size());
+        return schedule;
+    }
+
+    /**
+     * Create belief propagation running on a compiled factor graph directly.
+     * @param graph Compiled factor graph.
+     * @return Belief propagation.
+     * @param <E> Edge type. It is not used by a compiled factor graph.
+     * @throws NullPointerException if {@code graph} is null.
+     * @throws IllegalArgumentException if {@code graph} does not contain any factor, or contains cycle.
+     * @see CompiledFactorGraph#isForest()
+     */
+    public static <E> BeliefPropagation<E> create(CompiledFactorGraph graph) {
+        return new BeliefPropagation<>(graph);
     }
 
     @Override
     public Message getBelief(Variable<?> variable) {
-        List<Message> incomingMessages = new ArrayList<>();
-        for (Factor neighborFactor : this.graph.getIncomingFactors(variable, null)) {
-            Message message = this.getFactorToVariableMessage(neighborFactor, variable);
-            incomingMessages.add(message);
-        }
-        Message jointedMessage = Message.messageProduct(incomingMessages);
-        jointedMessage.normalize();
-        return jointedMessage;
+        final int variableId = this.getVariableId(variable);
+        this.prepareBeliefs();
+        return this.beliefs.getBelief(variableId);
+    }
+
+    /**
+     * Get the beliefs of all variables. They are computed together with the messages, so the cached table is
+     * returned directly.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool} if
+     *                 the messages are not propagated yet.
+     * @return Beliefs indexed by variable id of the compiled graph.
+     */
+    @Override
+    public BeliefTable getAllBeliefs(final boolean parallel) {
+        if (!this.isPropagated()) {
+            this.propagate(parallel);
+        }
+        return this.beliefs;
+    }
+
+    /**
+     * Compute every pending message by the two-pass schedule, and then the belief of every affected variable.
+     */
+    public void propagate() {
+        this.propagate(false);
+    }
+
+    /**
+     * Compute every pending message by the two-pass schedule, and then the belief of every affected variable. On the
+     * first call every message is pending. Afterward, only the messages discarded by a change of evidence are, and
+     * they are recomputed in schedule order, so that each of them is computed after all the messages it depends on.
+     * @param parallel {@code True} to compute the beliefs on the common {@link java.util.concurrent.ForkJoinPool}.
+     */
+    public void propagate(final boolean parallel) {
+        final int[] edges = this.schedule.getEdges();
+        for (int i = this.pendingPositions.nextSetBit(0); i >= 0; i = this.pendingPositions.nextSetBit(i + 1)) {
+            final int edge = edges[i];
+            this.pendingPositions.clear(i);
+            this.messages[edge] = this.computeMessage(this.updatePlans[edge]);
+            if (CompiledFactorGraph.isFromFactor(edge)) {
+                this.staleBeliefs.set(this.compiledGraph.edgeVariable(CompiledFactorGraph.undirectedEdge(edge)));
+            }
+        }
+        if (this.beliefs == null) {
+            this.beliefs = this.computeAllBeliefs(parallel);
+        } else if (!this.staleBeliefs.isEmpty()) {
+            // Copy the table, so that the tables returned before are not modified
+            final double[] values = this.beliefs.getValues().clone();
+            double[] scratch = new double[0];
+            for (int v = this.staleBeliefs.nextSetBit(0); v >= 0; v = this.staleBeliefs.nextSetBit(v + 1)) {
+                scratch = this.computeBelief(v, values, this.beliefs.getOffset(v), scratch);
+            }
+            this.beliefs = this.beliefs.withValues(values);
+        }
+        this.staleBeliefs.clear();
+    }
+
+    /**
+     * Check whether all the messages and beliefs are up to date.
+     * @return {@code True} if nothing is pending.
+     */
+    public boolean isPropagated() {
+        return this.beliefs != null && this.pendingPositions.isEmpty() && this.staleBeliefs.isEmpty();
+    }
+
+    @Override
+    protected void prepareBeliefs() {
+        if (!this.isPropagated()) {
+            this.propagate();
+        }
+    }
+
+    /**
+     * Get the message along given directed edge. All the pending messages are propagated together, so that no
+     * message is computed recursively.
+     * @param edge Directed edge id.
+     * @return Message along given directed edge.
+     */
+    @Override
+    protected Message getMessage(final int edge) {
+        if (this.pendingPositions.get(this.schedule.getPosition(edge))) {
+            this.propagate();
+        }
+        return this.messages[edge];
+    }
+
+    /**
+     * Mark the messages sent away from given variable as pending. In a tree, these are exactly the messages which
+     * depend on the message from the variable, so the rest of the message table is kept. The marked messages are
+     * found by a breadth first search from the variable, which stops at the messages already pending.
+     * @param variableId Id of the variable whose observation changed.
+     */
+    @Override
+    protected void invalidateEvidence(final int variableId) {
+        this.staleBeliefs.set(variableId);
+        int[] queue = new int[Math.max(1, this.compiledGraph.variableDegree(variableId))];
+        int tail = 0;
+        for (int i = 0; i < this.compiledGraph.variableDegree(variableId); i++) {
+            final int edge = CompiledFactorGraph.directedEdge(this.compiledGraph.variableEdge(variableId, i), false);
+            if (this.markPending(edge)) {
+                queue[tail++] = edge;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            final int undirectedEdge = CompiledFactorGraph.undirectedEdge(queue[head]);
+            if (CompiledFactorGraph.isFromFactor(queue[head])) {
+                // Message from a factor to a variable, continue with the messages from the variable
+                final int variable = this.compiledGraph.edgeVariable(undirectedEdge);
+                for (int i = 0; i < this.compiledGraph.variableDegree(variable); i++) {
+                    final int edge = this.compiledGraph.variableEdge(variable, i);
+                    if (edge != undirectedEdge && this.markPending(CompiledFactorGraph.directedEdge(edge, false))) {
+                        queue = tail < queue.length ? queue : Arrays.copyOf(queue, 2 * queue.length);
+                        queue[tail++] = CompiledFactorGraph.directedEdge(edge, false);
+                    }
+                }
+            } else {
+                // Message from a variable to a factor, continue with the messages from the factor
+                final int factor = this.compiledGraph.edgeFactor(undirectedEdge);
+                for (int edge = this.compiledGraph.factorEdgeStart(factor); edge < this.compiledGraph.factorEdgeEnd(factor); edge++) {
+                    if (edge != undirectedEdge && this.markPending(CompiledFactorGraph.directedEdge(edge, true))) {
+                        queue = tail < queue.length ? queue : Arrays.copyOf(queue, 2 * queue.length);
+                        queue[tail++] = CompiledFactorGraph.directedEdge(edge, true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the message along given directed edge as pending.
+     * @param edge Directed edge id.
+     * @return {@code True} if the message was not pending before.
+     */
+    protected boolean markPending(final int edge) {
+        final int position = this.schedule.getPosition(edge);
+        if (this.pendingPositions.get(position)) {
+            return false;
+        }
+        this.pendingPositions.set(position);
+        return true;
+    }
+
+    @Override
+    protected void resetMessages() {
+        super.resetMessages();
+        this.beliefs = null;
+        this.pendingPositions.set(0, this.schedule.size());
+        this.staleBeliefs.clear();
     }
 }
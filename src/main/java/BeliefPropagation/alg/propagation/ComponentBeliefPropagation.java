@@ -0,0 +1,442 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.alg.interfaces.BeliefPropagationAlgorithm;
+import BeliefPropagation.graph.*;
+import BeliefPropagation.utils.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * {@link ComponentBeliefPropagation} splits the {@link FactorGraph} into its connected components and runs each of
+ * them independently. Components without cycle are run by the exact {@link BeliefPropagation}, and the others by
+ * {@link LoopyBeliefPropagation}, so that one cyclic component does not force the whole graph into the iterative
+ * estimation. <br/>
+ * The beliefs of all variables are computed together on a {@link ForkJoinPool} when the first belief is requested,
+ * one task per component, and merged into a {@link BeliefTable} indexed by variable id.
+ * @param <E> Edge type.
+ */
+public class ComponentBeliefPropagation<E> implements BeliefPropagationAlgorithm {
+    /**
+     * Compiled form of the whole factor graph.
+     */
+    protected final CompiledFactorGraph compiledGraph;
+    /**
+     * Component id of each node. See {@link FactorGraphStructure#getComponentLabels()}.
+     */
+    protected final int[] componentLabels;
+    /**
+     * Compiled graph of each component, indexed by component id.
+     */
+    protected final CompiledFactorGraph[] components;
+    /**
+     * Algorithm running each component, indexed by component id. It is {@code null} for a component of a single
+     * variable without any factor.
+     */
+    protected final BaseBeliefPropagationAlgorithm<?>[] algorithms;
+    /**
+     * Pool running the components.
+     */
+    protected final ForkJoinPool pool;
+    /**
+     * Number of iteration of the cyclic components.
+     */
+    protected int iteration;
+    /**
+     * Residual to which the messages of the cyclic components are considered converged.
+     */
+    protected double tolerance = 0.0d;
+    /**
+     * How the messages of a sweep of the cyclic components read each other.
+     */
+    protected UpdateMode updateMode = UpdateMode.SYNCHRONOUS;
+    /**
+     * Observed state of each variable without factor indexed by variable id, or {@code -1} if it is not observed.
+     * The other variables are observed by the algorithm of their component.
+     */
+    protected final int[] evidence;
+    /**
+     * {@code True} if the messages are computed in log domain.
+     */
+    protected boolean logDomain = false;
+    /**
+     * Precision of the computed messages.
+     */
+    protected Precision precision = Precision.DOUBLE;
+    /**
+     * Beliefs of all variables indexed by variable id, or {@code null} if the beliefs are not computed yet.
+     */
+    protected BeliefTable beliefs;
+
+    /**
+     * Constructor, with default iteration = 5 for the cyclic components, running on the common pool.
+     * @param graph Factor graph.
+     * @see #ComponentBeliefPropagation(FactorGraph, int, ForkJoinPool)
+     */
+    public ComponentBeliefPropagation(FactorGraph<E> graph) {
+        this(graph, LoopyBeliefPropagation.DEFAULT_ITERATION);
+    }
+
+    /**
+     * Constructor running on the common pool.
+     * @param graph Factor graph.
+     * @param iteration Number of iteration of the cyclic components.
+     * @see #ComponentBeliefPropagation(FactorGraph, int, ForkJoinPool)
+     */
+    public ComponentBeliefPropagation(FactorGraph<E> graph, final int iteration) {
+        this(graph, iteration, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     * @param graph Factor graph. It is compiled, so that modifying the graph afterward does not affect this algorithm.
+     * @param iteration Number of iteration of the cyclic components.
+     * @param pool Pool running the components.
+     * @throws NullPointerException if {@code graph} or {@code pool} is null.
+     * @throws IllegalArgumentException if {@code graph} is invalid, or {@code iteration} is smaller than 1.
+     */
+    public ComponentBeliefPropagation(FactorGraph<E> graph, final int iteration, final ForkJoinPool pool) {
+        this(Objects.requireNonNull(graph, Log.genLogMsg(ComponentBeliefPropagation.class,
+                "Given graph cannot be null")).compile(), iteration, pool);
+    }
+
+    /**
+     * Constructor running on a compiled factor graph.
+     * @param graph Compiled factor graph.
+     * @param iteration Number of iteration of the cyclic components.
+     * @param pool Pool running the components.
+     * @see #create(CompiledFactorGraph, int, ForkJoinPool)
+     */
+    private ComponentBeliefPropagation(CompiledFactorGraph graph, final int iteration, final ForkJoinPool pool) {
+        Objects.requireNonNull(graph, Log.genLogMsg(this.getClass(), "Given graph cannot be null"));
+        Objects.requireNonNull(pool, Log.genLogMsg(this.getClass(), "Given pool cannot be null"));
+        if (iteration <= 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_ITERATION_ERROR));
+        }
+        if (graph.factorCount() == 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Given factor graph is not valid"));
+        }
+        this.compiledGraph = graph;
+        this.iteration = iteration;
+        this.pool = pool;
+        this.evidence = new int[graph.variableCount()];
+        Arrays.fill(this.evidence, -1);
+        final FactorGraphStructure structure = graph.getStructure();
+        this.componentLabels = structure.getComponentLabels();
+        this.components = graph.splitComponents(this.componentLabels);
+        this.algorithms = new BaseBeliefPropagationAlgorithm<?>[this.components.length];
+        for (int c = 0; c < this.components.length; c++) {
+            if (this.components[c].factorCount() == 0) {
+                continue;
+            }
+            this.algorithms[c] = structure.isTree(c) ? BeliefPropagation.create(this.components[c]) :
+                    LoopyBeliefPropagation.create(this.components[c], iteration);
+        }
+    }
+
+    /**
+     * Create component belief propagation running on a compiled factor graph directly, with default iteration = 5
+     * for the cyclic components, running on the common pool.
+     * @param graph Compiled factor graph.
+     * @return Component belief propagation.
+     * @param <E> Edge type. It is not used by a compiled factor graph.
+     * @see #create(CompiledFactorGraph, int, ForkJoinPool)
+     */
+    public static <E> ComponentBeliefPropagation<E> create(CompiledFactorGraph graph) {
+        return ComponentBeliefPropagation.create(graph, LoopyBeliefPropagation.DEFAULT_ITERATION,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create component belief propagation running on a compiled factor graph directly.
+     * @param graph Compiled factor graph.
+     * @param iteration Number of iteration of the cyclic components.
+     * @param pool Pool running the components.
+     * @return Component belief propagation.
+     * @param <E> Edge type. It is not used by a compiled factor graph.
+     * @throws NullPointerException if {@code graph} or {@code pool} is null.
+     * @throws IllegalArgumentException if {@code graph} does not contain any factor, or {@code iteration} is
+     * smaller than 1.
+     */
+    public static <E> ComponentBeliefPropagation<E> create(CompiledFactorGraph graph, final int iteration,
+                                                           final ForkJoinPool pool) {
+        return new ComponentBeliefPropagation<>(graph, iteration, pool);
+    }
+
+    @Override
+    public Message getBelief(Variable<?> variable) {
+        Objects.requireNonNull(variable, Log.genLogMsg(this.getClass(), "Given variable cannot be null"));
+        final int variableId = this.compiledGraph.variableId(variable);
+        if (variableId < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain variable: " + variable));
+        }
+        if (this.beliefs == null) {
+            this.propagate();
+        }
+        return this.beliefs.getBelief(variableId);
+    }
+
+    /**
+     * Get the beliefs of all variables, computing them first if needed.
+     * @return Beliefs indexed by variable id of the compiled graph.
+     */
+    public BeliefTable getAllBeliefs() {
+        if (this.beliefs == null) {
+            this.propagate();
+        }
+        return this.beliefs;
+    }
+
+    /**
+     * Get the joint belief over the variables of given {@code factor}, computed by the algorithm of its component.
+     * @param factor Target factor.
+     * @return Normalized belief over the variables of the factor, in their order, in probability domain.
+     * @throws NullPointerException if {@code factor} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code factor}.
+     * @see BaseBeliefPropagationAlgorithm#getFactorBelief(Factor)
+     */
+    public Message getFactorBelief(final Factor factor) {
+        Objects.requireNonNull(factor, Log.genLogMsg(this.getClass(), "Given factor cannot be null"));
+        final int factorId = this.compiledGraph.factorId(factor);
+        if (factorId < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain factor: " + factor));
+        }
+        return this.algorithms[this.componentLabels[this.compiledGraph.variableCount() + factorId]].getFactorBelief(factor);
+    }
+
+    /**
+     * Compute the beliefs of all variables, running the components in parallel on the pool.
+     */
+    public void propagate() {
+        final List<Variable<?>> variables = new ArrayList<>(this.compiledGraph.variableCount());
+        for (int v = 0; v < this.compiledGraph.variableCount(); v++) {
+            variables.add(this.compiledGraph.getVariable(v));
+        }
+        final int[] offsets = BeliefTable.offsetsOf(variables);
+        final double[] values = new double[offsets[offsets.length - 1]];
+        this.pool.submit(() -> IntStream.range(0, this.algorithms.length).parallel()
+                .forEach(component -> this.propagateComponent(component, offsets, values))).join();
+        this.beliefs = new BeliefTable(variables, values);
+    }
+
+    /**
+     * Compute the beliefs of the variables of given component.
+     * @param component Component id.
+     * @param offsets Offset of the belief of each variable of the whole graph in {@code values}.
+     * @param values Beliefs of the whole graph, to store the results.
+     */
+    protected void propagateComponent(final int component, final int[] offsets, final double[] values) {
+        final BaseBeliefPropagationAlgorithm<?> algorithm = this.algorithms[component];
+        final CompiledFactorGraph componentGraph = this.components[component];
+        final BeliefTable componentBeliefs = algorithm == null ? null : algorithm.getAllBeliefs();
+        for (int v = 0; v < componentGraph.variableCount(); v++) {
+            final int variableId = this.compiledGraph.variableId(componentGraph.getVariable(v));
+            final int stateCount = offsets[variableId + 1] - offsets[variableId];
+            if (componentBeliefs == null && this.evidence[variableId] >= 0) {
+                values[offsets[variableId] + this.evidence[variableId]] = 1.0d;
+            } else if (componentBeliefs == null) {
+                // A variable without factor keeps the uniform distribution
+                Arrays.fill(values, offsets[variableId], offsets[variableId + 1], 1.0d / stateCount);
+            } else {
+                System.arraycopy(componentBeliefs.getValues(), componentBeliefs.getOffset(v), values,
+                        offsets[variableId], stateCount);
+            }
+        }
+    }
+
+    /**
+     * Clamp given {@code variable} to an observed state. Only the component of the variable is affected, the others
+     * keep their computed messages.
+     * @param variable Observed variable.
+     * @param state Index of the observed state.
+     * @throws NullPointerException if {@code variable} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code variable}.
+     * @throws IndexOutOfBoundsException if {@code state} is not a state of the variable.
+     * @see BaseBeliefPropagationAlgorithm#observe(Variable, int)
+     */
+    public void observe(final Variable<?> variable, final int state) {
+        final BaseBeliefPropagationAlgorithm<?> algorithm = this.getComponentAlgorithm(variable);
+        if (algorithm != null) {
+            algorithm.observe(variable, state);
+        } else {
+            this.evidence[this.compiledGraph.variableId(variable)] = Objects.checkIndex(state, variable.getStateCount());
+        }
+        this.beliefs = null;
+    }
+
+    /**
+     * Remove the observation of given {@code variable}.
+     * @param variable Target variable.
+     * @throws NullPointerException if {@code variable} is null.
+     * @throws IllegalArgumentException if the graph does not contain {@code variable}.
+     * @see BaseBeliefPropagationAlgorithm#retract(Variable)
+     */
+    public void retract(final Variable<?> variable) {
+        final BaseBeliefPropagationAlgorithm<?> algorithm = this.getComponentAlgorithm(variable);
+        if (algorithm != null) {
+            algorithm.retract(variable);
+        } else {
+            this.evidence[this.compiledGraph.variableId(variable)] = -1;
+        }
+        this.beliefs = null;
+    }
+
+    /**
+     * Get the number of connected components.
+     * @return Number of components.
+     */
+    public int getComponentCount() {
+        return this.algorithms.length;
+    }
+
+    /**
+     * Get the algorithm running the component of given variable.
+     * @param variable Target variable.
+     * @return {@link BeliefPropagation} if the component does not contain cycle, {@link LoopyBeliefPropagation}
+     * otherwise, or {@code null} if the variable is not connected to any factor.
+     * @throws NullPointerException if given variable is null.
+     * @throws IllegalArgumentException if the graph does not contain the variable.
+     */
+    public BaseBeliefPropagationAlgorithm<?> getComponentAlgorithm(final Variable<?> variable) {
+        Objects.requireNonNull(variable, Log.genLogMsg(this.getClass(), "Given variable cannot be null"));
+        final int variableId = this.compiledGraph.variableId(variable);
+        if (variableId < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Graph does not contain variable: " + variable));
+        }
+        return this.algorithms[this.componentLabels[variableId]];
+    }
+
+    /**
+     * Check whether the messages are computed in log domain.
+     * @return {@code True} if the messages are computed in log domain.
+     */
+    public boolean isLogDomain() {
+        return this.logDomain;
+    }
+
+    /**
+     * Set whether the messages of every component are computed in log domain. Computed beliefs are discarded.
+     * @param logDomain {@code True} to compute the messages in log domain.
+     * @see BaseBeliefPropagationAlgorithm#setLogDomain(boolean)
+     */
+    public void setLogDomain(final boolean logDomain) {
+        this.logDomain = logDomain;
+        for (BaseBeliefPropagationAlgorithm<?> algorithm : this.algorithms) {
+            if (algorithm != null) {
+                algorithm.setLogDomain(logDomain);
+            }
+        }
+        this.beliefs = null;
+    }
+
+    /**
+     * Get the precision of the computed messages.
+     * @return Precision of the computed messages.
+     */
+    public Precision getPrecision() {
+        return this.precision;
+    }
+
+    /**
+     * Set the precision of the messages of every component. Computed beliefs are discarded.
+     * @param precision Precision of the computed messages.
+     * @throws NullPointerException if given precision is null.
+     * @see BaseBeliefPropagationAlgorithm#setPrecision(Precision)
+     */
+    public void setPrecision(final Precision precision) {
+        Objects.requireNonNull(precision, Log.genLogMsg(this.getClass(), "Given precision cannot be null"));
+        this.precision = precision;
+        for (BaseBeliefPropagationAlgorithm<?> algorithm : this.algorithms) {
+            if (algorithm != null) {
+                algorithm.setPrecision(precision);
+            }
+        }
+        this.beliefs = null;
+    }
+
+    /**
+     * Get number of iteration of the cyclic components.
+     * @return Number of iteration.
+     */
+    public int getIteration() {
+        return this.iteration;
+    }
+
+    /**
+     * Set the number of iteration of the cyclic components. Computed beliefs are discarded.
+     * @param iteration Number of iteration.
+     * @throws IllegalArgumentException if number of iteration is smaller than 1.
+     */
+    public void setIteration(final int iteration) {
+        if (iteration <= 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_ITERATION_ERROR));
+        }
+        this.iteration = iteration;
+        for (BaseBeliefPropagationAlgorithm<?> algorithm : this.algorithms) {
+            if (algorithm instanceof LoopyBeliefPropagation<?> loopyAlgorithm) {
+                loopyAlgorithm.setIteration(iteration);
+                loopyAlgorithm.resetMessages();
+            }
+        }
+        this.beliefs = null;
+    }
+
+    /**
+     * Get the residual to which the messages of the cyclic components are considered converged.
+     * @return Tolerance.
+     */
+    public double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Set the residual to which the messages of the cyclic components are considered converged. Computed beliefs
+     * are discarded.
+     * @param tolerance Tolerance.
+     * @throws IllegalArgumentException if {@code tolerance} is negative or {@code NaN}.
+     * @see LoopyBeliefPropagation#setTolerance(double)
+     */
+    public void setTolerance(final double tolerance) {
+        if (!(tolerance >= 0.0d)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_TOLERANCE_ERROR));
+        }
+        this.tolerance = tolerance;
+        for (BaseBeliefPropagationAlgorithm<?> algorithm : this.algorithms) {
+            if (algorithm instanceof LoopyBeliefPropagation<?> loopyAlgorithm) {
+                loopyAlgorithm.setTolerance(tolerance);
+                loopyAlgorithm.resetMessages();
+            }
+        }
+        this.beliefs = null;
+    }
+
+    /**
+     * Get how the messages of a sweep of the cyclic components read each other.
+     * @return Update mode.
+     */
+    public UpdateMode getUpdateMode() {
+        return this.updateMode;
+    }
+
+    /**
+     * Set how the messages of a sweep of the cyclic components read each other. Computed beliefs are discarded.
+     * @param updateMode Update mode.
+     * @throws NullPointerException if given update mode is null.
+     * @see LoopyBeliefPropagation#setUpdateMode(UpdateMode)
+     */
+    public void setUpdateMode(final UpdateMode updateMode) {
+        this.updateMode = Objects.requireNonNull(updateMode,
+                Log.genLogMsg(this.getClass(), "Given update mode cannot be null"));
+        for (BaseBeliefPropagationAlgorithm<?> algorithm : this.algorithms) {
+            if (algorithm instanceof LoopyBeliefPropagation<?> loopyAlgorithm) {
+                loopyAlgorithm.setUpdateMode(updateMode);
+                loopyAlgorithm.resetMessages();
+            }
+        }
+        this.beliefs = null;
+    }
+}
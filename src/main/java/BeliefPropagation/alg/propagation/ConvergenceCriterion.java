@@ -0,0 +1,37 @@
+package BeliefPropagation.alg.propagation;
+
+/**
+ * How the residuals of the messages updated in one sweep are combined into the residual of the sweep, which is
+ * compared with the tolerance of {@link LoopyBeliefPropagation}. The residual of a message is the largest change of
+ * its probabilities, see {@link BaseBeliefPropagationAlgorithm#messageResidual(BeliefPropagation.graph.Message,
+ * BeliefPropagation.graph.Message)}.
+ */
+public enum ConvergenceCriterion {
+    /**
+     * Largest residual of all the messages. Every message has to settle before the loop stops.
+     */
+    MAX_CHANGE {
+        @Override
+        public double combine(final double maxResidual, final double residualSum, final int messageCount) {
+            return maxResidual;
+        }
+    },
+    /**
+     * Mean residual of all the messages. A few slowly moving messages do not keep the loop running.
+     */
+    MEAN_CHANGE {
+        @Override
+        public double combine(final double maxResidual, final double residualSum, final int messageCount) {
+            return messageCount == 0 ? 0.0d : residualSum / messageCount;
+        }
+    };
+
+    /**
+     * Combine the residuals of the messages of one sweep.
+     * @param maxResidual Largest residual.
+     * @param residualSum Sum of the residuals.
+     * @param messageCount Number of messages.
+     * @return Residual of the sweep.
+     */
+    public abstract double combine(final double maxResidual, final double residualSum, final int messageCount);
+}
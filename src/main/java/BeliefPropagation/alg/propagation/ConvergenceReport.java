@@ -0,0 +1,78 @@
+package BeliefPropagation.alg.propagation;
+
+/**
+ * Summary of the last loop of a {@link LoopyBeliefPropagation}. Reports are immutable.
+ */
+public class ConvergenceReport {
+    /**
+     * Number of sweeps run.
+     */
+    protected final int iterations;
+    /**
+     * Number of messages updated.
+     */
+    protected final long updateCount;
+    /**
+     * Residual when the loop stopped.
+     */
+    protected final double residual;
+    /**
+     * {@code True} if the residual fell to the tolerance before the limit of iteration.
+     */
+    protected final boolean converged;
+
+    /**
+     * Constructor.
+     * @param iterations Number of sweeps run.
+     * @param updateCount Number of messages updated.
+     * @param residual Residual when the loop stopped.
+     * @param converged {@code True} if the residual fell to the tolerance.
+     */
+    public ConvergenceReport(final int iterations, final long updateCount, final double residual,
+                             final boolean converged) {
+        this.iterations = iterations;
+        this.updateCount = updateCount;
+        this.residual = residual;
+        this.converged = converged;
+    }
+
+    /**
+     * Get the number of sweeps run. For a schedule without sweep, it is the number of updates divided by the number
+     * of directed edges, rounded up.
+     * @return Number of sweeps.
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Get the number of messages updated.
+     * @return Number of updates.
+     */
+    public long getUpdateCount() {
+        return this.updateCount;
+    }
+
+    /**
+     * Get the residual when the loop stopped. See {@link ConvergenceCriterion}.
+     * @return Final residual.
+     */
+    public double getResidual() {
+        return this.residual;
+    }
+
+    /**
+     * Check whether the loop stopped because the residual fell to the tolerance, rather than reaching the limit of
+     * iteration.
+     * @return {@code True} if the messages converged.
+     */
+    public boolean isConverged() {
+        return this.converged;
+    }
+
+    @Override
+    public String toString() {
+        return "ConvergenceReport: " + (this.converged ? "converged" : "not converged") + " after " +
+                this.iterations + " iterations, residual " + this.residual;
+    }
+}
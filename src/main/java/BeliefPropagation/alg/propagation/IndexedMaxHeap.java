@@ -0,0 +1,232 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.utils.Log;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Binary max-heap of the keys {@code 0} to {@code capacity - 1}, each with a {@code double} priority, such as the
+ * residuals of the messages along the directed edges of a graph. <br/>
+ * The position of every key in the heap is tracked, so that the priority of a key already in the heap is changed in
+ * place in {@code O(log n)} instead of inserting it again. Priorities are compared by {@link Double#compare(double,
+ * double)}, so that {@code NaN} is larger than any other priority.
+ */
+public class IndexedMaxHeap {
+    /**
+     * Keys in heap order.
+     */
+    protected final int[] heap;
+    /**
+     * Position of each key in {@code heap}, or {@code -1} if the key is not in the heap.
+     */
+    protected final int[] positions;
+    /**
+     * Priority of each key, indexed by key.
+     */
+    protected final double[] priorities;
+    /**
+     * Number of keys in the heap.
+     */
+    protected int size = 0;
+
+    /**
+     * Constructor of an empty heap.
+     * @param capacity Number of possible keys.
+     * @throws IllegalArgumentException if {@code capacity} is negative.
+     */
+    public IndexedMaxHeap(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Given capacity cannot be negative"));
+        }
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.priorities = new double[capacity];
+        Arrays.fill(this.positions, -1);
+    }
+
+    /**
+     * Get the number of keys in the heap.
+     * @return Number of keys.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Check whether the heap is empty.
+     * @return {@code True} if the heap does not contain any key.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Check whether given key is in the heap.
+     * @param key Key.
+     * @return {@code True} if the key is in the heap.
+     * @throws IndexOutOfBoundsException if the key is not smaller than the capacity.
+     */
+    public boolean contains(final int key) {
+        return this.positions[Objects.checkIndex(key, this.positions.length)] >= 0;
+    }
+
+    /**
+     * Get the priority of given key.
+     * @param key Key in the heap.
+     * @return Priority of the key.
+     * @throws IllegalArgumentException if the key is not in the heap.
+     */
+    public double getPriority(final int key) {
+        if (!this.contains(key)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Heap does not contain key: " + key));
+        }
+        return this.priorities[key];
+    }
+
+    /**
+     * Insert given key, or change its priority if it is already in the heap.
+     * @param key Key.
+     * @param priority New priority of the key.
+     * @throws IndexOutOfBoundsException if the key is not smaller than the capacity.
+     */
+    public void set(final int key, final double priority) {
+        if (this.contains(key)) {
+            final double oldPriority = this.priorities[key];
+            this.priorities[key] = priority;
+            if (Double.compare(priority, oldPriority) > 0) {
+                this.siftUp(this.positions[key]);
+            } else {
+                this.siftDown(this.positions[key]);
+            }
+            return;
+        }
+        this.priorities[key] = priority;
+        this.heap[this.size] = key;
+        this.positions[key] = this.size;
+        this.siftUp(this.size++);
+    }
+
+    /**
+     * Get the key with the largest priority.
+     * @return Key at the top of the heap.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int peek() {
+        if (this.size == 0) {
+            throw new IllegalStateException(Log.genLogMsg(this.getClass(), "Heap is empty"));
+        }
+        return this.heap[0];
+    }
+
+    /**
+     * Get the largest priority.
+     * @return Priority of the key at the top of the heap.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public double peekPriority() {
+        return this.priorities[this.peek()];
+    }
+
+    /**
+     * Remove the key with the largest priority.
+     * @return Removed key.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int poll() {
+        final int key = this.peek();
+        this.removeAt(0);
+        return key;
+    }
+
+    /**
+     * Remove given key from the heap. Removing a key which is not in the heap does nothing.
+     * @param key Key.
+     * @return {@code True} if the key was in the heap.
+     * @throws IndexOutOfBoundsException if the key is not smaller than the capacity.
+     */
+    public boolean remove(final int key) {
+        if (!this.contains(key)) {
+            return false;
+        }
+        this.removeAt(this.positions[key]);
+        return true;
+    }
+
+    /**
+     * Remove all keys.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.positions[this.heap[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Remove the key at given position of the heap, and move the last key into its place.
+     * @param position Position in the heap.
+     */
+    protected void removeAt(final int position) {
+        final int key = this.heap[position];
+        this.positions[key] = -1;
+        final int last = this.heap[--this.size];
+        if (position == this.size) {
+            return;
+        }
+        this.heap[position] = last;
+        this.positions[last] = position;
+        this.siftDown(position);
+        this.siftUp(this.positions[last]);
+    }
+
+    /**
+     * Move the key at given position up until its parent is not smaller.
+     * @param position Position in the heap.
+     */
+    protected void siftUp(int position) {
+        final int key = this.heap[position];
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (Double.compare(this.priorities[this.heap[parent]], this.priorities[key]) >= 0) {
+                break;
+            }
+            this.heap[position] = this.heap[parent];
+            this.positions[this.heap[position]] = position;
+            position = parent;
+        }
+        this.heap[position] = key;
+        this.positions[key] = position;
+    }
+
+    /**
+     * Move the key at given position down until none of its children is larger.
+     * @param position Position in the heap.
+     */
+    protected void siftDown(int position) {
+        final int key = this.heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size &&
+                    Double.compare(this.priorities[this.heap[child + 1]], this.priorities[this.heap[child]]) > 0) {
+                child++;
+            }
+            if (Double.compare(this.priorities[this.heap[child]], this.priorities[key]) <= 0) {
+                break;
+            }
+            this.heap[position] = this.heap[child];
+            this.positions[this.heap[position]] = position;
+            position = child;
+        }
+        this.heap[position] = key;
+        this.positions[key] = position;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedMaxHeap: " + this.size + " keys";
+    }
+}
@@ -1,19 +1,26 @@
 package BeliefPropagation.alg.propagation;
 
 import BeliefPropagation.graph.*;
-import org.jgrapht.alg.util.Pair;
 import BeliefPropagation.utils.Log;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * {@link LoopyBeliefPropagation} run belief propagation on {@link FactorGraph} in iterative manner. It allows
  * {@link FactorGraph} to contain cycle. However, the computed belief is no longer exact value,
  * but rather an estimation. User can define the number of estimation during construction {@link #LoopyBeliefPropagation(FactorGraph, int)}.
- * The more iteration, the more accurate. Indeed, it takes more time as well.
+ * The more iteration, the more accurate. Indeed, it takes more time as well. <br/>
+ * With a positive tolerance, the loop stops as soon as the residual of a sweep falls to it, see
+ * {@link ConvergenceCriterion}; the number of iteration is then only a safety limit. The outcome of the last loop is
+ * available from {@link #getReport()}. <br/>
+ * Messages can be damped to stop oscillation on frustrated graphs, see {@link #setDamping(double)}. <br/>
+ * The messages of a sweep are updated synchronously by default. See {@link UpdateMode} for the asynchronous updates
+ * along a {@link MessageSchedule}. The synchronous sweeps can run in parallel on a {@link ForkJoinPool}, see
+ * {@link #setPool(ForkJoinPool)}.
  * @param <E> Edge type.
  */
 public class LoopyBeliefPropagation<E> extends BaseBeliefPropagationAlgorithm<E> {
@@ -31,6 +38,62 @@ public class LoopyBeliefPropagation<E> extends BaseBeliefPropagationAlgorithm<E>
 
     protected final static String INVALID_EDGE_ERROR = "Exist invalid edge";
 
+    protected final static String INVALID_TOLERANCE_ERROR = "Given tolerance should be a non-negative number";
+
+    protected final static String INVALID_DAMPING_ERROR = "Given damping should be in [0, 1)";
+
+    /**
+     * Largest damping the adaptive damping raises an edge to.
+     */
+    protected final static double MAX_ADAPTIVE_DAMPING = 0.9d;
+
+    /**
+     * Residual to which the messages are considered converged. The default {@code 0} runs all the iterations unless
+     * the messages stop changing at all.
+     */
+    protected double tolerance = 0.0d;
+
+    /**
+     * How the residuals of the messages of a sweep are combined.
+     */
+    protected ConvergenceCriterion criterion = ConvergenceCriterion.MAX_CHANGE;
+
+    /**
+     * Report of the last loop, or {@code null} if the loop is not run yet.
+     */
+    protected ConvergenceReport report;
+
+    /**
+     * How the messages of a sweep read each other.
+     */
+    protected UpdateMode updateMode = UpdateMode.SYNCHRONOUS;
+
+    /**
+     * Order of the asynchronous updates, or {@code null} if the default spanning tree order is not created yet.
+     */
+    protected MessageSchedule schedule;
+
+    /**
+     * Pool running the synchronous sweeps, or {@code null} to run them on the calling thread.
+     */
+    protected ForkJoinPool pool;
+
+    /**
+     * Weight of the previous message in each update, {@code new = damping * old + (1 - damping) * computed}.
+     */
+    protected double damping = 0.0d;
+
+    /**
+     * Damping of each directed edge, or {@code null} if the damping is not adaptive.
+     */
+    protected double[] edgeDamping;
+
+    /**
+     * Residual of the message along each directed edge on the previous sweep, or {@code null} if the damping is not
+     * adaptive.
+     */
+    protected double[] edgeResiduals;
+
     /**
      * {@code True} if the loop belief propagation is finished.
      */
@@ -58,7 +121,75 @@ public class LoopyBeliefPropagation<E> extends BaseBeliefPropagationAlgorithm<E>
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_ITERATION_ERROR));
         }
         this.iteration = iteration;
-        this.messageTable.putAll(this.generateInitialMessageTable());
+        this.initializeMessages(this.messages);
+    }
+
+    /**
+     * Constructor stopping at given tolerance.
+     * @param graph Factor graph.
+     * @param iteration Limit of the number of iteration.
+     * @param tolerance Residual to which the messages are considered converged.
+     * @throws IllegalArgumentException if {@code iteration} is smaller than 1, or {@code tolerance} is negative or
+     * {@code NaN}.
+     * @see #LoopyBeliefPropagation(FactorGraph, int)
+     */
+    public LoopyBeliefPropagation(FactorGraph<E> graph, final int iteration, final double tolerance) {
+        this(graph, iteration);
+        this.tolerance = this.checkTolerance(tolerance);
+    }
+
+    /**
+     * Constructor running on a compiled factor graph.
+     * @param graph Compiled factor graph.
+     * @param iteration Number of iteration.
+     * @see #create(CompiledFactorGraph, int)
+     */
+    private LoopyBeliefPropagation(CompiledFactorGraph graph, final int iteration) {
+        this(graph, iteration, 0.0d);
+    }
+
+    /**
+     * Constructor running on a compiled factor graph, stopping at given tolerance.
+     * @param graph Compiled factor graph.
+     * @param iteration Number of iteration.
+     * @param tolerance Residual below which the messages are considered converged.
+     * @throws NullPointerException if {@code graph} is null.
+     * @throws IllegalArgumentException if {@code graph} does not contain any factor, {@code iteration} is smaller
+     * than 1, or {@code tolerance} is negative or {@code NaN}.
+     */
+    protected LoopyBeliefPropagation(CompiledFactorGraph graph, final int iteration, final double tolerance) {
+        super(graph);
+        if (iteration <= 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_ITERATION_ERROR));
+        }
+        this.iteration = iteration;
+        this.tolerance = this.checkTolerance(tolerance);
+        this.initializeMessages(this.messages);
+    }
+
+    /**
+     * Create loopy belief propagation running on a compiled factor graph directly, with default iteration = 5.
+     * @param graph Compiled factor graph.
+     * @return Loopy belief propagation.
+     * @param <E> Edge type. It is not used by a compiled factor graph.
+     * @see #create(CompiledFactorGraph, int)
+     */
+    public static <E> LoopyBeliefPropagation<E> create(CompiledFactorGraph graph) {
+        return LoopyBeliefPropagation.create(graph, LoopyBeliefPropagation.DEFAULT_ITERATION);
+    }
+
+    /**
+     * Create loopy belief propagation running on a compiled factor graph directly.
+     * @param graph Compiled factor graph.
+     * @param iteration Number of iteration.
+     * @return Loopy belief propagation.
+     * @param <E> Edge type. It is not used by a compiled factor graph.
+     * @throws NullPointerException if {@code graph} is null.
+     * @throws IllegalArgumentException if {@code graph} does not contain any factor, or {@code iteration} is
+     * smaller than 1.
+     */
+    public static <E> LoopyBeliefPropagation<E> create(CompiledFactorGraph graph, final int iteration) {
+        return new LoopyBeliefPropagation<>(graph, iteration);
     }
 
     @Override
@@ -66,44 +197,49 @@ public class LoopyBeliefPropagation<E> extends BaseBeliefPropagationAlgorithm<E>
         if (!this.loopFlag) {
             this.loopPropagation();
         }
-        List<Message> incomingMessages = new ArrayList<>();
-        for (Factor neighborFactor : this.graph.getIncomingFactors(variable, null)) {
-            Message message = this.getFactorToVariableMessage(neighborFactor, variable);
-            incomingMessages.add(message);
+        return this.computeBelief(variable);
+    }
+
+    @Override
+    protected void prepareBeliefs() {
+        if (!this.loopFlag) {
+            this.loopPropagation();
         }
-        Message jointedMessage = Message.messageProduct(incomingMessages);
-        jointedMessage.normalize();
-        return jointedMessage;
     }
 
     /**
-     * Initialize a cache message table, so that the {@link BaseBeliefPropagationAlgorithm#getVariableToFactorMessage(Variable, Factor)}
-     * and {@link BaseBeliefPropagationAlgorithm#getFactorToVariableMessage(Factor, Variable)} will not run into
-     * infinite loop. The initialized message are all equal probability distribution.
-     * @return Initialized message table.
+     * Keep the current messages as the starting point of the next loop, which usually needs far fewer iterations to
+     * settle after a local change of evidence than a restart from uniform messages.
+     * @param variableId Id of the variable whose observation changed.
      */
-    protected Map<Pair<FactorGraphNode, FactorGraphNode>, Message> generateInitialMessageTable() {
-        Map<Pair<FactorGraphNode, FactorGraphNode>, Message> messages = new HashMap<>();
-        for (E edge : this.graph.edgeSet()) {
-            final FactorGraphNode source = this.graph.getEdgeSource(edge);
-            final FactorGraphNode target = this.graph.getEdgeTarget(edge);
-
-            Message message;
-            if (source instanceof Factor && target instanceof Variable<?> targetVariable) {
-                message = new Message(targetVariable);
-            } else if (source instanceof Variable<?> targetVariable && target instanceof Factor) {
-                message = new Message(targetVariable);
-            } else {
-                throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_EDGE_ERROR));
-            }
+    @Override
+    protected void invalidateEvidence(final int variableId) {
+        this.setLoopFlag(false);
+    }
 
-            Pair<FactorGraphNode, FactorGraphNode> key1 = Pair.of(source, target);
-            Pair<FactorGraphNode, FactorGraphNode> key2 = Pair.of(target, source);
+    @Override
+    protected void resetMessages() {
+        super.resetMessages();
+        this.report = null;
+        if (this.edgeDamping != null) {
+            this.setAdaptiveDamping(true);
+        }
+        this.initializeMessages(this.messages);
+        this.setLoopFlag(false);
+    }
 
-            messages.put(key1, message);
-            messages.put(key2, new Message(message));
+    /**
+     * Initialize the message of every directed edge, so that the {@link BaseBeliefPropagationAlgorithm#getMessage(int)}
+     * will not run into infinite loop. The initialized message are all equal probability distribution.
+     * @param messages Messages indexed by directed edge id to initialize.
+     */
+    protected void initializeMessages(final Message[] messages) {
+        for (int edge = 0; edge < this.compiledGraph.edgeCount(); edge++) {
+            final Variable<?> variable = this.compiledGraph.getVariable(this.compiledGraph.edgeVariable(edge));
+            final Message message = this.createUniformMessage(variable);
+            messages[CompiledFactorGraph.directedEdge(edge, true)] = message;
+            messages[CompiledFactorGraph.directedEdge(edge, false)] = new Message(message);
         }
-        return messages;
     }
 
     /**
@@ -111,40 +247,273 @@ public class LoopyBeliefPropagation<E> extends BaseBeliefPropagationAlgorithm<E>
      * cache message table.
      */
     public void loopPropagation() {
-        Map<Pair<FactorGraphNode, FactorGraphNode>, Message> newMessageTable = this.generateInitialMessageTable();
-        for (int itr=0; itr<this.iteration; itr++) {
-            for (E edge : this.graph.edgeSet()) {
-                // For all edge, get the source variable/factor and target factor/varaible
-                final FactorGraphNode source = this.graph.getEdgeSource(edge);
-                final FactorGraphNode target = this.graph.getEdgeTarget(edge);
-
-                Variable<?> variable;
-                Factor factor;
-                if (source instanceof Factor && target instanceof Variable<?>) {
-                    factor = (Factor) source;
-                    variable = (Variable<?>) target;
-                } else if (source instanceof Variable<?> && target instanceof Factor) {
-                    factor = (Factor) target;
-                    variable = (Variable<?>) source;
-                } else {
-                    throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_EDGE_ERROR));
+        final Message[] newMessages = new Message[this.messages.length];
+        if (this.pool != null) {
+            this.prepareFactorMessages();
+        }
+        double residual = Double.NaN;
+        int itr = 0;
+        while (itr < this.iteration) {
+            double maxResidual = 0.0d;
+            double residualSum = 0.0d;
+            if (this.updateMode == UpdateMode.SYNCHRONOUS) {
+                // Compute the message along both directions of every edge and store it in temporary table
+                final DoubleSummaryStatistics statistics = this.pool == null ? this.sweep(newMessages, false) :
+                        this.pool.submit(() -> this.sweep(newMessages, true)).join();
+                maxResidual = statistics.getMax();
+                residualSum = statistics.getSum();
+
+                // Update message cache table once no update reads the previous messages
+                for (int edge = 0; edge < newMessages.length; edge++) {
+                    this.replaceMessage(edge, newMessages[edge]);
+                }
+            } else {
+                // Replace every message in place, in the order of the schedule
+                for (int edge : this.getMessageSchedule().getEdges()) {
+                    final double messageResidual = this.updateMessage(edge, newMessages);
+                    this.replaceMessage(edge, newMessages[edge]);
+                    maxResidual = Math.max(maxResidual, messageResidual);
+                    residualSum += messageResidual;
                 }
+            }
+            itr++;
+            residual = this.criterion.combine(maxResidual, residualSum, newMessages.length);
+            if (residual <= this.tolerance) {
+                break;
+            }
+        }
+        this.report = new ConvergenceReport(itr, (long) itr * newMessages.length, residual, residual <= this.tolerance);
+        this.setLoopFlag(true);
+    }
 
-                // Compute factor to variable message and store it in temporary table
-                final Pair<FactorGraphNode, FactorGraphNode> key1 = Pair.of(factor, variable);
-                Message factorToVariableMessage = this.computeFactorToVariableMessage(factor, variable);
-                newMessageTable.put(key1, factorToVariableMessage);
+    /**
+     * Compute the new message of every directed edge from the current messages, i.e. one synchronous sweep. Every
+     * update only reads the current messages and writes its own edge, so that the edges are independent.
+     * @param newMessages Messages indexed by directed edge id to store the new messages in.
+     * @param parallel {@code True} to split the edges into ranges updated in parallel on the current pool.
+     * @return Statistics of the residuals of the new messages.
+     */
+    protected DoubleSummaryStatistics sweep(final Message[] newMessages, final boolean parallel) {
+        final IntStream edges = IntStream.range(0, newMessages.length);
+        return (parallel ? edges.parallel() : edges).mapToDouble(edge -> this.updateMessage(edge, newMessages))
+                .summaryStatistics();
+    }
 
-                // Compute variable to factor message and store it in temporary table
-                final Pair<FactorGraphNode, FactorGraphNode> key2 = Pair.of(variable, factor);
-                Message variableToFactorMessage = this.computeVariableToFactorMessage(variable, factor);
-                newMessageTable.put(key2, variableToFactorMessage);
-            }
+    /**
+     * Create the message of every factor up front, since they are otherwise created lazily by the first update
+     * reading them, which is not safe from parallel updates.
+     */
+    protected void prepareFactorMessages() {
+        for (int factorId = 0; factorId < this.factorMessages.length; factorId++) {
+            this.getFactorMessage(factorId);
+        }
+    }
+
+    /**
+     * Compute the damped message along given directed edge from the current messages. The message is computed into
+     * the spare buffer of the update plan of the edge, see {@link MessageUpdatePlan#takeOutputBuffer(boolean,
+     * Precision)}, so that an update does not allocate its array. The current message is not replaced, see
+     * {@link #replaceMessage(int, Message)}.
+     * @param edge Directed edge id.
+     * @param target Messages indexed by directed edge id to store the new message in.
+     * @return Residual of the new message.
+     */
+    protected double updateMessage(final int edge, final Message[] target) {
+        final MessageUpdatePlan plan = this.updatePlans[edge];
+        final Message message = this.dampMessage(edge,
+                this.computeMessage(plan, plan.takeOutputBuffer(this.logDomain, this.precision)));
+        final double residual = BaseBeliefPropagationAlgorithm.messageResidual(this.messages[edge], message);
+        this.adaptDamping(edge, residual);
+        target[edge] = message;
+        return residual;
+    }
 
-            // Update message cache table
-            this.messageTable.putAll(newMessageTable);
+    /**
+     * Replace the current message along given directed edge. The replaced message is given back to the update plan
+     * of the edge as its spare buffer, so that every edge alternates between two messages. It should not be read
+     * by any update afterward.
+     * @param edge Directed edge id.
+     * @param message New message.
+     */
+    protected void replaceMessage(final int edge, final Message message) {
+        if (this.messages[edge] != message) {
+            this.updatePlans[edge].releaseOutputBuffer(this.messages[edge]);
+            this.messages[edge] = message;
         }
-        this.setLoopFlag(true);
+    }
+
+    /**
+     * Damp the message computed along given directed edge toward the current message, in place.
+     * @param edge Directed edge id.
+     * @param message Newly computed message. Its probability is overwritten.
+     * @return Given message.
+     */
+    protected Message dampMessage(final int edge, final Message message) {
+        final double edgeDamping = this.edgeDamping == null ? this.damping : this.edgeDamping[edge];
+        if (edgeDamping > 0.0d) {
+            message.getProbability().blend(this.messages[edge].getProbability(), edgeDamping, message.isLogDomain());
+        }
+        return message;
+    }
+
+    /**
+     * Raise the damping of given directed edge halfway to {@link #MAX_ADAPTIVE_DAMPING} if the residual of its
+     * message did not decrease since the previous sweep, i.e. the message oscillates instead of settling. It does
+     * nothing if the damping is not adaptive.
+     * @param edge Directed edge id.
+     * @param residual Residual of the message on this sweep.
+     */
+    protected void adaptDamping(final int edge, final double residual) {
+        if (this.edgeDamping == null) {
+            return;
+        }
+        if (residual > 0.0d && residual >= this.edgeResiduals[edge]) {
+            this.edgeDamping[edge] += (LoopyBeliefPropagation.MAX_ADAPTIVE_DAMPING - this.edgeDamping[edge]) / 2.0d;
+        }
+        this.edgeResiduals[edge] = residual;
+    }
+
+    /**
+     * Get the weight of the previous message in each update.
+     * @return Damping.
+     */
+    public double getDamping() {
+        return this.damping;
+    }
+
+    /**
+     * Set the weight of the previous message in each update, {@code new = damping * old + (1 - damping) * computed}.
+     * The messages are blended in probability domain, in place on the spare buffer the message is computed into, so
+     * that damping adds no allocation. A damping of {@code 0} disables damping. If the damping is adaptive, every
+     * edge restarts from the new damping.
+     * @param damping Damping.
+     * @throws IllegalArgumentException if {@code damping} is not in {@code [0, 1)}.
+     */
+    public void setDamping(final double damping) {
+        if (!(damping >= 0.0d && damping < 1.0d)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), LoopyBeliefPropagation.INVALID_DAMPING_ERROR));
+        }
+        this.damping = damping;
+        if (this.edgeDamping != null) {
+            this.setAdaptiveDamping(true);
+        }
+    }
+
+    /**
+     * Check whether the damping is raised on the edges whose message oscillates.
+     * @return {@code True} if the damping is adaptive.
+     */
+    public boolean isAdaptiveDamping() {
+        return this.edgeDamping != null;
+    }
+
+    /**
+     * Set whether the damping is raised on the edges whose message oscillates. Every edge starts from
+     * {@link #getDamping()}, and its damping is raised halfway to {@link #MAX_ADAPTIVE_DAMPING} on every sweep where
+     * the residual of its message does not decrease.
+     * @param adaptiveDamping {@code True} to adapt the damping of every edge.
+     */
+    public void setAdaptiveDamping(final boolean adaptiveDamping) {
+        if (adaptiveDamping) {
+            this.edgeDamping = new double[this.messages.length];
+            this.edgeResiduals = new double[this.messages.length];
+            Arrays.fill(this.edgeDamping, this.damping);
+            Arrays.fill(this.edgeResiduals, Double.POSITIVE_INFINITY);
+        } else {
+            this.edgeDamping = null;
+            this.edgeResiduals = null;
+        }
+    }
+
+    /**
+     * Get the pool running the synchronous sweeps.
+     * @return Pool, or {@code null} if the sweeps run on the calling thread.
+     */
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Set the pool running the synchronous sweeps. The edges of each sweep are split into ranges updated in
+     * parallel, reading the messages of the previous sweep, and the new messages replace them once every range is
+     * done. The messages are the same as on the calling thread. The asynchronous updates always run on the calling
+     * thread, since every update reads the one before.
+     * @param pool Pool, or {@code null} to run the sweeps on the calling thread.
+     */
+    public void setPool(final ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Get how the messages of a sweep read each other.
+     * @return Update mode.
+     */
+    public UpdateMode getUpdateMode() {
+        return this.updateMode;
+    }
+
+    /**
+     * Set how the messages of a sweep read each other. The current messages are kept as the starting point of the
+     * next loop.
+     * @param updateMode Update mode.
+     * @throws NullPointerException if given update mode is null.
+     */
+    public void setUpdateMode(final UpdateMode updateMode) {
+        this.updateMode = Objects.requireNonNull(updateMode,
+                Log.genLogMsg(this.getClass(), "Given update mode cannot be null"));
+    }
+
+    /**
+     * Get the order of the asynchronous updates. By default, it is {@link MessageSchedule#spanningTree(CompiledFactorGraph)}.
+     * @return Message schedule.
+     */
+    public MessageSchedule getMessageSchedule() {
+        if (this.schedule == null) {
+            this.schedule = MessageSchedule.spanningTree(this.compiledGraph);
+        }
+        return this.schedule;
+    }
+
+    /**
+     * Set the order of the asynchronous updates, such as {@link MessageSchedule#breadthFirst(CompiledFactorGraph)}.
+     * It does not affect the synchronous updates.
+     * @param schedule Message schedule created from the graph of this algorithm.
+     * @throws NullPointerException if given schedule is null.
+     * @throws IllegalArgumentException if given schedule does not contain every directed edge exactly once.
+     */
+    public void setMessageSchedule(final MessageSchedule schedule) {
+        Objects.requireNonNull(schedule, Log.genLogMsg(this.getClass(), "Given schedule cannot be null"));
+        if (!schedule.isComplete(this.messages.length)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                    "Given schedule should contain every directed edge exactly once"));
+        }
+        this.schedule = schedule;
+    }
+
+    /**
+     * Get the report of the last loop.
+     * @return Report, or {@code null} if the loop is not run since the messages were last reset.
+     */
+    public ConvergenceReport getReport() {
+        return this.report;
+    }
+
+    /**
+     * Get how the residuals of the messages of a sweep are combined.
+     * @return Convergence criterion.
+     */
+    public ConvergenceCriterion getConvergenceCriterion() {
+        return this.criterion;
+    }
+
+    /**
+     * Set how the residuals of the messages of a sweep are combined.
+     * @param criterion Convergence criterion.
+     * @throws NullPointerException if given criterion is null.
+     */
+    public void setConvergenceCriterion(final ConvergenceCriterion criterion) {
+        this.criterion = Objects.requireNonNull(criterion,
+                Log.genLogMsg(this.getClass(), "Given criterion cannot be null"));
     }
 
     /**
@@ -163,6 +532,37 @@ public class LoopyBeliefPropagation<E> extends BaseBeliefPropagationAlgorithm<E>
         this.loopFlag = loopFlag;
     }
 
+    /**
+     * Check given tolerance.
+     * @param tolerance Tolerance.
+     * @return Given tolerance.
+     * @throws IllegalArgumentException if {@code tolerance} is negative or {@code NaN}.
+     */
+    protected double checkTolerance(final double tolerance) {
+        if (!(tolerance >= 0.0d)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                    LoopyBeliefPropagation.INVALID_TOLERANCE_ERROR));
+        }
+        return tolerance;
+    }
+
+    /**
+     * Get the residual to which the messages are considered converged.
+     * @return Tolerance.
+     */
+    public double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Set the residual to which the messages are considered converged.
+     * @param tolerance Tolerance.
+     * @throws IllegalArgumentException if {@code tolerance} is negative or {@code NaN}.
+     */
+    public void setTolerance(final double tolerance) {
+        this.tolerance = this.checkTolerance(tolerance);
+    }
+
     /**
      * Get number of iteration.
      * @return Number of iteration.
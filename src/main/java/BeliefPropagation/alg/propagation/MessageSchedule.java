@@ -0,0 +1,248 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.CompiledFactorGraph;
+import BeliefPropagation.utils.Log;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Order in which the messages along the directed edges of a {@link CompiledFactorGraph} are computed. <br/>
+ * Nodes are numbered as variables {@code 0} to {@code V - 1} followed by factors {@code V} to {@code V + F - 1}, as
+ * in {@link BeliefPropagation.graph.FactorGraphStructure}.
+ * Schedules are immutable. A schedule is only valid for the graph it is created from.
+ */
+public class MessageSchedule {
+    /**
+     * Directed edge ids in the order they are computed.
+     */
+    protected final int[] edges;
+    /**
+     * Number of edges of the collect pass. Edges from this index on belong to the distribute pass.
+     */
+    protected final int collectCount;
+    /**
+     * Position of each directed edge in {@code edges}, indexed by directed edge id, or {@code -1} if the edge is not
+     * scheduled.
+     */
+    protected final int[] positions;
+
+    /**
+     * Constructor. Use the factory methods to create a schedule.
+     * @param edges Directed edge ids in the order they are computed.
+     * @param collectCount Number of edges of the collect pass.
+     * @param directedEdgeCount Number of directed edges of the graph.
+     */
+    protected MessageSchedule(final int[] edges, final int collectCount, final int directedEdgeCount) {
+        this.edges = edges;
+        this.collectCount = collectCount;
+        this.positions = new int[directedEdgeCount];
+        Arrays.fill(this.positions, -1);
+        for (int i = 0; i < edges.length; i++) {
+            this.positions[edges[i]] = i;
+        }
+    }
+
+    /**
+     * Create the two-pass schedule of a forest. Each tree is traversed in breadth first order from its first node.
+     * <ol>
+     *     <li>Collect: every node sends its message to its parent, from the deepest nodes up to the root.</li>
+     *     <li>Distribute: every node sends its messages to its children, from the root down to the leaves.</li>
+     * </ol>
+     * Every message is scheduled after all the messages it depends on, so that each of the {@code 2|E|} messages is
+     * computed exactly once without recursion.
+     * @param graph Compiled factor graph without cycle.
+     * @return Two-pass schedule.
+     * @throws NullPointerException if given graph is null.
+     * @throws IllegalArgumentException if given graph contains cycle.
+     */
+    public static MessageSchedule twoPass(final CompiledFactorGraph graph) {
+        Objects.requireNonNull(graph, Log.genLogMsg(MessageSchedule.class, "Given graph cannot be null"));
+        if (!graph.isForest()) {
+            throw new IllegalArgumentException(Log.genLogMsg(MessageSchedule.class,
+                    "Given factor graph should not contain cycle"));
+        }
+        return MessageSchedule.spanningTree(graph);
+    }
+
+    /**
+     * Create the schedule sweeping a breadth first spanning forest of a graph which may contain cycle. The edges of
+     * the forest are scheduled as by {@link #twoPass(CompiledFactorGraph)}, followed by both directions of the
+     * edges closing a cycle. On a forest it is the two-pass schedule. <br/>
+     * Used by the asynchronous updates of loopy belief propagation, one sweep carries the evidence of every node to
+     * the whole component through the forest.
+     * @param graph Compiled factor graph.
+     * @return Spanning tree schedule of all the directed edges.
+     * @throws NullPointerException if given graph is null.
+     */
+    public static MessageSchedule spanningTree(final CompiledFactorGraph graph) {
+        Objects.requireNonNull(graph, Log.genLogMsg(MessageSchedule.class, "Given graph cannot be null"));
+        final int nodeCount = graph.variableCount() + graph.factorCount();
+        final int[] order = new int[nodeCount];
+        final int[] parentEdges = new int[nodeCount];
+        MessageSchedule.breadthFirstOrder(graph, order, parentEdges);
+
+        // Every non-root node contributes one edge to each pass
+        final int variableCount = graph.variableCount();
+        final int[] edges = new int[2 * graph.edgeCount()];
+        final boolean[] treeEdges = new boolean[graph.edgeCount()];
+        int k = 0;
+        for (int i = nodeCount - 1; i >= 0; i--) {
+            final int node = order[i];
+            if (parentEdges[node] >= 0) {
+                edges[k++] = CompiledFactorGraph.directedEdge(parentEdges[node], node >= variableCount);
+                treeEdges[parentEdges[node]] = true;
+            }
+        }
+        final int collectCount = k;
+        for (int i = 0; i < nodeCount; i++) {
+            final int node = order[i];
+            if (parentEdges[node] >= 0) {
+                edges[k++] = CompiledFactorGraph.directedEdge(parentEdges[node], node < variableCount);
+            }
+        }
+
+        // Edges closing a cycle
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            if (!treeEdges[edge]) {
+                edges[k++] = CompiledFactorGraph.directedEdge(edge, false);
+                edges[k++] = CompiledFactorGraph.directedEdge(edge, true);
+            }
+        }
+        return new MessageSchedule(edges, collectCount, edges.length);
+    }
+
+    /**
+     * Create the schedule in which the nodes, in breadth first order from the first node of each component, send
+     * all their messages in turn. The messages of a node are scheduled right after the messages of its parent, so
+     * that the updates spread outward from the roots.
+     * @param graph Compiled factor graph.
+     * @return Breadth first schedule of all the directed edges. It does not have a collect pass.
+     * @throws NullPointerException if given graph is null.
+     */
+    public static MessageSchedule breadthFirst(final CompiledFactorGraph graph) {
+        Objects.requireNonNull(graph, Log.genLogMsg(MessageSchedule.class, "Given graph cannot be null"));
+        final int variableCount = graph.variableCount();
+        final int nodeCount = variableCount + graph.factorCount();
+        final int[] order = new int[nodeCount];
+        MessageSchedule.breadthFirstOrder(graph, order, new int[nodeCount]);
+
+        final int[] edges = new int[2 * graph.edgeCount()];
+        int k = 0;
+        for (int node : order) {
+            if (node < variableCount) {
+                for (int i = 0; i < graph.variableDegree(node); i++) {
+                    edges[k++] = CompiledFactorGraph.directedEdge(graph.variableEdge(node, i), false);
+                }
+            } else {
+                final int factorId = node - variableCount;
+                for (int edge = graph.factorEdgeStart(factorId); edge < graph.factorEdgeEnd(factorId); edge++) {
+                    edges[k++] = CompiledFactorGraph.directedEdge(edge, true);
+                }
+            }
+        }
+        return new MessageSchedule(edges, 0, edges.length);
+    }
+
+    /**
+     * Traverse every component of the graph in breadth first order from its first node.
+     * @param graph Compiled factor graph.
+     * @param order Filled with the nodes in the order they are visited.
+     * @param parentEdges Filled with the undirected edge id to the parent of each node, or {@code -1} for roots.
+     */
+    protected static void breadthFirstOrder(final CompiledFactorGraph graph, final int[] order,
+                                            final int[] parentEdges) {
+        final int variableCount = graph.variableCount();
+        final int nodeCount = variableCount + graph.factorCount();
+        final boolean[] visited = new boolean[nodeCount];
+        int tail = 0;
+        for (int root = 0; root < nodeCount; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            visited[root] = true;
+            parentEdges[root] = -1;
+            order[tail++] = root;
+            for (int head = tail - 1; head < tail; head++) {
+                final int node = order[head];
+                if (node < variableCount) {
+                    for (int i = 0; i < graph.variableDegree(node); i++) {
+                        final int edge = graph.variableEdge(node, i);
+                        final int neighbor = variableCount + graph.edgeFactor(edge);
+                        if (!visited[neighbor]) {
+                            visited[neighbor] = true;
+                            parentEdges[neighbor] = edge;
+                            order[tail++] = neighbor;
+                        }
+                    }
+                } else {
+                    final int factorId = node - variableCount;
+                    for (int edge = graph.factorEdgeStart(factorId); edge < graph.factorEdgeEnd(factorId); edge++) {
+                        final int neighbor = graph.edgeVariable(edge);
+                        if (!visited[neighbor]) {
+                            visited[neighbor] = true;
+                            parentEdges[neighbor] = edge;
+                            order[tail++] = neighbor;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of scheduled messages.
+     * @return Number of directed edges in the schedule.
+     */
+    public int size() {
+        return this.edges.length;
+    }
+
+    /**
+     * Get the scheduled directed edges.
+     * @return Directed edge ids in the order they are computed. It should not be modified.
+     */
+    public int[] getEdges() {
+        return this.edges;
+    }
+
+    /**
+     * Get the position of given directed edge in {@link #getEdges()}.
+     * @param edge Directed edge id.
+     * @return Position of the edge, or {@code -1} if it is not scheduled.
+     */
+    public int getPosition(final int edge) {
+        return this.positions[edge];
+    }
+
+    /**
+     * Check whether the schedule contains every directed edge of a graph exactly once.
+     * @param directedEdgeCount Number of directed edges of the graph.
+     * @return {@code True} if every directed edge is scheduled once.
+     */
+    public boolean isComplete(final int directedEdgeCount) {
+        if (this.positions.length != directedEdgeCount || this.edges.length != directedEdgeCount) {
+            return false;
+        }
+        for (int position : this.positions) {
+            if (position < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of messages of the collect pass of a two-pass or spanning tree schedule. The first
+     * {@code collectCount} edges of {@link #getEdges()} are sent toward the roots, and the others away from them.
+     * @return Number of edges of the collect pass, or {@code 0} if the schedule does not have one.
+     */
+    public int getCollectCount() {
+        return this.collectCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageSchedule: " + this.edges.length + " messages";
+    }
+}
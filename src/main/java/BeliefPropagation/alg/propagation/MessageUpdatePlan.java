@@ -0,0 +1,353 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.*;
+import BeliefPropagation.utils.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Precompiled update of the message along one directed edge of a {@link CompiledFactorGraph}. <br/>
+ * The neighbors sending messages into the source, the shape and strides each incoming message is viewed with to be
+ * aligned to the axes of the factor, the axes to sum out and the shape of the output are resolved once when the plan
+ * is compiled. Executing the plan only combines the given incoming messages, so that an iterative algorithm does not
+ * search the graph and the variable lists on every update. <br/>
+ * A plan also keeps a spare output buffer, so that an algorithm replacing the message along the edge repeatedly can
+ * compute the new message into the storage of a message it no longer uses, see {@link #takeOutputBuffer(boolean,
+ * Precision)}. Apart from the buffer, plans are immutable. The buffer is not synchronized, so that a plan should be
+ * executed by one thread at a time. A plan is only valid for the graph it is compiled from.
+ */
+public class MessageUpdatePlan {
+    /**
+     * Directed edge id of the message. See {@link CompiledFactorGraph#directedEdge(int, boolean)}.
+     */
+    protected final int edge;
+    /**
+     * Node sending the message.
+     */
+    protected final FactorGraphNode source;
+    /**
+     * Node receiving the message.
+     */
+    protected final FactorGraphNode target;
+    /**
+     * Neighbors of the source except the target. Their messages to the source are combined to the new message.
+     */
+    protected final List<FactorGraphNode> incomingNodes;
+    /**
+     * Directed edge id of the message from each incoming node to the source.
+     */
+    protected final int[] incomingEdges;
+    /**
+     * For the message from a factor, the axis of the factor of each incoming message. Empty otherwise.
+     */
+    protected final int[][] incomingAxes;
+    /**
+     * For the message from a factor, the axes of the factor to sum out. Empty otherwise.
+     */
+    protected final int[] sumAxes;
+    /**
+     * For the message from a factor, the shape of each incoming message aligned to the axes of the factor, i.e.
+     * {@code 1} along the axes of the other variables. Empty otherwise.
+     */
+    protected final int[][] alignedShapes;
+    /**
+     * For the message from a factor, the strides of each contiguous incoming message aligned to the axes of the
+     * factor, i.e. {@code 0} along the axes of the other variables. Empty otherwise.
+     */
+    protected final long[][] alignedStrides;
+    /**
+     * Variables of the computed message.
+     */
+    protected final List<Variable<?>> outputVariables;
+    /**
+     * Shape of the computed message, i.e. the state count of each output variable.
+     */
+    protected final int[] outputShape;
+    /**
+     * Spare message the next message along the edge can be computed into, or {@code null} if there is none.
+     */
+    protected Message outputBuffer;
+
+    /**
+     * Constructor. Use {@link #compile(CompiledFactorGraph, int)} to create a plan.
+     * @param edge Directed edge id of the message.
+     * @param source Node sending the message.
+     * @param target Node receiving the message.
+     * @param incomingNodes Neighbors of the source except the target.
+     * @param incomingEdges Directed edge id of the message from each incoming node.
+     * @param incomingAxes Axis of the factor of each incoming message.
+     * @param sumAxes Axes of the factor to sum out.
+     * @param outputVariables Variables of the computed message.
+     */
+    protected MessageUpdatePlan(final int edge, final FactorGraphNode source, final FactorGraphNode target,
+                                final List<FactorGraphNode> incomingNodes, final int[] incomingEdges,
+                                final int[][] incomingAxes, final int[] sumAxes,
+                                final List<Variable<?>> outputVariables) {
+        this.edge = edge;
+        this.source = source;
+        this.target = target;
+        this.incomingNodes = incomingNodes;
+        this.incomingEdges = incomingEdges;
+        this.incomingAxes = incomingAxes;
+        this.sumAxes = sumAxes;
+        this.outputVariables = outputVariables;
+        this.outputShape = outputVariables.stream().mapToInt(Variable::getStateCount).toArray();
+        this.alignedShapes = new int[incomingAxes.length][];
+        this.alignedStrides = new long[incomingAxes.length][];
+        if (incomingAxes.length > 0) {
+            // Every incoming variable is repeated along the other axes of the factor by stride 0
+            final List<Variable<?>> factorVariables = ((Factor) source).getVariables();
+            for (int k = 0; k < incomingAxes.length; k++) {
+                this.alignedShapes[k] = new int[factorVariables.size()];
+                this.alignedStrides[k] = new long[factorVariables.size()];
+                Arrays.fill(this.alignedShapes[k], 1);
+                long stride = 1;
+                for (int i = incomingAxes[k].length - 1; i >= 0; i--) {
+                    final int stateCount = factorVariables.get(incomingAxes[k][i]).getStateCount();
+                    this.alignedShapes[k][incomingAxes[k][i]] = stateCount;
+                    this.alignedStrides[k][incomingAxes[k][i]] = stride;
+                    stride *= stateCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compile the update of the message along given directed edge.
+     * @param graph Compiled factor graph.
+     * @param edge Directed edge id. See {@link CompiledFactorGraph#directedEdge(int, boolean)}.
+     * @return Compiled plan.
+     * @throws NullPointerException if given graph is null.
+     * @throws IndexOutOfBoundsException if given edge is not in the graph.
+     */
+    public static MessageUpdatePlan compile(final CompiledFactorGraph graph, final int edge) {
+        Objects.requireNonNull(graph, Log.genLogMsg(MessageUpdatePlan.class, "Given graph cannot be null"));
+        Objects.checkIndex(edge, 2 * graph.edgeCount());
+        final int undirectedEdge = CompiledFactorGraph.undirectedEdge(edge);
+        final Factor factor = graph.getFactor(graph.edgeFactor(undirectedEdge));
+        final Variable<?> variable = graph.getVariable(graph.edgeVariable(undirectedEdge));
+        final List<FactorGraphNode> incomingNodes = new ArrayList<>();
+        if (CompiledFactorGraph.isFromFactor(edge)) {
+            // Messages from the other variables of the factor are summed out along their axes
+            final int factorId = graph.edgeFactor(undirectedEdge);
+            final int incomingCount = graph.factorEdgeEnd(factorId) - graph.factorEdgeStart(factorId) - 1;
+            final int[] incomingEdges = new int[incomingCount];
+            final int[][] incomingAxes = new int[incomingCount][];
+            final int[] sumAxes = new int[incomingCount];
+            int k = 0;
+            for (int e = graph.factorEdgeStart(factorId); e < graph.factorEdgeEnd(factorId); e++) {
+                if (e != undirectedEdge) {
+                    incomingNodes.add(graph.getVariable(graph.edgeVariable(e)));
+                    incomingEdges[k] = CompiledFactorGraph.directedEdge(e, false);
+                    sumAxes[k] = graph.edgeAxis(e);
+                    incomingAxes[k] = new int[]{sumAxes[k]};
+                    k++;
+                }
+            }
+            return new MessageUpdatePlan(edge, factor, variable, List.copyOf(incomingNodes), incomingEdges,
+                    incomingAxes, sumAxes, List.of(variable));
+        }
+
+        // Messages from the other factors of the variable are multiplied
+        final int variableId = graph.edgeVariable(undirectedEdge);
+        final int[] incomingEdges = new int[graph.variableDegree(variableId) - 1];
+        int k = 0;
+        for (int i = 0; i < graph.variableDegree(variableId); i++) {
+            final int e = graph.variableEdge(variableId, i);
+            if (e != undirectedEdge) {
+                incomingNodes.add(graph.getFactor(graph.edgeFactor(e)));
+                incomingEdges[k++] = CompiledFactorGraph.directedEdge(e, true);
+            }
+        }
+        return new MessageUpdatePlan(edge, variable, factor, List.copyOf(incomingNodes), incomingEdges,
+                new int[0][], new int[0], List.of(variable));
+    }
+
+    /**
+     * Get the directed edge id of the message.
+     * @return Directed edge id.
+     */
+    public int getEdge() {
+        return this.edge;
+    }
+
+    /**
+     * Get the node sending the message.
+     * @return Source node.
+     */
+    public FactorGraphNode getSource() {
+        return this.source;
+    }
+
+    /**
+     * Get the node receiving the message.
+     * @return Target node.
+     */
+    public FactorGraphNode getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Get the neighbors of the source except the target, in the order their messages should be given to
+     * {@link #execute(Message, Message[])}.
+     * @return Unmodifiable list of incoming nodes.
+     */
+    public List<FactorGraphNode> getIncomingNodes() {
+        return this.incomingNodes;
+    }
+
+    /**
+     * Get the directed edge id of the message from each of {@link #getIncomingNodes()} to the source.
+     * @return Directed edge ids. It should not be modified.
+     */
+    public int[] getIncomingEdges() {
+        return this.incomingEdges;
+    }
+
+    /**
+     * Check whether this plan computes the message from a factor to a variable.
+     * @return {@code True} if the source is a {@link Factor}.
+     */
+    public boolean isFactorToVariable() {
+        return CompiledFactorGraph.isFromFactor(this.edge);
+    }
+
+    /**
+     * Get the shape of the computed message.
+     * @return Shape of the output. It should not be modified.
+     */
+    public int[] getOutputShape() {
+        return this.outputShape;
+    }
+
+    /**
+     * Take the output buffer of this plan, to compute the next message along the edge into by
+     * {@link #execute(Message, Message[], Message)}. The buffer is handed over, i.e. the plan forgets it until a
+     * message which is no longer used is given back by {@link #releaseOutputBuffer(Message)}. A new message is
+     * created if there is no buffer, or it is in another domain or precision.
+     * @param logDomain {@code True} if the buffer should be in log domain.
+     * @param precision Precision of the buffer.
+     * @return A message over the variables of the output, whose elements are arbitrary.
+     * @throws NullPointerException if given precision is null.
+     */
+    public Message takeOutputBuffer(final boolean logDomain, final Precision precision) {
+        Objects.requireNonNull(precision, Log.genLogMsg(this.getClass(), "Given precision cannot be null"));
+        final Message buffer = this.outputBuffer;
+        this.outputBuffer = null;
+        if (buffer != null && buffer.isLogDomain() == logDomain && buffer.getPrecision() == precision) {
+            return buffer;
+        }
+        return Message.createUniform(logDomain, precision, this.outputVariables);
+    }
+
+    /**
+     * Give a message along the edge which is no longer used back to this plan, so that the next message is computed
+     * into its storage. The caller should not use the message afterwards.
+     * @param message Message over the variables of the output, or {@code null} to do nothing.
+     * @throws IllegalArgumentException if the message does not have the shape of the output.
+     */
+    public void releaseOutputBuffer(final Message message) {
+        if (message == null) {
+            return;
+        }
+        if (!Arrays.equals(message.getProbability().shape(), this.outputShape)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Given message should have shape " +
+                    Arrays.toString(this.outputShape)));
+        }
+        this.outputBuffer = message;
+    }
+
+    /**
+     * Compute the message, which is not normalized, into a new message. See
+     * {@link #execute(Message, Message[], Message)}.
+     * @param factorMessage Probability table of the source factor in the domain of the incoming messages. It is
+     *                      ignored for the message from a variable.
+     * @param incomingMessages Messages from each of {@link #getIncomingNodes()} to the source, in the same order.
+     *                         For the message from a variable, it should not be empty.
+     * @return A new message in the domain and precision of the factor message, or the first incoming message for the
+     * message from a variable.
+     * @throws NullPointerException if the factor message is null for the message from a factor.
+     * @throws IllegalArgumentException if the number of incoming messages mismatch, or there is no incoming
+     * message to the variable, or the messages are in different domain.
+     */
+    public Message execute(final Message factorMessage, final Message[] incomingMessages) {
+        this.verifyIncomingMessages(incomingMessages);
+        final Message template = this.isFactorToVariable() ? factorMessage : incomingMessages[0];
+        Objects.requireNonNull(template, Log.genLogMsg(this.getClass(), "Given factor message cannot be null"));
+        return this.execute(factorMessage, incomingMessages,
+                Message.createUniform(template.isLogDomain(), template.getPrecision(), this.outputVariables));
+    }
+
+    /**
+     * Compute the message, which is not normalized, into given output message without allocating its array. <br/>
+     * For the message from a factor, the factor message is multiplied by the incoming messages and the other
+     * variables are summed out in one pass, see
+     * {@link Message#messageProductMarginalization(Message, Message[], int[][], long[][], int[], Message)}. For the
+     * message from a variable, the incoming messages are multiplied in place.
+     * @param factorMessage Probability table of the source factor in the domain of the incoming messages. It is
+     *                      ignored for the message from a variable.
+     * @param incomingMessages Messages from each of {@link #getIncomingNodes()} to the source, in the same order.
+     *                         For the message from a variable, it should not be empty.
+     * @param output Message over the variables of the output in the domain of the incoming messages, whose elements
+     *               are overwritten. It should not be any of the given messages.
+     * @return Given output message.
+     * @throws NullPointerException if the output message is null, or the factor message is null for the message
+     * from a factor.
+     * @throws IllegalArgumentException if the number of incoming messages mismatch, or there is no incoming
+     * message to the variable, or the messages are in different domain.
+     */
+    public Message execute(final Message factorMessage, final Message[] incomingMessages, final Message output) {
+        this.verifyIncomingMessages(incomingMessages);
+        Objects.requireNonNull(output, Log.genLogMsg(this.getClass(), "Given output message cannot be null"));
+        if (this.isFactorToVariable()) {
+            return Message.messageProductMarginalization(factorMessage, incomingMessages, this.alignedShapes,
+                    this.alignedStrides, this.sumAxes, output);
+        }
+
+        // Every incoming message is over the same variable, so that they are multiplied element-wise
+        final HDArray probability = output.getProbability();
+        for (final Message incomingMessage : incomingMessages) {
+            if (incomingMessage.isLogDomain() != output.isLogDomain()) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                        "Given incoming messages should be in the same domain as given output message"));
+            }
+        }
+        probability.copyFrom(incomingMessages[0].getProbability());
+        for (int k = 1; k < incomingMessages.length; k++) {
+            if (output.isLogDomain()) {
+                probability.addi(incomingMessages[k].getProbability());
+            } else {
+                probability.muli(incomingMessages[k].getProbability());
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Check the incoming messages given to {@link #execute(Message, Message[], Message)}.
+     * @param incomingMessages Messages from each of {@link #getIncomingNodes()} to the source.
+     * @throws NullPointerException if given messages are null.
+     * @throws IllegalArgumentException if the number of incoming messages mismatch, or there is no incoming
+     * message to the variable.
+     */
+    protected void verifyIncomingMessages(final Message[] incomingMessages) {
+        Objects.requireNonNull(incomingMessages, Log.genLogMsg(this.getClass(),
+                "Given incoming messages cannot be null"));
+        if (incomingMessages.length != this.incomingNodes.size()) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Expected " +
+                    this.incomingNodes.size() + " incoming messages, but given " + incomingMessages.length));
+        }
+        if (!this.isFactorToVariable() && incomingMessages.length == 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                    "Message from a variable without incoming message cannot be computed from messages"));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MessageUpdatePlan: " + this.source + " -> " + this.target;
+    }
+}
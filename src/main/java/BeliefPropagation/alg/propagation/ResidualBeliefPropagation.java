@@ -0,0 +1,192 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.*;
+
+/**
+ * {@link ResidualBeliefPropagation} runs loopy belief propagation with a residual schedule. Instead of recomputing
+ * every message on every sweep, the pending new message of every directed edge and its residual, i.e. the largest
+ * change it would make, are kept in an {@link IndexedMaxHeap}. The message with the largest residual is always
+ * committed first, and only the messages depending on it are recomputed afterward. The loop stops when the largest
+ * residual falls to the tolerance, so that the effort concentrates on the part of the graph still changing. The
+ * convergence criterion does not apply, since every residual is compared individually. Damping applies to the
+ * pending messages, but it is not adapted, since there is no sweep to compare the residuals between. The update mode
+ * does not apply either, since every committed message is read right away. <br/>
+ * The number of iteration is a safety limit, counted in sweeps: at most {@code iteration} times the number of
+ * directed edges messages are committed.
+ * @param <E> Edge type.
+ */
+public class ResidualBeliefPropagation<E> extends LoopyBeliefPropagation<E> {
+    /**
+     * Default residual below which the messages are considered converged.
+     */
+    protected final static double DEFAULT_TOLERANCE = 1e-6;
+
+    /**
+     * Default limit of the number of sweeps.
+     */
+    protected final static int DEFAULT_SWEEP_LIMIT = 100;
+
+    /**
+     * Pending new message of each directed edge, indexed by directed edge id.
+     */
+    protected final Message[] pendingMessages;
+    /**
+     * Directed edges ordered by the residual of their pending message.
+     */
+    protected final IndexedMaxHeap residuals;
+    /**
+     * Number of messages committed by the last loop.
+     */
+    protected long updateCount = 0;
+
+    /**
+     * Constructor, with default tolerance = 1e-6 and at most 100 sweeps.
+     * @param graph Factor graph.
+     * @see #ResidualBeliefPropagation(FactorGraph, int, double)
+     */
+    public ResidualBeliefPropagation(FactorGraph<E> graph) {
+        this(graph, ResidualBeliefPropagation.DEFAULT_SWEEP_LIMIT, ResidualBeliefPropagation.DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Constructor.
+     * @param graph Factor graph.
+     * @param iteration Limit of the number of sweeps.
+     * @param tolerance Residual below which the messages are considered converged.
+     * @throws NullPointerException if {@code graph} is null.
+     * @throws IllegalArgumentException if {@code graph} is invalid, {@code iteration} is smaller than 1, or
+     * {@code tolerance} is negative or {@code NaN}.
+     */
+    public ResidualBeliefPropagation(FactorGraph<E> graph, final int iteration, final double tolerance) {
+        super(graph, iteration, tolerance);
+        this.pendingMessages = new Message[this.messages.length];
+        this.residuals = new IndexedMaxHeap(this.messages.length);
+    }
+
+    /**
+     * Constructor running on a compiled factor graph.
+     * @param graph Compiled factor graph.
+     * @param iteration Limit of the number of sweeps.
+     * @param tolerance Residual below which the messages are considered converged.
+     * @see #create(CompiledFactorGraph, int, double)
+     */
+    protected ResidualBeliefPropagation(CompiledFactorGraph graph, final int iteration, final double tolerance) {
+        super(graph, iteration, tolerance);
+        this.pendingMessages = new Message[this.messages.length];
+        this.residuals = new IndexedMaxHeap(this.messages.length);
+    }
+
+    /**
+     * Create residual belief propagation running on a compiled factor graph directly, with default tolerance = 1e-6
+     * and at most 100 sweeps.
+     * @param graph Compiled factor graph.
+     * @return Residual belief propagation.
+     * @param <E> Edge type. It is not used by a compiled factor graph.
+     * @see #create(CompiledFactorGraph, int, double)
+     */
+    public static <E> ResidualBeliefPropagation<E> create(CompiledFactorGraph graph) {
+        return ResidualBeliefPropagation.create(graph, ResidualBeliefPropagation.DEFAULT_SWEEP_LIMIT,
+                ResidualBeliefPropagation.DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Create residual belief propagation running on a compiled factor graph directly.
+     * @param graph Compiled factor graph.
+     * @param iteration Limit of the number of sweeps.
+     * @param tolerance Residual below which the messages are considered converged.
+     * @return Residual belief propagation.
+     * @param <E> Edge type. It is not used by a compiled factor graph.
+     * @throws NullPointerException if {@code graph} is null.
+     * @throws IllegalArgumentException if {@code graph} does not contain any factor, {@code iteration} is smaller
+     * than 1, or {@code tolerance} is negative or {@code NaN}.
+     */
+    public static <E> ResidualBeliefPropagation<E> create(CompiledFactorGraph graph, final int iteration,
+                                                          final double tolerance) {
+        return new ResidualBeliefPropagation<>(graph, iteration, tolerance);
+    }
+
+    /**
+     * Run the residual schedule from the current messages until the largest residual falls to the tolerance, or
+     * the limit of updates is reached.
+     */
+    @Override
+    public void loopPropagation() {
+        // Compute the pending message of every directed edge from the current messages
+        this.residuals.clear();
+        for (int edge = 0; edge < this.messages.length; edge++) {
+            this.updatePendingMessage(edge);
+        }
+
+        final long updateLimit = (long) this.iteration * this.messages.length;
+        this.updateCount = 0;
+        while (!this.residuals.isEmpty() && this.updateCount < updateLimit &&
+                !(this.residuals.peekPriority() <= this.tolerance)) {
+            final int edge = this.residuals.poll();
+            this.replaceMessage(edge, this.pendingMessages[edge]);
+            this.pendingMessages[edge] = null;
+            this.updateCount++;
+            this.updateDependentMessages(edge);
+        }
+        final double residual = this.getResidual();
+        this.report = new ConvergenceReport((int) ((this.updateCount + this.messages.length - 1) / this.messages.length),
+                this.updateCount, residual, residual <= this.tolerance);
+        this.setLoopFlag(true);
+    }
+
+    /**
+     * Recompute the pending messages of the directed edges reading the message along given edge, i.e. the messages
+     * sent by the target of the edge to its other neighbors.
+     * @param edge Directed edge id of the committed message.
+     */
+    protected void updateDependentMessages(final int edge) {
+        final int undirectedEdge = CompiledFactorGraph.undirectedEdge(edge);
+        if (CompiledFactorGraph.isFromFactor(edge)) {
+            final int variableId = this.compiledGraph.edgeVariable(undirectedEdge);
+            for (int i = 0; i < this.compiledGraph.variableDegree(variableId); i++) {
+                final int otherEdge = this.compiledGraph.variableEdge(variableId, i);
+                if (otherEdge != undirectedEdge) {
+                    this.updatePendingMessage(CompiledFactorGraph.directedEdge(otherEdge, false));
+                }
+            }
+        } else {
+            final int factorId = this.compiledGraph.edgeFactor(undirectedEdge);
+            for (int e = this.compiledGraph.factorEdgeStart(factorId); e < this.compiledGraph.factorEdgeEnd(factorId); e++) {
+                if (e != undirectedEdge) {
+                    this.updatePendingMessage(CompiledFactorGraph.directedEdge(e, true));
+                }
+            }
+        }
+    }
+
+    /**
+     * Recompute the pending message of given directed edge and its residual in the heap. A pending message which is
+     * not committed yet is recomputed in place. Otherwise, the message is computed into the spare buffer of the
+     * update plan, i.e. the message replaced by the last commit along the edge.
+     * @param edge Directed edge id.
+     */
+    protected void updatePendingMessage(final int edge) {
+        // The pending message goes through the plan, which drops it if the domain or precision has changed since
+        final MessageUpdatePlan plan = this.updatePlans[edge];
+        plan.releaseOutputBuffer(this.pendingMessages[edge]);
+        this.pendingMessages[edge] = this.dampMessage(edge,
+                this.computeMessage(plan, plan.takeOutputBuffer(this.logDomain, this.precision)));
+        this.residuals.set(edge, BaseBeliefPropagationAlgorithm.messageResidual(this.messages[edge],
+                this.pendingMessages[edge]));
+    }
+
+    /**
+     * Get the number of messages committed by the last loop.
+     * @return Number of updates.
+     */
+    public long getUpdateCount() {
+        return this.updateCount;
+    }
+
+    /**
+     * Get the largest residual of the pending messages, i.e. how far the last loop is from convergence.
+     * @return Largest residual, or {@code 0} if there is no pending message.
+     */
+    public double getResidual() {
+        return this.residuals.isEmpty() ? 0.0d : this.residuals.peekPriority();
+    }
+}
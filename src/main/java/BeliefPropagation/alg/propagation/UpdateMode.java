@@ -0,0 +1,18 @@
+package BeliefPropagation.alg.propagation;
+
+/**
+ * How the messages of one sweep of {@link LoopyBeliefPropagation} read each other.
+ */
+public enum UpdateMode {
+    /**
+     * Jacobi updates. Every message of a sweep is computed from the messages of the previous sweep, and all of them
+     * are replaced together at the end of the sweep. The result does not depend on the order of the edges.
+     */
+    SYNCHRONOUS,
+    /**
+     * Gauss-Seidel updates. The messages are computed in the order of a {@link MessageSchedule} and replaced in
+     * place, so that every message already reads the messages updated earlier in the same sweep. Information
+     * crosses the graph within one sweep instead of one edge per sweep, which usually needs far fewer sweeps.
+     */
+    ASYNCHRONOUS
+}
@@ -0,0 +1,33 @@
+package BeliefPropagation.graph;
+
+/**
+ * Arithmetic operations of {@link HDArray} with dedicated kernels. <br/>
+ * Passing one of them as {@link HDArray.elementOperation} lets {@link HDArray} run the operation on whole
+ * rows of the data by {@link ArrayKernels}, instead of calling the operation per element.
+ */
+enum Arithmetic implements HDArray.elementOperation {
+    ADD {
+        @Override
+        public double operate(final double a, final double b) {
+            return a + b;
+        }
+    },
+    SUB {
+        @Override
+        public double operate(final double a, final double b) {
+            return a - b;
+        }
+    },
+    MUL {
+        @Override
+        public double operate(final double a, final double b) {
+            return a * b;
+        }
+    },
+    DIV {
+        @Override
+        public double operate(final double a, final double b) {
+            return a / b;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package BeliefPropagation.graph;
+
+/**
+ * Kernels on rows of {@code double[]} used by {@link HDArray}. <br/>
+ * The kernels use SIMD instructions by {@link VectorArrayKernels} if the incubating module
+ * {@code jdk.incubator.vector} is available, i.e. the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}. Or else, they fall back to {@link ScalarArrayKernels}.
+ * The SIMD kernels can be disabled by the system property {@code BeliefPropagation.vector=false}.
+ */
+final class ArrayKernels {
+    /**
+     * {@code True} if the SIMD kernels are used.
+     */
+    static final boolean VECTOR_ENABLED = ArrayKernels.isVectorAvailable();
+
+    private ArrayKernels() {
+    }
+
+    private static boolean isVectorAvailable() {
+        if (!Boolean.parseBoolean(System.getProperty("BeliefPropagation.vector", "true"))) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorArrayKernels.sum(new double[]{1.0d}, 0, 1) == 1.0d;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sum a row.
+     * @param a Data.
+     * @param from Position of the first element.
+     * @param length Number of elements.
+     * @return Sum of the row.
+     */
+    static double sum(final double[] a, final int from, final int length) {
+        return ArrayKernels.VECTOR_ENABLED ?
+                VectorArrayKernels.sum(a, from, length) :
+                ScalarArrayKernels.sum(a, from, length);
+    }
+
+    /**
+     * Compute {@code r[rFrom + i] = a[aFrom + i * aStride] op b[bFrom + i * bStride]} for each {@code i} in
+     * {@code [0, length)}. A stride is either 0, which repeats the same element, or 1. The result row may be the
+     * same as an operand row.
+     * @param operation Operation to perform.
+     * @param a First operand data.
+     * @param aFrom Position of the first element of the first operand.
+     * @param aStride Stride of the first operand, 0 or 1.
+     * @param b Second operand data.
+     * @param bFrom Position of the first element of the second operand.
+     * @param bStride Stride of the second operand, 0 or 1.
+     * @param r Result data.
+     * @param rFrom Position of the first element of the result.
+     * @param length Number of elements.
+     */
+    static void binary(final Arithmetic operation, final double[] a, final int aFrom, final int aStride,
+                       final double[] b, final int bFrom, final int bStride, final double[] r, final int rFrom,
+                       final int length) {
+        if (ArrayKernels.VECTOR_ENABLED) {
+            VectorArrayKernels.binary(operation, a, aFrom, aStride, b, bFrom, bStride, r, rFrom, length);
+        } else {
+            ScalarArrayKernels.binary(operation, a, aFrom, aStride, b, bFrom, bStride, r, rFrom, length);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+
+import java.util.*;
+
+/**
+ * Beliefs of many variables packed into one flat array. <br/>
+ * The belief of the {@code i}-th variable occupies {@code values[offsets[i]]} to {@code values[offsets[i + 1] - 1]},
+ * one normalized probability per state, so that the beliefs of a whole model take two arrays instead of one
+ * {@link Message} per variable. <br/>
+ * The table is immutable as long as the arrays returned by {@link #getValues()} and {@link #getOffsets()} are not
+ * modified.
+ */
+public class BeliefTable {
+    /**
+     * Variables of the table, in the order of their beliefs.
+     */
+    protected final List<Variable<?>> variables;
+    /**
+     * Start of the belief of each variable in {@code values}, followed by the total number of values.
+     */
+    protected final int[] offsets;
+    /**
+     * Probabilities of all beliefs.
+     */
+    protected final double[] values;
+    /**
+     * Index of each variable in {@code variables}. It is created on first lookup.
+     */
+    protected Map<Variable<?>, Integer> indices;
+
+    /**
+     * Constructor.
+     * @param variables Variables, in the order of their beliefs.
+     * @param values Probabilities of all beliefs, laid out as given by {@link #offsetsOf(List)}.
+     * @throws NullPointerException if {@code variables} or {@code values} is null.
+     * @throws IllegalArgumentException if the length of {@code values} does not match the total number of states.
+     */
+    public BeliefTable(final List<? extends Variable<?>> variables, final double[] values) {
+        Objects.requireNonNull(variables, Log.genLogMsg(this.getClass(), "Given variables cannot be null"));
+        Objects.requireNonNull(values, Log.genLogMsg(this.getClass(), "Given values cannot be null"));
+        this.variables = List.copyOf(variables);
+        this.offsets = BeliefTable.offsetsOf(this.variables);
+        if (this.offsets[this.offsets.length - 1] != values.length) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Expect " +
+                    this.offsets[this.offsets.length - 1] + " values, but given " + values.length));
+        }
+        this.values = values;
+    }
+
+    /**
+     * Constructor sharing the variables and offsets of another table.
+     * @param table Table with the same variables.
+     * @param values Probabilities of all beliefs.
+     */
+    protected BeliefTable(final BeliefTable table, final double[] values) {
+        this.variables = table.variables;
+        this.offsets = table.offsets;
+        this.indices = table.indices;
+        this.values = values;
+    }
+
+    /**
+     * Create a table over the same variables with other values, without copying the variables.
+     * @param values Probabilities of all beliefs, laid out as this table.
+     * @return New belief table.
+     * @throws NullPointerException if {@code values} is null.
+     * @throws IllegalArgumentException if the length of {@code values} does not match this table.
+     */
+    public BeliefTable withValues(final double[] values) {
+        Objects.requireNonNull(values, Log.genLogMsg(this.getClass(), "Given values cannot be null"));
+        if (values.length != this.values.length) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Expect " + this.values.length +
+                    " values, but given " + values.length));
+        }
+        return new BeliefTable(this, values);
+    }
+
+    /**
+     * Pack given single variable beliefs into a table.
+     * @param beliefs Beliefs in probability domain, each over exactly one variable.
+     * @return Belief table.
+     * @throws NullPointerException if {@code beliefs} or any belief is null.
+     * @throws IllegalArgumentException if a belief is not over exactly one variable.
+     */
+    public static BeliefTable of(final List<Message> beliefs) {
+        Objects.requireNonNull(beliefs, Log.genLogMsg(BeliefTable.class, "Given beliefs cannot be null"));
+        final List<Variable<?>> variables = new ArrayList<>(beliefs.size());
+        for (Message belief : beliefs) {
+            Objects.requireNonNull(belief, Log.genLogMsg(BeliefTable.class, "Given belief cannot be null"));
+            if (belief.getVariables().size() != 1) {
+                throw new IllegalArgumentException(Log.genLogMsg(BeliefTable.class,
+                        "Belief should be over exactly one variable, but given " + belief.getVariables()));
+            }
+            variables.add(belief.getVariables().get(0));
+        }
+        final int[] offsets = BeliefTable.offsetsOf(variables);
+        final double[] values = new double[offsets[offsets.length - 1]];
+        for (int i = 0; i < beliefs.size(); i++) {
+            final Message belief = beliefs.get(i).isLogDomain() ? beliefs.get(i).toProbabilityDomain() : beliefs.get(i);
+            belief.getProbability().copyTo(values, offsets[i]);
+        }
+        return new BeliefTable(variables, values);
+    }
+
+    /**
+     * Compute the start of the belief of each variable in a flat array.
+     * @param variables Variables.
+     * @return Offset of each variable, followed by the total number of states.
+     * @throws ArithmeticException if the total number of states overflows an int.
+     */
+    public static int[] offsetsOf(final List<? extends Variable<?>> variables) {
+        final int[] offsets = new int[variables.size() + 1];
+        for (int i = 0; i < variables.size(); i++) {
+            offsets[i + 1] = Math.addExact(offsets[i], variables.get(i).getStateCount());
+        }
+        return offsets;
+    }
+
+    /**
+     * Get the number of variables.
+     * @return Number of variables.
+     */
+    public int size() {
+        return this.variables.size();
+    }
+
+    /**
+     * Get the variables, in the order of their beliefs.
+     * @return Unmodifiable list of variables.
+     */
+    public List<Variable<?>> getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * Get the {@code i}-th variable.
+     * @param i Index of the variable.
+     * @return Variable.
+     */
+    public Variable<?> getVariable(final int i) {
+        return this.variables.get(i);
+    }
+
+    /**
+     * Get the index of given variable.
+     * @param variable Target variable.
+     * @return Index of the variable, or {@code -1} if the table does not contain it.
+     */
+    public int indexOf(final Variable<?> variable) {
+        if (this.indices == null) {
+            final Map<Variable<?>, Integer> newIndices = new HashMap<>();
+            for (int i = this.variables.size() - 1; i >= 0; i--) {
+                newIndices.put(this.variables.get(i), i);
+            }
+            this.indices = newIndices;
+        }
+        return this.indices.getOrDefault(variable, -1);
+    }
+
+    /**
+     * Get the start of the belief of the {@code i}-th variable in {@link #getValues()}.
+     * @param i Index of the variable.
+     * @return Offset of the belief.
+     */
+    public int getOffset(final int i) {
+        return this.offsets[Objects.checkIndex(i, this.variables.size())];
+    }
+
+    /**
+     * Get the number of states of the {@code i}-th variable.
+     * @param i Index of the variable.
+     * @return Number of states.
+     */
+    public int getStateCount(final int i) {
+        return this.offsets[Objects.checkIndex(i, this.variables.size()) + 1] - this.offsets[i];
+    }
+
+    /**
+     * Get the probability of a state of the {@code i}-th variable.
+     * @param i Index of the variable.
+     * @param state Index of the state.
+     * @return Probability.
+     */
+    public double get(final int i, final int state) {
+        return this.values[this.getOffset(i) + Objects.checkIndex(state, this.getStateCount(i))];
+    }
+
+    /**
+     * Get the probabilities of all beliefs. See {@link #getOffsets()} for the layout.
+     * @return Probabilities. It should not be modified.
+     */
+    public double[] getValues() {
+        return this.values;
+    }
+
+    /**
+     * Get the start of the belief of each variable in {@link #getValues()}, followed by the total number of values.
+     * @return Offsets. It should not be modified.
+     */
+    public int[] getOffsets() {
+        return this.offsets;
+    }
+
+    /**
+     * Get the belief of the {@code i}-th variable as a message.
+     * @param i Index of the variable.
+     * @return Belief in probability domain.
+     */
+    public Message getBelief(final int i) {
+        final int offset = this.getOffset(i);
+        final double[] probability = Arrays.copyOfRange(this.values, offset, this.offsets[i + 1]);
+        return new Message(new HDArray(new int[]{probability.length}, probability), List.of(this.variables.get(i)));
+    }
+
+    /**
+     * Get the belief of given variable as a message.
+     * @param variable Target variable.
+     * @return Belief in probability domain.
+     * @throws IllegalArgumentException if the table does not contain the variable.
+     */
+    public Message getBelief(final Variable<?> variable) {
+        final int i = this.indexOf(variable);
+        if (i < 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Table does not contain variable: " + variable));
+        }
+        return this.getBelief(i);
+    }
+
+    @Override
+    public String toString() {
+        return "BeliefTable: " + this.variables.size() + " variables";
+    }
+}
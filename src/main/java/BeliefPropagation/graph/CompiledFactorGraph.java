@@ -0,0 +1,472 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+
+import java.util.*;
+
+/**
+ * Immutable, array based form of a {@link FactorGraph} for running the propagation algorithms. <br/>
+ * Variables, factors and edges are numbered by dense integer ids, and the adjacency is stored in compressed sparse
+ * row (CSR) arrays, so that visiting the neighbors of a node costs no hashing and no allocation.
+ * <ul>
+ *     <li>Variables are numbered from {@code 0} to {@link #variableCount()} {@code - 1}, and factors from {@code 0}
+ *     to {@link #factorCount()} {@code - 1}, in the order they are added to the graph.</li>
+ *     <li>Edges are numbered from {@code 0} to {@link #edgeCount()} {@code - 1}. Edges of a factor have consecutive
+ *     ids, ordered by the axis of the variable in the probability table of the factor.</li>
+ *     <li>Each edge {@code e} has two directed edges. {@code 2 * e} is the direction from the variable to the factor,
+ *     and {@code 2 * e + 1} is the direction from the factor to the variable. See {@link #directedEdge(int, boolean)}
+ *     and {@link #reverseEdge(int)}.</li>
+ * </ul>
+ * Factors are identified by reference, since comparing factors compares their whole probability tables.
+ * Variables are identified by {@link Variable#equals(Object)}, as in {@link FactorGraph}.
+ */
+public class CompiledFactorGraph {
+    /**
+     * Variables indexed by id.
+     */
+    protected final Variable<?>[] variables;
+    /**
+     * Factors indexed by id.
+     */
+    protected final Factor[] factors;
+    /**
+     * Id of each variable.
+     */
+    protected final Map<Variable<?>, Integer> variableIds;
+    /**
+     * Id of each factor, by reference.
+     */
+    protected final Map<Factor, Integer> factorIds;
+    /**
+     * Variable id of each edge.
+     */
+    protected final int[] edgeVariables;
+    /**
+     * Factor id of each edge.
+     */
+    protected final int[] edgeFactors;
+    /**
+     * Axis of the variable in the probability table of the factor of each edge.
+     */
+    protected final int[] edgeAxes;
+    /**
+     * Edges of factor {@code f} are {@code factorOffsets[f]} to {@code factorOffsets[f + 1] - 1}.
+     */
+    protected final int[] factorOffsets;
+    /**
+     * Edges of variable {@code v} are {@code variableEdges[variableOffsets[v]]} to
+     * {@code variableEdges[variableOffsets[v + 1] - 1]}.
+     */
+    protected final int[] variableOffsets;
+    /**
+     * Edges grouped by variable. See {@link #variableOffsets}.
+     */
+    protected final int[] variableEdges;
+    /**
+     * Cached structure of this graph, or {@code null} if it is not analyzed yet. See {@link #getStructure()}.
+     */
+    protected FactorGraphStructure structure;
+
+    /**
+     * Constructor from the arrays of the compiled graph. The arrays are shared without copy.
+     * @param variables Variables indexed by id.
+     * @param factors Factors indexed by id.
+     * @param edgeVariables Variable id of each edge.
+     * @param edgeAxes Axis of the variable in the factor of each edge.
+     * @param factorOffsets Offsets of the edges of each factor. Edges should be grouped by factor.
+     */
+    protected CompiledFactorGraph(final Variable<?>[] variables, final Factor[] factors, final int[] edgeVariables,
+                                  final int[] edgeAxes, final int[] factorOffsets) {
+        this(variables, CompiledFactorGraph.indexVariables(variables), factors, edgeVariables, edgeAxes,
+                factorOffsets);
+    }
+
+    /**
+     * Constructor from the arrays of the compiled graph and the id of each variable. The arrays and the map are
+     * shared without copy.
+     * @param variables Variables indexed by id.
+     * @param variableIds Id of each variable.
+     * @param factors Factors indexed by id.
+     * @param edgeVariables Variable id of each edge.
+     * @param edgeAxes Axis of the variable in the factor of each edge.
+     * @param factorOffsets Offsets of the edges of each factor. Edges should be grouped by factor.
+     */
+    protected CompiledFactorGraph(final Variable<?>[] variables, final Map<Variable<?>, Integer> variableIds,
+                                  final Factor[] factors, final int[] edgeVariables, final int[] edgeAxes,
+                                  final int[] factorOffsets) {
+        this.variables = variables;
+        this.factors = factors;
+        this.edgeVariables = edgeVariables;
+        this.edgeAxes = edgeAxes;
+        this.factorOffsets = factorOffsets;
+        this.variableIds = variableIds;
+        this.factorIds = new IdentityHashMap<>(factors.length * 4 / 3 + 1);
+        for (int f = 0; f < factors.length; f++) {
+            this.factorIds.put(factors[f], f);
+        }
+
+        final int edgeCount = edgeVariables.length;
+        this.edgeFactors = new int[edgeCount];
+        for (int f = 0; f < factors.length; f++) {
+            Arrays.fill(this.edgeFactors, factorOffsets[f], factorOffsets[f + 1], f);
+        }
+
+        // Counting sort the edges by variable
+        this.variableOffsets = new int[variables.length + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            this.variableOffsets[edgeVariables[e] + 1]++;
+        }
+        for (int v = 0; v < variables.length; v++) {
+            this.variableOffsets[v + 1] += this.variableOffsets[v];
+        }
+        this.variableEdges = new int[edgeCount];
+        final int[] position = Arrays.copyOf(this.variableOffsets, variables.length);
+        for (int e = 0; e < edgeCount; e++) {
+            this.variableEdges[position[edgeVariables[e]]++] = e;
+        }
+    }
+
+    /**
+     * Number the given variables by their index.
+     * @param variables Variables.
+     * @return Id of each variable.
+     */
+    protected static Map<Variable<?>, Integer> indexVariables(final Variable<?>[] variables) {
+        final Map<Variable<?>, Integer> variableIds = new HashMap<>(variables.length * 4 / 3 + 1);
+        for (int v = 0; v < variables.length; v++) {
+            variableIds.put(variables[v], v);
+        }
+        return variableIds;
+    }
+
+    /**
+     * Compile given factor graph.
+     * @param graph Factor graph to compile.
+     * @return Compiled graph.
+     * @throws NullPointerException if given graph is null.
+     * @throws IllegalArgumentException if given graph is invalid. See {@link FactorGraph#isValid()}.
+     */
+    public static CompiledFactorGraph compile(final FactorGraph<?> graph) {
+        Objects.requireNonNull(graph, Log.genLogMsg(CompiledFactorGraph.class, "Given graph cannot be null"));
+        if (!graph.isValid()) {
+            throw new IllegalArgumentException(Log.genLogMsg(CompiledFactorGraph.class,
+                    "Given factor graph is not valid"));
+        }
+        final List<Variable<?>> variableList = new ArrayList<>();
+        final List<Factor> factorList = new ArrayList<>();
+        final Map<Variable<?>, Integer> variableIds = new HashMap<>();
+        for (FactorGraphNode vertex : graph.vertexSet()) {
+            if (vertex instanceof Variable<?> variable) {
+                variableIds.put(variable, variableList.size());
+                variableList.add(variable);
+            } else if (vertex instanceof Factor factor) {
+                factorList.add(factor);
+            }
+        }
+
+        // A valid graph connects every factor to each of its variables, so that the edges of a factor are its axes
+        int edgeCount = 0;
+        final int[] factorOffsets = new int[factorList.size() + 1];
+        for (int f = 0; f < factorList.size(); f++) {
+            edgeCount += factorList.get(f).getVariables().size();
+            factorOffsets[f + 1] = edgeCount;
+        }
+        final int[] edgeVariables = new int[edgeCount];
+        final int[] edgeAxes = new int[edgeCount];
+        for (int f = 0; f < factorList.size(); f++) {
+            final List<Variable<?>> factorVariables = factorList.get(f).getVariables();
+            for (int axis = 0; axis < factorVariables.size(); axis++) {
+                edgeVariables[factorOffsets[f] + axis] = variableIds.get(factorVariables.get(axis));
+                edgeAxes[factorOffsets[f] + axis] = axis;
+            }
+        }
+        return new CompiledFactorGraph(variableList.toArray(new Variable<?>[0]), factorList.toArray(new Factor[0]),
+                edgeVariables, edgeAxes, factorOffsets);
+    }
+
+    /**
+     * Get the number of variables.
+     * @return Number of variables.
+     */
+    public int variableCount() {
+        return this.variables.length;
+    }
+
+    /**
+     * Get the number of factors.
+     * @return Number of factors.
+     */
+    public int factorCount() {
+        return this.factors.length;
+    }
+
+    /**
+     * Get the number of edges. The number of directed edges is twice of it.
+     * @return Number of edges.
+     */
+    public int edgeCount() {
+        return this.edgeVariables.length;
+    }
+
+    /**
+     * Get the variable of given id.
+     * @param variableId Variable id.
+     * @return Variable.
+     */
+    public Variable<?> getVariable(final int variableId) {
+        return this.variables[variableId];
+    }
+
+    /**
+     * Get the factor of given id.
+     * @param factorId Factor id.
+     * @return Factor.
+     */
+    public Factor getFactor(final int factorId) {
+        return this.factors[factorId];
+    }
+
+    /**
+     * Get the id of given variable.
+     * @param variable Variable.
+     * @return Id of the variable, or {@code -1} if this graph does not contain it.
+     */
+    public int variableId(final Variable<?> variable) {
+        final Integer id = this.variableIds.get(variable);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the id of given factor.
+     * @param factor Factor.
+     * @return Id of the factor, or {@code -1} if this graph does not contain it.
+     */
+    public int factorId(final Factor factor) {
+        final Integer id = this.factorIds.get(factor);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the variable id of given edge.
+     * @param edge Edge id.
+     * @return Variable id.
+     */
+    public int edgeVariable(final int edge) {
+        return this.edgeVariables[edge];
+    }
+
+    /**
+     * Get the factor id of given edge.
+     * @param edge Edge id.
+     * @return Factor id.
+     */
+    public int edgeFactor(final int edge) {
+        return this.edgeFactors[edge];
+    }
+
+    /**
+     * Get the axis of the variable in the probability table of the factor of given edge.
+     * @param edge Edge id.
+     * @return Axis of the variable.
+     */
+    public int edgeAxis(final int edge) {
+        return this.edgeAxes[edge];
+    }
+
+    /**
+     * Find the edge between given factor and variable.
+     * @param factorId Factor id.
+     * @param variableId Variable id.
+     * @return Edge id, or {@code -1} if they are not connected.
+     */
+    public int findEdge(final int factorId, final int variableId) {
+        for (int e = this.factorOffsets[factorId]; e < this.factorOffsets[factorId + 1]; e++) {
+            if (this.edgeVariables[e] == variableId) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the first edge of given factor. Edges of a factor have consecutive ids.
+     * @param factorId Factor id.
+     * @return Id of the first edge.
+     */
+    public int factorEdgeStart(final int factorId) {
+        return this.factorOffsets[factorId];
+    }
+
+    /**
+     * Get the id after the last edge of given factor.
+     * @param factorId Factor id.
+     * @return Id after the last edge.
+     */
+    public int factorEdgeEnd(final int factorId) {
+        return this.factorOffsets[factorId + 1];
+    }
+
+    /**
+     * Get the number of edges of given variable.
+     * @param variableId Variable id.
+     * @return Degree of the variable.
+     */
+    public int variableDegree(final int variableId) {
+        return this.variableOffsets[variableId + 1] - this.variableOffsets[variableId];
+    }
+
+    /**
+     * Get the {@code i}-th edge of given variable.
+     * @param variableId Variable id.
+     * @param i Index of the edge, from {@code 0} to {@link #variableDegree(int)} {@code - 1}.
+     * @return Edge id.
+     */
+    public int variableEdge(final int variableId, final int i) {
+        return this.variableEdges[this.variableOffsets[variableId] + i];
+    }
+
+    /**
+     * Get the directed edge of given edge.
+     * @param edge Edge id.
+     * @param fromFactor {@code True} for the direction from the factor to the variable.
+     * @return Directed edge id.
+     */
+    public static int directedEdge(final int edge, final boolean fromFactor) {
+        return fromFactor ? 2 * edge + 1 : 2 * edge;
+    }
+
+    /**
+     * Get the edge of given directed edge.
+     * @param directedEdge Directed edge id.
+     * @return Edge id.
+     */
+    public static int undirectedEdge(final int directedEdge) {
+        return directedEdge >>> 1;
+    }
+
+    /**
+     * Check whether given directed edge is from the factor to the variable.
+     * @param directedEdge Directed edge id.
+     * @return {@code True} if the message is sent from the factor.
+     */
+    public static boolean isFromFactor(final int directedEdge) {
+        return (directedEdge & 1) == 1;
+    }
+
+    /**
+     * Get the directed edge of the opposite direction.
+     * @param directedEdge Directed edge id.
+     * @return Reverse directed edge id.
+     */
+    public static int reverseEdge(final int directedEdge) {
+        return directedEdge ^ 1;
+    }
+
+    /**
+     * Get the connected components and cycles of this graph. It is analyzed once and cached.
+     * @return Structure of this graph.
+     * @see FactorGraphStructure#analyze(CompiledFactorGraph)
+     */
+    public FactorGraphStructure getStructure() {
+        FactorGraphStructure result = this.structure;
+        if (result == null) {
+            // The structure is immutable, so that analyzing it twice from different threads is harmless
+            result = FactorGraphStructure.analyze(this);
+            this.structure = result;
+        }
+        return result;
+    }
+
+    /**
+     * Check whether this graph is a forest, i.e. it does not contain any cycle.
+     * @return {@code True} if this graph does not contain cycle.
+     * @see FactorGraphStructure#isAcyclic()
+     */
+    public boolean isForest() {
+        return this.getStructure().isAcyclic();
+    }
+
+    /**
+     * Label the connected components of this graph. Variables are nodes {@code 0} to {@link #variableCount()}
+     * {@code - 1}, and factors are nodes {@link #variableCount()} to {@link #variableCount()} {@code +}
+     * {@link #factorCount()} {@code - 1}. Components are numbered from {@code 0} in the order of their first node.
+     * @return Component id of each node. It should not be modified.
+     * @see FactorGraphStructure#getComponentLabels()
+     */
+    public int[] componentLabels() {
+        return this.getStructure().getComponentLabels();
+    }
+
+    /**
+     * Split this graph into its connected components. Nodes of each component keep their relative order, so that the
+     * ids within a component follow the ids in this graph.
+     * @param labels Component id of each node. See {@link #componentLabels()}.
+     * @return Compiled graph of each component, indexed by component id. This graph itself is returned if it only has
+     * one component.
+     */
+    public CompiledFactorGraph[] splitComponents(final int[] labels) {
+        final int variableCount = this.variables.length;
+        int componentCount = 0;
+        for (int label : labels) {
+            componentCount = Math.max(componentCount, label + 1);
+        }
+        if (componentCount == 1) {
+            return new CompiledFactorGraph[]{this};
+        }
+
+        // Id of each node within its component
+        final int[] variableCounts = new int[componentCount];
+        final int[] factorCounts = new int[componentCount];
+        final int[] edgeCounts = new int[componentCount];
+        final int[] localIds = new int[labels.length];
+        for (int v = 0; v < variableCount; v++) {
+            localIds[v] = variableCounts[labels[v]]++;
+        }
+        for (int f = 0; f < this.factors.length; f++) {
+            final int component = labels[variableCount + f];
+            localIds[variableCount + f] = factorCounts[component]++;
+            edgeCounts[component] += this.factorOffsets[f + 1] - this.factorOffsets[f];
+        }
+
+        final Variable<?>[][] componentVariables = new Variable<?>[componentCount][];
+        final Factor[][] componentFactors = new Factor[componentCount][];
+        final int[][] componentEdgeVariables = new int[componentCount][];
+        final int[][] componentEdgeAxes = new int[componentCount][];
+        final int[][] componentFactorOffsets = new int[componentCount][];
+        for (int c = 0; c < componentCount; c++) {
+            componentVariables[c] = new Variable<?>[variableCounts[c]];
+            componentFactors[c] = new Factor[factorCounts[c]];
+            componentEdgeVariables[c] = new int[edgeCounts[c]];
+            componentEdgeAxes[c] = new int[edgeCounts[c]];
+            componentFactorOffsets[c] = new int[factorCounts[c] + 1];
+        }
+        for (int v = 0; v < variableCount; v++) {
+            componentVariables[labels[v]][localIds[v]] = this.variables[v];
+        }
+        final int[] edgePositions = new int[componentCount];
+        for (int f = 0; f < this.factors.length; f++) {
+            final int component = labels[variableCount + f];
+            final int localFactor = localIds[variableCount + f];
+            componentFactors[component][localFactor] = this.factors[f];
+            for (int e = this.factorOffsets[f]; e < this.factorOffsets[f + 1]; e++) {
+                componentEdgeVariables[component][edgePositions[component]] = localIds[this.edgeVariables[e]];
+                componentEdgeAxes[component][edgePositions[component]] = this.edgeAxes[e];
+                edgePositions[component]++;
+            }
+            componentFactorOffsets[component][localFactor + 1] = edgePositions[component];
+        }
+
+        final CompiledFactorGraph[] components = new CompiledFactorGraph[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            components[c] = new CompiledFactorGraph(componentVariables[c], componentFactors[c],
+                    componentEdgeVariables[c], componentEdgeAxes[c], componentFactorOffsets[c]);
+        }
+        return components;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFactorGraph: " + this.variables.length + " variables, " + this.factors.length +
+                " factors, " + this.edgeCount() + " edges";
+    }
+}
@@ -12,6 +12,10 @@ import java.util.Objects;
  *     It is a multidimensional array, where each dimension corresponds to a variable.
  *     The size of each dimension is the number of states of the corresponding variable.
  * </p>
+ * <p>
+ *     The probability array is copied into sparse or dense storage by its ratio of nonzero elements.
+ *     See {@link SparseHDArray#autoSelect(HDArray)}.
+ * </p>
  */
 public class Factor extends ProbabilityTable implements FactorGraphNode {
     /**
@@ -30,7 +34,7 @@ public class Factor extends ProbabilityTable implements FactorGraphNode {
      * @param variables List of variables.
      */
     public Factor(final String name, final HDArray probability, final List<Variable<?>> variables) {
-        super(probability, variables);
+        super(probability, variables, true);
         Objects.requireNonNull(name, Log.genLogMsg(this.getClass(), "Given name should not be null"));
         this.name = name;
     }
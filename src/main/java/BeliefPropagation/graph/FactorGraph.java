@@ -1,12 +1,19 @@
 package BeliefPropagation.graph;
 
-import org.jgrapht.Graphs;
 import org.jgrapht.graph.Pseudograph;
 import BeliefPropagation.utils.Log;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.io.Serial;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -19,6 +26,20 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
     @Serial
     private static final long serialVersionUID = -7574564204896552580L;
 
+    /**
+     * Typed indexes of the nodes and their neighbors, updated whenever a node or an edge is added or removed. It is
+     * rebuilt lazily after the graph is cloned or deserialized.
+     */
+    protected transient NodeIndex index;
+    /**
+     * Cached compiled form of this graph, or {@code null} if it is not compiled yet. See {@link #compile()}.
+     */
+    protected transient CompiledFactorGraph compiledGraph;
+    /**
+     * Modification count of the {@link #index} when {@link #compiledGraph} is compiled.
+     */
+    protected transient int compiledModCount;
+
     /**
      * Constructor.
      * @param edgeClass Class of the edge.
@@ -39,7 +60,12 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
         if (!factor.containsVariable(variable)) {
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Trying to add edge between unrelated variables. Factor variables: " + factor.getVariables() + " Variable: " + variable));
         }
-        return super.addEdge(factor, variable);
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final E edge = super.addEdge(factor, variable);
+        if (edge != null) {
+            nodeIndex.connect(factor, variable);
+        }
+        return edge;
     }
 
 
@@ -66,7 +92,12 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
         if (!factor.containsVariable(variable)) {
             throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Trying to add edge between unrelated variables. Factor variables: " + factor.getVariables() + " Variable: " + variable));
         }
-        return super.addEdge(factor, variable, edge);
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final boolean added = super.addEdge(factor, variable, edge);
+        if (added) {
+            nodeIndex.connect(factor, variable);
+        }
+        return added;
     }
 
     /**
@@ -118,13 +149,32 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
         return this.addEdge(factor, variable, e);
     }
 
+    /**
+     * Add edge between {@link Factor} and {@link Variable} which are known to be related and contained by this
+     * graph, skipping the checks of {@link #addEdge(Factor, Variable)}. Used by {@link FactorGraphBuilder}.
+     * @param factor Factor.
+     * @param variable Random variable.
+     * @return The newly created edge.
+     */
+    protected E addVerifiedEdge(final Factor factor, final Variable<?> variable) {
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final E edge = super.addEdge(factor, variable);
+        nodeIndex.connect(factor, variable);
+        return edge;
+    }
+
     /**
      * Add random variable into the graph.
      * @param variable Variable to add.
      * @return {@code True} if this graph did not already contain the specified variable.
      */
     public boolean addVariable(final Variable<?> variable) {
-        return super.addVertex(variable);
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final boolean added = super.addVertex(variable);
+        if (added) {
+            nodeIndex.add(variable);
+        }
+        return added;
     }
 
     /**
@@ -133,7 +183,54 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
      * @return {@code True} if this graph did not already contain the specified variable.
      */
     public boolean addFactor(final Factor factor) {
-        return super.addVertex(factor);
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final boolean added = super.addVertex(factor);
+        if (added) {
+            nodeIndex.add(factor);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean addVertex(FactorGraphNode vertex) {
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final boolean added = super.addVertex(vertex);
+        if (added) {
+            nodeIndex.add(vertex);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeVertex(FactorGraphNode vertex) {
+        // The edges of the vertex are removed by removeEdge first
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final boolean removed = super.removeVertex(vertex);
+        if (removed) {
+            nodeIndex.remove(vertex);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean removeEdge(E edge) {
+        if (edge == null || !this.containsEdge(edge)) {
+            return false;
+        }
+        final FactorGraphNode source = this.getEdgeSource(edge);
+        final FactorGraphNode target = this.getEdgeTarget(edge);
+        final NodeIndex nodeIndex = this.nodeIndex();
+        final boolean removed = super.removeEdge(edge);
+        if (removed) {
+            nodeIndex.disconnect(this.castFactor(source, target), this.castVariable(source, target));
+        }
+        return removed;
+    }
+
+    @Override
+    public E removeEdge(FactorGraphNode sourceVertex, FactorGraphNode targetVertex) {
+        final E edge = this.getEdge(sourceVertex, targetVertex);
+        return edge != null && this.removeEdge(edge) ? edge : null;
     }
 
     /**
@@ -180,13 +277,14 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
      * @return {@code True} if this graph is valid.
      */
     public boolean isValid() {
-        List<Factor> factors = this.vertexSet().stream().filter(vertex -> vertex instanceof Factor).map(vertex -> (Factor) vertex).toList();
-        if (factors.isEmpty()) {
+        final NodeIndex nodeIndex = this.nodeIndex();
+        if (nodeIndex.factors.isEmpty()) {
             return false;
         }
-        for (Factor factor : factors) {
+        for (Factor factor : nodeIndex.factors) {
+            final List<Variable<?>> neighbors = nodeIndex.neighborsOf(factor);
             for (Variable<?> variable : factor.getVariables()) {
-                if (!this.containsEdge(factor, variable)) {
+                if (!neighbors.contains(variable)) {
                     return false;
                 }
             }
@@ -202,10 +300,7 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
      * @return List of related variables.
      */
     public List<? extends Variable<?>> getIncomingVariables(final Factor factor, final Variable<?> variable) {
-        return Graphs.neighborListOf(this, factor).stream()
-                .filter(neighbor -> !neighbor.equals(variable))
-                .map(neighbor -> (Variable<?>) neighbor)
-                .toList();
+        return FactorGraph.exclude(this.getNeighborVariables(factor), variable);
     }
 
     /**
@@ -216,32 +311,44 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
      * @return List of related factors.
      */
     public List<Factor> getIncomingFactors(final Variable<?> variable, final Factor factor) {
-        return Graphs.neighborListOf(this, variable).stream().
-                filter(neighbor -> !neighbor.equals(factor))
-                .map(neighbor -> (Factor) neighbor)
-                .toList();
+        return FactorGraph.exclude(this.getNeighborFactors(variable), factor);
+    }
+
+    /**
+     * Get the variables connected to given factor, one entry per edge.
+     * @param factor Reference factor.
+     * @return Unmodifiable view of the neighbors. It reflects later changes of the graph.
+     * @throws IllegalArgumentException if this graph does not contain the factor.
+     */
+    public List<Variable<?>> getNeighborVariables(final Factor factor) {
+        return this.nodeIndex().neighborsOf(factor);
+    }
+
+    /**
+     * Get the factors connected to given variable, one entry per edge.
+     * @param variable Reference variable.
+     * @return Unmodifiable view of the neighbors. It reflects later changes of the graph.
+     * @throws IllegalArgumentException if this graph does not contain the variable.
+     */
+    public List<Factor> getNeighborFactors(final Variable<?> variable) {
+        return this.nodeIndex().neighborsOf(variable);
     }
 
     /**
      * Get the set of all random variable in this graph.
-     * @return Set of all random variable.
+     * @return Unmodifiable view of all random variable, in the order they are added. It reflects later changes of
+     * the graph.
      */
     public Set<Variable<?>> variableSet() {
-        return new HashSet<>(this.vertexSet().stream()
-                .filter(vertex -> vertex instanceof Variable<?>)
-                .map(variable -> (Variable<?>) variable)
-                .toList());
+        return this.nodeIndex().variableView;
     }
 
     /**
      * Get the set of factor in this graph.
-     * @return Set of all factor.
+     * @return Unmodifiable view of all factor, in the order they are added. It reflects later changes of the graph.
      */
     public Set<Factor> factorSet() {
-        return new HashSet<>(this.vertexSet().stream()
-                .filter(vertex -> vertex instanceof Factor)
-                .map(factor -> (Factor) factor)
-                .toList());
+        return this.nodeIndex().factorView;
     }
 
     /**
@@ -250,21 +357,268 @@ public class FactorGraph<E> extends Pseudograph<FactorGraphNode, E> {
      * @throws RuntimeException if there are missing variables.
      */
     public void fillEdges() {
-        Set<Variable<?>> requiredVariables = new HashSet<>(this.factorSet().stream()
-                        .flatMap(factor -> factor.getVariables().stream())
-                        .toList());
-        Set<Variable<?>> variables = this.variableSet();
-        if (!variables.containsAll(requiredVariables)) {
-            Set<Variable<?>> missingVariables = new HashSet<>(requiredVariables.stream()
-                    .filter(variable -> !variables.contains(variable))
-                    .toList());
+        final NodeIndex nodeIndex = this.nodeIndex();
+        Set<Variable<?>> missingVariables = new HashSet<>();
+        for (Factor factor : nodeIndex.factors) {
+            for (Variable<?> variable : factor.getVariables()) {
+                if (!nodeIndex.variables.contains(variable)) {
+                    missingVariables.add(variable);
+                }
+            }
+        }
+        if (!missingVariables.isEmpty()) {
             throw new RuntimeException(Log.genLogMsg(this.getClass(),
                     "There are missing variables: " + missingVariables));
         }
-        for (Factor factor  : this.factorSet()) {
+        for (Factor factor : nodeIndex.factors) {
             for (Variable<?> variable : factor.getVariables()) {
                 this.addEdge(factor, variable);
             }
         }
     }
+
+    /**
+     * Get the compiled form of this graph. It is cached until this graph is modified, so that constructing several
+     * algorithms on the same graph compiles and analyzes it only once.
+     * @return Compiled graph.
+     * @throws IllegalArgumentException if this graph is invalid. See {@link #isValid()}.
+     * @see CompiledFactorGraph#compile(FactorGraph)
+     */
+    public CompiledFactorGraph compile() {
+        final NodeIndex nodeIndex = this.nodeIndex();
+        if (this.compiledGraph == null || this.compiledModCount != nodeIndex.modCount) {
+            this.compiledGraph = CompiledFactorGraph.compile(this);
+            this.compiledModCount = nodeIndex.modCount;
+        }
+        return this.compiledGraph;
+    }
+
+    /**
+     * Get the index of this graph, building it from the current vertices and edges if it does not belong to this
+     * graph, e.g. after {@link #clone()} or deserialization. Mutating methods should get the index before modifying
+     * the graph, so that a rebuilt index does not record the modification twice.
+     * @return Index of this graph.
+     */
+    protected NodeIndex nodeIndex() {
+        if (this.index == null || this.index.owner != this) {
+            this.compiledGraph = null;
+            this.index = new NodeIndex(this);
+            for (FactorGraphNode vertex : this.vertexSet()) {
+                this.index.add(vertex);
+            }
+            for (E edge : this.edgeSet()) {
+                final FactorGraphNode source = this.getEdgeSource(edge);
+                final FactorGraphNode target = this.getEdgeTarget(edge);
+                this.index.connect(this.castFactor(source, target), this.castVariable(source, target));
+            }
+        }
+        return this.index;
+    }
+
+    /**
+     * Get the nodes of given list except {@code excluded}. The list is returned directly if it does not contain
+     * {@code excluded}.
+     * @param nodes Neighbor list.
+     * @param excluded Node to exclude. It can be {@code null}.
+     * @return List without {@code excluded}.
+     * @param <T> Node type.
+     */
+    protected static <T extends FactorGraphNode> List<T> exclude(final List<T> nodes, final FactorGraphNode excluded) {
+        if (excluded == null || !nodes.contains(excluded)) {
+            return nodes;
+        }
+        final List<T> result = new ArrayList<>(nodes.size() - 1);
+        for (T node : nodes) {
+            if (!node.equals(excluded)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Typed sets of the nodes of a {@link FactorGraph} and the neighbor list of each node. Factors are kept in an
+     * ordered list and keyed by identity, since hashing a {@link Factor} hashes its whole probability table. <br/>
+     * The underlying graph matches vertices by equality, so a factor given as a different but equal instance is
+     * still resolved to the indexed one, by a linear search comparing the factors. It is only a fallback, factors
+     * are normally given as the instance they are added.
+     */
+    protected static class NodeIndex {
+        /**
+         * Graph this index belongs to.
+         */
+        protected final FactorGraph<?> owner;
+        /**
+         * Number of modifications of the indexed graph.
+         */
+        protected int modCount = 0;
+        protected final Set<Variable<?>> variables = new LinkedHashSet<>();
+        protected final List<Factor> factors = new ArrayList<>();
+        protected final Set<Variable<?>> variableView = Collections.unmodifiableSet(this.variables);
+        protected final Set<Factor> factorView = new FactorView();
+        protected final Map<Variable<?>, Neighbors<Factor>> variableNeighbors = new HashMap<>();
+        protected final Map<Factor, Neighbors<Variable<?>>> factorNeighbors = new IdentityHashMap<>();
+
+        /**
+         * Constructor of an empty index.
+         * @param owner Graph this index belongs to.
+         */
+        protected NodeIndex(final FactorGraph<?> owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Add a node without neighbor. Nothing happens if the node is already indexed.
+         * @param node Node to add.
+         */
+        protected void add(final FactorGraphNode node) {
+            this.modCount++;
+            if (node instanceof Factor factor) {
+                if (!this.factorNeighbors.containsKey(factor)) {
+                    this.factors.add(factor);
+                    this.factorNeighbors.put(factor, new Neighbors<>());
+                }
+            } else if (node instanceof Variable<?> variable && this.variables.add(variable)) {
+                this.variableNeighbors.put(variable, new Neighbors<>());
+            }
+        }
+
+        /**
+         * Remove a node. Its edges should be removed already.
+         * @param node Node to remove.
+         */
+        protected void remove(final FactorGraphNode node) {
+            this.modCount++;
+            if (node instanceof Factor factor) {
+                final Factor indexed = this.findFactor(factor);
+                if (this.factorNeighbors.remove(indexed) != null) {
+                    // Recently added factors are usually removed first
+                    for (int i = this.factors.size() - 1; i >= 0; i--) {
+                        if (this.factors.get(i) == indexed) {
+                            this.factors.remove(i);
+                            break;
+                        }
+                    }
+                }
+            } else if (node instanceof Variable<?> variable) {
+                this.variableNeighbors.remove(variable);
+                this.variables.remove(variable);
+            }
+        }
+
+        /**
+         * Record an edge between given factor and variable.
+         * @param factor Factor.
+         * @param variable Variable.
+         */
+        protected void connect(final Factor factor, final Variable<?> variable) {
+            this.modCount++;
+            this.factorNeighbors.get(this.findFactor(factor)).nodes.add(variable);
+            this.variableNeighbors.get(variable).nodes.add(factor);
+        }
+
+        /**
+         * Remove one edge between given factor and variable.
+         * @param factor Factor.
+         * @param variable Variable.
+         */
+        protected void disconnect(final Factor factor, final Variable<?> variable) {
+            this.modCount++;
+            this.factorNeighbors.get(this.findFactor(factor)).remove(variable);
+            this.variableNeighbors.get(variable).remove(factor);
+        }
+
+        /**
+         * Get the neighbors of given factor.
+         * @param factor Factor.
+         * @return Unmodifiable view of the neighbors.
+         * @throws IllegalArgumentException if the factor is not indexed.
+         */
+        protected List<Variable<?>> neighborsOf(final Factor factor) {
+            final Neighbors<Variable<?>> neighbors = this.factorNeighbors.get(this.findFactor(factor));
+            if (neighbors == null) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.owner.getClass(),
+                        "Factor is not in the graph: " + factor));
+            }
+            return neighbors.view;
+        }
+
+        /**
+         * Get the neighbors of given variable.
+         * @param variable Variable.
+         * @return Unmodifiable view of the neighbors.
+         * @throws IllegalArgumentException if the variable is not indexed.
+         */
+        protected List<Factor> neighborsOf(final Variable<?> variable) {
+            final Neighbors<Factor> neighbors = this.variableNeighbors.get(variable);
+            if (neighbors == null) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.owner.getClass(),
+                        "Variable is not in the graph: " + variable));
+            }
+            return neighbors.view;
+        }
+
+        /**
+         * Find the indexed instance of given factor. Factors are normally given as the same instance they are added,
+         * otherwise an equal instance is searched linearly.
+         * @param factor Factor.
+         * @return Indexed instance, or given factor if it is not indexed.
+         */
+        protected Factor findFactor(final Factor factor) {
+            if (this.factorNeighbors.containsKey(factor)) {
+                return factor;
+            }
+            for (Factor indexed : this.factors) {
+                if (indexed.equals(factor)) {
+                    return indexed;
+                }
+            }
+            return factor;
+        }
+
+        /**
+         * Unmodifiable set view of the indexed factors, in the order they are added. A factor is contained if it is
+         * indexed, or equal to an indexed factor. See {@link #findFactor(Factor)}.
+         */
+        protected class FactorView extends AbstractSet<Factor> {
+            @Override
+            public Iterator<Factor> iterator() {
+                return Collections.unmodifiableList(NodeIndex.this.factors).iterator();
+            }
+
+            @Override
+            public int size() {
+                return NodeIndex.this.factors.size();
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                return o instanceof Factor factor &&
+                        NodeIndex.this.factorNeighbors.containsKey(NodeIndex.this.findFactor(factor));
+            }
+        }
+    }
+
+    /**
+     * Neighbor list of a node together with its unmodifiable view.
+     * @param <T> Type of the neighbors.
+     */
+    protected static class Neighbors<T extends FactorGraphNode> {
+        protected final List<T> nodes = new ArrayList<>(2);
+        protected final List<T> view = Collections.unmodifiableList(this.nodes);
+
+        /**
+         * Remove one occurrence of given node, preferring the same instance.
+         * @param node Node to remove.
+         */
+        protected void remove(final FactorGraphNode node) {
+            for (int i = this.nodes.size() - 1; i >= 0; i--) {
+                if (this.nodes.get(i) == node) {
+                    this.nodes.remove(i);
+                    return;
+                }
+            }
+            this.nodes.remove(node);
+        }
+    }
 }
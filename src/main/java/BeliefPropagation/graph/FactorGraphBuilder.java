@@ -0,0 +1,221 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Bulk builder of large factor graphs. <br/>
+ * Variables and factors are collected first, and then validated in one linear pass when the graph is built: every
+ * variable of every factor should be added, no variable or factor should be added twice, and there should be at least
+ * one factor. Each factor is then connected to each of its variables, so that the result is always valid without
+ * {@link FactorGraph#fillEdges()}.
+ * <ul>
+ *     <li>{@link #buildCompiled()} creates the {@link CompiledFactorGraph} directly, without any {@link FactorGraph}.
+ *     It is the fastest way to create a graph for the propagation algorithms.</li>
+ *     <li>{@link #build(Class)} creates a {@link FactorGraph}, skipping the per edge checks of
+ *     {@link FactorGraph#addEdge(Factor, Variable)}.</li>
+ * </ul>
+ * Ids of the compiled graph follow the order the variables and factors are added.
+ */
+public class FactorGraphBuilder {
+    /**
+     * Added variables.
+     */
+    protected final List<Variable<?>> variables;
+    /**
+     * Added factors.
+     */
+    protected final List<Factor> factors;
+
+    /**
+     * Constructor of an empty builder.
+     */
+    public FactorGraphBuilder() {
+        this(16, 16);
+    }
+
+    /**
+     * Constructor of an empty builder with expected size.
+     * @param variableCapacity Expected number of variables.
+     * @param factorCapacity Expected number of factors.
+     */
+    public FactorGraphBuilder(final int variableCapacity, final int factorCapacity) {
+        this.variables = new ArrayList<>(variableCapacity);
+        this.factors = new ArrayList<>(factorCapacity);
+    }
+
+    /**
+     * Add a variable.
+     * @param variable Variable to add.
+     * @return This builder.
+     * @throws NullPointerException if given variable is null.
+     */
+    public FactorGraphBuilder addVariable(final Variable<?> variable) {
+        Objects.requireNonNull(variable, Log.genLogMsg(this.getClass(), "Given variable cannot be null"));
+        this.variables.add(variable);
+        return this;
+    }
+
+    /**
+     * Add variables.
+     * @param variables Variables to add.
+     * @return This builder.
+     * @throws NullPointerException if any given variable is null.
+     */
+    public FactorGraphBuilder addVariables(final Variable<?>... variables) {
+        for (Variable<?> variable : variables) {
+            this.addVariable(variable);
+        }
+        return this;
+    }
+
+    /**
+     * Add variables in the encounter order of given stream.
+     * @param variables Variables to add.
+     * @return This builder.
+     * @throws NullPointerException if any given variable is null.
+     */
+    public FactorGraphBuilder addVariables(final Stream<? extends Variable<?>> variables) {
+        variables.forEachOrdered(this::addVariable);
+        return this;
+    }
+
+    /**
+     * Add a factor.
+     * @param factor Factor to add.
+     * @return This builder.
+     * @throws NullPointerException if given factor is null.
+     */
+    public FactorGraphBuilder addFactor(final Factor factor) {
+        Objects.requireNonNull(factor, Log.genLogMsg(this.getClass(), "Given factor cannot be null"));
+        this.factors.add(factor);
+        return this;
+    }
+
+    /**
+     * Add factors.
+     * @param factors Factors to add.
+     * @return This builder.
+     * @throws NullPointerException if any given factor is null.
+     */
+    public FactorGraphBuilder addFactors(final Factor... factors) {
+        for (Factor factor : factors) {
+            this.addFactor(factor);
+        }
+        return this;
+    }
+
+    /**
+     * Add factors in the encounter order of given stream.
+     * @param factors Factors to add.
+     * @return This builder.
+     * @throws NullPointerException if any given factor is null.
+     */
+    public FactorGraphBuilder addFactors(final Stream<? extends Factor> factors) {
+        factors.forEachOrdered(this::addFactor);
+        return this;
+    }
+
+    /**
+     * Build the compiled graph of the added variables and factors.
+     * @return Compiled graph.
+     * @throws IllegalArgumentException if there is no factor, a variable or factor is added twice, or a variable of
+     * a factor is not added.
+     */
+    public CompiledFactorGraph buildCompiled() {
+        final Variable<?>[] variableArray = this.variables.toArray(new Variable<?>[0]);
+        final Factor[] factorArray = this.factors.toArray(new Factor[0]);
+        if (factorArray.length == 0) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "There should be at least one factor"));
+        }
+        final Map<Variable<?>, Integer> variableIds = this.indexVariables(variableArray);
+
+        int edgeCount = 0;
+        final int[] factorOffsets = new int[factorArray.length + 1];
+        for (int f = 0; f < factorArray.length; f++) {
+            edgeCount += factorArray[f].getVariables().size();
+            factorOffsets[f + 1] = edgeCount;
+        }
+        final int[] edgeVariables = new int[edgeCount];
+        final int[] edgeAxes = new int[edgeCount];
+        Set<Variable<?>> missingVariables = null;
+        for (int f = 0; f < factorArray.length; f++) {
+            final List<Variable<?>> factorVariables = factorArray[f].getVariables();
+            for (int axis = 0; axis < factorVariables.size(); axis++) {
+                final Integer variableId = variableIds.get(factorVariables.get(axis));
+                if (variableId == null) {
+                    if (missingVariables == null) {
+                        missingVariables = new HashSet<>();
+                    }
+                    missingVariables.add(factorVariables.get(axis));
+                    continue;
+                }
+                edgeVariables[factorOffsets[f] + axis] = variableId;
+                edgeAxes[factorOffsets[f] + axis] = axis;
+            }
+        }
+        if (missingVariables != null) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                    "There are missing variables: " + missingVariables));
+        }
+        final CompiledFactorGraph compiledGraph = new CompiledFactorGraph(variableArray, variableIds, factorArray,
+                edgeVariables, edgeAxes, factorOffsets);
+        if (compiledGraph.factorIds.size() != factorArray.length) {
+            for (int f = 0; f < factorArray.length; f++) {
+                if (compiledGraph.factorIds.get(factorArray[f]) != f) {
+                    throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                            "Factor is added twice: " + factorArray[f]));
+                }
+            }
+        }
+        return compiledGraph;
+    }
+
+    /**
+     * Build a factor graph of the added variables and factors, with an edge between each factor and each of its
+     * variables.
+     * @param edgeClass Class of the edge.
+     * @return Valid factor graph.
+     * @param <E> Edge type.
+     * @throws IllegalArgumentException if there is no factor, a variable or factor is added twice, or a variable of
+     * a factor is not added.
+     */
+    public <E> FactorGraph<E> build(final Class<? extends E> edgeClass) {
+        // Validate and resolve every edge before touching the graph
+        final CompiledFactorGraph compiledGraph = this.buildCompiled();
+        final FactorGraph<E> graph = new FactorGraph<>(edgeClass);
+        for (int v = 0; v < compiledGraph.variableCount(); v++) {
+            graph.addVariable(compiledGraph.getVariable(v));
+        }
+        for (int f = 0; f < compiledGraph.factorCount(); f++) {
+            if (!graph.addFactor(compiledGraph.getFactor(f))) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                        "Factor is added twice: " + compiledGraph.getFactor(f)));
+            }
+        }
+        for (int e = 0; e < compiledGraph.edgeCount(); e++) {
+            graph.addVerifiedEdge(compiledGraph.getFactor(compiledGraph.edgeFactor(e)),
+                    compiledGraph.getVariable(compiledGraph.edgeVariable(e)));
+        }
+        return graph;
+    }
+
+    /**
+     * Number the given variables.
+     * @param variableArray Variables.
+     * @return Id of each variable.
+     * @throws IllegalArgumentException if a variable appears twice.
+     */
+    protected Map<Variable<?>, Integer> indexVariables(final Variable<?>[] variableArray) {
+        final Map<Variable<?>, Integer> variableIds = new HashMap<>(variableArray.length * 4 / 3 + 1);
+        for (int v = 0; v < variableArray.length; v++) {
+            if (variableIds.putIfAbsent(variableArray[v], v) != null) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                        "Variable is added twice: " + variableArray[v]));
+            }
+        }
+        return variableIds;
+    }
+}
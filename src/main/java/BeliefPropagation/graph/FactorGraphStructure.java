@@ -0,0 +1,180 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Connected components and cycles of a {@link CompiledFactorGraph}, found by one union-find pass over the edge ids.
+ * <br/>
+ * Nodes are numbered as variables {@code 0} to {@code V - 1} followed by factors {@code V} to {@code V + F - 1}.
+ * Components are numbered from {@code 0} in the order of their first node. The cycle rank of a component is the
+ * number of its edges that close a cycle, i.e. {@code edges - nodes + 1}. A component is a tree if its cycle rank is
+ * {@code 0}. <br/>
+ * The structure is immutable. Use {@link CompiledFactorGraph#getStructure()} to get the cached structure of a graph.
+ */
+public class FactorGraphStructure {
+    /**
+     * Number of variables of the analyzed graph.
+     */
+    protected final int variableCount;
+    /**
+     * Component id of each node.
+     */
+    protected final int[] componentLabels;
+    /**
+     * Cycle rank of each component, indexed by component id.
+     */
+    protected final int[] cycleRanks;
+    /**
+     * Sum of the cycle ranks of all components.
+     */
+    protected final int totalCycleRank;
+
+    /**
+     * Constructor.
+     * @param variableCount Number of variables.
+     * @param componentLabels Component id of each node.
+     * @param cycleRanks Cycle rank of each component.
+     */
+    protected FactorGraphStructure(final int variableCount, final int[] componentLabels, final int[] cycleRanks) {
+        this.variableCount = variableCount;
+        this.componentLabels = componentLabels;
+        this.cycleRanks = cycleRanks;
+        this.totalCycleRank = Arrays.stream(cycleRanks).sum();
+    }
+
+    /**
+     * Analyze given graph in time linear to its size.
+     * @param graph Compiled factor graph.
+     * @return Structure of the graph.
+     * @throws NullPointerException if given graph is null.
+     */
+    public static FactorGraphStructure analyze(final CompiledFactorGraph graph) {
+        Objects.requireNonNull(graph, Log.genLogMsg(FactorGraphStructure.class, "Given graph cannot be null"));
+        final int variableCount = graph.variableCount();
+        final int nodeCount = variableCount + graph.factorCount();
+        final int[] parent = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            parent[i] = i;
+        }
+
+        // An edge joining two nodes of the same set closes a cycle. The count is kept on the root of the set.
+        final int[] rootCycles = new int[nodeCount];
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            final int root1 = FactorGraphStructure.findRoot(parent, graph.edgeVariable(e));
+            final int root2 = FactorGraphStructure.findRoot(parent, variableCount + graph.edgeFactor(e));
+            if (root1 == root2) {
+                rootCycles[root1]++;
+            } else {
+                parent[root1] = root2;
+                rootCycles[root2] += rootCycles[root1];
+            }
+        }
+
+        // Relabel the roots densely in the order of their first node
+        final int[] labels = new int[nodeCount];
+        final int[] rootLabels = new int[nodeCount];
+        Arrays.fill(rootLabels, -1);
+        final int[] cycleRanks = new int[nodeCount];
+        int componentCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            final int root = FactorGraphStructure.findRoot(parent, node);
+            if (rootLabels[root] < 0) {
+                cycleRanks[componentCount] = rootCycles[root];
+                rootLabels[root] = componentCount++;
+            }
+            labels[node] = rootLabels[root];
+        }
+        return new FactorGraphStructure(variableCount, labels, Arrays.copyOf(cycleRanks, componentCount));
+    }
+
+    /**
+     * Find the root of given node in union-find, halving the path along the way.
+     * @param parent Parent of each node.
+     * @param node Node.
+     * @return Root of the node.
+     */
+    protected static int findRoot(final int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * Check whether the graph does not contain any cycle, i.e. every component is a tree.
+     * @return {@code True} if the graph is acyclic.
+     */
+    public boolean isAcyclic() {
+        return this.totalCycleRank == 0;
+    }
+
+    /**
+     * Get the number of connected components.
+     * @return Number of components.
+     */
+    public int componentCount() {
+        return this.cycleRanks.length;
+    }
+
+    /**
+     * Get the component of given variable.
+     * @param variableId Variable id.
+     * @return Component id.
+     */
+    public int variableComponent(final int variableId) {
+        return this.componentLabels[Objects.checkIndex(variableId, this.variableCount)];
+    }
+
+    /**
+     * Get the component of given factor.
+     * @param factorId Factor id.
+     * @return Component id.
+     */
+    public int factorComponent(final int factorId) {
+        return this.componentLabels[this.variableCount +
+                Objects.checkIndex(factorId, this.componentLabels.length - this.variableCount)];
+    }
+
+    /**
+     * Get the component id of every node. Variables come first, followed by factors.
+     * @return Component id of each node. It should not be modified.
+     */
+    public int[] getComponentLabels() {
+        return this.componentLabels;
+    }
+
+    /**
+     * Get the cycle rank of given component, i.e. the number of independent cycles in it.
+     * @param component Component id.
+     * @return Cycle rank of the component.
+     */
+    public int cycleRank(final int component) {
+        return this.cycleRanks[component];
+    }
+
+    /**
+     * Get the cycle rank of the whole graph.
+     * @return Sum of the cycle ranks of all components.
+     */
+    public int totalCycleRank() {
+        return this.totalCycleRank;
+    }
+
+    /**
+     * Check whether given component is a tree.
+     * @param component Component id.
+     * @return {@code True} if the component does not contain cycle.
+     */
+    public boolean isTree(final int component) {
+        return this.cycleRanks[component] == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FactorGraphStructure: " + this.componentCount() + " components, cycle rank " + this.totalCycleRank;
+    }
+}
@@ -0,0 +1,131 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * {@link HDArray} storing its elements as {@code float}. <br/>
+ * All operations of {@link HDArray} are supported. Intermediate results are accumulated in {@code double} and
+ * rounded to {@code float} when stored, so the relative error of each stored element is about {@code 1e-7}.
+ * Result of an operation on this array is also a {@link FloatHDArray}.
+ * @see Precision#FLOAT
+ */
+public class FloatHDArray extends HDArray {
+    /**
+     * Data of this array. It replaces {@link HDArray#data}, which is always {@code null} in this class.
+     */
+    protected float[] floatData;
+
+    /**
+     * Constructor. Given data are rounded to {@code float}.
+     * @param shape Shape of this array.
+     * @param data Data of this array.
+     */
+    public FloatHDArray(final int[] shape, final double[] data) {
+        this(Objects.requireNonNull(shape, Log.genLogMsg(FloatHDArray.class, "Given shape should not be null")).clone(),
+                HDArray.contiguousStrides(shape), 0, FloatHDArray.toFloat(data));
+    }
+
+    /**
+     * Constructor of a view. The given arrays are shared without copy.
+     * @param shape Shape of the view.
+     * @param strides Strides of the view.
+     * @param offset Position of the first element in {@code floatData}.
+     * @param floatData Data shared with the viewed array.
+     */
+    protected FloatHDArray(final int[] shape, final long[] strides, final long offset, final float[] floatData) {
+        super(shape, strides, offset, null);
+        this.floatData = floatData;
+    }
+
+    /**
+     * Constructor by size.
+     * @param shape Shape of this array.
+     * @return FloatHDArray filled with zero.
+     */
+    public static FloatHDArray createBySize(final int... shape) {
+        return FloatHDArray.createBySizeWithValue(HDArray.DEFAULT_VALUE, shape);
+    }
+
+    /**
+     * Constructor by size and return array is filled by default value.
+     * @param defaultValue Default value of this array.
+     * @param shape Shape of this array.
+     * @return FloatHDArray with given data.
+     */
+    public static FloatHDArray createBySizeWithValue(final double defaultValue, final int... shape) {
+        float[] data = new float[HDArray.countElement(shape)];
+        Arrays.fill(data, (float) defaultValue);
+        return new FloatHDArray(shape.clone(), HDArray.contiguousStrides(shape), 0, data);
+    }
+
+    /**
+     * Convert given array into {@code float} precision.
+     * @param array Array to convert.
+     * @return Converted array.
+     * @throws NullPointerException if given array is null.
+     */
+    public static FloatHDArray create(final HDArray array) {
+        Objects.requireNonNull(array, Log.genLogMsg(FloatHDArray.class, "Given array should not be null"));
+        return new FloatHDArray(array.shape(), array.toArray());
+    }
+
+    /**
+     * Round given data to {@code float}.
+     * @param data Data to round.
+     * @return Rounded data.
+     */
+    protected static float[] toFloat(final double[] data) {
+        Objects.requireNonNull(data, Log.genLogMsg(FloatHDArray.class, "Given data should not be null"));
+        float[] floatData = new float[data.length];
+        for (int idx = 0; idx < data.length; idx++) {
+            floatData[idx] = (float) data[idx];
+        }
+        return floatData;
+    }
+
+    /**
+     * Get the precision of the storage of this array.
+     * @return {@link Precision#FLOAT}.
+     */
+    @Override
+    public Precision precision() {
+        return Precision.FLOAT;
+    }
+
+    @Override
+    protected double valueAt(final long dataIdx) {
+        return this.floatData[(int) dataIdx];
+    }
+
+    @Override
+    protected void setValueAt(final long dataIdx, final double value) {
+        this.floatData[(int) dataIdx] = (float) value;
+    }
+
+    @Override
+    protected long storageSize() {
+        return this.floatData.length;
+    }
+
+    @Override
+    protected HDArray view(final int[] shape, final long[] strides, final long offset) {
+        return new FloatHDArray(shape, strides, offset, this.floatData);
+    }
+
+    @Override
+    protected HDArray allocate(final int[] shape) {
+        return new FloatHDArray(shape, HDArray.contiguousStrides(shape), 0, new float[HDArray.countElement(shape)]);
+    }
+
+    @Override
+    protected HDArray wrap(final int[] shape, final double[] values) {
+        return new FloatHDArray(shape, HDArray.contiguousStrides(shape), 0, FloatHDArray.toFloat(values));
+    }
+
+    @Override
+    public FloatHDArray clone() {
+        return (FloatHDArray) super.clone();
+    }
+}
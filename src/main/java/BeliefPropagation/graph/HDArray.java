@@ -8,6 +8,18 @@ import java.util.Objects;
  * This class is used to represent high dimensional array. <br/>
  * The data of this array is stored in a 1D array. <br/>
  * For example, a 2x3 matrix with data [1, 2, 3, 4, 5, 6] can be represented as a 1D array with shape [2, 3]. <br/>
+ * Element at indices {@code [i, j]} is located at {@code offset + i * strides[0] + j * strides[1]} of the 1D array.
+ * Therefore, {@link #moveAxis(int[], int[])}, {@link #reshape(int...)} and {@link #appendDimension(int, boolean)}
+ * can return a view sharing the same 1D array instead of copying the data. <br/>
+ * Elements are stored as {@code double}. Subclasses may use another storage by overriding {@link #valueAt(long)},
+ * {@link #setValueAt(long, double)}, {@link #storageSize()}, {@link #view(int[], long[], long)},
+ * {@link #allocate(int[])} and {@link #wrap(int[], double[])}. Result of an operation uses the same storage as the
+ * array it is called on. <br/>
+ * Positions in the storage are {@code long}, so that a storage such as {@link OffHeapHDArray} can hold more than
+ * {@link Integer#MAX_VALUE} elements. Methods copying the elements into a Java array, such as {@link #toArray()},
+ * are limited to {@link Integer#MAX_VALUE} elements. <br/>
+ * @see FloatHDArray
+ * @see OffHeapHDArray
  */
 public class HDArray implements Cloneable {
     /**
@@ -18,6 +30,15 @@ public class HDArray implements Cloneable {
      * Data of this array. For example, data of a 2x3 matrix is [1, 2, 3, 4, 5, 6].
      */
     protected double[] data;
+    /**
+     * Step in {@link #data} when moving one index along each dimension. For example, strides of a 2x3 matrix
+     * is [3, 1].
+     */
+    protected long[] strides;
+    /**
+     * Position of the first element in {@link #data}.
+     */
+    protected long offset;
     /**
      * Default value for array element.
      */
@@ -33,6 +54,22 @@ public class HDArray implements Cloneable {
         Objects.requireNonNull(data, Log.genLogMsg(this.getClass(), "Given data should not be null"));
         this.shape = shape.clone();
         this.data = data.clone();
+        this.strides = HDArray.contiguousStrides(this.shape);
+        this.offset = 0;
+    }
+
+    /**
+     * Constructor of a view. The given arrays are shared without copy.
+     * @param shape Shape of the view.
+     * @param strides Strides of the view.
+     * @param offset Position of the first element in {@code data}.
+     * @param data Data shared with the viewed array.
+     */
+    protected HDArray(final int[] shape, final long[] strides, final long offset, final double[] data) {
+        this.shape = shape;
+        this.strides = strides;
+        this.offset = offset;
+        this.data = data;
     }
 
     /**
@@ -157,7 +194,7 @@ public class HDArray implements Cloneable {
      */
     public double get(final int... indices) {
         this.verifyIndices(indices);
-        return this.data[HDArray.indicesToFlattenIdx(indices, this.shape)];
+        return this.valueAt(this.offsetOf(indices));
     }
 
     /**
@@ -170,7 +207,7 @@ public class HDArray implements Cloneable {
      */
     public void set(final double value, final int... indices) {
         this.verifyIndices(indices);
-        this.data[HDArray.indicesToFlattenIdx(indices, this.shape)] = value;
+        this.setValueAt(this.offsetOf(indices), value);
     }
 
     /**
@@ -194,7 +231,13 @@ public class HDArray implements Cloneable {
      * @param value Value to fill.
      */
     public void fill(final double value) {
-        Arrays.fill(this.data, value);
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        for (long i = 0; i < count; i++) {
+            this.setValueAt(dataIdx, value);
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
     }
 
     /**
@@ -202,7 +245,294 @@ public class HDArray implements Cloneable {
      * @return Sum of all elements.
      */
     public double sum() {
-        return Arrays.stream(this.data).sum();
+        if (this.hasContiguousData()) {
+            return ArrayKernels.sum(this.data, 0, this.data.length);
+        }
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        double sum = 0.0d;
+        for (long i = 0; i < count; i++) {
+            sum += this.valueAt(dataIdx);
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
+        return sum;
+    }
+
+    /**
+     * Copy all elements into a 1D array in row-major order.
+     * @return Elements of this array.
+     * @throws ArithmeticException if this array has more than {@link Integer#MAX_VALUE} elements.
+     */
+    public double[] toArray() {
+        final double[] values = new double[HDArray.countElement(this.shape)];
+        this.copyTo(values, 0);
+        return values;
+    }
+
+    /**
+     * Blend given array into this array in place, i.e. {@code this = weight * other + (1 - weight) * this}, without
+     * allocating any array. If {@code logDomain} is {@code True}, both arrays store log probabilities and they are
+     * blended as probabilities, i.e. {@code this = log(weight * exp(other) + (1 - weight) * exp(this))}.
+     * @param other Array of the same shape.
+     * @param weight Weight of {@code other}, between {@code 0} and {@code 1}.
+     * @param logDomain {@code True} if both arrays store log values.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if the shapes mismatch.
+     */
+    public void blend(final HDArray other, final double weight, final boolean logDomain) {
+        this.verifySameShape(other);
+        final long count = HDArray.countElementExact(this.shape);
+        final int[] thisCounter = new int[this.rank()];
+        final int[] otherCounter = new int[this.rank()];
+        long thisIdx = this.offset;
+        long otherIdx = other.offset;
+        for (long i = 0; i < count; i++) {
+            final double value = this.valueAt(thisIdx);
+            final double otherValue = other.valueAt(otherIdx);
+            if (!logDomain) {
+                this.setValueAt(thisIdx, weight * otherValue + (1.0d - weight) * value);
+            } else {
+                final double max = Math.max(value, otherValue);
+                if (max != Double.NEGATIVE_INFINITY) {
+                    this.setValueAt(thisIdx, max + Math.log(weight * Math.exp(otherValue - max) +
+                            (1.0d - weight) * Math.exp(value - max)));
+                }
+            }
+            thisIdx = HDArray.nextOffset(thisCounter, this.shape, this.strides, thisIdx);
+            otherIdx = HDArray.nextOffset(otherCounter, other.shape, other.strides, otherIdx);
+        }
+    }
+
+    /**
+     * Get the largest absolute difference between the elements of this array and given array, without allocating
+     * any array. If {@code logDomain} is {@code True}, both arrays store log probabilities and the probabilities
+     * are compared.
+     * @param other Array of the same shape.
+     * @param logDomain {@code True} if both arrays store log values.
+     * @return Largest absolute difference, or {@code NaN} if any difference is {@code NaN}.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if the shapes mismatch.
+     */
+    public double maxAbsDifference(final HDArray other, final boolean logDomain) {
+        this.verifySameShape(other);
+        final long count = HDArray.countElementExact(this.shape);
+        final int[] thisCounter = new int[this.rank()];
+        final int[] otherCounter = new int[this.rank()];
+        long thisIdx = this.offset;
+        long otherIdx = other.offset;
+        double result = 0.0d;
+        for (long i = 0; i < count; i++) {
+            final double value = logDomain ? Math.exp(this.valueAt(thisIdx)) : this.valueAt(thisIdx);
+            final double otherValue = logDomain ? Math.exp(other.valueAt(otherIdx)) : other.valueAt(otherIdx);
+            final double difference = Math.abs(value - otherValue);
+            if (!(difference <= result)) {
+                result = difference;
+            }
+            thisIdx = HDArray.nextOffset(thisCounter, this.shape, this.strides, thisIdx);
+            otherIdx = HDArray.nextOffset(otherCounter, other.shape, other.strides, otherIdx);
+        }
+        return result;
+    }
+
+    /**
+     * Copy the elements of given array into this array in place, without allocating any array.
+     * @param other Array of the same shape.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if the shapes mismatch.
+     */
+    public void copyFrom(final HDArray other) {
+        this.verifySameShape(other);
+        if (this.hasContiguousData() && other.hasContiguousData()) {
+            System.arraycopy(other.data, 0, this.data, 0, this.data.length);
+            return;
+        }
+        final long count = HDArray.countElementExact(this.shape);
+        final int[] thisCounter = new int[this.rank()];
+        final int[] otherCounter = new int[this.rank()];
+        long thisIdx = this.offset;
+        long otherIdx = other.offset;
+        for (long i = 0; i < count; i++) {
+            this.setValueAt(thisIdx, other.valueAt(otherIdx));
+            thisIdx = HDArray.nextOffset(thisCounter, this.shape, this.strides, thisIdx);
+            otherIdx = HDArray.nextOffset(otherCounter, other.shape, other.strides, otherIdx);
+        }
+    }
+
+    /**
+     * Check whether given array has the same shape as this array.
+     * @param other Another array.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if the shapes mismatch.
+     */
+    protected void verifySameShape(final HDArray other) {
+        Objects.requireNonNull(other, Log.genLogMsg(this.getClass(), "Given array should not be null"));
+        if (!Arrays.equals(this.shape, other.shape)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Given array should have shape " +
+                    Arrays.toString(this.shape) + ", but given " + Arrays.toString(other.shape)));
+        }
+    }
+
+    /**
+     * Copy all elements into given array in row-major order, starting at {@code targetOffset}.
+     * @param target Array to copy into.
+     * @param targetOffset Index of {@code target} of the first element.
+     * @throws IndexOutOfBoundsException if {@code target} is too short.
+     * @throws ArithmeticException if this array has more than {@link Integer#MAX_VALUE} elements.
+     */
+    public void copyTo(final double[] target, final int targetOffset) {
+        final int count = HDArray.countElement(this.shape);
+        Objects.checkFromIndexSize(targetOffset, count, target.length);
+        if (this.rank() == 1) {
+            // Single variable messages, without the odometer
+            long dataIdx = this.offset;
+            for (int i = 0; i < count; i++) {
+                target[targetOffset + i] = this.valueAt(dataIdx);
+                dataIdx += this.strides[0];
+            }
+            return;
+        }
+        final int[] counter = new int[this.rank()];
+        long dataIdx = this.offset;
+        for (int i = 0; i < count; i++) {
+            target[targetOffset + i] = this.valueAt(dataIdx);
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
+    }
+
+    /**
+     * Get the precision of the storage of this array.
+     * @return {@link Precision#DOUBLE}.
+     */
+    public Precision precision() {
+        return Precision.DOUBLE;
+    }
+
+    /**
+     * Convert this array into given precision.
+     * @param precision Target precision.
+     * @return This array if it is already in given precision. Or else, a new contiguous array with same elements.
+     * @throws NullPointerException if given precision is null.
+     */
+    public HDArray toPrecision(final Precision precision) {
+        Objects.requireNonNull(precision, Log.genLogMsg(this.getClass(), "Given precision should not be null"));
+        if (precision == this.precision()) {
+            return this;
+        }
+        return precision.create(this.shape.clone(), this.toArray());
+    }
+
+    /**
+     * Get element at given position of the storage.
+     * @param dataIdx Position in the storage.
+     * @return Element at given position.
+     */
+    protected double valueAt(final long dataIdx) {
+        return this.data[(int) dataIdx];
+    }
+
+    /**
+     * Set element at given position of the storage.
+     * @param dataIdx Position in the storage.
+     * @param value Value to set.
+     */
+    protected void setValueAt(final long dataIdx, final double value) {
+        this.data[(int) dataIdx] = value;
+    }
+
+    /**
+     * Get the number of elements in the storage, which can be shared by several views.
+     * @return Number of elements in the storage.
+     */
+    protected long storageSize() {
+        return this.data.length;
+    }
+
+    /**
+     * Create a view sharing the storage of this array.
+     * @param shape Shape of the view.
+     * @param strides Strides of the view.
+     * @param offset Position of the first element in the storage.
+     * @return View of this array.
+     */
+    protected HDArray view(final int[] shape, final long[] strides, final long offset) {
+        return new HDArray(shape, strides, offset, this.data);
+    }
+
+    /**
+     * Create a contiguous array with the same storage type as this array, filled with zero.
+     * @param shape Shape of the new array.
+     * @return New array.
+     */
+    protected HDArray allocate(final int[] shape) {
+        return new HDArray(shape, HDArray.contiguousStrides(shape), 0, new double[HDArray.countElement(shape)]);
+    }
+
+    /**
+     * Create a contiguous array with the same storage type as this array.
+     * @param shape Shape of the new array.
+     * @param values Elements in row-major order. The array may be used as the storage without copy.
+     * @return New array holding given elements.
+     */
+    protected HDArray wrap(final int[] shape, final double[] values) {
+        return new HDArray(shape, HDArray.contiguousStrides(shape), 0, values);
+    }
+
+    /**
+     * Check whether the elements of this array are stored in row-major order from the beginning of {@link #data}
+     * without any gap, i.e. this array is not a view with permuted axes.
+     * @return {@code True} if this array is contiguous.
+     */
+    public boolean isContiguous() {
+        if (this.offset != 0 || this.storageSize() != HDArray.countElementExact(this.shape)) {
+            return false;
+        }
+        long expectedStride = 1;
+        for (int i = this.shape.length - 1; i >= 0; i--) {
+            if (this.shape[i] != 1 && this.strides[i] != expectedStride) {
+                return false;
+            }
+            expectedStride *= this.shape[i];
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the elements are stored in {@link #data} in contiguous layout, so that {@link ArrayKernels}
+     * can run on the whole array.
+     * @return {@code True} if {@link #data} is used and this array is contiguous.
+     */
+    protected boolean hasContiguousData() {
+        return this.data != null && this.isContiguous();
+    }
+
+    /**
+     * Get a contiguous version of this array. The data is copied only if this array is not contiguous.
+     * @return This array if it is already contiguous. Or else, a new contiguous array with same elements.
+     * @see #isContiguous()
+     */
+    public HDArray contiguous() {
+        if (this.isContiguous()) {
+            return this;
+        }
+        return this.copy();
+    }
+
+    /**
+     * Copy the elements into a new contiguous array with the same storage type as this array.
+     * @return Copy of this array.
+     * @see #allocate(int[])
+     */
+    protected HDArray copy() {
+        final HDArray result = this.allocate(this.shape.clone());
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        for (long i = 0; i < count; i++) {
+            result.setValueAt(i, this.valueAt(dataIdx));
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
+        return result;
     }
 
     /**
@@ -237,11 +567,352 @@ public class HDArray implements Cloneable {
      * @throws IllegalArgumentException if given axis contain duplicated index, or invalid index.
      */
     protected HDArray sumAlongAxis(final int... axis) {
-        Objects.requireNonNull(axis, Log.genLogMsg(this.getClass(), "Given axis should not be null"));
+        this.verifyAxis(axis);
+        if (axis.length == 0) {
+            return this.clone();
+        }
+
+        // In case that all axis is reduced
+        if (axis.length == this.rank()) {
+            return this.wrap(new int[]{1}, new double[]{this.sum()});
+        }
+
+        // Initialize new shape and new data
+        int[] newShape = HDArray.removeElementByIndices(this.shape, axis);
+        double[] newData = new double[HDArray.countElement(newShape)];
+        final int[] newStrides = this.reducedStrides(axis);
+
+        // Sum along axis. The last dimension is walked in the inner loop, while the counter of the outer
+        // dimensions is advanced like an odometer so that no array is allocated per element.
+        final int last = this.rank() - 1;
+        final int innerSize = this.shape[last];
+        final long innerStride = this.strides[last];
+        final int innerNewStride = newStrides[last];
+        final long outerCount = HDArray.countElementExact(this.shape) / innerSize;
+        final int[] counter = new int[last];
+        long dataIdx = this.offset;
+        int newDataIdx = 0;
+        final boolean useKernel = this.data != null && innerStride == 1 && innerNewStride <= 1;
+        for (long outer = 0; outer < outerCount; outer++) {
+            if (useKernel && innerNewStride == 0) {
+                newData[newDataIdx] += ArrayKernels.sum(this.data, (int) dataIdx, innerSize);
+            } else if (useKernel) {
+                ArrayKernels.binary(Arithmetic.ADD, newData, newDataIdx, 1, this.data, (int) dataIdx, 1,
+                        newData, newDataIdx, innerSize);
+            } else if (innerNewStride == 0) {
+                double sum = 0.0d;
+                for (int i = 0; i < innerSize; i++) {
+                    sum += this.valueAt(dataIdx + i * innerStride);
+                }
+                newData[newDataIdx] += sum;
+            } else {
+                for (int i = 0; i < innerSize; i++) {
+                    newData[newDataIdx + i * innerNewStride] += this.valueAt(dataIdx + i * innerStride);
+                }
+            }
+
+            // Advance the odometer of the outer dimensions
+            for (int i = last - 1; i >= 0; i--) {
+                if (++counter[i] < this.shape[i]) {
+                    dataIdx += this.strides[i];
+                    newDataIdx += newStrides[i];
+                    break;
+                }
+                counter[i] = 0;
+                dataIdx -= this.strides[i] * (this.shape[i] - 1);
+                newDataIdx -= newStrides[i] * (this.shape[i] - 1);
+            }
+        }
+
+        return this.wrap(newShape, newData);
+    }
+
+    /**
+     * Compute the logarithm of the sum of exponentials along given axis, i.e. {@code log(sum(exp(x)))}. It is the
+     * sum along axis for arrays storing log values. The largest element of each sum is factored out, so that it
+     * does not overflow or underflow.
+     * @param axis Axis to sum.
+     * @return Log-sum-exp along given axis.
+     * @throws NullPointerException if given axis is null.
+     * @throws IllegalArgumentException if given axis contain duplicated index, or invalid index.
+     * @see #sumAlongAxis(int...)
+     */
+    protected HDArray logSumExpAlongAxis(final int... axis) {
+        this.verifyAxis(axis);
         if (axis.length == 0) {
             return this.clone();
         }
 
+        // In case that all axis is reduced
+        if (axis.length == this.rank()) {
+            return this.wrap(new int[]{1}, new double[]{this.logSumExp()});
+        }
+
+        int[] newShape = HDArray.removeElementByIndices(this.shape, axis);
+        final int newCount = HDArray.countElement(newShape);
+        final int[] newStrides = this.reducedStrides(axis);
+
+        // Keep the running maximum and the sum of exp(x - maximum) of every result element, so that every element
+        // of this array is visited once.
+        final double[] maxData = new double[newCount];
+        final double[] scaledSumData = new double[newCount];
+        Arrays.fill(maxData, Double.NEGATIVE_INFINITY);
+        final long count = HDArray.countElementExact(this.shape);
+        final int[] counter = new int[this.rank()];
+        long dataIdx = this.offset;
+        int newDataIdx = 0;
+        for (long i = 0; i < count; i++) {
+            HDArray.accumulateLogSumExp(maxData, scaledSumData, newDataIdx, this.valueAt(dataIdx));
+
+            // Advance the odometer of both arrays
+            for (int j = counter.length - 1; j >= 0; j--) {
+                if (++counter[j] < this.shape[j]) {
+                    dataIdx += this.strides[j];
+                    newDataIdx += newStrides[j];
+                    break;
+                }
+                counter[j] = 0;
+                dataIdx -= this.strides[j] * (this.shape[j] - 1);
+                newDataIdx -= newStrides[j] * (this.shape[j] - 1);
+            }
+        }
+
+        for (int i = 0; i < newCount; i++) {
+            maxData[i] = HDArray.finishLogSumExp(maxData[i], scaledSumData[i]);
+        }
+        return this.wrap(newShape, maxData);
+    }
+
+    /**
+     * Add {@code exp(value)} into the running log-sum-exp at {@code idx}.
+     * @param maxData Running maximum of each sum.
+     * @param scaledSumData Running sum of {@code exp(x - maximum)} of each sum.
+     * @param idx Index of the sum.
+     * @param value Log value to add.
+     * @see #finishLogSumExp(double, double)
+     */
+    protected static void accumulateLogSumExp(final double[] maxData, final double[] scaledSumData, final int idx,
+                                              final double value) {
+        if (value == Double.NEGATIVE_INFINITY) {
+            return;
+        }
+        final double max = maxData[idx];
+        if (value <= max) {
+            scaledSumData[idx] += Math.exp(value - max);
+        } else {
+            scaledSumData[idx] = scaledSumData[idx] * Math.exp(max - value) + 1.0d;
+            maxData[idx] = value;
+        }
+    }
+
+    /**
+     * Get the log-sum-exp from the running maximum and scaled sum.
+     * @param max Running maximum.
+     * @param scaledSum Running sum of {@code exp(x - maximum)}.
+     * @return Log-sum-exp. Negative infinity if every value is negative infinity.
+     * @see #accumulateLogSumExp(double[], double[], int, double)
+     */
+    protected static double finishLogSumExp(final double max, final double scaledSum) {
+        return max == Double.NEGATIVE_INFINITY ? max : max + Math.log(scaledSum);
+    }
+
+    /**
+     * Multiply this array by given arrays and sum along given axis, i.e. the same as multiplying the arrays one by
+     * one and then calling {@link #sumAlongAxis(int...)}, but without creating the intermediate products. Every
+     * element of this array is visited once, and its product is accumulated straight into the result.
+     * @param operands Arrays to multiply. Each of them should be broadcastable to the shape of this array.
+     * @param axis Axis to sum.
+     * @return Sum of the product along given axis.
+     * @throws NullPointerException if given operands or axis is null.
+     * @throws IllegalArgumentException if given operands cannot be broadcast to the shape of this array,
+     * or given axis contain duplicated index, or invalid index.
+     */
+    protected HDArray mulSumAlongAxis(final HDArray[] operands, final int... axis) {
+        return this.productAlongAxis(operands, false, axis);
+    }
+
+    /**
+     * Add given arrays to this array and compute the log-sum-exp along given axis. It is
+     * {@link #mulSumAlongAxis(HDArray[], int...)} for arrays storing log values.
+     * @param operands Arrays to add. Each of them should be broadcastable to the shape of this array.
+     * @param axis Axis to sum.
+     * @return Log-sum-exp of the sum along given axis.
+     * @throws NullPointerException if given operands or axis is null.
+     * @throws IllegalArgumentException if given operands cannot be broadcast to the shape of this array,
+     * or given axis contain duplicated index, or invalid index.
+     * @see #logSumExpAlongAxis(int...)
+     */
+    protected HDArray addLogSumExpAlongAxis(final HDArray[] operands, final int... axis) {
+        return this.productAlongAxis(operands, true, axis);
+    }
+
+    /**
+     * Shared implementation of {@link #mulSumAlongAxis(HDArray[], int...)} and
+     * {@link #addLogSumExpAlongAxis(HDArray[], int...)}.
+     * @param operands Arrays to combine with this array.
+     * @param logDomain {@code True} if the arrays store log values.
+     * @param axis Axis to sum.
+     * @return Reduced array.
+     */
+    protected HDArray productAlongAxis(final HDArray[] operands, final boolean logDomain, final int... axis) {
+        Objects.requireNonNull(operands, Log.genLogMsg(this.getClass(), "Given operands should not be null"));
+        this.verifyAxis(axis);
+
+        // Reducing all axis results in an array with a single element
+        final int[] reducedShape = HDArray.removeElementByIndices(this.shape, axis);
+        final int[] newShape = reducedShape.length == 0 ? new int[]{1} : reducedShape;
+        final double[] newData = new double[HDArray.countElement(newShape)];
+        this.productAlongAxis(operands, logDomain, newData, axis);
+        return this.wrap(newShape, newData);
+    }
+
+    /**
+     * Compute {@link #productAlongAxis(HDArray[], boolean, int...)} into given array instead of a new one, so that
+     * a message computed repeatedly can reuse its storage.
+     * @param operands Arrays to combine with this array.
+     * @param logDomain {@code True} if the arrays store log values.
+     * @param out Array of the reduced shape, whose elements are overwritten.
+     * @param axis Axis to sum.
+     * @throws NullPointerException if given operands, output array or axis is null.
+     * @throws IllegalArgumentException if given operands cannot be broadcast to the shape of this array, or given
+     * axis contain duplicated index, or invalid index, or the output array does not have the reduced shape.
+     */
+    protected void productAlongAxis(final HDArray[] operands, final boolean logDomain, final HDArray out,
+                                    final int... axis) {
+        Objects.requireNonNull(operands, Log.genLogMsg(this.getClass(), "Given operands should not be null"));
+        Objects.requireNonNull(out, Log.genLogMsg(this.getClass(), "Given output array should not be null"));
+        this.verifyAxis(axis);
+        final int[] reducedShape = HDArray.removeElementByIndices(this.shape, axis);
+        final int[] newShape = reducedShape.length == 0 ? new int[]{1} : reducedShape;
+        if (!Arrays.equals(out.shape, newShape)) {
+            throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Given output array should have shape " +
+                    Arrays.toString(newShape) + ", but given " + Arrays.toString(out.shape)));
+        }
+
+        // The elements are accumulated in the storage of a dense output directly. Any other output is copied into.
+        if (out.hasContiguousData()) {
+            this.productAlongAxis(operands, logDomain, out.data, axis);
+        } else {
+            out.copyFrom(logDomain ? this.addLogSumExpAlongAxis(operands, axis) :
+                    this.mulSumAlongAxis(operands, axis));
+        }
+    }
+
+    /**
+     * Kernel of {@link #productAlongAxis(HDArray[], boolean, int...)}.
+     * @param operands Arrays to combine with this array.
+     * @param logDomain {@code True} if the arrays store log values.
+     * @param newData Storage of the contiguous reduced array, whose elements are overwritten.
+     * @param axis Valid axis to sum.
+     */
+    protected void productAlongAxis(final HDArray[] operands, final boolean logDomain, final double[] newData,
+                                    final int... axis) {
+        final HDArray[] views = new HDArray[operands.length];
+        for (int k = 0; k < operands.length; k++) {
+            views[k] = HDArray.broadcastArray(operands[k], this.shape);
+        }
+        final int newCount = newData.length;
+        final int[] newStrides = this.reducedStrides(axis);
+        final double[] scaledSumData = logDomain ? new double[newCount] : null;
+        Arrays.fill(newData, logDomain ? Double.NEGATIVE_INFINITY : 0.0d);
+
+        // The last dimension is walked in the inner loop like sumAlongAxis. If every array stores double and the
+        // inner dimension is either contiguous or repeated, the row product is computed by the arithmetic kernels.
+        final int last = this.rank() - 1;
+        final int innerSize = this.shape[last];
+        final long innerStride = this.strides[last];
+        final int innerNewStride = newStrides[last];
+        final long outerCount = HDArray.countElementExact(this.shape) / innerSize;
+        final int[] counter = new int[last];
+        final long[] operandIdx = new long[views.length];
+        boolean useKernel = !logDomain && this.data != null && innerStride == 1;
+        for (int k = 0; k < views.length; k++) {
+            operandIdx[k] = views[k].offset;
+            useKernel &= views[k].data != null && views[k].strides[last] <= 1;
+        }
+        final double[] row = useKernel ? new double[innerSize] : null;
+        long dataIdx = this.offset;
+        int newDataIdx = 0;
+        for (long outer = 0; outer < outerCount; outer++) {
+            if (useKernel) {
+                System.arraycopy(this.data, (int) dataIdx, row, 0, innerSize);
+                for (int k = 0; k < views.length; k++) {
+                    ArrayKernels.binary(Arithmetic.MUL, row, 0, 1, views[k].data, (int) operandIdx[k],
+                            (int) views[k].strides[last], row, 0, innerSize);
+                }
+                if (innerNewStride == 0) {
+                    newData[newDataIdx] += ArrayKernels.sum(row, 0, innerSize);
+                } else {
+                    ArrayKernels.binary(Arithmetic.ADD, newData, newDataIdx, 1, row, 0, 1,
+                            newData, newDataIdx, innerSize);
+                }
+            } else {
+                for (int i = 0; i < innerSize; i++) {
+                    double value = this.valueAt(dataIdx + i * innerStride);
+                    for (int k = 0; k < views.length; k++) {
+                        final double operand = views[k].valueAt(operandIdx[k] + i * views[k].strides[last]);
+                        value = logDomain ? value + operand : value * operand;
+                    }
+                    if (logDomain) {
+                        HDArray.accumulateLogSumExp(newData, scaledSumData, newDataIdx + i * innerNewStride, value);
+                    } else {
+                        newData[newDataIdx + i * innerNewStride] += value;
+                    }
+                }
+            }
+
+            // Advance the odometer of the outer dimensions of every array
+            for (int i = last - 1; i >= 0; i--) {
+                if (++counter[i] < this.shape[i]) {
+                    dataIdx += this.strides[i];
+                    newDataIdx += newStrides[i];
+                    for (int k = 0; k < views.length; k++) {
+                        operandIdx[k] += views[k].strides[i];
+                    }
+                    break;
+                }
+                counter[i] = 0;
+                dataIdx -= this.strides[i] * (this.shape[i] - 1);
+                newDataIdx -= newStrides[i] * (this.shape[i] - 1);
+                for (int k = 0; k < views.length; k++) {
+                    operandIdx[k] -= views[k].strides[i] * (this.shape[i] - 1);
+                }
+            }
+        }
+
+        if (logDomain) {
+            for (int i = 0; i < newCount; i++) {
+                newData[i] = HDArray.finishLogSumExp(newData[i], scaledSumData[i]);
+            }
+        }
+    }
+
+    /**
+     * Get the logarithm of the sum of exponentials of all elements, i.e. {@code log(sum(exp(x)))}.
+     * @return Log-sum-exp of all elements. Negative infinity if every element is negative infinity.
+     */
+    public double logSumExp() {
+        final double[] max = {Double.NEGATIVE_INFINITY};
+        final double[] scaledSum = {0.0d};
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        for (long i = 0; i < count; i++) {
+            HDArray.accumulateLogSumExp(max, scaledSum, 0, this.valueAt(dataIdx));
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
+        return HDArray.finishLogSumExp(max[0], scaledSum[0]);
+    }
+
+    /**
+     * Verify the axis is valid to reduce.
+     * @param axis Axis to reduce.
+     * @throws NullPointerException if given axis is null.
+     * @throws IllegalArgumentException if given axis contain duplicated index, or invalid index.
+     */
+    protected void verifyAxis(final int... axis) {
+        Objects.requireNonNull(axis, Log.genLogMsg(this.getClass(), "Given axis should not be null"));
+
         // Check is there only unique element
         if (axis.length != Arrays.stream(axis).distinct().count()) {
             throw new IllegalArgumentException(
@@ -256,47 +927,58 @@ public class HDArray implements Cloneable {
                         "Given axis contain invalid index"));
             }
         }
+    }
 
-        // In case that all axis is reduced
-        if (axis.length == this.rank()) {
-            return HDArray.create(this.sum());
+    /**
+     * Compute the position in the reduced array when moving one index along each dimension of this array.
+     * Reduced dimensions do not move the position at all.
+     * @param axis Axis to reduce.
+     * @return Strides of the reduced array for each dimension of this array.
+     */
+    protected int[] reducedStrides(final int... axis) {
+        final boolean[] reduced = new boolean[this.rank()];
+        for (int axi : axis) {
+            reduced[axi] = true;
         }
-
-        // Initialize new shape and new data
-        int[] newShape = HDArray.removeElementByIndices(this.shape, axis);
-        double[] newData = new double[HDArray.countElement(newShape)];
-        Arrays.fill(newData, 0.0d);
-
-        // Sum along axis
-        for (int flattenIdx=0; flattenIdx<this.data.length; flattenIdx++) {
-            int[] indices = HDArray.flattenIdxToIndices(flattenIdx, this.shape);
-            int[] newIndices = HDArray.removeElementByIndices(indices, axis);
-            int newFlattenIdx = HDArray.indicesToFlattenIdx(newIndices, newShape);
-            newData[newFlattenIdx] += this.data[flattenIdx];
+        final int[] newStrides = new int[this.rank()];
+        int stride = 1;
+        for (int i = this.rank() - 1; i >= 0; i--) {
+            if (!reduced[i]) {
+                newStrides[i] = stride;
+                stride *= this.shape[i];
+            }
         }
-
-        return new HDArray(newShape, newData);
+        return newStrides;
     }
 
     /**
-     * Reshape this array.
+     * Reshape this array. The returned array is a view sharing the data with this array if this array is
+     * contiguous. Or else, the data is copied into contiguous layout first.
      * @param newShape New shape.
      * @return Reshaped array.
      * @throws NullPointerException if given new shape is null.
-     * @throws IllegalArgumentException if given new shape does not have same number of elements with current shape.
+     * @throws IllegalArgumentException if given new shape does not have same number of elements with current shape,
+     * or given new shape contain non-positive dimension.
      */
     public HDArray reshape(final int... newShape) {
         Objects.requireNonNull(newShape, Log.genLogMsg(this.getClass(), "Given new shape should not be null"));
-        if (HDArray.countElement(newShape) != HDArray.countElement(this.shape)) {
+        if (Arrays.stream(newShape).anyMatch(dim -> dim <= 0)) {
+            throw new IllegalArgumentException(
+                    Log.genLogMsg(this.getClass(),
+                            "Given new shape should only contain positive dimension: " + Arrays.toString(newShape)));
+        }
+        if (HDArray.countElementExact(newShape) != HDArray.countElementExact(this.shape)) {
             throw new IllegalArgumentException(
                     Log.genLogMsg(this.getClass(),
                             "Given new shape should have same number of elements with current shape"));
         }
-        return new HDArray(newShape, this.data);
+        final HDArray source = this.contiguous();
+        return source.view(newShape.clone(), HDArray.contiguousStrides(newShape), source.offset);
     }
 
     /**
-     * Move axis of this array.
+     * Move axis of this array. The returned array is a view sharing the data with this array, only the shape and
+     * strides are permuted.
      * @param originalDimensions Original positions of the axes to move. These must be unique.
      * @param toDimensionIndices Destination positions for each of the original axis. These mush also be unique.
      * @return Array with moved axes.
@@ -354,22 +1036,13 @@ public class HDArray implements Cloneable {
         }
 
         int[] newShape = new int[this.rank()];
+        long[] newStrides = new long[this.rank()];
         for (int i=0; i<this.rank(); i++) {
             newShape[i] = this.shape[newOrder[i]];
+            newStrides[i] = this.strides[newOrder[i]];
         }
 
-        double[] newData = new double[this.data.length];
-        for (int flattenIdx=0; flattenIdx<this.data.length; flattenIdx++) {
-            int[] indices = HDArray.flattenIdxToIndices(flattenIdx, this.shape);
-            int[] newIndices = new int[indices.length];
-            for (int i=0; i<indices.length; i++) {
-                newIndices[i] = indices[newOrder[i]];
-            }
-            int newFlattenIdx = HDArray.indicesToFlattenIdx(newIndices, newShape);
-            newData[newFlattenIdx] = this.data[flattenIdx];
-        }
-
-        return new HDArray(newShape, newData);
+        return this.view(newShape, newStrides, this.offset);
     }
 
     /**
@@ -378,7 +1051,7 @@ public class HDArray implements Cloneable {
      * @return Multiplied array.
      */
     public HDArray mul(final double value) {
-        return this.operation(value, (a, b) -> a * b);
+        return this.operation(value, Arithmetic.MUL);
     }
 
     /**
@@ -386,7 +1059,17 @@ public class HDArray implements Cloneable {
      * @param value Value to multiply.
      */
     public void muli(final double value) {
-        this.operationInPlace(value, (a, b) -> a * b);
+        this.operationInPlace(value, Arithmetic.MUL);
+    }
+
+    /**
+     * Multiply this array by given array of the same shape in place.
+     * @param otherArray Array to multiply.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if the shapes mismatch.
+     */
+    public void muli(final HDArray otherArray) {
+        this.operationInPlace(otherArray, Arithmetic.MUL);
     }
 
     /**
@@ -397,7 +1080,11 @@ public class HDArray implements Cloneable {
      * @throws IllegalArgumentException if given array shape does not match with this array.
      */
     public HDArray mul(final HDArray otherArray) {
-        return this.broadcastOperation(otherArray, (a, b) -> a * b);
+        // Product is commutative, so that a sparse operand only visits its nonzero elements
+        if (otherArray instanceof SparseHDArray && !(this instanceof SparseHDArray)) {
+            return otherArray.mul(this);
+        }
+        return this.broadcastOperation(otherArray, Arithmetic.MUL);
     }
 
     /**
@@ -406,7 +1093,7 @@ public class HDArray implements Cloneable {
      * @return Added array.
      */
     public HDArray add(final double value) {
-        return this.operation(value, Double::sum);
+        return this.operation(value, Arithmetic.ADD);
     }
 
     /**
@@ -414,7 +1101,17 @@ public class HDArray implements Cloneable {
      * @param value Value to add.
      */
     public void addi(final double value) {
-        this.operationInPlace(value, Double::sum);
+        this.operationInPlace(value, Arithmetic.ADD);
+    }
+
+    /**
+     * Add given array of the same shape to this array in place.
+     * @param otherArray Array to add.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if the shapes mismatch.
+     */
+    public void addi(final HDArray otherArray) {
+        this.operationInPlace(otherArray, Arithmetic.ADD);
     }
 
     /**
@@ -425,7 +1122,7 @@ public class HDArray implements Cloneable {
      * @throws IllegalArgumentException if given array shape does not match with this array.
      */
     public HDArray add(final HDArray otherArray) {
-        return this.broadcastOperation(otherArray, Double::sum);
+        return this.broadcastOperation(otherArray, Arithmetic.ADD);
     }
 
     /**
@@ -434,7 +1131,7 @@ public class HDArray implements Cloneable {
      * @return Subtracted array.
      */
     public HDArray sub(final double value) {
-        return this.operation(value, (a, b) -> a - b);
+        return this.operation(value, Arithmetic.SUB);
     }
 
     /**
@@ -442,7 +1139,7 @@ public class HDArray implements Cloneable {
      * @param value Value to subtract.
      */
     public void subi(final double value) {
-        this.operationInPlace(value, (a, b) -> a - b);
+        this.operationInPlace(value, Arithmetic.SUB);
     }
 
     /**
@@ -453,7 +1150,7 @@ public class HDArray implements Cloneable {
      * @throws IllegalArgumentException if given array shape does not match with this array.
      */
     public HDArray sub(final HDArray otherArray) {
-        return this.broadcastOperation(otherArray, (a, b) -> a - b);
+        return this.broadcastOperation(otherArray, Arithmetic.SUB);
     }
 
     /**
@@ -462,7 +1159,7 @@ public class HDArray implements Cloneable {
      * @return Divided array.
      */
     public HDArray div(final double value) {
-        return this.operation(value, (a, b) -> a / b);
+        return this.operation(value, Arithmetic.DIV);
     }
 
     /**
@@ -470,7 +1167,7 @@ public class HDArray implements Cloneable {
      * @param value Value to divide.
      */
     public void divi(final double value) {
-        this.operationInPlace(value, (a, b) -> a / b);
+        this.operationInPlace(value, Arithmetic.DIV);
     }
 
     /**
@@ -481,7 +1178,23 @@ public class HDArray implements Cloneable {
      * @throws IllegalArgumentException if given array shape does not match with this array.
      */
     public HDArray div(final HDArray otherArray) {
-        return this.broadcastOperation(otherArray, (a, b) -> a / b);
+        return this.broadcastOperation(otherArray, Arithmetic.DIV);
+    }
+
+    /**
+     * Compute the natural logarithm of every element. Zero becomes negative infinity.
+     * @return Array of logarithm.
+     */
+    public HDArray log() {
+        return this.operation(0.0d, (a, b) -> Math.log(a));
+    }
+
+    /**
+     * Compute the exponential of every element.
+     * @return Array of exponential.
+     */
+    public HDArray exp() {
+        return this.operation(0.0d, (a, b) -> Math.exp(a));
     }
 
     /**
@@ -493,9 +1206,20 @@ public class HDArray implements Cloneable {
      */
     protected HDArray operation(final double operand, final HDArray.elementOperation operation) {
         Objects.requireNonNull(operation, Log.genLogMsg(this.getClass(), "Given operation should not be null"));
-        double[] newData = new double[this.data.length];
-        Arrays.setAll(newData, idx -> operation.operate(this.data[idx], operand));
-        return new HDArray(this.shape, newData);
+        final HDArray result = this.allocate(this.shape.clone());
+        if (operation instanceof Arithmetic arithmetic && this.hasContiguousData() && result.data != null) {
+            ArrayKernels.binary(arithmetic, this.data, 0, 1, new double[]{operand}, 0, 0,
+                    result.data, 0, this.data.length);
+            return result;
+        }
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        for (long i = 0; i < count; i++) {
+            result.setValueAt(i, operation.operate(this.valueAt(dataIdx), operand));
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
+        return result;
     }
 
     /**
@@ -506,16 +1230,55 @@ public class HDArray implements Cloneable {
      */
     protected void operationInPlace(final double operand, final HDArray.elementOperation operation) {
         Objects.requireNonNull(operation, Log.genLogMsg(this.getClass(), "Given operation should not be null"));
-        Arrays.setAll(this.data, idx -> operation.operate(this.data[idx], operand));
+        if (operation instanceof Arithmetic arithmetic && this.hasContiguousData()) {
+            ArrayKernels.binary(arithmetic, this.data, 0, 1, new double[]{operand}, 0, 0,
+                    this.data, 0, this.data.length);
+            return;
+        }
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        for (long i = 0; i < count; i++) {
+            this.setValueAt(dataIdx, operation.operate(this.valueAt(dataIdx), operand));
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
     }
 
     /**
-     * Perform given operation on this array.
+     * Perform given operation on this array and given array of the same shape in place.
+     * @param array Operand array.
+     * @param operation Operation to perform.
+     * @throws NullPointerException if given array or operation is null.
+     * @throws IllegalArgumentException if the shapes mismatch.
+     */
+    protected void operationInPlace(final HDArray array, final HDArray.elementOperation operation) {
+        Objects.requireNonNull(operation, Log.genLogMsg(this.getClass(), "Given operation should not be null"));
+        this.verifySameShape(array);
+        if (operation instanceof Arithmetic arithmetic && this.hasContiguousData() && array.hasContiguousData()) {
+            ArrayKernels.binary(arithmetic, this.data, 0, 1, array.data, 0, 1, this.data, 0, this.data.length);
+            return;
+        }
+        final long count = HDArray.countElementExact(this.shape);
+        final int[] thisCounter = new int[this.rank()];
+        final int[] otherCounter = new int[this.rank()];
+        long thisIdx = this.offset;
+        long otherIdx = array.offset;
+        for (long i = 0; i < count; i++) {
+            this.setValueAt(thisIdx, operation.operate(this.valueAt(thisIdx), array.valueAt(otherIdx)));
+            thisIdx = HDArray.nextOffset(thisCounter, this.shape, this.strides, thisIdx);
+            otherIdx = HDArray.nextOffset(otherCounter, array.shape, array.strides, otherIdx);
+        }
+    }
+
+    /**
+     * Perform given operation on this array. Both arrays are broadcast to the common shape by stride-0 views, so
+     * only the result array is allocated.
      * @param array Operand array.
      * @param operation Operation to perform.
      * @return Result array.
      * @throws NullPointerException if given array or operation is null.
      * @throws IllegalArgumentException if given array shape does not match with this array.
+     * @see #broadcastArray(HDArray, int[])
      */
     protected HDArray broadcastOperation(final HDArray array, final HDArray.elementOperation operation) {
         Objects.requireNonNull(array, Log.genLogMsg(this.getClass(), "Given array should not be null"));
@@ -524,11 +1287,53 @@ public class HDArray implements Cloneable {
         final int[] broadcastShape = HDArray.detectBroadcastShape(this.shape, array.shape);
         final HDArray array1 = HDArray.broadcastArray(this, broadcastShape);
         final HDArray array2 = HDArray.broadcastArray(array, broadcastShape);
+        final HDArray result = this.allocate(broadcastShape);
+
+        // Merge the dimensions which are contiguous in both arrays, so that the inner loop is as long as possible
+        final int[] loopShape = broadcastShape.clone();
+        final long[] strides1 = array1.strides.clone();
+        final long[] strides2 = array2.strides.clone();
+        final int rank = HDArray.coalesceDimensions(loopShape, strides1, strides2);
+
+        // The last dimension is walked in the inner loop, while the counter of the outer dimensions is advanced
+        // like an odometer.
+        final int last = rank - 1;
+        final int innerSize = loopShape[last];
+        final long innerStride1 = strides1[last];
+        final long innerStride2 = strides2[last];
+        final boolean useKernel = operation instanceof Arithmetic && array1.data != null && array2.data != null
+                && result.data != null && innerStride1 <= 1 && innerStride2 <= 1;
+        final long outerCount = HDArray.countElementExact(broadcastShape) / innerSize;
+        final int[] counter = new int[last];
+        long dataIdx1 = array1.offset;
+        long dataIdx2 = array2.offset;
+        long resultIdx = 0;
+        for (long outer = 0; outer < outerCount; outer++) {
+            if (useKernel) {
+                ArrayKernels.binary((Arithmetic) operation, array1.data, (int) dataIdx1, (int) innerStride1,
+                        array2.data, (int) dataIdx2, (int) innerStride2, result.data, (int) resultIdx, innerSize);
+                resultIdx += innerSize;
+            } else {
+                for (int i = 0; i < innerSize; i++) {
+                    result.setValueAt(resultIdx++, operation.operate(array1.valueAt(dataIdx1 + i * innerStride1),
+                            array2.valueAt(dataIdx2 + i * innerStride2)));
+                }
+            }
 
-        double[] resultData = new double[HDArray.countElement(broadcastShape)];
-        Arrays.setAll(resultData, idx -> operation.operate(array1.data[idx], array2.data[idx]));
+            // Advance the odometer of the outer dimensions
+            for (int i = last - 1; i >= 0; i--) {
+                if (++counter[i] < loopShape[i]) {
+                    dataIdx1 += strides1[i];
+                    dataIdx2 += strides2[i];
+                    break;
+                }
+                counter[i] = 0;
+                dataIdx1 -= strides1[i] * (loopShape[i] - 1);
+                dataIdx2 -= strides2[i] * (loopShape[i] - 1);
+            }
+        }
 
-        return new HDArray(broadcastShape, resultData);
+        return result;
     }
 
     /**
@@ -542,7 +1347,26 @@ public class HDArray implements Cloneable {
     }
 
     /**
-     * Broadcast given array to target shape.
+     * Normalize the element in this array, where every element is the logarithm of a value. After normalization,
+     * the sum of {@code exp(x)} is one. This never underflows, since the normalization constant is kept in log.
+     * @throws ArithmeticException if every element is negative infinity, i.e. the sum of the values is zero.
+     * @see #logSumExp()
+     * @see #subi(double)
+     */
+    public void logNormalize() {
+        final double logSum = this.logSumExp();
+        if (logSum == Double.NEGATIVE_INFINITY) {
+            throw new ArithmeticException(Log.genLogMsg(this.getClass(),
+                    "Cannot normalize array with all elements equal to negative infinity"));
+        }
+        this.subi(logSum);
+    }
+
+    /**
+     * Broadcast given array to target shape. If given array has fewer dimensions than the target shape, it is
+     * padded in-front with dimensions of size 1. <br/>
+     * The returned array is a view sharing the data with given array. Broadcast dimensions have stride 0, so that
+     * every index along them refers to the same element. Therefore, the returned array should only be read.
      * @param array Array to broadcast.
      * @param targetShape Target shape.
      * @return Broadcast array.
@@ -560,8 +1384,10 @@ public class HDArray implements Cloneable {
                             "Given target shape should have at least " + array.rank() + " dimensions"));
         }
 
-        for (int i=0; i<array.shape.length; i++) {
-            final int originDim = array.shape[i];
+        final int[] paddedShape = HDArray.paddingArray(array.shape, targetShape.length);
+        final long[] paddedStrides = HDArray.paddingArray(array.strides, targetShape.length, 0L, true);
+        for (int i=0; i<targetShape.length; i++) {
+            final int originDim = paddedShape[i];
             final int targetDim = targetShape[i];
             if (originDim != targetDim && originDim != 1) {
                 throw new IllegalArgumentException(
@@ -569,29 +1395,13 @@ public class HDArray implements Cloneable {
                                 "Given array with shape " + Arrays.toString(array.shape) + " cannot be " +
                                         "broadcast to target shape " + Arrays.toString(targetShape)));
             }
-        }
-
-        // Detect which axis should be appended
-        final boolean[] appendAxis = new boolean[targetShape.length];
-        for (int i=0; i<targetShape.length; i++) {
-            appendAxis[i] = array.shape[i] != targetShape[i];
-        }
-
-        // Copy the element in the axis to be append
-        HDArray newArray = HDArray.createBySize(targetShape);
-        for (int flattenIdx=0; flattenIdx<newArray.data.length; flattenIdx++) {
-            int[] targetIndices = HDArray.flattenIdxToIndices(flattenIdx, targetShape);
-            int[] searchIndices = targetIndices.clone();
-            for (int i=0; i<targetIndices.length; i++) {
-                if (appendAxis[i]) {
-                    searchIndices[i] = 0;
-                }
+            // Repeat the only element along the broadcast axis
+            if (originDim != targetDim) {
+                paddedStrides[i] = 0;
             }
-            final double value = array.get(searchIndices);
-            newArray.set(value, targetIndices);
         }
 
-        return newArray;
+        return array.view(targetShape.clone(), paddedStrides, array.offset);
     }
 
     /**
@@ -670,7 +1480,31 @@ public class HDArray implements Cloneable {
     }
 
     /**
-     * Padding dimension to this array.
+     * Padding given array to given length and padding value. Same as
+     * {@link #paddingArray(int[], int, int, boolean)} for strides.
+     * @param array Array to padding.
+     * @param length Target length after padding.
+     * @param paddingValue Padding value.
+     * @param atFront {@code True} to padding in-front. Or else, padding at the end.
+     * @return Padded array.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if given length is smaller than array length.
+     */
+    protected static long[] paddingArray(final long[] array, final int length, final long paddingValue,
+                                         final boolean atFront) {
+        long[] newArray = new long[length];
+        if (atFront) {
+            System.arraycopy(array, 0, newArray, length - array.length, array.length);
+            Arrays.fill(newArray, 0, length - array.length, paddingValue);
+        } else {
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            Arrays.fill(newArray, array.length, length, paddingValue);
+        }
+        return newArray;
+    }
+
+    /**
+     * Padding dimension to this array. The returned array is a view sharing the data with this array.
      * @param targetLength Target length after padding.
      * @param atFront {@code True} to padding in-front. Or else, padding at the end.
      * @return Padded array.
@@ -683,7 +1517,100 @@ public class HDArray implements Cloneable {
                             "Given target length: " + targetLength +" is smaller than current length:" +
                                     this.shape.length));
         }
-        return this.reshape(HDArray.paddingArray(this.shape, targetLength, 1, atFront));
+        // Padded dimensions only have one element, so any stride can be used for them
+        return this.view(HDArray.paddingArray(this.shape, targetLength, 1, atFront),
+                HDArray.paddingArray(this.strides, targetLength, 0L, atFront), this.offset);
+    }
+
+    /**
+     * Compute the strides of a contiguous array in row-major order.
+     * @param shape Shape of array.
+     * @return Strides of each dimension.
+     * @throws NullPointerException if given shape is null.
+     */
+    protected static long[] contiguousStrides(final int... shape) {
+        Objects.requireNonNull(shape, Log.genLogMsg(HDArray.class, "Given shape should not be null"));
+        long[] strides = new long[shape.length];
+        long stride = 1;
+        for (int i = shape.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= shape[i];
+        }
+        return strides;
+    }
+
+    /**
+     * Merge adjacent dimensions which can be walked as one dimension in every given strides, i.e. the stride of the
+     * outer dimension equals the stride of the inner dimension times its size. Dimensions of size 1 are dropped.
+     * The merged shape and strides are written to the beginning of the given arrays.
+     * @param shape Shape. It is updated in place.
+     * @param strides Strides of each array walked together. They are updated in place.
+     * @return Number of merged dimensions, which is at least 1.
+     */
+    protected static int coalesceDimensions(final int[] shape, final long[]... strides) {
+        int rank = 0;
+        for (int i = 0; i < shape.length; i++) {
+            if (shape[i] == 1) {
+                continue;
+            }
+            boolean mergeable = rank > 0 && (long) shape[rank - 1] * shape[i] <= Integer.MAX_VALUE;
+            for (int k = 0; mergeable && k < strides.length; k++) {
+                mergeable = strides[k][rank - 1] == strides[k][i] * shape[i];
+            }
+            if (mergeable) {
+                shape[rank - 1] *= shape[i];
+                for (long[] stride : strides) {
+                    stride[rank - 1] = stride[i];
+                }
+            } else {
+                shape[rank] = shape[i];
+                for (long[] stride : strides) {
+                    stride[rank] = stride[i];
+                }
+                rank++;
+            }
+        }
+        if (rank == 0) {
+            shape[0] = 1;
+            for (long[] stride : strides) {
+                stride[0] = 0;
+            }
+            rank = 1;
+        }
+        return rank;
+    }
+
+    /**
+     * Convert indices to the position in {@link #data}. Indices are assumed to be verified.
+     * @param indices Indices.
+     * @return Position in {@link #data}.
+     */
+    protected long offsetOf(final int... indices) {
+        long dataIdx = this.offset;
+        for (int i = 0; i < indices.length; i++) {
+            dataIdx += indices[i] * this.strides[i];
+        }
+        return dataIdx;
+    }
+
+    /**
+     * Advance the {@code counter} to the next indices in row-major order, and return the corresponding position in
+     * the data array. The last dimension changes fastest. After the last element, the counter wraps around to zeros.
+     * @param counter Current indices. It is updated in place.
+     * @param shape Shape of array.
+     * @param strides Strides of array.
+     * @param dataIdx Position of the current indices in the data array.
+     * @return Position of the next indices in the data array.
+     */
+    protected static long nextOffset(final int[] counter, final int[] shape, final long[] strides, long dataIdx) {
+        for (int i = counter.length - 1; i >= 0; i--) {
+            if (++counter[i] < shape[i]) {
+                return dataIdx + strides[i];
+            }
+            counter[i] = 0;
+            dataIdx -= strides[i] * (shape[i] - 1);
+        }
+        return dataIdx;
     }
 
     /**
@@ -747,14 +1674,36 @@ public class HDArray implements Cloneable {
     }
 
     /**
-     * Count number of elements in given shape.
+     * Count number of elements in given shape, which is used as the length of a Java array.
      * @param shape Shape of array.
      * @return Number of elements.
      * @throws NullPointerException if given shape is null.
+     * @throws ArithmeticException if number of elements exceeds {@link Integer#MAX_VALUE}.
+     * @see #countElementExact(int...)
      */
     protected static int countElement(int... shape) {
+        final long count = HDArray.countElementExact(shape);
+        if (count > Integer.MAX_VALUE) {
+            throw new ArithmeticException(Log.genLogMsg(HDArray.class,
+                    "Number of elements of shape " + Arrays.toString(shape) + " exceeds " + Integer.MAX_VALUE));
+        }
+        return (int) count;
+    }
+
+    /**
+     * Count number of elements in given shape without overflow.
+     * @param shape Shape of array.
+     * @return Number of elements.
+     * @throws NullPointerException if given shape is null.
+     * @throws ArithmeticException if number of elements exceeds {@link Long#MAX_VALUE}.
+     */
+    protected static long countElementExact(int... shape) {
         Objects.requireNonNull(shape, Log.genLogMsg(HDArray.class, "Given shape should not be null"));
-        return Arrays.stream(shape).reduce(1, (a, b) -> a * b);
+        long count = 1;
+        for (int dim : shape) {
+            count = Math.multiplyExact(count, dim);
+        }
+        return count;
     }
 
     /**
@@ -784,18 +1733,40 @@ public class HDArray implements Cloneable {
 
     @Override
     public int hashCode() {
-        int result = Arrays.hashCode(this.data);
+        // Same as Arrays.hashCode of the elements in row-major order, regardless of the storage
+        int result = 1;
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        for (long i = 0; i < count; i++) {
+            result = 31 * result + Double.hashCode(this.valueAt(dataIdx));
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
         result = 31 * result + Arrays.hashCode(this.shape);
         return result;
     }
 
+    /**
+     * Two arrays are equal if they have same shape and their elements differ by at most {@code 1e-6},
+     * regardless of the precision of the storage.
+     * @param otherObj Another object.
+     * @return {@code True} if they are equal.
+     */
     @Override
     public boolean equals(Object otherObj) {
-        if (this.getClass() != otherObj.getClass()) return false;
-        HDArray otherArray = (HDArray) otherObj;
+        if (!(otherObj instanceof HDArray otherArray)) return false;
         if (!Arrays.equals(this.shape, otherArray.shape)) return false;
-        for (int idx=0; idx<this.data.length; idx++) {
-            if (Math.abs(this.data[idx] - otherArray.data[idx]) > 1e-6) return false;
+        if (this.isContiguous() && otherArray.isContiguous()) {
+            final long count = HDArray.countElementExact(this.shape);
+            for (long idx=0; idx<count; idx++) {
+                if (Math.abs(this.valueAt(idx) - otherArray.valueAt(idx)) > 1e-6) return false;
+            }
+            return true;
+        }
+        final double[] thisData = this.toArray();
+        final double[] otherData = otherArray.toArray();
+        for (int idx=0; idx<thisData.length; idx++) {
+            if (Math.abs(thisData[idx] - otherData[idx]) > 1e-6) return false;
         }
         return true;
     }
@@ -803,7 +1774,7 @@ public class HDArray implements Cloneable {
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
-        this.toStringHelper(result, this.data, this.shape, 0, new int[this.shape.length]);
+        this.toStringHelper(result, this.toArray(), this.shape, 0, new int[this.shape.length]);
         return result.toString();
     }
 
@@ -835,16 +1806,13 @@ public class HDArray implements Cloneable {
         }
     }
 
+    /**
+     * Deep copy this array. The copy is always contiguous and uses the same storage type as this array.
+     * @return Copy of this array.
+     */
     @Override
     public HDArray clone() {
-        try {
-            HDArray clone = (HDArray) super.clone();
-            clone.data = this.data.clone();
-            clone.shape = this.shape.clone();
-            return clone;
-        } catch (CloneNotSupportedException e) {
-            throw new AssertionError();
-        }
+        return this.copy();
     }
 
     protected interface elementOperation {
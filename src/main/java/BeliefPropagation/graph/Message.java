@@ -9,16 +9,26 @@ import java.util.stream.IntStream;
  * Message is a probability table with a list of variables.
  * Message class provides methods to calculate marginalization and product of messages.
  * Message class is immutable.
+ * <p>
+ *     A message can be stored in log domain, where every element is the natural logarithm of the probability.
+ *     Product of log domain messages becomes addition, and marginalization becomes log-sum-exp, so that long
+ *     products do not underflow. Messages in different domain cannot be combined.
+ * </p>
  * @see ProbabilityTable
  */
 public class Message extends ProbabilityTable {
+    /**
+     * {@code True} if the probability array stores the logarithm of the probability.
+     */
+    protected final boolean logDomain;
+
     /**
      * Constructor. Call {@link ProbabilityTable#ProbabilityTable(HDArray, List)}.
      * @param probability Probability distributions array.
      * @param variables Array of variables.
      */
     public Message(final HDArray probability, final Variable<?>... variables) {
-        super(probability, variables);
+        this(probability, Arrays.asList(variables));
     }
 
     /**
@@ -27,7 +37,44 @@ public class Message extends ProbabilityTable {
      * @param variables List of variables.
      */
     public Message(final HDArray probability, final List<Variable<?>> variables) {
-        super(probability, variables);
+        this(probability, variables, false);
+    }
+
+    /**
+     * Constructor. Call {@link ProbabilityTable#ProbabilityTable(HDArray, List)}.
+     * @param probability Probability distributions array, or its logarithm if {@code logDomain} is {@code True}.
+     * @param variables List of variables.
+     * @param logDomain {@code True} if given probability is in log domain.
+     */
+    public Message(final HDArray probability, final List<Variable<?>> variables, final boolean logDomain) {
+        this(probability, variables, logDomain, false);
+    }
+
+    /**
+     * Constructor. Call {@link ProbabilityTable#ProbabilityTable(HDArray, List, boolean, boolean)}.
+     * @param probability Probability distributions array, or its logarithm if {@code logDomain} is {@code True}.
+     * @param variables List of variables.
+     * @param logDomain {@code True} if given probability is in log domain.
+     * @param adopt {@code True} to keep given array instead of copying it.
+     */
+    protected Message(final HDArray probability, final List<Variable<?>> variables, final boolean logDomain,
+                      final boolean adopt) {
+        super(probability, variables, false, adopt);
+        this.logDomain = logDomain;
+    }
+
+    /**
+     * Create a message which keeps given array instead of copying it. Used for arrays just computed for the
+     * message, which are not referenced anywhere else.
+     * @param probability Probability distributions array, or its logarithm if {@code logDomain} is {@code True}.
+     * The caller should not use it afterwards.
+     * @param variables List of variables.
+     * @param logDomain {@code True} if given probability is in log domain.
+     * @return A new message sharing given array.
+     */
+    public static Message adopt(final HDArray probability, final List<Variable<?>> variables,
+                                final boolean logDomain) {
+        return new Message(probability, variables, logDomain, true);
     }
 
     /**
@@ -53,6 +100,7 @@ public class Message extends ProbabilityTable {
      */
     public Message(final Message otherMessage) {
         super(otherMessage);
+        this.logDomain = otherMessage.logDomain;
     }
 
     /**
@@ -61,6 +109,98 @@ public class Message extends ProbabilityTable {
      */
     public Message(final ProbabilityTable probabilityTable) {
         super(probabilityTable);
+        this.logDomain = false;
+    }
+
+    /**
+     * Create a message with equal probability for every state.
+     * @param logDomain {@code True} to create the message in log domain.
+     * @param variables List of variables.
+     * @return Uniform message. Every element is one, or zero in log domain.
+     */
+    public static Message createUniform(final boolean logDomain, final List<Variable<?>> variables) {
+        return Message.createUniform(logDomain, Precision.DOUBLE, variables);
+    }
+
+    /**
+     * Create a message with equal probability for every state.
+     * @param logDomain {@code True} to create the message in log domain.
+     * @param precision Precision of the probability array.
+     * @param variables List of variables.
+     * @return Uniform message. Every element is one, or zero in log domain.
+     * @throws NullPointerException if given precision or variables is null.
+     */
+    public static Message createUniform(final boolean logDomain, final Precision precision,
+                                        final List<Variable<?>> variables) {
+        Objects.requireNonNull(precision, Log.genLogMsg(Message.class, "Given precision should not be null"));
+        Objects.requireNonNull(variables, Log.genLogMsg(Message.class, "Given variables should not be null"));
+        final double value = logDomain ? 0.0d : 1.0d;
+        final int[] shape = variables.stream().mapToInt(Variable::getStateCount).toArray();
+        final double[] data = new double[HDArray.countElement(shape)];
+        Arrays.fill(data, value);
+        return new Message(precision.create(shape, data), variables, logDomain);
+    }
+
+    /**
+     * Create a message with equal probability for every state. Call {@link #createUniform(boolean, List)}.
+     * @param logDomain {@code True} to create the message in log domain.
+     * @param variables Array of variables.
+     * @return Uniform message.
+     */
+    public static Message createUniform(final boolean logDomain, final Variable<?>... variables) {
+        return Message.createUniform(logDomain, List.of(variables));
+    }
+
+    /**
+     * Check whether this message is stored in log domain.
+     * @return {@code True} if this message store the logarithm of the probability.
+     */
+    public boolean isLogDomain() {
+        return this.logDomain;
+    }
+
+    /**
+     * Get the precision of the probability array of this message.
+     * @return Precision of the probability array.
+     */
+    public Precision getPrecision() {
+        return this.probability.precision();
+    }
+
+    /**
+     * Convert this message into given precision.
+     * @param precision Target precision.
+     * @return A new message with the probability array stored in given precision.
+     * @throws NullPointerException if given precision is null.
+     */
+    public Message toPrecision(final Precision precision) {
+        Objects.requireNonNull(precision, Log.genLogMsg(this.getClass(), "Given precision should not be null"));
+        if (precision == this.getPrecision()) {
+            return new Message(this);
+        }
+        return new Message(this.probability.toPrecision(precision), this.variables, this.logDomain);
+    }
+
+    /**
+     * Convert this message into log domain.
+     * @return A new message storing the logarithm of the probability.
+     */
+    public Message toLogDomain() {
+        if (this.logDomain) {
+            return new Message(this);
+        }
+        return new Message(this.probability.log(), this.variables, true);
+    }
+
+    /**
+     * Convert this message into probability domain.
+     * @return A new message storing the probability.
+     */
+    public Message toProbabilityDomain() {
+        if (!this.logDomain) {
+            return new Message(this);
+        }
+        return new Message(this.probability.exp(), this.variables, false);
     }
 
     /**
@@ -116,15 +256,20 @@ public class Message extends ProbabilityTable {
         for (int i = 0; i < originalDimensions.length; i++) {
             newVariables.set(toDimensionIndices[i], variables.get(originalDimensions[i]));
         }
-        return new Message(newProbability, newVariables);
+        return new Message(newProbability, newVariables, this.logDomain);
     }
 
     /**
      * Normalize the probability distribution.
      * @see HDArray#normalize()
+     * @see HDArray#logNormalize()
      */
     public void normalize() {
-        this.probability.normalize();
+        if (this.logDomain) {
+            this.probability.logNormalize();
+        } else {
+            this.probability.normalize();
+        }
     }
 
     /**
@@ -185,10 +330,12 @@ public class Message extends ProbabilityTable {
         }
 
         int[] sumDimensions = Message.findIndices(message.variables, targetVariables);
-        HDArray newProbability = message.probability.sumAlongAxis(sumDimensions);
+        HDArray newProbability = message.logDomain ?
+                message.probability.logSumExpAlongAxis(sumDimensions) :
+                message.probability.sumAlongAxis(sumDimensions);
         List<Variable<?>> newVariables =
                 message.getVariables().stream().filter(var -> !targetVariables.contains(var)).toList();
-        return new Message(newProbability, newVariables);
+        return new Message(newProbability, newVariables, message.logDomain);
     }
 
     /**
@@ -197,7 +344,8 @@ public class Message extends ProbabilityTable {
      * @param message2 Message 2.
      * @return A new message which is the product of message 1 and message 2.
      * @throws NullPointerException If given message 1 or message 2 is null.
-     * @throws IllegalArgumentException If given message 1 and message 2 have at least one same variables.
+     * @throws IllegalArgumentException If given message 1 and message 2 have at least one same variables,
+     * or they are in different domain.
      * @see #messageProduct(List), #messageProduct(Message...)
      */
     public static Message messageProduct(final Message message1, final Message message2) {
@@ -206,6 +354,11 @@ public class Message extends ProbabilityTable {
         Objects.requireNonNull(message2, Log.genLogMsg(Message.class,
                 "Given message 2 should not be null"));
 
+        if (message1.logDomain != message2.logDomain) {
+            throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                    "Given message 1 and message 2 should be in the same domain"));
+        }
+
         // Check if message 1 and message 2 have at least one same variables
         if (Collections.disjoint(message1.variables, message2.variables)) {
             throw new IllegalArgumentException(Log.genLogMsg(Message.class,
@@ -238,8 +391,9 @@ public class Message extends ProbabilityTable {
         HDArray probability2 = message2.probability.moveAxis(originDims2, targetDims2);
         probability2 = probability2.appendDimension(newVariables.size(), true);
 
-        HDArray newProbability = probability1.mul(probability2);
-        return new Message(newProbability, newVariables);
+        // Product of probability is the sum of log probability
+        HDArray newProbability = message1.logDomain ? probability1.add(probability2) : probability1.mul(probability2);
+        return new Message(newProbability, newVariables, message1.logDomain);
     }
 
     /**
@@ -285,6 +439,192 @@ public class Message extends ProbabilityTable {
         return messages.stream().reduce(Message::messageProduct).get();
     }
 
+    /**
+     * Product of given {@code message} and {@code incomingMessages}, marginalized over the target variables. It is
+     * the same as {@link #messageMarginalization(Message, List)} of {@link #messageProduct(List)}, but the product
+     * is never created. Instead, the probability array of {@code message} is walked once, and each element times the
+     * corresponding elements of the incoming messages is accumulated straight into the result. <br/>
+     * This computes the message from a factor to a variable, where {@code message} is the factor and
+     * {@code incomingMessages} are the messages from the other variables.
+     * @param message Message containing all variables, such as the probability table of a factor.
+     * @param incomingMessages Messages to multiply. Their variables should be a subset of the variables of
+     *                         {@code message}.
+     * @param targetVariables Target variables to sum out.
+     * @return A new message over the remaining variables of {@code message}, kept in the same order.
+     * @throws NullPointerException If given message, incoming messages or target variables is null.
+     * @throws IllegalArgumentException If given incoming messages contain null element, or variables not in
+     * {@code message}, or they are in different domain, or given target variables contain null element or
+     * is not the subset of the message variables.
+     */
+    public static Message messageProductMarginalization(final Message message, final List<Message> incomingMessages,
+                                                        final List<Variable<?>> targetVariables) {
+        Objects.requireNonNull(message, Log.genLogMsg(Message.class,
+                "Given message should not be null"));
+        Objects.requireNonNull(incomingMessages, Log.genLogMsg(Message.class,
+                "Given incoming messages should not be null"));
+        Objects.requireNonNull(targetVariables, Log.genLogMsg(Message.class,
+                "Given target variables should not be null"));
+
+        // targetVariables cannot contain null element
+        if (targetVariables.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                    "Given target variables contain null element"));
+        }
+
+        // targetVariables should be the subset of the message variables
+        if (!new HashSet<>(message.variables).containsAll(targetVariables)) {
+            throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                    "Given target variables should be the subset of the message variables"));
+        }
+
+        // Resolve the variables of each incoming message to the axes of the message
+        final Message[] messages = new Message[incomingMessages.size()];
+        final int[][] incomingAxes = new int[messages.length][];
+        for (int k = 0; k < messages.length; k++) {
+            final Message incomingMessage = incomingMessages.get(k);
+            if (incomingMessage == null) {
+                throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                        "Given incoming messages contain null element"));
+            }
+            messages[k] = incomingMessage;
+            incomingAxes[k] = new int[incomingMessage.variables.size()];
+            for (int i = 0; i < incomingMessage.variables.size(); i++) {
+                final int axis = message.variables.indexOf(incomingMessage.variables.get(i));
+                if (axis < 0) {
+                    throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                            "Variable " + incomingMessage.variables.get(i) + " of incoming message is not in " +
+                                    "given message"));
+                }
+                incomingAxes[k][i] = axis;
+            }
+        }
+
+        final int[] sumDimensions = Message.findIndices(message.variables, targetVariables);
+        final List<Variable<?>> newVariables =
+                message.getVariables().stream().filter(var -> !targetVariables.contains(var)).toList();
+        return Message.messageProductMarginalization(message, messages, incomingAxes, sumDimensions, newVariables);
+    }
+
+    /**
+     * Product of given {@code message} and {@code incomingMessages}, marginalized over given axes. It is
+     * {@link #messageProductMarginalization(Message, List, List)} with the variables already resolved to the axes of
+     * {@code message}, so that a message update computed repeatedly does not search the variable lists again.
+     * The resolved axes are trusted and not verified.
+     * @param message Message containing all variables, such as the probability table of a factor.
+     * @param incomingMessages Messages to multiply.
+     * @param incomingAxes For each incoming message, the axis of {@code message} of each of its variables.
+     * @param sumAxes Axes of {@code message} to sum out.
+     * @param newVariables Variables of the result, i.e. the variables of {@code message} not summed out in order.
+     * @return A new message over {@code newVariables}.
+     * @throws NullPointerException If any of given arguments is null.
+     * @throws IllegalArgumentException If given incoming messages are in different domain from {@code message},
+     * or the number of incoming messages and their axes mismatch.
+     */
+    public static Message messageProductMarginalization(final Message message, final Message[] incomingMessages,
+                                                        final int[][] incomingAxes, final int[] sumAxes,
+                                                        final List<Variable<?>> newVariables) {
+        Objects.requireNonNull(message, Log.genLogMsg(Message.class,
+                "Given message should not be null"));
+        Objects.requireNonNull(incomingMessages, Log.genLogMsg(Message.class,
+                "Given incoming messages should not be null"));
+        Objects.requireNonNull(incomingAxes, Log.genLogMsg(Message.class,
+                "Given incoming axes should not be null"));
+        Objects.requireNonNull(sumAxes, Log.genLogMsg(Message.class,
+                "Given sum axes should not be null"));
+        Objects.requireNonNull(newVariables, Log.genLogMsg(Message.class,
+                "Given new variables should not be null"));
+        if (incomingMessages.length != incomingAxes.length) {
+            throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                    "Given incoming messages and incoming axes should have same length"));
+        }
+
+        // Align each incoming message to the axes of the message, where its missing variables are repeated
+        final int rank = message.variables.size();
+        final HDArray[] operands = new HDArray[incomingMessages.length];
+        for (int k = 0; k < operands.length; k++) {
+            final HDArray probability = incomingMessages[k].probability;
+            if (incomingMessages[k].logDomain != message.logDomain) {
+                throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                        "Given incoming messages should be in the same domain as given message"));
+            }
+            final int[] shape = new int[rank];
+            final long[] strides = new long[rank];
+            Arrays.fill(shape, 1);
+            for (int i = 0; i < incomingAxes[k].length; i++) {
+                shape[incomingAxes[k][i]] = probability.shape[i];
+                strides[incomingAxes[k][i]] = probability.strides[i];
+            }
+            operands[k] = probability.view(shape, strides, probability.offset);
+        }
+
+        final HDArray newProbability = message.logDomain ?
+                message.probability.addLogSumExpAlongAxis(operands, sumAxes) :
+                message.probability.mulSumAlongAxis(operands, sumAxes);
+        return adopt(newProbability, newVariables, message.logDomain);
+    }
+
+    /**
+     * Compute {@link #messageProductMarginalization(Message, Message[], int[][], int[], List)} into given output
+     * message, whose array is overwritten. The alignment of every incoming message to the axes of {@code message}
+     * is precomputed, e.g. by {@link BeliefPropagation.alg.propagation.MessageUpdatePlan}, so that a message
+     * computed repeatedly neither resolves the axes nor allocates a new array.
+     * @param message Message of the factor.
+     * @param incomingMessages Messages to multiply. Each of them should be over a subset of the variables of
+     *                         {@code message}.
+     * @param alignedShapes Shape of each incoming message aligned to the axes of {@code message}, i.e. {@code 1}
+     *                      along the axes the incoming message does not have.
+     * @param alignedStrides Strides of each incoming message aligned to the axes of {@code message}, assuming it is
+     *                       contiguous, i.e. {@code 0} along the axes the incoming message does not have. An incoming
+     *                       message which is not contiguous is copied first.
+     * @param sumAxes Axes of {@code message} to sum out.
+     * @param output Message over the variables of {@code message} not summed out, in the same domain.
+     * @return Given output message.
+     * @throws NullPointerException If any of given arguments is null.
+     * @throws IllegalArgumentException If given messages are in different domain, or the number of incoming
+     * messages and their alignment mismatch, or an incoming message does not match its aligned shape, or the output
+     * message does not have the shape of the result.
+     */
+    public static Message messageProductMarginalization(final Message message, final Message[] incomingMessages,
+                                                        final int[][] alignedShapes, final long[][] alignedStrides,
+                                                        final int[] sumAxes, final Message output) {
+        Objects.requireNonNull(message, Log.genLogMsg(Message.class,
+                "Given message should not be null"));
+        Objects.requireNonNull(incomingMessages, Log.genLogMsg(Message.class,
+                "Given incoming messages should not be null"));
+        Objects.requireNonNull(alignedShapes, Log.genLogMsg(Message.class,
+                "Given aligned shapes should not be null"));
+        Objects.requireNonNull(alignedStrides, Log.genLogMsg(Message.class,
+                "Given aligned strides should not be null"));
+        Objects.requireNonNull(sumAxes, Log.genLogMsg(Message.class,
+                "Given sum axes should not be null"));
+        Objects.requireNonNull(output, Log.genLogMsg(Message.class,
+                "Given output message should not be null"));
+        if (incomingMessages.length != alignedShapes.length || incomingMessages.length != alignedStrides.length) {
+            throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                    "Given incoming messages, aligned shapes and aligned strides should have same length"));
+        }
+        if (output.logDomain != message.logDomain) {
+            throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                    "Given output message should be in the same domain as given message"));
+        }
+
+        final HDArray[] operands = new HDArray[incomingMessages.length];
+        for (int k = 0; k < operands.length; k++) {
+            final HDArray probability = incomingMessages[k].probability.contiguous();
+            if (incomingMessages[k].logDomain != message.logDomain) {
+                throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                        "Given incoming messages should be in the same domain as given message"));
+            }
+            if (HDArray.countElementExact(alignedShapes[k]) != HDArray.countElementExact(probability.shape)) {
+                throw new IllegalArgumentException(Log.genLogMsg(Message.class,
+                        "Given incoming message does not match its aligned shape"));
+            }
+            operands[k] = probability.view(alignedShapes[k], alignedStrides[k], 0);
+        }
+        message.probability.productAlongAxis(operands, message.logDomain, output.probability, sumAxes);
+        return output;
+    }
+
     @Override
     public int hashCode() {
         return super.hashCode();
@@ -294,6 +634,7 @@ public class Message extends ProbabilityTable {
     public boolean equals(Object otherObj) {
         if (this == otherObj) return true;
         if (otherObj == null || this.getClass() != otherObj.getClass()) return false;
+        if (this.logDomain != ((Message) otherObj).logDomain) return false;
         return super.equals(otherObj);
     }
 
@@ -304,6 +645,6 @@ public class Message extends ProbabilityTable {
 
     @Override
     public Object clone() {
-        return new Message((ProbabilityTable) super.clone());
+        return new Message(this);
     }
 }
@@ -0,0 +1,107 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arena owning the memory of {@link OffHeapHDArray}. <br/>
+ * Every array allocated by this arena, and every result of an operation on such array, is closed together when
+ * this arena is closed. Closing only detaches the memory from the arrays: the native memory is freed when the garbage
+ * collector reclaims the direct buffers, see {@link OffHeapHDArray}. It is intended to be used in a try-with-resources
+ * block:
+ * <pre>{@code
+ * try (OffHeapArena arena = new OffHeapArena()) {
+ *     OffHeapHDArray table = arena.copyOf(HDArray.create(data));
+ *     HDArray marginal = table.sumAlongAxis(0);
+ * }
+ * }</pre>
+ */
+public class OffHeapArena implements AutoCloseable {
+    /**
+     * Memory allocated in this arena.
+     */
+    private final List<OffHeapHDArray.Storage> storages;
+    /**
+     * Number of bits of the position inside a chunk of the allocated arrays.
+     */
+    private final int chunkShift;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     */
+    public OffHeapArena() {
+        this(OffHeapHDArray.DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Constructor with given chunk size. Small chunks are only useful to test the addressing across chunks.
+     * @param chunkShift Number of bits of the position inside a chunk.
+     */
+    OffHeapArena(final int chunkShift) {
+        this.storages = new ArrayList<>();
+        this.chunkShift = chunkShift;
+        this.closed = false;
+    }
+
+    /**
+     * Allocate an array filled with zero in this arena.
+     * @param shape Shape of the array.
+     * @return OffHeapHDArray filled with zero.
+     * @throws NullPointerException if given shape is null.
+     * @throws IllegalStateException if this arena is closed.
+     */
+    public OffHeapHDArray allocate(final int... shape) {
+        return OffHeapHDArray.createBySize(this, this.chunkShift, shape);
+    }
+
+    /**
+     * Copy given array into this arena.
+     * @param array Array to copy.
+     * @return Copied array.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalStateException if this arena is closed.
+     */
+    public OffHeapHDArray copyOf(final HDArray array) {
+        return OffHeapHDArray.copyOf(this, this.chunkShift, array);
+    }
+
+    /**
+     * Register memory to be closed with this arena.
+     * @param storage Memory allocated in this arena.
+     * @throws IllegalStateException if this arena is closed.
+     */
+    synchronized void register(final OffHeapHDArray.Storage storage) {
+        if (this.closed) {
+            storage.close();
+            throw new IllegalStateException(Log.genLogMsg(this.getClass(), "Arena is already closed"));
+        }
+        this.storages.add(storage);
+    }
+
+    /**
+     * Check whether this arena is closed.
+     * @return {@code True} if this arena is closed.
+     */
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Close every array allocated in this arena, detaching its memory. The memory is freed once it is garbage
+     * collected. Calling it more than once has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        for (OffHeapHDArray.Storage storage : this.storages) {
+            storage.close();
+        }
+        this.storages.clear();
+    }
+}
@@ -0,0 +1,273 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Objects;
+
+/**
+ * {@link HDArray} storing its elements outside the Java heap. <br/>
+ * The elements are stored in direct {@link ByteBuffer} chunks and addressed by {@code long}, so that the array is
+ * not scanned nor moved by the garbage collector, and it can hold more than {@link Integer#MAX_VALUE} elements. <br/>
+ * {@link #close()}, or closing the {@link OffHeapArena} the array is allocated in, only detaches the memory from the
+ * array. It does not free the memory: the direct buffers return it once they are garbage collected, so that a thread
+ * still reading the array never reads freed memory. Closing bounds how long the memory stays reachable, but the
+ * release itself depends on the garbage collector. Allocating past {@code -XX:MaxDirectMemorySize} makes the JVM
+ * run a full collection to reclaim the detached buffers, so the limit should leave room for the arrays which are
+ * closed but not collected yet. <br/>
+ * Views, such as the result of {@link #moveAxis(int[], int[])}, share the memory with the viewed array, and closing
+ * any of them detaches the memory of all of them. Result of an operation on this array is allocated in the same
+ * arena. Accessing an array after it is closed throws {@link IllegalStateException}.
+ * @see OffHeapArena
+ */
+public class OffHeapHDArray extends HDArray implements AutoCloseable {
+    /**
+     * Number of bits of the position inside a chunk. Each chunk holds {@code 2^26} elements, i.e. 512 MiB.
+     */
+    protected static final int DEFAULT_CHUNK_SHIFT = 26;
+    /**
+     * Memory storing the elements. It is shared by the views of this array.
+     */
+    protected final Storage storage;
+
+    /**
+     * Constructor of a view. The given storage is shared without copy.
+     * @param shape Shape of the view.
+     * @param strides Strides of the view.
+     * @param offset Position of the first element in {@code storage}.
+     * @param storage Memory shared with the viewed array.
+     */
+    protected OffHeapHDArray(final int[] shape, final long[] strides, final long offset, final Storage storage) {
+        super(shape, strides, offset, null);
+        this.storage = storage;
+    }
+
+    /**
+     * Allocate an array filled with zero. The array is not owned by any arena, so it should be closed by the caller.
+     * @param shape Shape of this array.
+     * @return OffHeapHDArray filled with zero.
+     * @throws NullPointerException if given shape is null.
+     * @see OffHeapArena#allocate(int...)
+     */
+    public static OffHeapHDArray createBySize(final int... shape) {
+        return OffHeapHDArray.createBySize(null, OffHeapHDArray.DEFAULT_CHUNK_SHIFT, shape);
+    }
+
+    /**
+     * Copy given array outside the Java heap. The array is not owned by any arena, so it should be closed by the
+     * caller.
+     * @param array Array to copy.
+     * @return Copied array.
+     * @throws NullPointerException if given array is null.
+     * @see OffHeapArena#copyOf(HDArray)
+     */
+    public static OffHeapHDArray create(final HDArray array) {
+        return OffHeapHDArray.copyOf(null, OffHeapHDArray.DEFAULT_CHUNK_SHIFT, array);
+    }
+
+    /**
+     * Allocate an array filled with zero.
+     * @param arena Arena owning the memory. Null if the memory is not owned by any arena.
+     * @param chunkShift Number of bits of the position inside a chunk.
+     * @param shape Shape of this array.
+     * @return OffHeapHDArray filled with zero.
+     */
+    static OffHeapHDArray createBySize(final OffHeapArena arena, final int chunkShift, final int... shape) {
+        Objects.requireNonNull(shape, Log.genLogMsg(OffHeapHDArray.class, "Given shape should not be null"));
+        final Storage storage = new Storage(HDArray.countElementExact(shape), chunkShift, arena);
+        return new OffHeapHDArray(shape.clone(), HDArray.contiguousStrides(shape), 0, storage);
+    }
+
+    /**
+     * Copy given array outside the Java heap.
+     * @param arena Arena owning the memory. Null if the memory is not owned by any arena.
+     * @param chunkShift Number of bits of the position inside a chunk.
+     * @param array Array to copy.
+     * @return Copied array.
+     */
+    static OffHeapHDArray copyOf(final OffHeapArena arena, final int chunkShift, final HDArray array) {
+        Objects.requireNonNull(array, Log.genLogMsg(OffHeapHDArray.class, "Given array should not be null"));
+        final OffHeapHDArray result = OffHeapHDArray.createBySize(arena, chunkShift, array.shape());
+        final int[] counter = new int[array.rank()];
+        final long count = HDArray.countElementExact(array.shape);
+        long dataIdx = array.offset;
+        for (long i = 0; i < count; i++) {
+            result.setValueAt(i, array.valueAt(dataIdx));
+            dataIdx = HDArray.nextOffset(counter, array.shape, array.strides, dataIdx);
+        }
+        return result;
+    }
+
+    /**
+     * Get the arena owning the memory of this array.
+     * @return Arena owning the memory. Null if the memory is not owned by any arena.
+     */
+    public OffHeapArena getArena() {
+        return this.storage.arena;
+    }
+
+    /**
+     * Check whether this array is closed.
+     * @return {@code True} if the memory is detached from this array.
+     */
+    public boolean isClosed() {
+        return this.storage.isClosed();
+    }
+
+    /**
+     * Detach the memory from this array and all the views sharing it. The memory is freed once it is garbage
+     * collected. Calling it more than once has no effect.
+     */
+    @Override
+    public void close() {
+        this.storage.close();
+    }
+
+    @Override
+    protected double valueAt(final long dataIdx) {
+        return this.storage.get(dataIdx);
+    }
+
+    @Override
+    protected void setValueAt(final long dataIdx, final double value) {
+        this.storage.set(dataIdx, value);
+    }
+
+    @Override
+    protected long storageSize() {
+        return this.storage.size;
+    }
+
+    @Override
+    protected HDArray view(final int[] shape, final long[] strides, final long offset) {
+        return new OffHeapHDArray(shape, strides, offset, this.storage);
+    }
+
+    @Override
+    protected HDArray allocate(final int[] shape) {
+        return OffHeapHDArray.createBySize(this.storage.arena, this.storage.chunkShift, shape);
+    }
+
+    @Override
+    protected HDArray wrap(final int[] shape, final double[] values) {
+        final OffHeapHDArray result = OffHeapHDArray.createBySize(this.storage.arena, this.storage.chunkShift, shape);
+        for (int i = 0; i < values.length; i++) {
+            result.storage.set(i, values[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public OffHeapHDArray clone() {
+        return (OffHeapHDArray) super.clone();
+    }
+
+    /**
+     * Memory outside the Java heap, split into chunks of {@code 2^chunkShift} elements since a {@link ByteBuffer}
+     * is indexed by {@code int}.
+     */
+    protected static class Storage implements AutoCloseable {
+        /**
+         * Number of elements.
+         */
+        protected final long size;
+        /**
+         * Number of bits of the position inside a chunk.
+         */
+        protected final int chunkShift;
+        /**
+         * Arena owning this memory. Null if it is not owned by any arena.
+         */
+        protected final OffHeapArena arena;
+        private final long chunkMask;
+        /**
+         * Chunks of the memory, or {@code null} once it is detached. It is volatile so that every thread sees the
+         * release.
+         */
+        private volatile DoubleBuffer[] chunks;
+
+        /**
+         * Allocate memory filled with zero.
+         * @param size Number of elements.
+         * @param chunkShift Number of bits of the position inside a chunk.
+         * @param arena Arena owning this memory. Null if it is not owned by any arena.
+         * @throws IllegalArgumentException if given size is negative, or given chunk shift is not in [1, 27].
+         * @throws IllegalStateException if given arena is closed.
+         */
+        protected Storage(final long size, final int chunkShift, final OffHeapArena arena) {
+            if (size < 0) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.getClass(), "Given size should not be negative"));
+            }
+            // A chunk of 2^28 elements would exceed the capacity of a ByteBuffer
+            if (chunkShift < 1 || chunkShift > 27) {
+                throw new IllegalArgumentException(Log.genLogMsg(this.getClass(),
+                        "Given chunk shift should be in [1, 27], but given " + chunkShift));
+            }
+            this.size = size;
+            this.chunkShift = chunkShift;
+            this.chunkMask = (1L << chunkShift) - 1;
+            this.arena = arena;
+
+            final long chunkSize = 1L << chunkShift;
+            final int chunkCount = (int) ((size + chunkSize - 1) >>> chunkShift);
+            final DoubleBuffer[] chunks = new DoubleBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                final long elementCount = Math.min(chunkSize, size - i * chunkSize);
+                chunks[i] = ByteBuffer.allocateDirect((int) (elementCount * Double.BYTES))
+                        .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+            this.chunks = chunks;
+            if (arena != null) {
+                arena.register(this);
+            }
+        }
+
+        /**
+         * Get element at given position.
+         * @param idx Position.
+         * @return Element at given position.
+         * @throws IllegalStateException if this memory is detached.
+         */
+        protected double get(final long idx) {
+            return this.chunks()[(int) (idx >>> this.chunkShift)].get((int) (idx & this.chunkMask));
+        }
+
+        /**
+         * Set element at given position.
+         * @param idx Position.
+         * @param value Value to set.
+         * @throws IllegalStateException if this memory is detached.
+         */
+        protected void set(final long idx, final double value) {
+            this.chunks()[(int) (idx >>> this.chunkShift)].put((int) (idx & this.chunkMask), value);
+        }
+
+        /**
+         * Check whether this memory is detached.
+         * @return {@code True} if this memory is detached.
+         */
+        protected boolean isClosed() {
+            return this.chunks == null;
+        }
+
+        private DoubleBuffer[] chunks() {
+            final DoubleBuffer[] chunks = this.chunks;
+            if (chunks == null) {
+                throw new IllegalStateException(Log.genLogMsg(this.getClass(), "Off-heap memory is already closed"));
+            }
+            return chunks;
+        }
+
+        /**
+         * Detach this memory. The chunks are dropped, and their native memory is freed by the cleaner of the direct
+         * buffers when they are garbage collected, i.e. once no thread reads them anymore. Calling it more than once
+         * has no effect.
+         */
+        @Override
+        public void close() {
+            this.chunks = null;
+        }
+    }
+}
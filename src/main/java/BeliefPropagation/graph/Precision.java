@@ -0,0 +1,36 @@
+package BeliefPropagation.graph;
+
+/**
+ * Precision of the storage of {@link HDArray}. <br/>
+ * {@link #FLOAT} halves the memory and the bandwidth of large tables at the cost of accuracy. Computation is always
+ * accumulated in {@code double}; only the stored elements are rounded.
+ */
+public enum Precision {
+    /**
+     * Elements are stored as {@code double}. See {@link HDArray}.
+     */
+    DOUBLE {
+        @Override
+        public HDArray create(final int[] shape, final double[] values) {
+            return new HDArray(shape, values);
+        }
+    },
+    /**
+     * Elements are stored as {@code float}. See {@link FloatHDArray}.
+     */
+    FLOAT {
+        @Override
+        public HDArray create(final int[] shape, final double[] values) {
+            return new FloatHDArray(shape, values);
+        }
+    };
+
+    /**
+     * Create a contiguous array with this precision.
+     * @param shape Shape of the array.
+     * @param values Elements in row-major order.
+     * @return Array holding given elements.
+     * @throws NullPointerException if given shape or values is null.
+     */
+    public abstract HDArray create(final int[] shape, final double[] values);
+}
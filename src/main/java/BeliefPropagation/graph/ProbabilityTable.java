@@ -48,6 +48,32 @@ public class ProbabilityTable implements Cloneable {
      * @param variables List of variables.
      */
     public ProbabilityTable(final HDArray probability, final List<Variable<?>> variables) {
+        this(probability, variables, false);
+    }
+
+    /**
+     * Constructor choosing the storage of the copied probability array.
+     * @param probability Probability distributions array.
+     * @param variables List of variables.
+     * @param selectStorage {@code True} to copy the array into sparse or dense storage by its ratio of nonzero
+     * elements, see {@link SparseHDArray#autoSelect(HDArray)}. The array should store probabilities, not log values.
+     */
+    protected ProbabilityTable(final HDArray probability, final List<Variable<?>> variables,
+                               final boolean selectStorage) {
+        this(probability, variables, selectStorage, false);
+    }
+
+    /**
+     * Constructor choosing whether the probability array is copied.
+     * @param probability Probability distributions array.
+     * @param variables List of variables.
+     * @param selectStorage {@code True} to copy the array into sparse or dense storage by its ratio of nonzero
+     * elements, see {@link SparseHDArray#autoSelect(HDArray)}. Ignored if {@code adopt} is {@code True}.
+     * @param adopt {@code True} to keep given array as it is instead of copying it. The caller should not use the
+     * array afterwards, e.g. when it has just been computed for this table.
+     */
+    protected ProbabilityTable(final HDArray probability, final List<Variable<?>> variables,
+                               final boolean selectStorage, final boolean adopt) {
         Objects.requireNonNull(probability, Log.genLogMsg(
                 this.getClass(), "Given probability should not be null")
         );
@@ -83,8 +109,12 @@ public class ProbabilityTable implements Cloneable {
             }
         }
 
-        // Deep copy
-        this.probability = probability.clone();
+        // Deep copy, unless the array is adopted
+        if (adopt) {
+            this.probability = probability;
+        } else {
+            this.probability = selectStorage ? SparseHDArray.autoSelect(probability) : probability.clone();
+        }
         this.variables = new ArrayList<>(variables);
     }
 
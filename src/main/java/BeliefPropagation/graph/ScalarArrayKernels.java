@@ -0,0 +1,51 @@
+package BeliefPropagation.graph;
+
+/**
+ * Scalar implementation of {@link ArrayKernels}. The operation is selected once per row, so that each loop is
+ * simple enough for the JIT compiler to unroll.
+ */
+final class ScalarArrayKernels {
+    private ScalarArrayKernels() {
+    }
+
+    /**
+     * See {@link ArrayKernels#sum(double[], int, int)}.
+     */
+    static double sum(final double[] a, final int from, final int length) {
+        double sum = 0.0d;
+        for (int i = from; i < from + length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    /**
+     * See {@link ArrayKernels#binary(Arithmetic, double[], int, int, double[], int, int, double[], int, int)}.
+     */
+    static void binary(final Arithmetic operation, final double[] a, final int aFrom, final int aStride,
+                       final double[] b, final int bFrom, final int bStride, final double[] r, final int rFrom,
+                       final int length) {
+        switch (operation) {
+            case ADD -> {
+                for (int i = 0; i < length; i++) {
+                    r[rFrom + i] = a[aFrom + i * aStride] + b[bFrom + i * bStride];
+                }
+            }
+            case SUB -> {
+                for (int i = 0; i < length; i++) {
+                    r[rFrom + i] = a[aFrom + i * aStride] - b[bFrom + i * bStride];
+                }
+            }
+            case MUL -> {
+                for (int i = 0; i < length; i++) {
+                    r[rFrom + i] = a[aFrom + i * aStride] * b[bFrom + i * bStride];
+                }
+            }
+            case DIV -> {
+                for (int i = 0; i < length; i++) {
+                    r[rFrom + i] = a[aFrom + i * aStride] / b[bFrom + i * bStride];
+                }
+            }
+        }
+    }
+}
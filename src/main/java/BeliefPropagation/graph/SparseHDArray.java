@@ -0,0 +1,744 @@
+package BeliefPropagation.graph;
+
+import BeliefPropagation.utils.Log;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * {@link HDArray} storing only its nonzero elements. <br/>
+ * Nonzero elements are stored as sorted coordinates, i.e. the positions in the storage, with their values.
+ * It is suitable for tables which are mostly zeros, such as logical constraints and deterministic conditional
+ * probability tables. <br/>
+ * {@link #sum()}, {@link #sumAlongAxis(int...)}, {@link #mul(HDArray)} and the operations keeping zero as zero,
+ * such as {@link #mul(double)} and {@link #normalize()}, cost time proportional to the number of nonzero
+ * elements. Zeros are structural, so that {@code 0 * x} is zero even if {@code x} is infinity or NaN. Other
+ * operations are supported by looking up each element, and return dense arrays when zeros do not stay zeros,
+ * such as {@link #log()}. <br/>
+ * Views, such as the result of {@link #moveAxis(int[], int[])}, share the nonzero elements with the viewed array.
+ * @see #autoSelect(HDArray)
+ */
+public class SparseHDArray extends HDArray {
+    /**
+     * Default maximum ratio of nonzero elements for a table to be stored as sparse.
+     */
+    public static final double DEFAULT_DENSITY_THRESHOLD = 0.25d;
+    /**
+     * Minimum number of elements for a table to be stored as sparse. Smaller tables are cheap enough in dense.
+     */
+    public static final int MIN_SPARSE_SIZE = 64;
+    /**
+     * Nonzero elements. It is shared by the views of this array.
+     */
+    protected final Entries entries;
+    /**
+     * Number of elements, including zeros, of the storage.
+     */
+    protected final long denseSize;
+
+    /**
+     * Constructor of a view. The given entries are shared without copy.
+     * @param shape Shape of the view.
+     * @param strides Strides of the view.
+     * @param offset Position of the first element in the storage.
+     * @param entries Nonzero elements shared with the viewed array.
+     * @param denseSize Number of elements, including zeros, of the storage.
+     */
+    protected SparseHDArray(final int[] shape, final long[] strides, final long offset, final Entries entries,
+                            final long denseSize) {
+        super(shape, strides, offset, null);
+        this.entries = entries;
+        this.denseSize = denseSize;
+    }
+
+    /**
+     * Constructor by size. All elements are zero.
+     * @param shape Shape of this array.
+     * @return SparseHDArray without nonzero element.
+     * @throws NullPointerException if given shape is null.
+     */
+    public static SparseHDArray createBySize(final int... shape) {
+        Objects.requireNonNull(shape, Log.genLogMsg(SparseHDArray.class, "Given shape should not be null"));
+        return new SparseHDArray(shape.clone(), HDArray.contiguousStrides(shape), 0, new Entries(0),
+                HDArray.countElementExact(shape));
+    }
+
+    /**
+     * Copy the nonzero elements of given array.
+     * @param array Array to copy.
+     * @return Sparse copy of given array.
+     * @throws NullPointerException if given array is null.
+     */
+    public static SparseHDArray create(final HDArray array) {
+        Objects.requireNonNull(array, Log.genLogMsg(SparseHDArray.class, "Given array should not be null"));
+        if (array instanceof SparseHDArray sparseArray) {
+            return sparseArray.clone();
+        }
+        final Entries entries = new Entries(0);
+        final int[] counter = new int[array.rank()];
+        final long count = HDArray.countElementExact(array.shape);
+        long dataIdx = array.offset;
+        for (long i = 0; i < count; i++) {
+            final double value = array.valueAt(dataIdx);
+            if (value != 0.0d) {
+                entries.append(i, value);
+            }
+            dataIdx = HDArray.nextOffset(counter, array.shape, array.strides, dataIdx);
+        }
+        return new SparseHDArray(array.shape.clone(), HDArray.contiguousStrides(array.shape), 0, entries, count);
+    }
+
+    /**
+     * Copy given array into sparse or dense storage by {@link #DEFAULT_DENSITY_THRESHOLD}.
+     * @param array Array to copy.
+     * @return Copy of given array.
+     * @see #autoSelect(HDArray, double)
+     */
+    public static HDArray autoSelect(final HDArray array) {
+        return SparseHDArray.autoSelect(array, SparseHDArray.DEFAULT_DENSITY_THRESHOLD);
+    }
+
+    /**
+     * Copy given array into sparse or dense storage. An array is stored as sparse if it has at least
+     * {@link #MIN_SPARSE_SIZE} elements, and the ratio of nonzero elements is at most given threshold. <br/>
+     * Only {@code double} on-heap arrays are considered. Other storage, such as {@link FloatHDArray}, is kept.
+     * @param array Array to copy.
+     * @param densityThreshold Maximum ratio of nonzero elements to be stored as sparse.
+     * @return Copy of given array, which is a {@link SparseHDArray} if it is sparse enough.
+     * @throws NullPointerException if given array is null.
+     */
+    public static HDArray autoSelect(final HDArray array, final double densityThreshold) {
+        Objects.requireNonNull(array, Log.genLogMsg(SparseHDArray.class, "Given array should not be null"));
+        final boolean isSparse = array instanceof SparseHDArray;
+        if (!isSparse && array.getClass() != HDArray.class) {
+            return array.clone();
+        }
+        final long count = HDArray.countElementExact(array.shape);
+        if (count < SparseHDArray.MIN_SPARSE_SIZE) {
+            return isSparse ? new HDArray(array.shape, array.toArray()) : array.clone();
+        }
+        final long nonZeroCount = isSparse ? ((SparseHDArray) array).nonZeroCount() : SparseHDArray.countNonZero(array);
+        if (nonZeroCount <= densityThreshold * count) {
+            return SparseHDArray.create(array);
+        }
+        return isSparse ? new HDArray(array.shape, array.toArray()) : array.clone();
+    }
+
+    /**
+     * Count the nonzero elements of given array.
+     * @param array Array to count.
+     * @return Number of nonzero elements.
+     */
+    protected static long countNonZero(final HDArray array) {
+        final int[] counter = new int[array.rank()];
+        final long count = HDArray.countElementExact(array.shape);
+        long dataIdx = array.offset;
+        long nonZeroCount = 0;
+        for (long i = 0; i < count; i++) {
+            if (array.valueAt(dataIdx) != 0.0d) {
+                nonZeroCount++;
+            }
+            dataIdx = HDArray.nextOffset(counter, array.shape, array.strides, dataIdx);
+        }
+        return nonZeroCount;
+    }
+
+    /**
+     * Get the number of nonzero elements of this array.
+     * @return Number of nonzero elements.
+     */
+    public long nonZeroCount() {
+        return this.compact().entries.size;
+    }
+
+    /**
+     * Get the ratio of nonzero elements of this array.
+     * @return Ratio of nonzero elements.
+     */
+    public double density() {
+        return (double) this.nonZeroCount() / HDArray.countElementExact(this.shape);
+    }
+
+    @Override
+    protected double valueAt(final long dataIdx) {
+        return this.entries.get(dataIdx);
+    }
+
+    @Override
+    protected void setValueAt(final long dataIdx, final double value) {
+        this.entries.set(dataIdx, value);
+    }
+
+    @Override
+    protected long storageSize() {
+        return this.denseSize;
+    }
+
+    @Override
+    protected HDArray view(final int[] shape, final long[] strides, final long offset) {
+        return new SparseHDArray(shape, strides, offset, this.entries, this.denseSize);
+    }
+
+    /**
+     * Create a dense array filled with zero. It is used by the operations which do not keep zero as zero.
+     * @param shape Shape of the new array.
+     * @return New dense array.
+     */
+    @Override
+    protected HDArray allocate(final int[] shape) {
+        return new HDArray(shape, HDArray.contiguousStrides(shape), 0, new double[HDArray.countElement(shape)]);
+    }
+
+    @Override
+    protected HDArray wrap(final int[] shape, final double[] values) {
+        final Entries newEntries = new Entries(0);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0.0d) {
+                newEntries.append(i, values[i]);
+            }
+        }
+        return new SparseHDArray(shape, HDArray.contiguousStrides(shape), 0, newEntries, values.length);
+    }
+
+    /**
+     * Get a contiguous version of this array, whose coordinates are the row-major positions of its elements.
+     * @return This array if it is already contiguous. Or else, a new contiguous sparse array with same elements.
+     */
+    @Override
+    public HDArray contiguous() {
+        return this.compact();
+    }
+
+    @Override
+    protected HDArray copy() {
+        final SparseHDArray source = this.compact();
+        if (source != this) {
+            return source;
+        }
+        return new SparseHDArray(this.shape.clone(), HDArray.contiguousStrides(this.shape), 0, this.entries.copy(),
+                this.denseSize);
+    }
+
+    /**
+     * Convert this array into contiguous layout. Every view dimension of size larger than one either has its own
+     * stride in the storage, or is broadcast with stride 0. Therefore, the storage position of each nonzero element
+     * is decoded by dividing by the strides in descending order, and broadcast dimensions are expanded.
+     * @return This array if it is already contiguous. Or else, a new contiguous sparse array.
+     */
+    protected SparseHDArray compact() {
+        if (this.isContiguous()) {
+            return this;
+        }
+        final int rank = this.rank();
+        final long[] newStrides = HDArray.contiguousStrides(this.shape);
+
+        // Dimensions stored in the storage, in descending order of stride, and broadcast dimensions
+        final Integer[] order = new Integer[rank];
+        for (int i = 0; i < rank; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(this.strides[b], this.strides[a]));
+        final int[] storedDims = Arrays.stream(order).mapToInt(Integer::intValue)
+                .filter(i -> this.shape[i] > 1 && this.strides[i] != 0).toArray();
+        final int[] broadcastDims = Arrays.stream(order).mapToInt(Integer::intValue)
+                .filter(i -> this.shape[i] > 1 && this.strides[i] == 0).toArray();
+        final int[] broadcastShape = Arrays.stream(broadcastDims).map(i -> this.shape[i]).toArray();
+        final int repeat = HDArray.countElement(broadcastShape);
+
+        final Entries newEntries = new Entries(Math.multiplyExact(this.entries.size, repeat));
+        final int[] broadcastCounter = new int[broadcastDims.length];
+        for (int e = 0; e < this.entries.size; e++) {
+            long remain = this.entries.keys[e] - this.offset;
+            long newKey = 0;
+            boolean inView = remain >= 0;
+            for (int i = 0; inView && i < storedDims.length; i++) {
+                final int dim = storedDims[i];
+                final long idx = remain / this.strides[dim];
+                remain -= idx * this.strides[dim];
+                inView = idx < this.shape[dim];
+                newKey += idx * newStrides[dim];
+            }
+            if (!inView || remain != 0) {
+                continue;
+            }
+            final double value = this.entries.values[e];
+            for (int r = 0; r < repeat; r++) {
+                long broadcastKey = newKey;
+                for (int i = 0; i < broadcastDims.length; i++) {
+                    broadcastKey += broadcastCounter[i] * newStrides[broadcastDims[i]];
+                }
+                newEntries.append(broadcastKey, value);
+                for (int i = broadcastCounter.length - 1; i >= 0; i--) {
+                    if (++broadcastCounter[i] < broadcastShape[i]) {
+                        break;
+                    }
+                    broadcastCounter[i] = 0;
+                }
+            }
+        }
+        newEntries.sort();
+        return new SparseHDArray(this.shape.clone(), newStrides, 0, newEntries, HDArray.countElementExact(this.shape));
+    }
+
+    @Override
+    public double[] toArray() {
+        final SparseHDArray source = this.compact();
+        final double[] values = new double[HDArray.countElement(this.shape)];
+        for (int e = 0; e < source.entries.size; e++) {
+            values[(int) source.entries.keys[e]] = source.entries.values[e];
+        }
+        return values;
+    }
+
+    @Override
+    public double sum() {
+        final Entries source = this.compact().entries;
+        double sum = 0.0d;
+        for (int e = 0; e < source.size; e++) {
+            sum += source.values[e];
+        }
+        return sum;
+    }
+
+    /**
+     * Sum along given axis. It costs time proportional to the number of nonzero elements, plus the size of the
+     * result if the result is small.
+     * @param axis Axis to sum.
+     * @return Sum along given axis.
+     * @throws NullPointerException if given axis is null.
+     * @throws IllegalArgumentException if given axis contain duplicated index, or invalid index.
+     */
+    @Override
+    protected HDArray sumAlongAxis(final int... axis) {
+        this.verifyAxis(axis);
+        if (axis.length == 0) {
+            return this.clone();
+        }
+        if (axis.length == this.rank()) {
+            return this.wrap(new int[]{1}, new double[]{this.sum()});
+        }
+
+        final Entries source = this.compact().entries;
+        final int[] newShape = HDArray.removeElementByIndices(this.shape, axis);
+        final long newCount = HDArray.countElementExact(newShape);
+        final int[] newStrides = this.reducedStrides(axis);
+        final long[] sourceStrides = HDArray.contiguousStrides(this.shape);
+        final long[] newKeys = new long[source.size];
+        for (int e = 0; e < source.size; e++) {
+            long remain = source.keys[e];
+            long newKey = 0;
+            for (int i = 0; i < this.rank(); i++) {
+                final long idx = remain / sourceStrides[i];
+                remain -= idx * sourceStrides[i];
+                newKey += idx * newStrides[i];
+            }
+            newKeys[e] = newKey;
+        }
+
+        // Accumulate in dense if the result is small. Or else, sort the new coordinates and merge duplicates.
+        if (newCount <= 4L * source.size + SparseHDArray.MIN_SPARSE_SIZE) {
+            final double[] newData = new double[(int) newCount];
+            for (int e = 0; e < source.size; e++) {
+                newData[(int) newKeys[e]] += source.values[e];
+            }
+            return this.wrap(newShape, newData);
+        }
+        final Entries unsorted = new Entries(newKeys, source.values.clone(), source.size);
+        unsorted.sort();
+        final Entries newEntries = new Entries(source.size);
+        for (int e = 0; e < unsorted.size; e++) {
+            if (newEntries.size > 0 && newEntries.keys[newEntries.size - 1] == unsorted.keys[e]) {
+                newEntries.values[newEntries.size - 1] += unsorted.values[e];
+            } else {
+                newEntries.append(unsorted.keys[e], unsorted.values[e]);
+            }
+        }
+        newEntries.removeZeros();
+        return new SparseHDArray(newShape, HDArray.contiguousStrides(newShape), 0, newEntries, newCount);
+    }
+
+    /**
+     * Multiply this array by given arrays and sum along given axis. Only the nonzero elements of this array are
+     * visited, so that it costs time proportional to the number of nonzero elements, plus the size of the result.
+     * @param operands Arrays to multiply. Each of them should be broadcastable to the shape of this array.
+     * @param axis Axis to sum.
+     * @return Dense sum of the product along given axis.
+     * @throws NullPointerException if given operands or axis is null.
+     * @throws IllegalArgumentException if given operands cannot be broadcast to the shape of this array,
+     * or given axis contain duplicated index, or invalid index.
+     */
+    @Override
+    protected HDArray mulSumAlongAxis(final HDArray[] operands, final int... axis) {
+        Objects.requireNonNull(operands, Log.genLogMsg(this.getClass(), "Given operands should not be null"));
+        this.verifyAxis(axis);
+        final int[] reducedShape = HDArray.removeElementByIndices(this.shape, axis);
+        final int[] newShape = reducedShape.length == 0 ? new int[]{1} : reducedShape;
+        final double[] newData = new double[HDArray.countElement(newShape)];
+        this.productAlongAxis(operands, false, newData, axis);
+        return new HDArray(newShape, HDArray.contiguousStrides(newShape), 0, newData);
+    }
+
+    /**
+     * Kernel of {@link #mulSumAlongAxis(HDArray[], int...)}, which only visits the nonzero elements of this array.
+     * Log values are combined by the dense kernel.
+     * @param operands Arrays to combine with this array.
+     * @param logDomain {@code True} if the arrays store log values.
+     * @param newData Storage of the contiguous reduced array, whose elements are overwritten.
+     * @param axis Valid axis to sum.
+     */
+    @Override
+    protected void productAlongAxis(final HDArray[] operands, final boolean logDomain, final double[] newData,
+                                    final int... axis) {
+        if (logDomain) {
+            super.productAlongAxis(operands, true, newData, axis);
+            return;
+        }
+        final HDArray[] views = new HDArray[operands.length];
+        for (int k = 0; k < operands.length; k++) {
+            views[k] = HDArray.broadcastArray(operands[k], this.shape);
+        }
+
+        final Entries source = this.compact().entries;
+        final int[] newStrides = this.reducedStrides(axis);
+        final long[] sourceStrides = HDArray.contiguousStrides(this.shape);
+        final long[] operandIdx = new long[views.length];
+        Arrays.fill(newData, 0.0d);
+        for (int e = 0; e < source.size; e++) {
+            long remain = source.keys[e];
+            int newIdx = 0;
+            for (int k = 0; k < views.length; k++) {
+                operandIdx[k] = views[k].offset;
+            }
+            for (int i = 0; i < this.rank(); i++) {
+                final long idx = remain / sourceStrides[i];
+                remain -= idx * sourceStrides[i];
+                newIdx += (int) idx * newStrides[i];
+                for (int k = 0; k < views.length; k++) {
+                    operandIdx[k] += idx * views[k].strides[i];
+                }
+            }
+            double value = source.values[e];
+            for (int k = 0; k < views.length; k++) {
+                value *= views[k].valueAt(operandIdx[k]);
+            }
+            newData[newIdx] += value;
+        }
+    }
+
+    /**
+     * Multiply this array by given array. Only the nonzero elements of this array are visited, so that it costs
+     * time proportional to the number of nonzero elements of the result.
+     * @param otherArray Array to multiply.
+     * @return Sparse product.
+     * @throws NullPointerException if given array is null.
+     * @throws IllegalArgumentException if given array shape does not match with this array.
+     */
+    @Override
+    public HDArray mul(final HDArray otherArray) {
+        Objects.requireNonNull(otherArray, Log.genLogMsg(this.getClass(), "Given array should not be null"));
+        final int[] broadcastShape = HDArray.detectBroadcastShape(this.shape, otherArray.shape);
+        final SparseHDArray source = ((SparseHDArray) HDArray.broadcastArray(this, broadcastShape)).compact();
+        final HDArray other = HDArray.broadcastArray(otherArray, broadcastShape);
+        final long[] newStrides = HDArray.contiguousStrides(broadcastShape);
+
+        final Entries newEntries = new Entries(source.entries.size);
+        for (int e = 0; e < source.entries.size; e++) {
+            long remain = source.entries.keys[e];
+            long otherIdx = other.offset;
+            for (int i = 0; i < broadcastShape.length; i++) {
+                final long idx = remain / newStrides[i];
+                remain -= idx * newStrides[i];
+                otherIdx += idx * other.strides[i];
+            }
+            final double value = source.entries.values[e] * other.valueAt(otherIdx);
+            if (value != 0.0d) {
+                newEntries.append(source.entries.keys[e], value);
+            }
+        }
+        return new SparseHDArray(broadcastShape, newStrides, 0, newEntries, HDArray.countElementExact(broadcastShape));
+    }
+
+    /**
+     * Perform given operation on this array. If the operation keeps zero as zero, only the nonzero elements are
+     * visited and the result is sparse. Or else, the result is dense.
+     * @param operand Operand to perform.
+     * @param operation Operation to perform.
+     * @return Result array.
+     * @throws NullPointerException if given operation is null.
+     */
+    @Override
+    protected HDArray operation(final double operand, final HDArray.elementOperation operation) {
+        Objects.requireNonNull(operation, Log.genLogMsg(this.getClass(), "Given operation should not be null"));
+        if (operation.operate(0.0d, operand) != 0.0d) {
+            return super.operation(operand, operation);
+        }
+        final Entries source = this.compact().entries;
+        final Entries newEntries = new Entries(source.size);
+        for (int e = 0; e < source.size; e++) {
+            final double value = operation.operate(source.values[e], operand);
+            if (value != 0.0d) {
+                newEntries.append(source.keys[e], value);
+            }
+        }
+        return new SparseHDArray(this.shape.clone(), HDArray.contiguousStrides(this.shape), 0, newEntries,
+                HDArray.countElementExact(this.shape));
+    }
+
+    /**
+     * Perform given operation on this array in place. If the operation keeps zero as zero, only the nonzero
+     * elements are visited. Or else, the nonzero elements are rebuilt from every element.
+     * @param operand Operand to perform.
+     * @param operation Operation to perform.
+     * @throws NullPointerException if given operation is null.
+     */
+    @Override
+    protected void operationInPlace(final double operand, final HDArray.elementOperation operation) {
+        Objects.requireNonNull(operation, Log.genLogMsg(this.getClass(), "Given operation should not be null"));
+        if (operation.operate(0.0d, operand) == 0.0d) {
+            // Every element of the storage is visible in this array, since views only permute or pad dimensions
+            for (int e = 0; e < this.entries.size; e++) {
+                this.entries.values[e] = operation.operate(this.entries.values[e], operand);
+            }
+            this.entries.removeZeros();
+            return;
+        }
+        final Entries newEntries = new Entries(this.entries.size);
+        final int[] counter = new int[this.rank()];
+        final long count = HDArray.countElementExact(this.shape);
+        long dataIdx = this.offset;
+        for (long i = 0; i < count; i++) {
+            final double value = operation.operate(this.entries.get(dataIdx), operand);
+            if (value != 0.0d) {
+                newEntries.append(dataIdx, value);
+            }
+            dataIdx = HDArray.nextOffset(counter, this.shape, this.strides, dataIdx);
+        }
+        newEntries.sort();
+        this.entries.replace(newEntries);
+    }
+
+    @Override
+    public void fill(final double value) {
+        this.operationInPlace(value, (a, b) -> b);
+    }
+
+    /**
+     * Same as {@link HDArray#hashCode()}. Zero elements do not change the hash except multiplying it by 31, so
+     * that it is computed from the nonzero elements only.
+     * @return Hash code.
+     */
+    @Override
+    public int hashCode() {
+        final SparseHDArray source = this.compact();
+        final long count = HDArray.countElementExact(this.shape);
+        int result = SparseHDArray.power31(count);
+        for (int e = 0; e < source.entries.size; e++) {
+            result += SparseHDArray.power31(count - 1 - source.entries.keys[e])
+                    * Double.hashCode(source.entries.values[e]);
+        }
+        result = 31 * result + Arrays.hashCode(this.shape);
+        return result;
+    }
+
+    /**
+     * Compute {@code 31^exponent} with int overflow.
+     * @param exponent Exponent.
+     * @return Power of 31.
+     */
+    private static int power31(long exponent) {
+        int result = 1;
+        int base = 31;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1) {
+                result *= base;
+            }
+            base *= base;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    @Override
+    public SparseHDArray clone() {
+        return (SparseHDArray) this.copy();
+    }
+
+    /**
+     * Nonzero elements stored as coordinates sorted in ascending order, with their values.
+     */
+    protected static class Entries {
+        /**
+         * Positions in the storage. Only the first {@link #size} elements are used.
+         */
+        protected long[] keys;
+        /**
+         * Values of the elements. Only the first {@link #size} elements are used.
+         */
+        protected double[] values;
+        /**
+         * Number of nonzero elements.
+         */
+        protected int size;
+
+        /**
+         * Constructor.
+         * @param capacity Initial capacity.
+         */
+        protected Entries(final int capacity) {
+            this(new long[capacity], new double[capacity], 0);
+        }
+
+        /**
+         * Constructor. Given arrays are used without copy.
+         * @param keys Positions in the storage.
+         * @param values Values of the elements.
+         * @param size Number of nonzero elements.
+         */
+        protected Entries(final long[] keys, final double[] values, final int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        /**
+         * Get element at given position.
+         * @param key Position in the storage.
+         * @return Element at given position. Zero if it is not stored.
+         */
+        protected double get(final long key) {
+            final int idx = Arrays.binarySearch(this.keys, 0, this.size, key);
+            return idx >= 0 ? this.values[idx] : 0.0d;
+        }
+
+        /**
+         * Set element at given position. Setting zero removes the element.
+         * @param key Position in the storage.
+         * @param value Value to set.
+         */
+        protected void set(final long key, final double value) {
+            final int idx = Arrays.binarySearch(this.keys, 0, this.size, key);
+            if (idx >= 0) {
+                if (value != 0.0d) {
+                    this.values[idx] = value;
+                } else {
+                    System.arraycopy(this.keys, idx + 1, this.keys, idx, this.size - idx - 1);
+                    System.arraycopy(this.values, idx + 1, this.values, idx, this.size - idx - 1);
+                    this.size--;
+                }
+                return;
+            }
+            if (value == 0.0d) {
+                return;
+            }
+            final int insertIdx = -idx - 1;
+            this.ensureCapacity(this.size + 1);
+            System.arraycopy(this.keys, insertIdx, this.keys, insertIdx + 1, this.size - insertIdx);
+            System.arraycopy(this.values, insertIdx, this.values, insertIdx + 1, this.size - insertIdx);
+            this.keys[insertIdx] = key;
+            this.values[insertIdx] = value;
+            this.size++;
+        }
+
+        /**
+         * Append an element at the end. The caller is responsible to keep the order, or call {@link #sort()}.
+         * @param key Position in the storage.
+         * @param value Value of the element.
+         */
+        protected void append(final long key, final double value) {
+            this.ensureCapacity(this.size + 1);
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size++;
+        }
+
+        /**
+         * Remove the elements which become zero.
+         */
+        protected void removeZeros() {
+            int newSize = 0;
+            for (int e = 0; e < this.size; e++) {
+                if (this.values[e] != 0.0d) {
+                    this.keys[newSize] = this.keys[e];
+                    this.values[newSize] = this.values[e];
+                    newSize++;
+                }
+            }
+            this.size = newSize;
+        }
+
+        /**
+         * Replace the elements by the elements of given entries, so that the views sharing this object see them.
+         * @param otherEntries Entries to take.
+         */
+        protected void replace(final Entries otherEntries) {
+            this.keys = otherEntries.keys;
+            this.values = otherEntries.values;
+            this.size = otherEntries.size;
+        }
+
+        /**
+         * Deep copy.
+         * @return Copy of this entries.
+         */
+        protected Entries copy() {
+            return new Entries(Arrays.copyOf(this.keys, this.size), Arrays.copyOf(this.values, this.size), this.size);
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > this.keys.length) {
+                final int newCapacity = Math.max(capacity, Math.max(8, this.keys.length * 2));
+                this.keys = Arrays.copyOf(this.keys, newCapacity);
+                this.values = Arrays.copyOf(this.values, newCapacity);
+            }
+        }
+
+        /**
+         * Sort the elements by position. Positions are assumed to be unique.
+         */
+        protected void sort() {
+            for (int e = 1; e < this.size; e++) {
+                if (this.keys[e - 1] > this.keys[e]) {
+                    this.quickSort(0, this.size - 1);
+                    return;
+                }
+            }
+        }
+
+        private void quickSort(int low, int high) {
+            while (high - low > 16) {
+                final long pivot = this.keys[(low + high) >>> 1];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (this.keys[i] < pivot) i++;
+                    while (this.keys[j] > pivot) j--;
+                    if (i <= j) {
+                        this.swap(i++, j--);
+                    }
+                }
+                // Recurse into the smaller part to bound the stack depth
+                if (j - low < high - i) {
+                    this.quickSort(low, j);
+                    low = i;
+                } else {
+                    this.quickSort(i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && this.keys[j - 1] > this.keys[j]; j--) {
+                    this.swap(j - 1, j);
+                }
+            }
+        }
+
+        private void swap(final int i, final int j) {
+            final long key = this.keys[i];
+            this.keys[i] = this.keys[j];
+            this.keys[j] = key;
+            final double value = this.values[i];
+            this.values[i] = this.values[j];
+            this.values[j] = value;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package BeliefPropagation.graph;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of {@link ArrayKernels} by the incubating Vector API. It must only be loaded if the module
+ * {@code jdk.incubator.vector} is available. The elements left after the last full vector are handled by
+ * {@link ScalarArrayKernels}.
+ */
+final class VectorArrayKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorArrayKernels() {
+    }
+
+    /**
+     * See {@link ArrayKernels#sum(double[], int, int)}.
+     */
+    static double sum(final double[] a, final int from, final int length) {
+        final int upper = VectorArrayKernels.SPECIES.loopBound(length);
+        DoubleVector sum = DoubleVector.zero(VectorArrayKernels.SPECIES);
+        int i = 0;
+        for (; i < upper; i += VectorArrayKernels.SPECIES.length()) {
+            sum = sum.add(DoubleVector.fromArray(VectorArrayKernels.SPECIES, a, from + i));
+        }
+        return sum.reduceLanes(VectorOperators.ADD) + ScalarArrayKernels.sum(a, from + i, length - i);
+    }
+
+    /**
+     * See {@link ArrayKernels#binary(Arithmetic, double[], int, int, double[], int, int, double[], int, int)}.
+     */
+    static void binary(final Arithmetic operation, final double[] a, final int aFrom, final int aStride,
+                       final double[] b, final int bFrom, final int bStride, final double[] r, final int rFrom,
+                       final int length) {
+        final int upper = VectorArrayKernels.SPECIES.loopBound(length);
+        final int step = VectorArrayKernels.SPECIES.length();
+        int i = 0;
+        // A repeated operand is only read if there is a full vector, since it may not have any element otherwise
+        if (upper > 0 && aStride == 1 && bStride == 1) {
+            for (; i < upper; i += step) {
+                final DoubleVector x = DoubleVector.fromArray(VectorArrayKernels.SPECIES, a, aFrom + i);
+                final DoubleVector y = DoubleVector.fromArray(VectorArrayKernels.SPECIES, b, bFrom + i);
+                VectorArrayKernels.apply(operation, x, y).intoArray(r, rFrom + i);
+            }
+        } else if (upper > 0 && aStride == 1) {
+            final DoubleVector y = DoubleVector.broadcast(VectorArrayKernels.SPECIES, b[bFrom]);
+            for (; i < upper; i += step) {
+                final DoubleVector x = DoubleVector.fromArray(VectorArrayKernels.SPECIES, a, aFrom + i);
+                VectorArrayKernels.apply(operation, x, y).intoArray(r, rFrom + i);
+            }
+        } else if (upper > 0 && bStride == 1) {
+            final DoubleVector x = DoubleVector.broadcast(VectorArrayKernels.SPECIES, a[aFrom]);
+            for (; i < upper; i += step) {
+                final DoubleVector y = DoubleVector.fromArray(VectorArrayKernels.SPECIES, b, bFrom + i);
+                VectorArrayKernels.apply(operation, x, y).intoArray(r, rFrom + i);
+            }
+        }
+        ScalarArrayKernels.binary(operation, a, aFrom + i * aStride, aStride, b, bFrom + i * bStride, bStride,
+                r, rFrom + i, length - i);
+    }
+
+    /**
+     * Apply the operation on two vectors. Each branch calls the Vector API with a constant operator, so that it is
+     * compiled into SIMD instructions.
+     */
+    private static DoubleVector apply(final Arithmetic operation, final DoubleVector x, final DoubleVector y) {
+        return switch (operation) {
+            case ADD -> x.add(y);
+            case SUB -> x.sub(y);
+            case MUL -> x.mul(y);
+            case DIV -> x.div(y);
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.*;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeliefPropagationEvidenceTest {
+
+    @Test
+    void testObserve() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 2);
+        Variable<String> d = new Variable<>("d", 2);
+        List<Factor> factors = BeliefPropagationEvidenceTest.createTreeFactors(a, b, c, d);
+        FactorGraph<DefaultEdge> factorGraph = BeliefPropagationEvidenceTest.createGraph(List.of(a, b, c, d), factors);
+        BeliefPropagation<DefaultEdge> propagation = new BeliefPropagation<>(factorGraph);
+        BeliefTable priorBeliefs = propagation.getAllBeliefs();
+
+        // The evidence gives the same beliefs as an extra indicator factor
+        Factor indicator = new Factor("e", HDArray.create(new double[]{0.0d, 0.0d, 1.0d}), b);
+        List<Factor> observedFactors = new ArrayList<>(factors);
+        observedFactors.add(indicator);
+        BeliefPropagation<DefaultEdge> expectedPropagation = new BeliefPropagation<>(
+                BeliefPropagationEvidenceTest.createGraph(List.of(a, b, c, d), observedFactors));
+
+        // The messages sent to b do not depend on the evidence of b, so they are kept
+        Message incomingMessage = propagation.getMessage(propagation.getUpdatePlan(factors.get(0), b).getEdge());
+        propagation.observe(b, 2);
+        assertEquals(2, propagation.getObservedState(b));
+        assertFalse(propagation.isPropagated());
+        for (Variable<?> variable : List.of(a, b, c, d)) {
+            assertEquals(expectedPropagation.getBelief(variable), propagation.getBelief(variable));
+        }
+        assertSame(incomingMessage, propagation.getMessage(propagation.getUpdatePlan(factors.get(0), b).getEdge()));
+        for (Factor factor : factors) {
+            assertEquals(expectedPropagation.getFactorBelief(factor), propagation.getFactorBelief(factor));
+        }
+
+        // The beliefs returned before are not modified
+        assertEquals(new BeliefPropagation<>(factorGraph).getBelief(a), priorBeliefs.getBelief(a));
+
+        propagation.retract(b);
+        assertEquals(-1, propagation.getObservedState(b));
+        for (Variable<?> variable : List.of(a, b, c, d)) {
+            assertEquals(priorBeliefs.getBelief(variable), propagation.getBelief(variable));
+        }
+
+        // Several observations, in log domain
+        propagation.setLogDomain(true);
+        propagation.observe(a, 1);
+        propagation.observe(d, 0);
+        BeliefPropagation<DefaultEdge> freshPropagation = new BeliefPropagation<>(factorGraph);
+        freshPropagation.observe(d, 0);
+        freshPropagation.observe(a, 1);
+        assertEquals(freshPropagation.getAllBeliefs().getBelief(c), propagation.getBelief(c));
+        propagation.retractAll();
+        assertEquals(priorBeliefs.getBelief(c), propagation.getBelief(c));
+    }
+
+    @Test
+    void testObserveWithInvalidArgument() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 2);
+        Variable<String> d = new Variable<>("d", 2);
+        BeliefPropagation<DefaultEdge> propagation = new BeliefPropagation<>(BeliefPropagationEvidenceTest.createGraph(
+                List.of(a, b, c, d), BeliefPropagationEvidenceTest.createTreeFactors(a, b, c, d)));
+        assertThrows(NullPointerException.class, () -> propagation.observe(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> propagation.observe(new Variable<>("e", 2), 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> propagation.observe(b, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> propagation.observe(b, -1));
+        assertThrows(IllegalArgumentException.class, () -> propagation.retract(new Variable<>("e", 2)));
+    }
+
+    /**
+     * Create the factors of the tree {@code a - b - c} with {@code d} attached to {@code b}.
+     */
+    static List<Factor> createTreeFactors(Variable<?> a, Variable<?> b, Variable<?> c, Variable<?> d) {
+        Factor factor1 = new Factor("f1", HDArray.create(new double[][]{{1.0d, 2.0d, 3.0d}, {4.0d, 1.0d, 2.0d}}), a, b);
+        Factor factor2 = new Factor("f2", HDArray.create(new double[][]{{5.0d, 1.0d}, {2.0d, 2.0d}, {1.0d, 6.0d}}), b, c);
+        Factor factor3 = new Factor("f3", HDArray.create(new double[][]{{3.0d, 1.0d}, {1.0d, 3.0d}, {2.0d, 2.0d}}), b, d);
+        Factor factor4 = new Factor("f4", HDArray.create(new double[]{0.2d, 0.8d}), a);
+        return List.of(factor1, factor2, factor3, factor4);
+    }
+
+    static FactorGraph<DefaultEdge> createGraph(List<Variable<?>> variables, List<Factor> factors) {
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        variables.forEach(factorGraph::addVariable);
+        factors.forEach(factorGraph::addFactor);
+        factorGraph.fillEdges();
+        return factorGraph;
+    }
+}
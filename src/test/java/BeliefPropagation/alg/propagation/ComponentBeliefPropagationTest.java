@@ -0,0 +1,111 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.*;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComponentBeliefPropagationTest {
+
+    @Test
+    void testComponentBeliefPropagation() {
+        // Cyclic component over a, b, c
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> loopyGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        // Tree component over d, e
+        Variable<String> d = new Variable<>("d", 2);
+        Variable<String> e = new Variable<>("e", 3);
+        Factor factor4 = new Factor("f4", HDArray.create(new double[][]{{1.0d, 2.0d, 3.0d}, {4.0d, 5.0d, 6.0d}}), d, e);
+        Factor factor5 = new Factor("f5", HDArray.create(new double[]{0.3d, 0.7d}), d);
+        FactorGraph<DefaultEdge> treeGraph = new FactorGraph<>(DefaultEdge.class);
+        treeGraph.addVariable(d);
+        treeGraph.addVariable(e);
+        treeGraph.addFactor(factor4);
+        treeGraph.addFactor(factor5);
+        treeGraph.fillEdges();
+
+        // Whole graph with both components and a variable without factor
+        Variable<String> f = new Variable<>("f", 4);
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        for (Variable<?> variable : List.of(a, d, b, e, c, f)) {
+            factorGraph.addVariable(variable);
+        }
+        loopyGraph.factorSet().forEach(factorGraph::addFactor);
+        treeGraph.factorSet().forEach(factorGraph::addFactor);
+        factorGraph.fillEdges();
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ComponentBeliefPropagation<DefaultEdge> propagation = new ComponentBeliefPropagation<>(factorGraph, 5, pool);
+            assertEquals(3, propagation.getComponentCount());
+            assertInstanceOf(LoopyBeliefPropagation.class, propagation.getComponentAlgorithm(b));
+            assertInstanceOf(BeliefPropagation.class, propagation.getComponentAlgorithm(e));
+            assertNull(propagation.getComponentAlgorithm(f));
+
+            LoopyBeliefPropagation<DefaultEdge> loopyPropagation = new LoopyBeliefPropagation<>(loopyGraph, 5);
+            BeliefPropagation<DefaultEdge> treePropagation = new BeliefPropagation<>(treeGraph);
+            for (Variable<?> variable : List.of(a, b, c)) {
+                assertEquals(loopyPropagation.getBelief(variable), propagation.getBelief(variable));
+            }
+            for (Variable<?> variable : List.of(d, e)) {
+                assertEquals(treePropagation.getBelief(variable), propagation.getBelief(variable));
+            }
+            double[] uniform = {0.25d, 0.25d, 0.25d, 0.25d};
+            assertEquals(new Message(HDArray.create(uniform), f), propagation.getBelief(f));
+
+            BeliefTable beliefs = propagation.getAllBeliefs();
+            assertEquals(6, beliefs.size());
+            for (Variable<?> variable : List.of(a, d, b, e, c, f)) {
+                assertEquals(propagation.getBelief(variable), beliefs.getBelief(variable));
+            }
+            assertEquals(treePropagation.getAllBeliefs().getBelief(e), propagation.getBeliefs(List.of(e)).getBelief(0));
+
+            // The tree is exact: the belief of f4 is f4 * f5 normalized
+            double[][] joint = {{0.3d * 1.0d, 0.3d * 2.0d, 0.3d * 3.0d}, {0.7d * 4.0d, 0.7d * 5.0d, 0.7d * 6.0d}};
+            Message expectedBelief = new Message(HDArray.create(joint).div(0.3d * 6.0d + 0.7d * 15.0d), d, e);
+            assertEquals(expectedBelief, propagation.getFactorBelief(factor4));
+            assertEquals(loopyPropagation.getFactorBelief(loopyGraph.factorSet().iterator().next()),
+                    propagation.getFactorBelief(loopyGraph.factorSet().iterator().next()));
+
+            propagation.observe(f, 3);
+            propagation.observe(e, 0);
+            treePropagation.observe(e, 0);
+            assertEquals(new Message(HDArray.create(new double[]{0.0d, 0.0d, 0.0d, 1.0d}), f), propagation.getBelief(f));
+            assertEquals(treePropagation.getBelief(d), propagation.getBelief(d));
+            assertEquals(loopyPropagation.getBelief(a), propagation.getBelief(a));
+            propagation.retract(f);
+            propagation.retract(e);
+            assertEquals(new Message(HDArray.create(uniform), f), propagation.getBelief(f));
+
+            propagation.setLogDomain(true);
+            assertTrue(propagation.getComponentAlgorithm(a).isLogDomain());
+            assertEquals(loopyPropagation.getBelief(a), propagation.getBelief(a));
+            assertThrows(IllegalArgumentException.class, () -> propagation.getBelief(new Variable<>("g", 2)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testComponentBeliefPropagationWithInvalidArgument() {
+        assertThrows(NullPointerException.class, () -> new ComponentBeliefPropagation<DefaultEdge>(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ComponentBeliefPropagation<>(new FactorGraph<>(DefaultEdge.class)));
+
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        CompiledFactorGraph graph = CompiledFactorGraph.compile(LoopyBeliefPropagationTest.createLoopyGraph(a, b, c));
+        assertThrows(IllegalArgumentException.class,
+                () -> ComponentBeliefPropagation.create(graph, 0, ForkJoinPool.commonPool()));
+        assertThrows(NullPointerException.class, () -> ComponentBeliefPropagation.create(graph, 5, null));
+        assertEquals(1, ComponentBeliefPropagation.create(graph).getComponentCount());
+    }
+}
@@ -0,0 +1,80 @@
+package BeliefPropagation.alg.propagation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedMaxHeapTest {
+
+    @Test
+    void testIndexedMaxHeap() {
+        IndexedMaxHeap heap = new IndexedMaxHeap(5);
+        assertTrue(heap.isEmpty());
+        heap.set(0, 1.0d);
+        heap.set(3, 5.0d);
+        heap.set(2, 3.0d);
+        assertEquals(3, heap.size());
+        assertEquals(3, heap.peek());
+        assertEquals(5.0d, heap.peekPriority());
+
+        // Change the priority of keys in the heap
+        heap.set(0, 7.0d);
+        assertEquals(0, heap.peek());
+        heap.set(0, 2.0d);
+        assertEquals(3, heap.poll());
+        assertFalse(heap.contains(3));
+        assertEquals(2, heap.poll());
+        assertTrue(heap.remove(0));
+        assertFalse(heap.remove(0));
+        assertTrue(heap.isEmpty());
+
+        heap.set(4, Double.NaN);
+        heap.set(1, Double.POSITIVE_INFINITY);
+        assertEquals(4, heap.peek());
+        heap.clear();
+        assertFalse(heap.contains(4));
+        assertThrows(IllegalStateException.class, heap::peek);
+        assertThrows(IllegalArgumentException.class, () -> heap.getPriority(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> heap.set(5, 1.0d));
+        assertThrows(IllegalArgumentException.class, () -> new IndexedMaxHeap(-1));
+    }
+
+    @Test
+    void testRandomOperations() {
+        final int capacity = 50;
+        Random random = new Random(7);
+        IndexedMaxHeap heap = new IndexedMaxHeap(capacity);
+        double[] expected = new double[capacity];
+        boolean[] present = new boolean[capacity];
+        for (int step = 0; step < 10000; step++) {
+            final int key = random.nextInt(capacity);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    expected[key] = random.nextDouble();
+                    present[key] = true;
+                    heap.set(key, expected[key]);
+                }
+                case 1 -> {
+                    assertEquals(present[key], heap.remove(key));
+                    present[key] = false;
+                }
+                default -> {
+                    int top = -1;
+                    for (int k = 0; k < capacity; k++) {
+                        if (present[k] && (top < 0 || expected[k] > expected[top])) {
+                            top = k;
+                        }
+                    }
+                    if (top < 0) {
+                        assertTrue(heap.isEmpty());
+                    } else {
+                        assertEquals(top, heap.poll());
+                        present[top] = false;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -5,6 +5,12 @@ import org.jgrapht.graph.DefaultEdge;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class LoopyBeliefPropagationTest {
@@ -75,4 +81,472 @@ class LoopyBeliefPropagationTest {
         Message expectedMessage3 = new Message(HDArray.create(expectedDistribution3), c);
         Assertions.assertEquals(expectedMessage3, loopyBeliefPropagation.getBelief(c));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLogDomain() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        LoopyBeliefPropagation<DefaultEdge> logPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        logPropagation.setLogDomain(true);
+        assertTrue(logPropagation.isLogDomain());
+
+        for (Variable<?> variable : List.of(a, b, c)) {
+            Message belief = logPropagation.getBelief(variable);
+            assertFalse(belief.isLogDomain());
+            assertEquals(expectedPropagation.getBelief(variable), belief);
+        }
+    }
+
+    @Test
+    void testBulkBeliefs() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        for (boolean logDomain : new boolean[]{false, true}) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+                propagation.setLogDomain(logDomain);
+                BeliefTable beliefs = propagation.getAllBeliefs(parallel);
+                assertTrue(propagation.isLooped());
+                assertEquals(3, beliefs.size());
+                assertEquals(7, beliefs.getValues().length);
+                for (Variable<?> variable : List.of(a, b, c)) {
+                    assertEquals(expectedPropagation.getBelief(variable), beliefs.getBelief(variable));
+                }
+
+                BeliefTable subset = propagation.getBeliefs(List.of(c, a), parallel);
+                assertEquals(List.of(c, a), subset.getVariables());
+                assertArrayEquals(new int[]{0, 3, 5}, subset.getOffsets());
+                assertEquals(expectedPropagation.getBelief(c), subset.getBelief(0));
+                assertEquals(expectedPropagation.getBelief(a), subset.getBelief(1));
+            }
+        }
+
+        LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        assertThrows(NullPointerException.class, () -> propagation.getBeliefs(null));
+        assertThrows(IllegalArgumentException.class, () -> propagation.getBeliefs(List.of(a, new Variable<>("d", 2))));
+    }
+
+    @Test
+    void testFactorBeliefs() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+        List<Factor> factors = List.copyOf(factorGraph.factorSet());
+
+        // At the fixed point, the factor beliefs agree with the variable beliefs
+        LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 100);
+        for (Factor factor : factors) {
+            Message belief = propagation.getFactorBelief(factor);
+            assertEquals(factor.getVariables(), belief.getVariables());
+            assertEquals(1.0d, belief.getProbability().sum(), 1e-12);
+            for (Variable<?> variable : factor.getVariables()) {
+                List<Variable<?>> others = factor.getVariables().stream().filter(v -> v != variable).toList();
+                assertEquals(propagation.getBelief(variable), Message.messageMarginalization(belief, others));
+            }
+        }
+
+        LoopyBeliefPropagation<DefaultEdge> logPropagation = new LoopyBeliefPropagation<>(factorGraph, 100);
+        logPropagation.setLogDomain(true);
+        List<Message> beliefs = logPropagation.getFactorBeliefs(factors, true);
+        assertEquals(propagation.getAllFactorBeliefs(), logPropagation.getAllFactorBeliefs(true));
+        for (int i = 0; i < factors.size(); i++) {
+            assertFalse(beliefs.get(i).isLogDomain());
+            assertEquals(propagation.getFactorBelief(factors.get(i)), beliefs.get(i));
+        }
+
+        Factor unknownFactor = new Factor("f4", HDArray.create(new double[]{0.5d, 0.5d}), a);
+        assertThrows(NullPointerException.class, () -> propagation.getFactorBelief(null));
+        assertThrows(IllegalArgumentException.class, () -> propagation.getFactorBelief(unknownFactor));
+        assertThrows(IllegalArgumentException.class, () -> propagation.getFactorBeliefs(List.of(unknownFactor)));
+    }
+
+    @Test
+    void testObserve() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+        LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 50);
+        Message priorBelief = propagation.getBelief(a);
+
+        // The evidence gives the same fixed point as an extra indicator factor
+        FactorGraph<DefaultEdge> observedGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+        observedGraph.addFactor(new Factor("e", HDArray.create(new double[]{0.0d, 1.0d, 0.0d}), c));
+        observedGraph.fillEdges();
+        LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(observedGraph, 50);
+
+        propagation.observe(c, 1);
+        assertFalse(propagation.isLooped());
+        assertEquals(new Message(HDArray.create(new double[]{0.0d, 1.0d, 0.0d}), c), propagation.getBelief(c));
+        assertEquals(expectedPropagation.getBelief(a), propagation.getBelief(a));
+        assertEquals(expectedPropagation.getBelief(b), propagation.getBeliefs(List.of(b)).getBelief(0));
+
+        propagation.retract(c);
+        assertEquals(priorBelief, propagation.getBelief(a));
+    }
+
+    @Test
+    void testConvergence() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+        final int messageCount = 2 * factorGraph.edgeSet().size();
+
+        // Without tolerance, every iteration is run
+        LoopyBeliefPropagation<DefaultEdge> fixedPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        assertNull(fixedPropagation.getReport());
+        fixedPropagation.loopPropagation();
+        ConvergenceReport fixedReport = fixedPropagation.getReport();
+        assertEquals(5, fixedReport.getIterations());
+        assertEquals(5L * messageCount, fixedReport.getUpdateCount());
+        assertFalse(fixedReport.isConverged());
+        assertTrue(fixedReport.getResidual() > 0.0d);
+
+        // With tolerance, the loop stops early at the same fixed point
+        LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(factorGraph, 200);
+        LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 200, 1e-9);
+        for (Variable<?> variable : List.of(a, b, c)) {
+            assertEquals(expectedPropagation.getBelief(variable), propagation.getBelief(variable));
+        }
+        ConvergenceReport report = propagation.getReport();
+        assertTrue(report.isConverged());
+        assertTrue(report.getIterations() < 200);
+        assertTrue(report.getResidual() <= 1e-9);
+
+        // The mean change falls to the tolerance no later than the largest change
+        LoopyBeliefPropagation<DefaultEdge> meanPropagation = new LoopyBeliefPropagation<>(factorGraph, 200, 1e-9);
+        meanPropagation.setConvergenceCriterion(ConvergenceCriterion.MEAN_CHANGE);
+        meanPropagation.loopPropagation();
+        assertTrue(meanPropagation.getReport().isConverged());
+        assertTrue(meanPropagation.getReport().getIterations() <= report.getIterations());
+
+        // The limit of iteration still applies
+        LoopyBeliefPropagation<DefaultEdge> limitedPropagation = new LoopyBeliefPropagation<>(factorGraph, 2, 1e-9);
+        limitedPropagation.loopPropagation();
+        assertEquals(2, limitedPropagation.getReport().getIterations());
+        assertFalse(limitedPropagation.getReport().isConverged());
+
+        assertThrows(IllegalArgumentException.class, () -> new LoopyBeliefPropagation<>(factorGraph, 5, -1.0d));
+        assertThrows(NullPointerException.class, () -> propagation.setConvergenceCriterion(null));
+    }
+
+    @Test
+    void testDamping() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 2);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createFrustratedGraph(a, b, c);
+
+        // Synchronous updates oscillate on the frustrated cycle
+        LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 200, 1e-9);
+        propagation.loopPropagation();
+        assertFalse(propagation.getReport().isConverged());
+
+        for (boolean logDomain : new boolean[]{false, true}) {
+            LoopyBeliefPropagation<DefaultEdge> dampedPropagation = new LoopyBeliefPropagation<>(factorGraph, 200, 1e-9);
+            dampedPropagation.setLogDomain(logDomain);
+            dampedPropagation.setDamping(0.5d);
+            assertEquals(0.5d, dampedPropagation.getDamping());
+            dampedPropagation.loopPropagation();
+            assertTrue(dampedPropagation.getReport().isConverged());
+
+            // Damping does not move the fixed point
+            LoopyBeliefPropagation<DefaultEdge> adaptivePropagation = new LoopyBeliefPropagation<>(factorGraph, 200, 1e-9);
+            adaptivePropagation.setLogDomain(logDomain);
+            adaptivePropagation.setAdaptiveDamping(true);
+            assertTrue(adaptivePropagation.isAdaptiveDamping());
+            adaptivePropagation.loopPropagation();
+            assertTrue(adaptivePropagation.getReport().isConverged());
+            for (Variable<?> variable : List.of(a, b, c)) {
+                assertEquals(dampedPropagation.getBelief(variable), adaptivePropagation.getBelief(variable));
+            }
+        }
+
+        propagation.setAdaptiveDamping(true);
+        propagation.setAdaptiveDamping(false);
+        assertFalse(propagation.isAdaptiveDamping());
+        assertThrows(IllegalArgumentException.class, () -> propagation.setDamping(1.0d));
+        assertThrows(IllegalArgumentException.class, () -> propagation.setDamping(-0.1d));
+        assertThrows(IllegalArgumentException.class, () -> propagation.setDamping(Double.NaN));
+    }
+
+    @Test
+    void testMessageBuffersReused() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 2);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createFrustratedGraph(a, b, c);
+
+        for (UpdateMode updateMode : UpdateMode.values()) {
+            LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 2);
+            propagation.setUpdateMode(updateMode);
+            propagation.setDamping(0.5d);
+            propagation.loopPropagation();
+            Set<HDArray> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int edge = 0; edge < propagation.messages.length; edge++) {
+                buffers.add(propagation.messages[edge].getProbability());
+                buffers.add(propagation.updatePlans[edge].outputBuffer.getProbability());
+            }
+            assertEquals(2 * propagation.messages.length, buffers.size());
+
+            // Every edge alternates between its two buffers, and the messages are the same as from a single loop
+            propagation.setIteration(5);
+            propagation.loopPropagation();
+            for (Message message : propagation.messages) {
+                assertTrue(buffers.contains(message.getProbability()));
+            }
+            LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(factorGraph, 7);
+            expectedPropagation.setUpdateMode(updateMode);
+            expectedPropagation.setDamping(0.5d);
+            for (Variable<?> variable : List.of(a, b, c)) {
+                assertEquals(expectedPropagation.getBelief(variable), propagation.getBelief(variable));
+            }
+        }
+    }
+
+    @Test
+    void testUpdateMode() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        LoopyBeliefPropagation<DefaultEdge> synchronousPropagation = new LoopyBeliefPropagation<>(factorGraph, 200, 1e-9);
+        assertEquals(UpdateMode.SYNCHRONOUS, synchronousPropagation.getUpdateMode());
+        synchronousPropagation.loopPropagation();
+        assertTrue(synchronousPropagation.getReport().isConverged());
+
+        // In place updates reach the same fixed point in fewer sweeps, in either order
+        for (boolean breadthFirst : new boolean[]{false, true}) {
+            LoopyBeliefPropagation<DefaultEdge> propagation = new LoopyBeliefPropagation<>(factorGraph, 200, 1e-9);
+            propagation.setUpdateMode(UpdateMode.ASYNCHRONOUS);
+            if (breadthFirst) {
+                propagation.setMessageSchedule(MessageSchedule.breadthFirst(propagation.getCompiledGraph()));
+            }
+            propagation.loopPropagation();
+            assertTrue(propagation.getReport().isConverged());
+            assertTrue(propagation.getReport().getIterations() < synchronousPropagation.getReport().getIterations());
+            for (Variable<?> variable : List.of(a, b, c)) {
+                assertEquals(synchronousPropagation.getBelief(variable), propagation.getBelief(variable));
+            }
+        }
+
+        // On a tree, the spanning tree order is exact after one sweep, and the second one changes nothing
+        Variable<String> d = new Variable<>("d", 2);
+        Variable<String> e = new Variable<>("e", 3);
+        Variable<String> f = new Variable<>("f", 2);
+        Variable<String> g = new Variable<>("g", 2);
+        FactorGraph<DefaultEdge> treeGraph = BeliefPropagationEvidenceTest.createGraph(List.of(d, e, f, g),
+                BeliefPropagationEvidenceTest.createTreeFactors(d, e, f, g));
+        LoopyBeliefPropagation<DefaultEdge> treePropagation = new LoopyBeliefPropagation<>(treeGraph, 200, 0.0d);
+        treePropagation.setUpdateMode(UpdateMode.ASYNCHRONOUS);
+        treePropagation.loopPropagation();
+        assertTrue(treePropagation.getReport().isConverged());
+        assertEquals(2, treePropagation.getReport().getIterations());
+        BeliefPropagation<DefaultEdge> exactPropagation = new BeliefPropagation<>(treeGraph);
+        for (Variable<?> variable : List.of(d, e, f, g)) {
+            assertEquals(exactPropagation.getBelief(variable), treePropagation.getBelief(variable));
+        }
+
+        assertThrows(NullPointerException.class, () -> synchronousPropagation.setUpdateMode(null));
+        assertThrows(NullPointerException.class, () -> synchronousPropagation.setMessageSchedule(null));
+        assertThrows(IllegalArgumentException.class, () -> synchronousPropagation.setMessageSchedule(
+                MessageSchedule.spanningTree(treePropagation.getCompiledGraph())));
+    }
+
+    @Test
+    void testParallelSweep() {
+        CompiledFactorGraph graph = LoopyBeliefPropagationTest.createGrid(20, 20);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (boolean logDomain : new boolean[]{false, true}) {
+                LoopyBeliefPropagation<Object> expectedPropagation = LoopyBeliefPropagation.create(graph, 50);
+                LoopyBeliefPropagation<Object> propagation = LoopyBeliefPropagation.create(graph, 50);
+                for (LoopyBeliefPropagation<Object> p : List.of(expectedPropagation, propagation)) {
+                    p.setLogDomain(logDomain);
+                    p.setTolerance(1e-9);
+                    p.setAdaptiveDamping(true);
+                }
+                propagation.setPool(pool);
+                assertSame(pool, propagation.getPool());
+
+                // Every message is computed from the same previous messages as on one thread
+                assertArrayEquals(expectedPropagation.getAllBeliefs().getValues(),
+                        propagation.getAllBeliefs().getValues());
+                assertEquals(expectedPropagation.getReport().getIterations(), propagation.getReport().getIterations());
+                assertEquals(expectedPropagation.getReport().getResidual(), propagation.getReport().getResidual());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testFloatPrecision() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        for (boolean logDomain : new boolean[]{false, true}) {
+            LoopyBeliefPropagation<DefaultEdge> floatPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+            floatPropagation.setLogDomain(logDomain);
+            floatPropagation.setPrecision(Precision.FLOAT);
+            assertEquals(Precision.FLOAT, floatPropagation.getPrecision());
+
+            for (Variable<?> variable : List.of(a, b, c)) {
+                Message belief = floatPropagation.getBelief(variable);
+                assertEquals(Precision.DOUBLE, belief.getPrecision());
+                assertEquals(expectedPropagation.getBelief(variable), belief);
+            }
+        }
+    }
+
+    @Test
+    void testCompiledGraph() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        LoopyBeliefPropagation<DefaultEdge> compiledPropagation =
+                LoopyBeliefPropagation.create(CompiledFactorGraph.compile(factorGraph), 5);
+        for (Variable<?> variable : List.of(a, b, c)) {
+            assertEquals(expectedPropagation.getBelief(variable), compiledPropagation.getBelief(variable));
+        }
+        assertThrows(IllegalArgumentException.class, () -> compiledPropagation.getBelief(new Variable<>("d", 2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> LoopyBeliefPropagation.create(CompiledFactorGraph.compile(factorGraph), 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> BeliefPropagation.create(CompiledFactorGraph.compile(factorGraph)));
+    }
+
+    @Test
+    void testPropagationDoesNotHashFactors() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        int[] hashCount = {0};
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        factorGraph.addVariable(a);
+        factorGraph.addVariable(b);
+        for (int i = 0; i < 3; i++) {
+            factorGraph.addFactor(new Factor("f" + i, HDArray.create(new double[][]{{1, 2}, {3, 4 + i}}), a, b) {
+                @Override
+                public int hashCode() {
+                    hashCount[0]++;
+                    return super.hashCode();
+                }
+            });
+        }
+        factorGraph.fillEdges();
+
+        LoopyBeliefPropagation<DefaultEdge> loopyBeliefPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        int constructionCount = hashCount[0];
+        loopyBeliefPropagation.getBelief(a);
+        loopyBeliefPropagation.getBelief(b);
+        assertEquals(constructionCount, hashCount[0]);
+    }
+
+    @Test
+    void testLogDomainWithoutUnderflow() {
+        // Product of the messages from all the factors underflow in probability domain
+        Variable<String> a = new Variable<>("a", 2);
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        factorGraph.addVariable(a);
+        for (int i = 0; i < 6; i++) {
+            double[] distribution = {1e-100, 2e-100};
+            factorGraph.addFactor(new Factor("f" + i, HDArray.create(distribution), a));
+        }
+        factorGraph.fillEdges();
+
+        LoopyBeliefPropagation<DefaultEdge> loopyBeliefPropagation = new LoopyBeliefPropagation<>(factorGraph, 5);
+        assertTrue(Double.isNaN(loopyBeliefPropagation.getBelief(a).getProbability().get(0)));
+
+        loopyBeliefPropagation.setLogDomain(true);
+        double[] expectedDistribution = {1.0d / 65.0d, 64.0d / 65.0d};
+        assertEquals(new Message(HDArray.create(expectedDistribution), a), loopyBeliefPropagation.getBelief(a));
+    }
+
+    /**
+     * Create a cycle of three variables, each pair strongly preferring different states, which cannot all be
+     * satisfied. Synchronous updates oscillate on it.
+     */
+    static FactorGraph<DefaultEdge> createFrustratedGraph(Variable<?> a, Variable<?> b, Variable<?> c) {
+        double[][] repulsion = {{0.001d, 1.0d}, {1.0d, 0.001d}};
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        factorGraph.addVariable(a);
+        factorGraph.addVariable(b);
+        factorGraph.addVariable(c);
+        factorGraph.addFactor(new Factor("f1", HDArray.create(repulsion), a, b));
+        factorGraph.addFactor(new Factor("f2", HDArray.create(repulsion), b, c));
+        factorGraph.addFactor(new Factor("f3", HDArray.create(repulsion), c, a));
+        factorGraph.addFactor(new Factor("f4", HDArray.create(new double[]{0.9d, 0.1d}), a));
+        factorGraph.addFactor(new Factor("f5", HDArray.create(new double[]{0.9d, 0.1d}), b));
+        factorGraph.addFactor(new Factor("f6", HDArray.create(new double[]{0.9d, 0.1d}), c));
+        factorGraph.fillEdges();
+        return factorGraph;
+    }
+
+    /**
+     * Create a grid of binary variables, each coupled to its right and lower neighbors and with its own bias.
+     */
+    static CompiledFactorGraph createGrid(final int rows, final int columns) {
+        FactorGraphBuilder builder = new FactorGraphBuilder();
+        Variable<?>[][] variables = new Variable<?>[rows][columns];
+        HDArray coupling = HDArray.create(new double[][]{{2.0d, 1.0d}, {1.0d, 2.0d}});
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                variables[i][j] = new Variable<>(i * columns + j, 2);
+                builder.addVariable(variables[i][j]);
+                double bias = (double) ((i * 7 + j * 3) % 10 + 1) / 11.0d;
+                builder.addFactor(new Factor(HDArray.create(new double[]{bias, 1.0d - bias}), variables[i][j]));
+                if (i > 0) {
+                    builder.addFactor(new Factor(coupling, variables[i - 1][j], variables[i][j]));
+                }
+                if (j > 0) {
+                    builder.addFactor(new Factor(coupling, variables[i][j - 1], variables[i][j]));
+                }
+            }
+        }
+        return builder.buildCompiled();
+    }
+
+    static FactorGraph<DefaultEdge> createLoopyGraph(Variable<?> a, Variable<?> b, Variable<?> c) {
+        double[][] distribution_1 = {
+                {2.0d, 3.0d}, {6.0d, 4.0d}
+        };
+        Factor factor1 = new Factor("f1", HDArray.create(distribution_1), a, b);
+
+        double[][] distribution_2 = {
+                {7.0d, 2.0d, 3.0d}, {1.0d, 5.0d, 2.0d}
+        };
+        Factor factor2 = new Factor("f2", HDArray.create(distribution_2), a, c);
+
+        double[][] distribution_3 = {
+                {7.0d, 9.0d, 3.0d}, {6.0d, 4.0d, 2.0d}
+        };
+        Factor factor3 = new Factor("f3", HDArray.create(distribution_3), b, c);
+
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        factorGraph.addVariable(a);
+        factorGraph.addVariable(b);
+        factorGraph.addVariable(c);
+        factorGraph.addFactor(factor1);
+        factorGraph.addFactor(factor2);
+        factorGraph.addFactor(factor3);
+        factorGraph.fillEdges();
+        return factorGraph;
+    }
+}
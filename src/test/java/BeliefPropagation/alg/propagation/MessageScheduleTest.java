@@ -0,0 +1,138 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageScheduleTest {
+
+    @Test
+    void testTwoPass() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        Variable<String> d = new Variable<>("d", 2);
+        Factor factor1 = new Factor("f1", HDArray.createBySizeWithValue(1.0, 2, 2), a, b);
+        Factor factor2 = new Factor("f2", HDArray.createBySizeWithValue(1.0, 2, 2, 3), b, d, c);
+        Factor factor3 = new Factor("f3", HDArray.createBySizeWithValue(1.0, 3), c);
+        CompiledFactorGraph graph = new FactorGraphBuilder()
+                .addVariables(a, b, c, d)
+                .addFactors(factor1, factor2, factor3)
+                .buildCompiled();
+
+        MessageSchedule schedule = MessageSchedule.twoPass(graph);
+        assertEquals(2 * graph.edgeCount(), schedule.size());
+        assertEquals(graph.edgeCount(), schedule.getCollectCount());
+
+        // Every directed edge appears once, after all the messages it depends on
+        Set<Integer> computed = new HashSet<>();
+        for (int edge : schedule.getEdges()) {
+            for (int incomingEdge : MessageUpdatePlan.compile(graph, edge).getIncomingEdges()) {
+                assertTrue(computed.contains(incomingEdge));
+            }
+            assertTrue(computed.add(edge));
+        }
+
+        // The collect pass ends at the root a
+        int lastCollect = schedule.getEdges()[schedule.getCollectCount() - 1];
+        assertEquals(graph.variableId(a), graph.edgeVariable(CompiledFactorGraph.undirectedEdge(lastCollect)));
+        assertTrue(CompiledFactorGraph.isFromFactor(lastCollect));
+    }
+
+    @Test
+    void testTwoPassWithCycle() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        CompiledFactorGraph graph = new FactorGraphBuilder()
+                .addVariables(a, b)
+                .addFactors(new Factor(HDArray.createBySizeWithValue(1.0, 2, 2), a, b),
+                        new Factor(HDArray.createBySizeWithValue(1.0, 2, 2), a, b))
+                .buildCompiled();
+        assertThrows(IllegalArgumentException.class, () -> MessageSchedule.twoPass(graph));
+        assertThrows(NullPointerException.class, () -> MessageSchedule.twoPass(null));
+    }
+
+    @Test
+    void testSpanningTree() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 2);
+        CompiledFactorGraph graph = new FactorGraphBuilder()
+                .addVariables(a, b, c)
+                .addFactors(new Factor(HDArray.createBySizeWithValue(1.0, 2, 2), a, b),
+                        new Factor(HDArray.createBySizeWithValue(1.0, 2, 2), b, c),
+                        new Factor(HDArray.createBySizeWithValue(1.0, 2, 2), c, a))
+                .buildCompiled();
+
+        // The 5 edges of the spanning tree in both passes, followed by both directions of the edge closing the cycle
+        MessageSchedule schedule = MessageSchedule.spanningTree(graph);
+        assertTrue(schedule.isComplete(2 * graph.edgeCount()));
+        assertFalse(schedule.isComplete(2 * graph.edgeCount() + 2));
+        assertEquals(5, schedule.getCollectCount());
+        int[] edges = schedule.getEdges();
+        assertEquals(edges[edges.length - 1], CompiledFactorGraph.reverseEdge(edges[edges.length - 2]));
+        for (int i = 0; i < 10; i++) {
+            assertNotEquals(CompiledFactorGraph.undirectedEdge(edges[10]), CompiledFactorGraph.undirectedEdge(edges[i]));
+        }
+        assertThrows(NullPointerException.class, () -> MessageSchedule.spanningTree(null));
+    }
+
+    @Test
+    void testBreadthFirst() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        Factor factor1 = new Factor("f1", HDArray.createBySizeWithValue(1.0, 2, 2), a, b);
+        Factor factor2 = new Factor("f2", HDArray.createBySizeWithValue(1.0, 2, 3), b, c);
+        Factor factor3 = new Factor("f3", HDArray.createBySizeWithValue(1.0, 2, 3), a, c);
+        CompiledFactorGraph graph = new FactorGraphBuilder()
+                .addVariables(a, b, c)
+                .addFactors(factor1, factor2, factor3)
+                .buildCompiled();
+
+        MessageSchedule schedule = MessageSchedule.breadthFirst(graph);
+        assertTrue(schedule.isComplete(2 * graph.edgeCount()));
+        assertEquals(0, schedule.getCollectCount());
+
+        // The root a sends its messages first, followed by the factors it reaches
+        int[] edges = schedule.getEdges();
+        for (int i = 0; i < 2; i++) {
+            assertFalse(CompiledFactorGraph.isFromFactor(edges[i]));
+            assertEquals(graph.variableId(a), graph.edgeVariable(CompiledFactorGraph.undirectedEdge(edges[i])));
+        }
+        for (int i = 2; i < 6; i++) {
+            assertTrue(CompiledFactorGraph.isFromFactor(edges[i]));
+        }
+        assertThrows(NullPointerException.class, () -> MessageSchedule.breadthFirst(null));
+    }
+
+    @Test
+    void testBeliefPropagationOnLongChain() {
+        // Recursive message computation overflows the stack on a chain this long
+        final int length = 20000;
+        HDArray transition = HDArray.create(new double[][]{{0.9d, 0.1d}, {0.2d, 0.8d}});
+        FactorGraphBuilder builder = new FactorGraphBuilder(length, length);
+        Variable<?>[] variables = new Variable<?>[length];
+        for (int i = 0; i < length; i++) {
+            variables[i] = new Variable<>(i, 2);
+            builder.addVariable(variables[i]);
+        }
+        builder.addFactor(new Factor(HDArray.create(new double[]{1.0d, 0.0d}), variables[0]));
+        for (int i = 1; i < length; i++) {
+            builder.addFactor(new Factor(transition, variables[i - 1], variables[i]));
+        }
+
+        BeliefPropagation<Object> beliefPropagation = BeliefPropagation.create(builder.buildCompiled());
+        assertEquals(new Message(HDArray.create(new double[]{1.0d, 0.0d}), variables[0]),
+                beliefPropagation.getBelief(variables[0]));
+        assertEquals(new Message(HDArray.create(new double[]{0.9d, 0.1d}), variables[1]),
+                beliefPropagation.getBelief(variables[1]));
+        // The chain converges to the stationary distribution (2/3, 1/3)
+        assertEquals(new Message(HDArray.create(new double[]{2.0d / 3.0d, 1.0d / 3.0d}), variables[length - 1]),
+                beliefPropagation.getBelief(variables[length - 1]));
+    }
+}
@@ -0,0 +1,145 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.*;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageUpdatePlanTest {
+
+    @Test
+    void testCompileAndExecute() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 2);
+        Factor factor1 = new Factor("f1", HDArray.create(new double[][][]{
+                {{1, 2}, {3, 4}, {5, 6}}, {{7, 8}, {9, 10}, {11, 12}}}), a, b, c);
+        Factor factor2 = new Factor("f2", HDArray.create(new double[]{0.3, 0.7}), c);
+        FactorGraph<DefaultEdge> graph = new FactorGraph<>(DefaultEdge.class);
+        graph.addVariable(a);
+        graph.addVariable(b);
+        graph.addVariable(c);
+        graph.addFactor(factor1);
+        graph.addFactor(factor2);
+        graph.fillEdges();
+
+        CompiledFactorGraph compiledGraph = CompiledFactorGraph.compile(graph);
+        int edge1b = compiledGraph.findEdge(compiledGraph.factorId(factor1), compiledGraph.variableId(b));
+        MessageUpdatePlan plan = MessageUpdatePlan.compile(compiledGraph, CompiledFactorGraph.directedEdge(edge1b, true));
+        assertTrue(plan.isFactorToVariable());
+        assertSame(factor1, plan.getSource());
+        assertSame(b, plan.getTarget());
+        assertEquals(List.of(a, c), plan.getIncomingNodes());
+        int edge1a = compiledGraph.findEdge(compiledGraph.factorId(factor1), compiledGraph.variableId(a));
+        int edge1c = compiledGraph.findEdge(compiledGraph.factorId(factor1), compiledGraph.variableId(c));
+        assertArrayEquals(new int[]{CompiledFactorGraph.directedEdge(edge1a, false),
+                CompiledFactorGraph.directedEdge(edge1c, false)}, plan.getIncomingEdges());
+
+        Message[] incomingMessages = new Message[2];
+        for (int i = 0; i < 2; i++) {
+            Variable<?> variable = (Variable<?>) plan.getIncomingNodes().get(i);
+            double[] values = variable == a ? new double[]{0.4, 0.6} : new double[]{0.9, 0.1};
+            incomingMessages[i] = new Message(HDArray.create(values), variable);
+        }
+        Message expected = Message.messageMarginalization(
+                Message.messageProduct(new Message(factor1), incomingMessages[0], incomingMessages[1]), a, c);
+        Message result = plan.execute(new Message(factor1), incomingMessages);
+        assertEquals(List.of(b), result.getVariables());
+        assertArrayEquals(expected.getProbability().toArray(), result.getProbability().toArray(), 1e-12);
+
+        int edge2c = compiledGraph.findEdge(compiledGraph.factorId(factor2), compiledGraph.variableId(c));
+        MessageUpdatePlan variablePlan = MessageUpdatePlan.compile(compiledGraph, CompiledFactorGraph.directedEdge(edge2c, false));
+        assertFalse(variablePlan.isFactorToVariable());
+        assertEquals(List.of(factor1), variablePlan.getIncomingNodes());
+        assertArrayEquals(new int[]{CompiledFactorGraph.directedEdge(edge1c, true)}, variablePlan.getIncomingEdges());
+        Message message = new Message(HDArray.create(new double[]{0.2, 0.5}), c);
+        assertEquals(message, variablePlan.execute(null, new Message[]{message}));
+        assertThrows(IllegalArgumentException.class, () -> variablePlan.execute(null, new Message[0]));
+        assertThrows(IllegalArgumentException.class,
+                () -> MessageUpdatePlan.compile(compiledGraph, CompiledFactorGraph.directedEdge(edge1a, false))
+                        .execute(null, new Message[0]));
+    }
+
+    @Test
+    void testExecuteIntoOutputBuffer() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Factor factor1 = new Factor("f1", HDArray.create(new double[][]{{1, 2, 3}, {4, 5, 6}}), a, b);
+        Factor factor2 = new Factor("f2", HDArray.create(new double[]{0.3, 0.7}), a);
+        Factor factor3 = new Factor("f3", HDArray.create(new double[]{0.6, 0.4}), a);
+        FactorGraph<DefaultEdge> graph = new FactorGraph<>(DefaultEdge.class);
+        graph.addVariable(a);
+        graph.addVariable(b);
+        graph.addFactor(factor1);
+        graph.addFactor(factor2);
+        graph.addFactor(factor3);
+        graph.fillEdges();
+        CompiledFactorGraph compiledGraph = CompiledFactorGraph.compile(graph);
+
+        int edge1a = compiledGraph.findEdge(compiledGraph.factorId(factor1), compiledGraph.variableId(a));
+        MessageUpdatePlan plan = MessageUpdatePlan.compile(compiledGraph, CompiledFactorGraph.directedEdge(edge1a, true));
+        assertArrayEquals(new int[]{2}, plan.getOutputShape());
+        Message factorMessage = new Message(factor1);
+        Message[] incomingMessages = {new Message(HDArray.create(new double[]{0.2, 0.3, 0.5}), b)};
+        Message expected = plan.execute(factorMessage, incomingMessages);
+        assertArrayEquals(new double[]{2.3, 5.3}, expected.getProbability().toArray(), 1e-12);
+
+        // The output is computed into the storage of the buffer
+        Message buffer = plan.takeOutputBuffer(false, Precision.DOUBLE);
+        HDArray storage = buffer.getProbability();
+        assertSame(buffer, plan.execute(factorMessage, incomingMessages, buffer));
+        assertSame(storage, buffer.getProbability());
+        assertEquals(expected, buffer);
+        Message logBuffer = plan.takeOutputBuffer(true, Precision.DOUBLE);
+        plan.execute(factorMessage.toLogDomain(), new Message[]{incomingMessages[0].toLogDomain()}, logBuffer);
+        assertArrayEquals(expected.getProbability().log().toArray(), logBuffer.getProbability().toArray(), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> plan.execute(factorMessage, incomingMessages, logBuffer));
+
+        // A released buffer is handed out once, and only in the same domain and precision
+        plan.releaseOutputBuffer(buffer);
+        assertSame(buffer, plan.takeOutputBuffer(false, Precision.DOUBLE));
+        assertNotSame(buffer, plan.takeOutputBuffer(false, Precision.DOUBLE));
+        plan.releaseOutputBuffer(buffer);
+        assertNotSame(buffer, plan.takeOutputBuffer(true, Precision.DOUBLE));
+        plan.releaseOutputBuffer(buffer);
+        Message floatBuffer = plan.takeOutputBuffer(false, Precision.FLOAT);
+        assertNotSame(buffer, floatBuffer);
+        assertEquals(Precision.FLOAT, floatBuffer.getPrecision());
+        plan.execute(factorMessage, incomingMessages, floatBuffer);
+        assertArrayEquals(expected.getProbability().toArray(), floatBuffer.getProbability().toArray(), 1e-6);
+        assertThrows(IllegalArgumentException.class, () -> plan.releaseOutputBuffer(new Message(b)));
+        assertThrows(NullPointerException.class, () -> plan.takeOutputBuffer(false, null));
+
+        // The messages to a variable are multiplied in place
+        int edge2a = compiledGraph.findEdge(compiledGraph.factorId(factor2), compiledGraph.variableId(a));
+        MessageUpdatePlan variablePlan = MessageUpdatePlan.compile(compiledGraph, CompiledFactorGraph.directedEdge(edge2a, false));
+        Message[] factorMessages = {new Message(HDArray.create(new double[]{0.2, 0.8}), a),
+                new Message(HDArray.create(new double[]{0.5, 0.25}), a)};
+        Message output = variablePlan.takeOutputBuffer(false, Precision.DOUBLE);
+        variablePlan.execute(null, factorMessages, output);
+        assertArrayEquals(new double[]{0.1, 0.2}, output.getProbability().toArray(), 1e-12);
+        assertEquals(output, variablePlan.execute(null, factorMessages));
+        Message logOutput = variablePlan.takeOutputBuffer(true, Precision.DOUBLE);
+        variablePlan.execute(null, new Message[]{factorMessages[0].toLogDomain(), factorMessages[1].toLogDomain()},
+                logOutput);
+        assertArrayEquals(new double[]{Math.log(0.1), Math.log(0.2)}, logOutput.getProbability().toArray(), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> variablePlan.execute(null, factorMessages, logOutput));
+        assertThrows(NullPointerException.class, () -> variablePlan.execute(null, factorMessages, null));
+    }
+
+    @Test
+    void testCompileWithInvalidArgument() {
+        Variable<String> a = new Variable<>("a", 2);
+        FactorGraph<DefaultEdge> graph = new FactorGraph<>(DefaultEdge.class);
+        graph.addVariable(a);
+        graph.addFactor(new Factor(HDArray.create(new double[]{0.5, 0.5}), a));
+        graph.fillEdges();
+        CompiledFactorGraph compiledGraph = CompiledFactorGraph.compile(graph);
+        assertThrows(NullPointerException.class, () -> MessageUpdatePlan.compile(null, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> MessageUpdatePlan.compile(compiledGraph, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> MessageUpdatePlan.compile(compiledGraph, -1));
+    }
+}
@@ -0,0 +1,128 @@
+package BeliefPropagation.alg.propagation;
+
+import BeliefPropagation.graph.*;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResidualBeliefPropagationTest {
+
+    @Test
+    void testResidualBeliefPropagation() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        // Both schedules reach the same fixed point
+        LoopyBeliefPropagation<DefaultEdge> expectedPropagation = new LoopyBeliefPropagation<>(factorGraph, 200);
+        for (boolean logDomain : new boolean[]{false, true}) {
+            ResidualBeliefPropagation<DefaultEdge> propagation = new ResidualBeliefPropagation<>(factorGraph, 200, 1e-10);
+            propagation.setLogDomain(logDomain);
+            for (Variable<?> variable : List.of(a, b, c)) {
+                assertEquals(expectedPropagation.getBelief(variable), propagation.getBelief(variable));
+            }
+            assertTrue(propagation.isLooped());
+            assertTrue(propagation.getResidual() < 1e-10);
+            assertTrue(propagation.getUpdateCount() > 0);
+            assertTrue(propagation.getUpdateCount() < 200L * 2 * factorGraph.edgeSet().size());
+            assertTrue(propagation.getReport().isConverged());
+            assertEquals(propagation.getUpdateCount(), propagation.getReport().getUpdateCount());
+        }
+    }
+
+    @Test
+    void testUpdateLimit() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        ResidualBeliefPropagation<DefaultEdge> propagation = new ResidualBeliefPropagation<>(factorGraph, 1, 0.0d);
+        propagation.loopPropagation();
+        assertEquals(2L * factorGraph.edgeSet().size(), propagation.getUpdateCount());
+        assertTrue(propagation.getResidual() > 0.0d);
+        assertEquals(1, propagation.getReport().getIterations());
+        assertFalse(propagation.getReport().isConverged());
+
+        propagation.setTolerance(1e-8);
+        propagation.setIteration(100);
+        propagation.loopPropagation();
+        assertTrue(propagation.getResidual() < 1e-8);
+    }
+
+    @Test
+    void testPendingMessagesReused() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+
+        ResidualBeliefPropagation<DefaultEdge> propagation = new ResidualBeliefPropagation<>(factorGraph, 1, 0.0d);
+        propagation.setDamping(0.5d);
+        propagation.loopPropagation();
+        Set<HDArray> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int edge = 0; edge < propagation.messages.length; edge++) {
+            buffers.add(propagation.messages[edge].getProbability());
+            if (propagation.pendingMessages[edge] != null) {
+                buffers.add(propagation.pendingMessages[edge].getProbability());
+            }
+            if (propagation.updatePlans[edge].outputBuffer != null) {
+                buffers.add(propagation.updatePlans[edge].outputBuffer.getProbability());
+            }
+        }
+        assertTrue(buffers.size() <= 2 * propagation.messages.length);
+
+        // The pending messages are recomputed in place, and the committed ones swap with the replaced messages
+        propagation.setTolerance(1e-8);
+        propagation.setIteration(100);
+        propagation.loopPropagation();
+        assertTrue(propagation.getResidual() < 1e-8);
+        for (int edge = 0; edge < propagation.messages.length; edge++) {
+            assertTrue(buffers.contains(propagation.messages[edge].getProbability()));
+            if (propagation.pendingMessages[edge] != null) {
+                assertTrue(buffers.contains(propagation.pendingMessages[edge].getProbability()));
+            }
+        }
+    }
+
+    @Test
+    void testTree() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 2);
+        Variable<String> d = new Variable<>("d", 2);
+        List<Factor> factors = BeliefPropagationEvidenceTest.createTreeFactors(a, b, c, d);
+        CompiledFactorGraph graph = new FactorGraphBuilder().addVariables(a, b, c, d)
+                .addFactors(factors.toArray(new Factor[0])).buildCompiled();
+
+        // On a tree, every message is committed once its incoming messages are final
+        BeliefPropagation<?> expectedPropagation = BeliefPropagation.create(graph);
+        ResidualBeliefPropagation<?> propagation = ResidualBeliefPropagation.create(graph);
+        propagation.observe(d, 1);
+        expectedPropagation.observe(d, 1);
+        for (Variable<?> variable : List.of(a, b, c, d)) {
+            assertEquals(expectedPropagation.getBelief(variable), propagation.getBelief(variable));
+        }
+    }
+
+    @Test
+    void testInvalidTolerance() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        FactorGraph<DefaultEdge> factorGraph = LoopyBeliefPropagationTest.createLoopyGraph(a, b, c);
+        assertThrows(IllegalArgumentException.class, () -> new ResidualBeliefPropagation<>(factorGraph, 10, -1.0d));
+        assertThrows(IllegalArgumentException.class, () -> new ResidualBeliefPropagation<>(factorGraph, 10, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> new ResidualBeliefPropagation<>(factorGraph, 0, 1e-6));
+        ResidualBeliefPropagation<DefaultEdge> propagation = new ResidualBeliefPropagation<>(factorGraph);
+        assertEquals(1e-6, propagation.getTolerance());
+        assertThrows(IllegalArgumentException.class, () -> propagation.setTolerance(-1e-6));
+    }
+}
@@ -0,0 +1,53 @@
+package BeliefPropagation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayKernelsTest {
+
+    @Test
+    public void testSum() {
+        Random random = new Random(11);
+        for (int length = 0; length < 40; length++) {
+            double[] data = random.doubles(length + 3).toArray();
+            double expected = ScalarArrayKernels.sum(data, 3, length);
+            assertEquals(expected, VectorArrayKernels.sum(data, 3, length), 1e-12);
+            assertEquals(expected, ArrayKernels.sum(data, 3, length), 1e-12);
+        }
+    }
+
+    @Test
+    public void testBinary() {
+        Random random = new Random(12);
+        int[][] strideCombinations = {{1, 1}, {1, 0}, {0, 1}, {0, 0}};
+        for (Arithmetic operation : Arithmetic.values()) {
+            for (int[] strides : strideCombinations) {
+                for (int length = 0; length < 40; length++) {
+                    double[] a = random.doubles(length + 2, 0.5, 2.0).toArray();
+                    double[] b = random.doubles(length + 1, 0.5, 2.0).toArray();
+                    double[] expected = new double[length];
+                    double[] vector = new double[length];
+                    for (int i = 0; i < length; i++) {
+                        expected[i] = operation.operate(a[2 + i * strides[0]], b[1 + i * strides[1]]);
+                    }
+                    VectorArrayKernels.binary(operation, a, 2, strides[0], b, 1, strides[1], vector, 0, length);
+                    assertArrayEquals(expected, vector, operation + " " + length);
+
+                    double[] scalar = new double[length];
+                    ScalarArrayKernels.binary(operation, a, 2, strides[0], b, 1, strides[1], scalar, 0, length);
+                    assertArrayEquals(expected, scalar, operation + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryInPlace() {
+        double[] a = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+        VectorArrayKernels.binary(Arithmetic.MUL, a, 0, 1, new double[]{2.0}, 0, 0, a, 0, a.length);
+        assertArrayEquals(new double[]{2, 4, 6, 8, 10, 12, 14, 16, 18, 20, 22}, a);
+    }
+}
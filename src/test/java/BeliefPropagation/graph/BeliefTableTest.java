@@ -0,0 +1,44 @@
+package BeliefPropagation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeliefTableTest {
+
+    @Test
+    void testBeliefTable() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        BeliefTable table = new BeliefTable(List.of(a, b), new double[]{0.4d, 0.6d, 0.2d, 0.3d, 0.5d});
+        assertEquals(2, table.size());
+        assertEquals(b, table.getVariable(1));
+        assertArrayEquals(new int[]{0, 2, 5}, table.getOffsets());
+        assertEquals(2, table.getOffset(1));
+        assertEquals(3, table.getStateCount(1));
+        assertEquals(0.3d, table.get(1, 1));
+        assertEquals(1, table.indexOf(b));
+        assertEquals(-1, table.indexOf(new Variable<>("c", 2)));
+        assertEquals(new Message(HDArray.create(new double[]{0.2d, 0.3d, 0.5d}), b), table.getBelief(b));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> table.getBelief(new Variable<>("c", 2)));
+        assertThrows(IllegalArgumentException.class, () -> new BeliefTable(List.of(a, b), new double[4]));
+    }
+
+    @Test
+    void testOf() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Message beliefA = new Message(HDArray.create(new double[]{0.4d, 0.6d}), a);
+        Message beliefB = new Message(HDArray.create(new double[]{0.2d, 0.3d, 0.5d}), b).toLogDomain();
+        BeliefTable table = BeliefTable.of(List.of(beliefA, beliefB));
+        assertArrayEquals(new double[]{0.4d, 0.6d, 0.2d, 0.3d, 0.5d}, table.getValues(), 1e-12);
+        assertEquals(beliefA, table.getBelief(0));
+
+        Message joint = new Message(HDArray.createBySizeWithValue(0.25d, 2, 2), a, new Variable<>("c", 2));
+        assertThrows(IllegalArgumentException.class, () -> BeliefTable.of(List.of(joint)));
+    }
+}
@@ -0,0 +1,111 @@
+package BeliefPropagation.graph;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledFactorGraphTest {
+
+    @Test
+    void testCompile() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 2);
+        Factor factor1 = new Factor("f1", HDArray.createBySizeWithValue(1.0, 3, 2), b, a);
+        Factor factor2 = new Factor("f2", HDArray.createBySizeWithValue(1.0, 3, 2), b, c);
+        FactorGraph<DefaultEdge> graph = new FactorGraph<>(DefaultEdge.class);
+        graph.addVariable(a);
+        graph.addVariable(b);
+        graph.addVariable(c);
+        graph.addFactor(factor1);
+        graph.addFactor(factor2);
+        graph.fillEdges();
+
+        CompiledFactorGraph compiledGraph = CompiledFactorGraph.compile(graph);
+        assertEquals(3, compiledGraph.variableCount());
+        assertEquals(2, compiledGraph.factorCount());
+        assertEquals(4, compiledGraph.edgeCount());
+        assertEquals(0, compiledGraph.variableId(a));
+        assertEquals(1, compiledGraph.variableId(new Variable<>("b", 3)));
+        assertEquals(-1, compiledGraph.variableId(new Variable<>("d", 3)));
+        assertSame(factor2, compiledGraph.getFactor(compiledGraph.factorId(factor2)));
+        assertEquals(-1, compiledGraph.factorId(new Factor(factor2)));
+
+        // Edges of a factor are consecutive and ordered by axis
+        int f1 = compiledGraph.factorId(factor1);
+        assertEquals(2, compiledGraph.factorEdgeEnd(f1) - compiledGraph.factorEdgeStart(f1));
+        int edge = compiledGraph.factorEdgeStart(f1);
+        assertEquals(compiledGraph.variableId(b), compiledGraph.edgeVariable(edge));
+        assertEquals(0, compiledGraph.edgeAxis(edge));
+        assertEquals(compiledGraph.variableId(a), compiledGraph.edgeVariable(edge + 1));
+        assertEquals(1, compiledGraph.edgeAxis(edge + 1));
+        assertEquals(f1, compiledGraph.edgeFactor(edge + 1));
+        assertEquals(edge + 1, compiledGraph.findEdge(f1, compiledGraph.variableId(a)));
+        assertEquals(-1, compiledGraph.findEdge(f1, compiledGraph.variableId(c)));
+
+        int bId = compiledGraph.variableId(b);
+        assertEquals(2, compiledGraph.variableDegree(bId));
+        assertEquals(factor1, compiledGraph.getFactor(compiledGraph.edgeFactor(compiledGraph.variableEdge(bId, 0))));
+        assertEquals(factor2, compiledGraph.getFactor(compiledGraph.edgeFactor(compiledGraph.variableEdge(bId, 1))));
+        assertEquals(1, compiledGraph.variableDegree(compiledGraph.variableId(c)));
+
+        assertEquals(6, CompiledFactorGraph.directedEdge(3, false));
+        assertEquals(7, CompiledFactorGraph.directedEdge(3, true));
+        assertEquals(3, CompiledFactorGraph.undirectedEdge(7));
+        assertTrue(CompiledFactorGraph.isFromFactor(7));
+        assertEquals(6, CompiledFactorGraph.reverseEdge(7));
+        assertTrue(compiledGraph.isForest());
+
+        // Connect a and c by another factor to form a cycle
+        Factor factor3 = new Factor("f3", HDArray.createBySizeWithValue(1.0, 2, 2), a, c);
+        graph.addFactor(factor3);
+        graph.fillEdges();
+        assertTrue(compiledGraph.isForest());
+        assertFalse(CompiledFactorGraph.compile(graph).isForest());
+    }
+
+    @Test
+    void testCompileInvalidGraph() {
+        assertThrows(NullPointerException.class, () -> CompiledFactorGraph.compile(null));
+        FactorGraph<DefaultEdge> graph = new FactorGraph<>(DefaultEdge.class);
+        assertThrows(IllegalArgumentException.class, () -> CompiledFactorGraph.compile(graph));
+        Variable<String> a = new Variable<>("a", 2);
+        graph.addFactor(new Factor(HDArray.create(new double[]{0.5, 0.5}), a));
+        assertThrows(IllegalArgumentException.class, () -> CompiledFactorGraph.compile(graph));
+    }
+
+    @Test
+    void testSplitComponents() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 2);
+        Variable<String> d = new Variable<>("d", 2);
+        Factor factor1 = new Factor("f1", HDArray.createBySizeWithValue(1.0, 2, 2), c, a);
+        Factor factor2 = new Factor("f2", HDArray.createBySizeWithValue(1.0, 3), b);
+        Factor factor3 = new Factor("f3", HDArray.createBySizeWithValue(1.0, 2), a);
+        CompiledFactorGraph graph = new FactorGraphBuilder()
+                .addVariables(a, b, c, d)
+                .addFactors(factor1, factor2, factor3)
+                .buildCompiled();
+
+        // Nodes are variables a, b, c, d followed by factors f1, f2, f3
+        assertArrayEquals(new int[]{0, 1, 0, 2, 0, 1, 0}, graph.componentLabels());
+        CompiledFactorGraph[] components = graph.splitComponents(graph.componentLabels());
+        assertEquals(3, components.length);
+        assertEquals(2, components[0].variableCount());
+        assertEquals(2, components[0].factorCount());
+        assertEquals(3, components[0].edgeCount());
+        assertSame(factor3, components[0].getFactor(1));
+        int f1 = components[0].factorId(factor1);
+        assertEquals(components[0].variableId(c), components[0].edgeVariable(components[0].factorEdgeStart(f1)));
+        assertEquals(1, components[0].edgeAxis(components[0].factorEdgeStart(f1) + 1));
+        assertEquals(2, components[0].variableDegree(components[0].variableId(a)));
+        assertEquals(1, components[1].factorCount());
+        assertEquals(0, components[2].factorCount());
+        assertEquals(0, components[2].variableId(d));
+
+        CompiledFactorGraph single = components[0];
+        assertSame(single, single.splitComponents(single.componentLabels())[0]);
+    }
+}
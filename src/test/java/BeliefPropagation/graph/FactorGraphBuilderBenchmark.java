@@ -0,0 +1,82 @@
+package BeliefPropagation.graph;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare {@link FactorGraphBuilder} with {@link FactorGraph#addVariable(Variable)},
+ * {@link FactorGraph#addFactor(Factor)} and {@link FactorGraph#fillEdges()}, for a square grid with a unary factor
+ * on each variable and a pairwise factor on each pair of neighboring variables. Run by
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=FactorGraphBuilderBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Thread)
+public class FactorGraphBuilderBenchmark {
+    /**
+     * Number of variables on each side of the grid.
+     */
+    @Param({"100", "1000"})
+    public int size;
+
+    private Variable<?>[] variables;
+    private Factor[] factors;
+
+    @Setup
+    public void setup() {
+        final HDArray unary = HDArray.create(new double[]{0.4, 0.6});
+        final HDArray pairwise = HDArray.create(new double[][]{{0.9, 0.1}, {0.1, 0.9}});
+        this.variables = new Variable<?>[this.size * this.size];
+        for (int i = 0; i < this.variables.length; i++) {
+            this.variables[i] = new Variable<>(i, 2);
+        }
+        this.factors = new Factor[this.variables.length + 2 * this.size * (this.size - 1)];
+        int f = 0;
+        for (int row = 0; row < this.size; row++) {
+            for (int col = 0; col < this.size; col++) {
+                final Variable<?> variable = this.variables[row * this.size + col];
+                this.factors[f++] = new Factor(unary, variable);
+                if (col + 1 < this.size) {
+                    this.factors[f++] = new Factor(pairwise, variable, this.variables[row * this.size + col + 1]);
+                }
+                if (row + 1 < this.size) {
+                    this.factors[f++] = new Factor(pairwise, variable, this.variables[(row + 1) * this.size + col]);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public CompiledFactorGraph buildCompiled() {
+        return new FactorGraphBuilder(this.variables.length, this.factors.length)
+                .addVariables(this.variables)
+                .addFactors(this.factors)
+                .buildCompiled();
+    }
+
+    @Benchmark
+    public FactorGraph<DefaultEdge> build() {
+        return new FactorGraphBuilder(this.variables.length, this.factors.length)
+                .addVariables(this.variables)
+                .addFactors(this.factors)
+                .build(DefaultEdge.class);
+    }
+
+    @Benchmark
+    public FactorGraph<DefaultEdge> fillEdges() {
+        final FactorGraph<DefaultEdge> graph = new FactorGraph<>(DefaultEdge.class);
+        for (Variable<?> variable : this.variables) {
+            graph.addVariable(variable);
+        }
+        for (Factor factor : this.factors) {
+            graph.addFactor(factor);
+        }
+        graph.fillEdges();
+        return graph;
+    }
+}
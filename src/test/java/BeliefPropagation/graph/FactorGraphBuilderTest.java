@@ -0,0 +1,60 @@
+package BeliefPropagation.graph;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FactorGraphBuilderTest {
+
+    @Test
+    void testBuild() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 2);
+        Factor factor1 = new Factor("f1", HDArray.createBySizeWithValue(1.0, 3, 2), b, a);
+        Factor factor2 = new Factor("f2", HDArray.createBySizeWithValue(1.0, 3, 2), b, c);
+
+        FactorGraphBuilder builder = new FactorGraphBuilder()
+                .addVariables(a, b)
+                .addVariables(Stream.of(c))
+                .addFactors(Stream.of(factor1, factor2));
+
+        CompiledFactorGraph compiledGraph = builder.buildCompiled();
+        assertEquals(3, compiledGraph.variableCount());
+        assertEquals(2, compiledGraph.factorCount());
+        assertEquals(4, compiledGraph.edgeCount());
+        assertEquals(1, compiledGraph.variableId(b));
+        assertEquals(1, compiledGraph.factorId(factor2));
+        int f1 = compiledGraph.factorId(factor1);
+        assertEquals(compiledGraph.variableId(a), compiledGraph.edgeVariable(compiledGraph.factorEdgeStart(f1) + 1));
+        assertEquals(2, compiledGraph.variableDegree(compiledGraph.variableId(b)));
+        assertTrue(compiledGraph.isForest());
+
+        FactorGraph<DefaultEdge> graph = builder.build(DefaultEdge.class);
+        assertTrue(graph.isValid());
+        assertEquals(4, graph.edgeSet().size());
+        assertEquals(List.of(factor1, factor2), graph.getNeighborFactors(b));
+        assertEquals(List.of(b, a), graph.getNeighborVariables(factor1));
+    }
+
+    @Test
+    void testBuildWithInvalidInput() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Factor factor = new Factor(HDArray.createBySizeWithValue(1.0, 2, 2), a, b);
+
+        assertThrows(IllegalArgumentException.class, () -> new FactorGraphBuilder().addVariables(a, b).buildCompiled());
+        assertThrows(IllegalArgumentException.class,
+                () -> new FactorGraphBuilder().addVariables(a).addFactor(factor).buildCompiled());
+        assertThrows(IllegalArgumentException.class,
+                () -> new FactorGraphBuilder().addVariables(a, b, new Variable<>("a", 2)).addFactor(factor)
+                        .buildCompiled());
+        assertThrows(IllegalArgumentException.class,
+                () -> new FactorGraphBuilder().addVariables(a, b).addFactors(factor, factor).build(DefaultEdge.class));
+        assertThrows(NullPointerException.class, () -> new FactorGraphBuilder().addVariable(null));
+    }
+}
@@ -0,0 +1,70 @@
+package BeliefPropagation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FactorGraphStructureTest {
+
+    @Test
+    void testAnalyze() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 2);
+        Variable<String> d = new Variable<>("d", 2);
+        Variable<String> e = new Variable<>("e", 2);
+        // Cycle a - f1 - b - f2 - c - f3 - a, and a second cycle through f4 over a, b, c
+        Factor factor1 = new Factor("f1", HDArray.createBySizeWithValue(1.0, 2, 2), a, b);
+        Factor factor2 = new Factor("f2", HDArray.createBySizeWithValue(1.0, 2, 2), b, c);
+        Factor factor3 = new Factor("f3", HDArray.createBySizeWithValue(1.0, 2, 2), c, a);
+        Factor factor4 = new Factor("f4", HDArray.createBySizeWithValue(1.0, 2, 2, 2), a, b, c);
+        // Tree d - f5 - e
+        Factor factor5 = new Factor("f5", HDArray.createBySizeWithValue(1.0, 2, 2), d, e);
+        CompiledFactorGraph graph = new FactorGraphBuilder()
+                .addVariables(a, d, b, c, e)
+                .addFactors(factor1, factor5, factor2, factor3, factor4)
+                .buildCompiled();
+
+        FactorGraphStructure structure = FactorGraphStructure.analyze(graph);
+        assertFalse(structure.isAcyclic());
+        assertEquals(2, structure.componentCount());
+        assertEquals(0, structure.variableComponent(graph.variableId(a)));
+        assertEquals(1, structure.variableComponent(graph.variableId(d)));
+        assertEquals(0, structure.variableComponent(graph.variableId(c)));
+        assertEquals(1, structure.factorComponent(graph.factorId(factor5)));
+        assertEquals(0, structure.factorComponent(graph.factorId(factor4)));
+        // 9 edges over 7 nodes in the first component
+        assertEquals(3, structure.cycleRank(0));
+        assertEquals(0, structure.cycleRank(1));
+        assertEquals(3, structure.totalCycleRank());
+        assertFalse(structure.isTree(0));
+        assertTrue(structure.isTree(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> structure.variableComponent(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> structure.factorComponent(5));
+
+        // The structure is cached on the graph
+        assertSame(graph.getStructure(), graph.getStructure());
+        assertFalse(graph.isForest());
+        assertArrayEquals(structure.getComponentLabels(), graph.componentLabels());
+    }
+
+    @Test
+    void testAnalyzeForest() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 3);
+        CompiledFactorGraph graph = new FactorGraphBuilder()
+                .addVariables(a, b, c)
+                .addFactors(new Factor(HDArray.createBySizeWithValue(1.0, 2, 2), a, b),
+                        new Factor(HDArray.createBySizeWithValue(1.0, 2), a))
+                .buildCompiled();
+
+        FactorGraphStructure structure = graph.getStructure();
+        assertTrue(structure.isAcyclic());
+        assertTrue(graph.isForest());
+        assertEquals(2, structure.componentCount());
+        assertEquals(1, structure.variableComponent(graph.variableId(c)));
+        assertEquals(0, structure.totalCycleRank());
+        assertThrows(NullPointerException.class, () -> FactorGraphStructure.analyze(null));
+    }
+}
@@ -3,6 +3,9 @@ package BeliefPropagation.graph;
 import org.jgrapht.graph.DefaultEdge;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class FactorGraphTest {
@@ -150,4 +153,103 @@ class FactorGraphTest {
 
         assertThrows(RuntimeException.class, factorGraph::fillEdges);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testNodeIndex() {
+        Variable<String> var1 = new Variable<>("a", 2);
+        Variable<String> var2 = new Variable<>("b", 2);
+        Variable<String> var3 = new Variable<>("c", 3);
+        Factor factor1 = new Factor(HDArray.create(new double[][]{{2.0d, 3.0d}, {6.0d, 4.0d}}), var1, var2);
+        Factor factor2 = new Factor(HDArray.create(new double[][]{{7.0d, 2.0d, 3.0d}, {1.0d, 5.0d, 2.0d}}),
+                var2, var3);
+
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        factorGraph.addVariable(var1);
+        factorGraph.addVariable(var2);
+        factorGraph.addVertex(var3);
+        factorGraph.addFactor(factor1);
+        factorGraph.addVertex(factor2);
+        factorGraph.fillEdges();
+
+        assertEquals(Set.of(var1, var2, var3), factorGraph.variableSet());
+        assertEquals(Set.of(factor1, factor2), factorGraph.factorSet());
+        assertThrows(UnsupportedOperationException.class, () -> factorGraph.variableSet().add(var1));
+        assertEquals(List.of(var1, var2), factorGraph.getNeighborVariables(factor1));
+        assertEquals(List.of(factor1, factor2), factorGraph.getNeighborFactors(var2));
+        assertEquals(List.of(factor2), factorGraph.getIncomingFactors(var2, factor1));
+        assertEquals(List.of(factor1, factor2), factorGraph.getIncomingFactors(var2, null));
+        assertEquals(List.of(var3), factorGraph.getIncomingVariables(factor2, var2));
+        assertThrows(IllegalArgumentException.class,
+                () -> factorGraph.getNeighborFactors(new Variable<>("d", 2)));
+
+        // Factors keep their order, and an equal instance resolves to the indexed factor
+        assertEquals(List.of(factor1, factor2), List.copyOf(factorGraph.factorSet()));
+        assertTrue(factorGraph.factorSet().contains(new Factor(factor2)));
+        assertEquals(List.of(var2, var3), factorGraph.getNeighborVariables(new Factor(factor2)));
+        assertThrows(UnsupportedOperationException.class, () -> factorGraph.factorSet().add(factor1));
+
+        // Removing an edge or a vertex updates the index
+        factorGraph.removeEdge(factor1, var2);
+        assertFalse(factorGraph.isValid());
+        assertEquals(List.of(factor2), factorGraph.getNeighborFactors(var2));
+        assertEquals(List.of(var1), factorGraph.getNeighborVariables(factor1));
+        factorGraph.removeVertex(factor1);
+        assertEquals(Set.of(factor2), factorGraph.factorSet());
+        assertTrue(factorGraph.getNeighborFactors(var1).isEmpty());
+        assertTrue(factorGraph.isValid());
+        factorGraph.removeVertex(var3);
+        assertEquals(Set.of(var1, var2), factorGraph.variableSet());
+        assertEquals(List.of(var2), factorGraph.getNeighborVariables(factor2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testNodeIndexOfClone() {
+        Variable<String> var1 = new Variable<>("a", 2);
+        Variable<String> var2 = new Variable<>("b", 2);
+        Factor factor = new Factor(HDArray.create(new double[][]{{2.0d, 3.0d}, {6.0d, 4.0d}}), var1, var2);
+
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        factorGraph.addVariable(var1);
+        factorGraph.addVariable(var2);
+        factorGraph.addFactor(factor);
+        factorGraph.fillEdges();
+
+        FactorGraph<DefaultEdge> clone = (FactorGraph<DefaultEdge>) factorGraph.clone();
+        clone.removeVertex(var2);
+        assertEquals(Set.of(var1), clone.variableSet());
+        assertEquals(List.of(var1), clone.getNeighborVariables(factor));
+        assertEquals(Set.of(var1, var2), factorGraph.variableSet());
+        assertEquals(List.of(var1, var2), factorGraph.getNeighborVariables(factor));
+        assertTrue(factorGraph.isValid());
+    }
+
+    @Test
+    void testCompileIsCached() {
+        Variable<String> var1 = new Variable<>("a", 2);
+        Variable<String> var2 = new Variable<>("b", 2);
+        Factor factor1 = new Factor(HDArray.create(new double[][]{{2.0d, 3.0d}, {6.0d, 4.0d}}), var1, var2);
+        Factor factor2 = new Factor(HDArray.create(new double[]{1.0d, 3.0d}), var2);
+
+        FactorGraph<DefaultEdge> factorGraph = new FactorGraph<>(DefaultEdge.class);
+        factorGraph.addVariable(var1);
+        factorGraph.addVariable(var2);
+        factorGraph.addFactor(factor1);
+        factorGraph.fillEdges();
+
+        CompiledFactorGraph compiledGraph = factorGraph.compile();
+        assertSame(compiledGraph, factorGraph.compile());
+        assertTrue(compiledGraph.isForest());
+
+        // Modifying the graph discards the compiled graph
+        factorGraph.addFactor(factor2);
+        factorGraph.addEdge(factor2, var2);
+        CompiledFactorGraph modifiedGraph = factorGraph.compile();
+        assertNotSame(compiledGraph, modifiedGraph);
+        assertEquals(2, modifiedGraph.factorCount());
+        assertEquals(1, compiledGraph.factorCount());
+
+        factorGraph.removeVertex(factor2);
+        assertEquals(1, factorGraph.compile().factorCount());
+    }
+}
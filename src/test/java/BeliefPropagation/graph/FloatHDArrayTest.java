@@ -0,0 +1,91 @@
+package BeliefPropagation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FloatHDArrayTest {
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    public void testConstructor() {
+        FloatHDArray array = new FloatHDArray(new int[]{2, 2}, new double[]{0.1, 0.2, 0.3, 0.4});
+        assertEquals(Precision.FLOAT, array.precision());
+        assertArrayEquals(new int[]{2, 2}, array.shape());
+        assertEquals((float) 0.3, array.get(1, 0));
+        assertEquals(4, array.floatData.length);
+        assertNull(array.data);
+
+        FloatHDArray filled = FloatHDArray.createBySizeWithValue(0.5, 2, 3);
+        assertEquals(3.0, filled.sum());
+    }
+
+    @Test
+    public void testToPrecision() {
+        HDArray array = HDArray.create(new double[][]{{1.0, 2.0}, {3.0, 4.0}});
+        HDArray floatArray = array.toPrecision(Precision.FLOAT);
+        assertInstanceOf(FloatHDArray.class, floatArray);
+        assertEquals(array, floatArray);
+        assertEquals(array, floatArray.toPrecision(Precision.DOUBLE));
+        assertEquals(Precision.DOUBLE, floatArray.toPrecision(Precision.DOUBLE).precision());
+        assertSame(floatArray, floatArray.toPrecision(Precision.FLOAT));
+        assertEquals(array.hashCode(), floatArray.toPrecision(Precision.DOUBLE).hashCode());
+    }
+
+    @Test
+    public void testOperationKeepPrecision() {
+        HDArray array = FloatHDArray.createBySizeWithValue(1.0, 2, 3, 4);
+        assertEquals(Precision.FLOAT, array.mul(2.0).precision());
+        assertEquals(Precision.FLOAT, array.mul(HDArray.createBySizeWithValue(2.0, 4)).precision());
+        assertEquals(Precision.FLOAT, array.sumAlongAxis(1).precision());
+        assertEquals(Precision.FLOAT, array.sumAlongAxis(0, 1, 2).precision());
+        assertEquals(Precision.FLOAT, array.logSumExpAlongAxis(0).precision());
+        assertEquals(Precision.FLOAT, array.moveAxis(new int[]{0, 2}, new int[]{2, 0}).precision());
+        assertEquals(Precision.FLOAT, array.reshape(6, 4).precision());
+        assertEquals(Precision.FLOAT, array.appendDimension(4, true).precision());
+        assertEquals(Precision.FLOAT, array.clone().precision());
+    }
+
+    @Test
+    public void testViewSharesData() {
+        FloatHDArray array = new FloatHDArray(new int[]{2, 3}, new double[]{1, 2, 3, 4, 5, 6});
+        HDArray view = array.moveAxis(new int[]{0, 1}, new int[]{1, 0});
+        view.set(10.0, 2, 1);
+        assertEquals(10.0, array.get(1, 2));
+        view.muli(2.0);
+        assertEquals(20.0, array.get(1, 2));
+        assertEquals(2.0, array.get(0, 0));
+    }
+
+    @Test
+    public void testAccuracyAgainstDouble() {
+        Random random = new Random(5);
+        int[] shape = {3, 4, 5, 2};
+        double[] values = random.doubles(HDArray.countElement(shape), 0.01, 1.0).toArray();
+        HDArray doubleArray = new HDArray(shape, values);
+        HDArray floatArray = new FloatHDArray(shape, values);
+        HDArray other = new HDArray(new int[]{5, 2}, random.doubles(10, 0.01, 1.0).toArray());
+
+        assertAllClose(doubleArray.mul(other), floatArray.mul(other));
+        assertAllClose(doubleArray.div(other), floatArray.div(other));
+        assertAllClose(doubleArray.sumAlongAxis(0, 2), floatArray.sumAlongAxis(0, 2));
+        assertAllClose(doubleArray.log().logSumExpAlongAxis(1, 3), floatArray.log().logSumExpAlongAxis(1, 3));
+
+        HDArray doubleNormalized = doubleArray.clone();
+        doubleNormalized.normalize();
+        HDArray floatNormalized = floatArray.clone();
+        floatNormalized.normalize();
+        assertAllClose(doubleNormalized, floatNormalized);
+    }
+
+    private static void assertAllClose(HDArray expected, HDArray actual) {
+        assertArrayEquals(expected.shape(), actual.shape());
+        double[] expectedData = expected.toArray();
+        double[] actualData = actual.toArray();
+        for (int i = 0; i < expectedData.length; i++) {
+            assertEquals(expectedData[i], actualData[i], TOLERANCE * Math.max(1.0, Math.abs(expectedData[i])));
+        }
+    }
+}
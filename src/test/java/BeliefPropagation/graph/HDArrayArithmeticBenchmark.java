@@ -0,0 +1,88 @@
+package BeliefPropagation.graph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the arithmetic kernels of {@link HDArray} with the per-element {@link HDArray.elementOperation} path
+ * on message-sized and factor-sized arrays. The kernels use SIMD instructions if the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}, which is the case for the {@code benchmark} profile.
+ * Run by {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=HDArrayArithmeticBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HDArrayArithmeticBenchmark {
+    /**
+     * Shape of the array. {@code 4x4} is a message between two variables, while the others are factor tables.
+     */
+    @Param({"4x4", "16x16x16", "32x32x32x8"})
+    public String shape;
+
+    private HDArray array;
+    private HDArray row;
+
+    @Setup
+    public void setup() {
+        final int[] dims = java.util.Arrays.stream(this.shape.split("x")).mapToInt(Integer::parseInt).toArray();
+        final Random random = new Random(0);
+        this.array = new HDArray(dims, random.doubles(HDArray.countElement(dims), 0.1, 1.0).toArray());
+        final int last = dims[dims.length - 1];
+        this.row = new HDArray(new int[]{last}, random.doubles(last, 0.1, 1.0).toArray());
+    }
+
+    @Benchmark
+    public HDArray mulKernel() {
+        return this.array.mul(this.row);
+    }
+
+    @Benchmark
+    public HDArray mulElementOperation() {
+        return this.array.broadcastOperation(this.row, (a, b) -> a * b);
+    }
+
+    @Benchmark
+    public HDArray divScalarKernel() {
+        return this.array.div(3.0);
+    }
+
+    @Benchmark
+    public HDArray divScalarElementOperation() {
+        return this.array.operation(3.0, (a, b) -> a / b);
+    }
+
+    @Benchmark
+    public double sumKernel() {
+        return this.array.sum();
+    }
+
+    @Benchmark
+    public double sumScalar() {
+        return ScalarArrayKernels.sum(this.array.data, 0, this.array.data.length);
+    }
+
+    @Benchmark
+    public HDArray normalizeKernel() {
+        final HDArray copy = this.array.clone();
+        copy.normalize();
+        return copy;
+    }
+
+    @Benchmark
+    public HDArray normalizeElementOperation() {
+        final HDArray copy = this.array.clone();
+        final double sum = copy.sum();
+        copy.operationInPlace(sum, (a, b) -> a / b);
+        return copy;
+    }
+
+    @Benchmark
+    public HDArray sumAlongFirstAxis() {
+        return this.array.sumAlongAxis(0);
+    }
+}
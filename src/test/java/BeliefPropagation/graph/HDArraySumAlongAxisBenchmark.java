@@ -0,0 +1,81 @@
+package BeliefPropagation.graph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare {@link HDArray#sumAlongAxis(int...)} with the previous implementation, which converted every element
+ * between flatten index and indices. All axes except the first one are summed, same as marginalizing a factor
+ * into the message of one variable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HDArraySumAlongAxisBenchmark {
+
+    /**
+     * Rank of the summed array.
+     */
+    @Param({"3", "4", "5", "6"})
+    public int rank;
+
+    /**
+     * Number of state of every dimension.
+     */
+    @Param({"4"})
+    public int stateCount;
+
+    protected HDArray array;
+
+    protected int[] axis;
+
+    @Setup
+    public void setup() {
+        final int[] shape = new int[this.rank];
+        Arrays.fill(shape, this.stateCount);
+        final Random random = new Random(0);
+        final double[] data = new double[HDArray.countElement(shape)];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextDouble();
+        }
+        this.array = new HDArray(shape, data);
+        this.axis = new int[this.rank - 1];
+        for (int i = 0; i < this.axis.length; i++) {
+            this.axis[i] = i + 1;
+        }
+    }
+
+    @Benchmark
+    public HDArray odometer() {
+        return this.array.sumAlongAxis(this.axis);
+    }
+
+    @Benchmark
+    public HDArray legacy() {
+        return HDArraySumAlongAxisBenchmark.legacySumAlongAxis(this.array, this.axis);
+    }
+
+    /**
+     * Previous implementation of {@link HDArray#sumAlongAxis(int...)} on contiguous array.
+     * @param array Array to sum.
+     * @param axis Axis to sum.
+     * @return Sum along given axis.
+     */
+    protected static HDArray legacySumAlongAxis(final HDArray array, final int... axis) {
+        int[] newShape = HDArray.removeElementByIndices(array.shape, axis);
+        double[] newData = new double[HDArray.countElement(newShape)];
+        for (int flattenIdx = 0; flattenIdx < array.data.length; flattenIdx++) {
+            int[] indices = HDArray.flattenIdxToIndices(flattenIdx, array.shape);
+            int[] newIndices = HDArray.removeElementByIndices(indices, axis);
+            int newFlattenIdx = HDArray.indicesToFlattenIdx(newIndices, newShape);
+            newData[newFlattenIdx] += array.data[flattenIdx];
+        }
+        return new HDArray(newShape, newData);
+    }
+}
@@ -2,6 +2,9 @@ package BeliefPropagation.graph;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class HDArrayTest {
@@ -440,4 +443,359 @@ class HDArrayTest {
         HDArray array7 = HDArray.create(data7);
         assertEquals(array7, array.sumAlongAxis(0, 1, 2));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMoveAxis_sharesData() {
+        double[][][] data = {
+                {{0.2, 0.5}, {0.6, 0.5}}, {{1.0, 0.6}, {0.2, 0.3}}
+        };
+        HDArray array = HDArray.create(data);
+        HDArray view = array.moveAxis(new int[]{0, 1, 2}, new int[]{2, 0, 1});
+
+        assertFalse(view.isContiguous());
+        assertEquals(array.get(1, 0, 1), view.get(0, 1, 1));
+
+        // Writing through the view is visible in the original array
+        view.set(9.0d, 0, 1, 1);
+        assertEquals(9.0d, array.get(1, 0, 1));
+
+        // Clone is always contiguous and independent
+        HDArray clone = view.clone();
+        assertTrue(clone.isContiguous());
+        assertEquals(view, clone);
+        clone.set(0.0d, 0, 1, 1);
+        assertEquals(9.0d, view.get(0, 1, 1));
+    }
+
+    @Test
+    public void testOperationOnView() {
+        double[][] data = {
+                {1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}
+        };
+        HDArray array = HDArray.create(data);
+        HDArray transposed = array.moveAxis(new int[]{0, 1}, new int[]{1, 0});
+
+        double[][] expectedData = {
+                {1.0, 4.0}, {2.0, 5.0}, {3.0, 6.0}
+        };
+        assertEquals(HDArray.create(expectedData), transposed);
+        assertEquals("[[1.0, 4.0], [2.0, 5.0], [3.0, 6.0]]", transposed.toString());
+        assertEquals(21.0d, transposed.sum());
+
+        double[] expectedSum = {6.0, 15.0};
+        assertEquals(HDArray.create(expectedSum), transposed.sumAlongAxis(0));
+
+        // Reshape of a non-contiguous view follows the logical order of the view
+        double[] expectedFlatten = {1.0, 4.0, 2.0, 5.0, 3.0, 6.0};
+        assertEquals(HDArray.create(expectedFlatten), transposed.reshape(6));
+
+        transposed.muli(2.0d);
+        assertEquals(12.0d, array.get(1, 2));
+        transposed.fill(1.0d);
+        assertEquals(6.0d, array.sum());
+    }
+
+    @Test
+    public void testAppendDimension() {
+        double[] data = {1.0, 2.0, 3.0};
+        HDArray array = HDArray.create(data);
+
+        HDArray front = array.appendDimension(3, true);
+        assertArrayEquals(new int[]{1, 1, 3}, front.shape());
+        assertEquals(2.0d, front.get(0, 0, 1));
+
+        HDArray back = array.appendDimension(3, false);
+        assertArrayEquals(new int[]{3, 1, 1}, back.shape());
+        assertEquals(3.0d, back.get(2, 0, 0));
+
+        back.set(5.0d, 2, 0, 0);
+        assertEquals(5.0d, array.get(2));
+        assertThrows(IllegalArgumentException.class, () -> array.appendDimension(0, true));
+    }
+
+    @Test
+    public void testSumAlongAxis_higherRank() {
+        final Random random = new Random(0);
+        for (int rank = 3; rank <= 6; rank++) {
+            final int[] shape = new int[rank];
+            for (int i = 0; i < rank; i++) {
+                shape[i] = 2 + i % 3;
+            }
+            HDArray array = HDArray.createBySize(shape);
+            array.operationInPlace(0.0d, (a, b) -> random.nextDouble());
+
+            // Sum every non-empty proper subset of axes, on both the array and a permuted view of it
+            final int[] reversedOrder = new int[rank];
+            final int[] order = new int[rank];
+            for (int i = 0; i < rank; i++) {
+                order[i] = i;
+                reversedOrder[i] = rank - 1 - i;
+            }
+            HDArray view = array.moveAxis(order, reversedOrder);
+            for (int mask = 1; mask < (1 << rank) - 1; mask++) {
+                final int finalMask = mask;
+                final int[] axis = IntStream.range(0, rank)
+                        .filter(i -> (finalMask & (1 << i)) != 0).toArray();
+                assertEquals(HDArrayTest.bruteForceSumAlongAxis(array, axis), array.sumAlongAxis(axis));
+                assertEquals(HDArrayTest.bruteForceSumAlongAxis(view, axis), view.sumAlongAxis(axis));
+            }
+        }
+    }
+
+    private static HDArray bruteForceSumAlongAxis(final HDArray array, final int... axis) {
+        final int[] newShape = HDArray.removeElementByIndices(array.shape(), axis);
+        final HDArray result = HDArray.createBySize(newShape);
+        final int count = HDArray.countElement(array.shape());
+        for (int flattenIdx = 0; flattenIdx < count; flattenIdx++) {
+            final int[] indices = HDArray.flattenIdxToIndices(flattenIdx, array.shape());
+            final int[] newIndices = HDArray.removeElementByIndices(indices, axis);
+            result.set(result.get(newIndices) + array.get(indices), newIndices);
+        }
+        return result;
+    }
+
+    @Test
+    public void testBroadcastWithDifferentRank() {
+        double[][] data1 = {
+                {1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}
+        };
+        HDArray array1 = HDArray.create(data1);
+        double[] data2 = {1.0, 10.0, 100.0};
+        HDArray array2 = HDArray.create(data2);
+
+        double[][] expectedData = {
+                {1.0, 20.0, 300.0}, {4.0, 50.0, 600.0}
+        };
+        assertEquals(HDArray.create(expectedData), array1.mul(array2));
+        assertEquals(HDArray.create(expectedData), array2.mul(array1));
+
+        // Broadcast a permuted view without copying it first
+        HDArray column = HDArray.create(new double[]{1.0, 2.0}).appendDimension(2, false);
+        double[][] expectedSum = {
+                {2.0, 3.0, 4.0}, {6.0, 7.0, 8.0}
+        };
+        assertEquals(HDArray.create(expectedSum), array1.add(column));
+        assertEquals(HDArray.create(expectedSum),
+                array1.moveAxis(new int[]{0, 1}, new int[]{1, 0}).add(column.reshape(1, 2))
+                        .moveAxis(new int[]{0, 1}, new int[]{1, 0}));
+
+        HDArray mismatch = HDArray.create(new double[]{1.0, 2.0});
+        assertThrows(IllegalArgumentException.class, () -> array1.mul(mismatch));
+    }
+
+    @Test
+    public void testBroadcastArray() {
+        double[] data = {1.0, 2.0};
+        HDArray array = HDArray.create(data);
+        HDArray broadcast = HDArray.broadcastArray(array.appendDimension(2, false), new int[]{2, 3});
+
+        assertSame(array.data, broadcast.data);
+        assertArrayEquals(new int[]{2, 3}, broadcast.shape());
+        double[][] expectedData = {
+                {1.0, 1.0, 1.0}, {2.0, 2.0, 2.0}
+        };
+        assertEquals(HDArray.create(expectedData), broadcast);
+        assertThrows(IllegalArgumentException.class, () -> HDArray.broadcastArray(array, new int[]{3}));
+        assertThrows(IllegalArgumentException.class, () -> HDArray.broadcastArray(broadcast, new int[]{3}));
+    }
+
+    @Test
+    public void testLogSumExpAlongAxis() {
+        double[][][] data = {
+                {{0.5, 0.7}, {0.1, 0.2}},
+                {{0.2, 0.3}, {0.4, 0.5}},
+                {{0.3, 0.9}, {0.6, 0.0}}
+        };
+        HDArray array = HDArray.create(data);
+        HDArray logArray = array.log();
+
+        assertEquals(array.sumAlongAxis(0), logArray.logSumExpAlongAxis(0).exp());
+        assertEquals(array.sumAlongAxis(1, 2), logArray.logSumExpAlongAxis(1, 2).exp());
+        assertEquals(array.sumAlongAxis(0, 2), logArray.logSumExpAlongAxis(0, 2).exp());
+        assertEquals(Math.log(array.sum()), logArray.logSumExp(), 1e-12);
+        assertEquals(array.sumAlongAxis(0, 1, 2), logArray.logSumExpAlongAxis(0, 1, 2).exp());
+
+        // Values far below the smallest double does not underflow
+        double[][] tinyData = {
+                {-1000.0, -1000.0}, {-2000.0, Double.NEGATIVE_INFINITY}
+        };
+        HDArray tinyArray = HDArray.create(tinyData);
+        double[] expectedData = {-1000.0 + Math.log(2.0), -2000.0};
+        assertEquals(HDArray.create(expectedData), tinyArray.logSumExpAlongAxis(1));
+
+        double[][] zeroData = {
+                {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY}, {0.0, 0.0}
+        };
+        assertEquals(Double.NEGATIVE_INFINITY, HDArray.create(zeroData).logSumExpAlongAxis(1).get(0));
+    }
+
+    @Test
+    public void testLogNormalize() {
+        double[] data = {-1000.0, -1000.0 + Math.log(3.0)};
+        HDArray array = HDArray.create(data);
+        array.logNormalize();
+        double[] expectedData = {0.25, 0.75};
+        assertEquals(HDArray.create(expectedData), array.exp());
+
+        double[] zeroData = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        assertThrows(ArithmeticException.class, () -> HDArray.create(zeroData).logNormalize());
+    }
+
+    @Test
+    public void testCoalesceDimensions() {
+        int[] shape = {2, 3, 1, 4};
+        long[] strides1 = {12, 4, 4, 1};
+        long[] strides2 = {0, 0, 0, 1};
+        assertEquals(2, HDArray.coalesceDimensions(shape, strides1, strides2));
+        assertArrayEquals(new int[]{6, 4}, java.util.Arrays.copyOf(shape, 2));
+        assertArrayEquals(new long[]{4, 1}, java.util.Arrays.copyOf(strides1, 2));
+        assertArrayEquals(new long[]{0, 1}, java.util.Arrays.copyOf(strides2, 2));
+
+        int[] ones = {1, 1};
+        long[] onesStrides = {1, 1};
+        assertEquals(1, HDArray.coalesceDimensions(ones, onesStrides));
+        assertEquals(1, ones[0]);
+    }
+
+    @Test
+    public void testArithmeticKernelMatchesElementOperation() {
+        Random random = new Random(13);
+        HDArray array = new HDArray(new int[]{3, 5, 7}, random.doubles(105, 0.5, 2.0).toArray());
+        HDArray permuted = array.moveAxis(new int[]{0, 2}, new int[]{2, 0});
+        HDArray other = new HDArray(new int[]{5, 1}, random.doubles(5, 0.5, 2.0).toArray());
+        for (HDArray operand : new HDArray[]{array, permuted}) {
+            for (Arithmetic operation : Arithmetic.values()) {
+                HDArray expected = operand.broadcastOperation(other, (a, b) -> operation.operate(a, b));
+                assertEquals(expected, operand.broadcastOperation(other, operation));
+                HDArray reversed = other.broadcastOperation(operand, (a, b) -> operation.operate(a, b));
+                assertEquals(reversed, other.broadcastOperation(operand, operation));
+                assertEquals(operand.operation(1.5, (a, b) -> operation.operate(a, b)),
+                        operand.operation(1.5, operation));
+            }
+        }
+        assertEquals(array.sum(), IntStream.range(0, 105).mapToDouble(i -> array.data[i]).sum(), 1e-9);
+    }
+
+    @Test
+    public void testMulSumAlongAxis() {
+        Random random = new Random(17);
+        HDArray array = new HDArray(new int[]{3, 4, 5}, random.doubles(60, 0.1, 1.0).toArray());
+        HDArray row = new HDArray(new int[]{5}, random.doubles(5, 0.1, 1.0).toArray());
+        HDArray column = new HDArray(new int[]{3, 1, 1}, random.doubles(3, 0.1, 1.0).toArray());
+        HDArray matrix = new HDArray(new int[]{5, 4}, random.doubles(20, 0.1, 1.0).toArray())
+                .moveAxis(new int[]{0, 1}, new int[]{1, 0});
+        HDArray[] operands = {row, column, matrix};
+        int[][] axes = {{}, {0}, {1}, {2}, {0, 2}, {1, 2}, {0, 1, 2}};
+        // Double arrays use the kernels, while float arrays and permuted arrays walk every element
+        HDArray permuted = array.moveAxis(new int[]{0, 2}, new int[]{2, 0}).contiguous()
+                .moveAxis(new int[]{0, 2}, new int[]{2, 0});
+        for (HDArray table : new HDArray[]{array, permuted, FloatHDArray.create(array)}) {
+            for (int[] axis : axes) {
+                HDArray expected = table.mul(row).mul(column).mul(matrix).sumAlongAxis(axis);
+                HDArray result = table.mulSumAlongAxis(operands, axis);
+                assertArrayEquals(expected.shape(), result.shape());
+                assertArrayEquals(expected.toArray(), result.toArray(), 1e-6);
+
+                HDArray logExpected = table.log().add(row.log()).add(column.log()).add(matrix.log())
+                        .logSumExpAlongAxis(axis);
+                HDArray logResult = table.log().addLogSumExpAlongAxis(
+                        new HDArray[]{row.log(), column.log(), matrix.log()}, axis);
+                assertArrayEquals(logExpected.toArray(), logResult.toArray(), 1e-6);
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> array.mulSumAlongAxis(new HDArray[]{HDArray.createBySize(4)}, 0));
+    }
+
+    @Test
+    void testProductAlongAxisIntoOutput() {
+        Random random = new Random(23);
+        HDArray array = new HDArray(new int[]{3, 4, 5}, random.doubles(60, 0.1, 1.0).toArray());
+        HDArray[] operands = {new HDArray(new int[]{5}, random.doubles(5, 0.1, 1.0).toArray()),
+                new HDArray(new int[]{3, 1, 1}, random.doubles(3, 0.1, 1.0).toArray())};
+        HDArray[] logOperands = {operands[0].log(), operands[1].log()};
+        for (int[] axis : new int[][]{{0}, {0, 2}, {0, 1, 2}}) {
+            HDArray expected = array.mulSumAlongAxis(operands, axis);
+            HDArray logExpected = array.log().addLogSumExpAlongAxis(logOperands, axis);
+            // A dense output is overwritten in place, while any other output is copied into
+            for (HDArray out : new HDArray[]{HDArray.createBySizeWithValue(7.0d, expected.shape()),
+                    FloatHDArray.createBySizeWithValue(7.0d, expected.shape())}) {
+                array.productAlongAxis(operands, false, out, axis);
+                assertArrayEquals(expected.toArray(), out.toArray(), 1e-6);
+                array.log().productAlongAxis(logOperands, true, out, axis);
+                assertArrayEquals(logExpected.toArray(), out.toArray(), 1e-6);
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> array.productAlongAxis(operands, false, HDArray.createBySize(4), 0));
+        assertThrows(NullPointerException.class, () -> array.productAlongAxis(operands, false, (HDArray) null, 0));
+    }
+
+    @Test
+    void testCopyFrom() {
+        HDArray array = HDArray.createBySize(2, 2);
+        array.copyFrom(HDArray.create(new double[][]{{1.0d, 2.0d}, {3.0d, 4.0d}}));
+        assertEquals(HDArray.create(new double[][]{{1.0d, 2.0d}, {3.0d, 4.0d}}), array);
+        array.copyFrom(HDArray.create(new double[][]{{1.0d, 2.0d}, {3.0d, 4.0d}})
+                .moveAxis(new int[]{0, 1}, new int[]{1, 0}));
+        assertEquals(HDArray.create(new double[][]{{1.0d, 3.0d}, {2.0d, 4.0d}}), array);
+
+        FloatHDArray floatArray = FloatHDArray.createBySize(2, 2);
+        floatArray.copyFrom(array);
+        assertEquals(array, floatArray);
+        assertThrows(IllegalArgumentException.class, () -> array.copyFrom(HDArray.createBySize(4)));
+        assertThrows(NullPointerException.class, () -> array.copyFrom(null));
+    }
+
+    @Test
+    void testInPlaceArrayOperation() {
+        HDArray array = HDArray.create(new double[]{1.0d, 2.0d, 3.0d});
+        array.muli(HDArray.create(new double[]{2.0d, 0.5d, 1.0d}));
+        assertEquals(HDArray.create(new double[]{2.0d, 1.0d, 3.0d}), array);
+        array.addi(HDArray.create(new double[]{1.0d, 1.0d, -3.0d}));
+        assertEquals(HDArray.create(new double[]{3.0d, 2.0d, 0.0d}), array);
+
+        // Arrays without double storage walk every element
+        FloatHDArray floatArray = new FloatHDArray(new int[]{3}, new double[]{1.0d, 2.0d, 3.0d});
+        floatArray.muli(HDArray.create(new double[]{2.0d, 0.5d, 1.0d}));
+        assertEquals(HDArray.create(new double[]{2.0d, 1.0d, 3.0d}), floatArray);
+        assertThrows(IllegalArgumentException.class, () -> array.muli(HDArray.createBySize(2)));
+        assertThrows(NullPointerException.class, () -> array.addi((HDArray) null));
+    }
+
+    @Test
+    void testCopyTo() {
+        HDArray array = HDArray.create(new double[][]{{1.0d, 2.0d, 3.0d}, {4.0d, 5.0d, 6.0d}});
+        double[] target = new double[8];
+        array.moveAxis(new int[]{0, 1}, new int[]{1, 0}).copyTo(target, 1);
+        assertArrayEquals(new double[]{0.0d, 1.0d, 4.0d, 2.0d, 5.0d, 3.0d, 6.0d, 0.0d}, target);
+
+        HDArray vector = HDArray.create(new double[]{7.0d, 8.0d});
+        vector.copyTo(target, 6);
+        assertEquals(8.0d, target[7]);
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.copyTo(target, 7));
+    }
+
+    @Test
+    void testBlend() {
+        HDArray array = HDArray.create(new double[][]{{0.2d, 0.8d}, {0.6d, 0.4d}});
+        HDArray other = HDArray.create(new double[][]{{0.6d, 0.2d}, {0.4d, 0.8d}}).moveAxis(new int[]{0, 1}, new int[]{1, 0});
+        array.blend(other, 0.25d, false);
+        assertEquals(HDArray.create(new double[][]{{0.3d, 0.7d}, {0.5d, 0.5d}}), array);
+        assertEquals(0.0d, array.maxAbsDifference(HDArray.create(new double[][]{{0.3d, 0.7d}, {0.5d, 0.5d}}), false), 1e-12);
+
+        // Log values are blended as probabilities
+        HDArray logArray = HDArray.create(new double[]{Math.log(0.2d), Double.NEGATIVE_INFINITY});
+        logArray.blend(HDArray.create(new double[]{Math.log(0.6d), Double.NEGATIVE_INFINITY}), 0.5d, true);
+        assertEquals(Math.log(0.4d), logArray.get(0), 1e-12);
+        assertEquals(Double.NEGATIVE_INFINITY, logArray.get(1));
+        assertEquals(0.2d, logArray.maxAbsDifference(HDArray.create(new double[]{Math.log(0.6d), Double.NEGATIVE_INFINITY}), true), 1e-12);
+
+        FloatHDArray floatArray = new FloatHDArray(new int[]{2}, new double[]{1.0d, 0.0d});
+        floatArray.blend(HDArray.create(new double[]{0.0d, 1.0d}), 0.5d, false);
+        assertEquals(HDArray.create(new double[]{0.5d, 0.5d}), floatArray);
+
+        assertThrows(IllegalArgumentException.class, () -> array.blend(HDArray.createBySize(4), 0.5d, false));
+        assertThrows(NullPointerException.class, () -> array.maxAbsDifference(null, false));
+    }
+}
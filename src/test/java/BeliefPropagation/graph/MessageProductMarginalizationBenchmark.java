@@ -0,0 +1,69 @@
+package BeliefPropagation.graph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare {@link Message#messageProductMarginalization(Message, List, List)} with the product of all messages
+ * followed by {@link Message#messageMarginalization(Message, List)}, for the message from a factor to one of its
+ * variables. Run by {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=MessageProductMarginalizationBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageProductMarginalizationBenchmark {
+    /**
+     * Number of variables of the factor.
+     */
+    @Param({"3", "5"})
+    public int variableCount;
+    /**
+     * Number of states of each variable.
+     */
+    @Param({"4", "16"})
+    public int stateCount;
+
+    private Message factor;
+    private List<Message> incomingMessages;
+    private List<Variable<?>> sumVariables;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(0);
+        final List<Variable<?>> variables = new ArrayList<>();
+        final int[] shape = new int[this.variableCount];
+        for (int i = 0; i < this.variableCount; i++) {
+            variables.add(new Variable<>("v" + i, this.stateCount));
+            shape[i] = this.stateCount;
+        }
+        this.factor = new Message(new HDArray(shape, random.doubles(HDArray.countElement(shape), 0.1, 1.0).toArray()),
+                variables);
+        this.sumVariables = variables.subList(1, this.variableCount);
+        this.incomingMessages = new ArrayList<>();
+        for (Variable<?> variable : this.sumVariables) {
+            this.incomingMessages.add(new Message(
+                    new HDArray(new int[]{this.stateCount}, random.doubles(this.stateCount, 0.1, 1.0).toArray()),
+                    variable));
+        }
+    }
+
+    @Benchmark
+    public Message fused() {
+        return Message.messageProductMarginalization(this.factor, this.incomingMessages, this.sumVariables);
+    }
+
+    @Benchmark
+    public Message productThenMarginalization() {
+        final List<Message> messages = new ArrayList<>();
+        messages.add(this.factor);
+        messages.addAll(this.incomingMessages);
+        return Message.messageMarginalization(Message.messageProduct(messages), this.sumVariables);
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -440,4 +441,176 @@ class MessageTest {
         factors.add(message3);
         assertThrows(IllegalArgumentException.class, () -> Message.messageProduct(factors));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLogDomain() {
+        double[][] values1 = {
+                {0.5, 0.8}, {0.1, 0.0}, {0.3, 0.9}
+        };
+        Variable<String> var1 = new Variable<>("a", 3);
+        Variable<String> var2 = new Variable<>("b", 2);
+        Message message1 = new Message(HDArray.create(values1), var1, var2);
+
+        double[][] values2 = {
+                {0.5, 0.7}, {0.1, 0.2}
+        };
+        Variable<String> var3 = new Variable<>("c", 2);
+        Message message2 = new Message(HDArray.create(values2), var2, var3);
+
+        Message logMessage1 = message1.toLogDomain();
+        Message logMessage2 = message2.toLogDomain();
+        assertTrue(logMessage1.isLogDomain());
+        assertNotEquals(message1, logMessage1);
+        assertEquals(message1, logMessage1.toProbabilityDomain());
+
+        Message product = Message.messageProduct(message1, message2);
+        Message logProduct = Message.messageProduct(logMessage1, logMessage2);
+        assertTrue(logProduct.isLogDomain());
+        assertEquals(product, logProduct.toProbabilityDomain());
+
+        Message marginalized = Message.messageMarginalization(product, var1, var3);
+        Message logMarginalized = Message.messageMarginalization(logProduct, var1, var3);
+        assertTrue(logMarginalized.isLogDomain());
+        assertEquals(marginalized, logMarginalized.toProbabilityDomain());
+
+        marginalized.normalize();
+        logMarginalized.normalize();
+        assertEquals(marginalized, logMarginalized.toProbabilityDomain());
+
+        assertThrows(IllegalArgumentException.class, () -> Message.messageProduct(message1, logMessage2));
+    }
+
+    @Test
+    void testCreateUniform() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        assertEquals(new Message(a, b), Message.createUniform(false, a, b));
+
+        Message logMessage = Message.createUniform(true, a, b);
+        assertTrue(logMessage.isLogDomain());
+        assertEquals(new Message(a, b), logMessage.toProbabilityDomain());
+        assertTrue(((Message) logMessage.clone()).isLogDomain());
+    }
+
+    @Test
+    void testToPrecision() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Message message = new Message(HDArray.create(new double[][]{{0.1, 0.2}, {0.3, 0.4}}), a, b);
+        Message floatMessage = message.toPrecision(Precision.FLOAT);
+        assertEquals(Precision.FLOAT, floatMessage.getPrecision());
+        assertEquals(message, floatMessage);
+
+        Message product = Message.messageProduct(floatMessage, new Message(HDArray.create(new double[]{2.0, 3.0}), b));
+        assertEquals(Precision.FLOAT, product.getPrecision());
+        Message marginalized = Message.messageMarginalization(product, a);
+        assertEquals(Precision.FLOAT, marginalized.getPrecision());
+        assertEquals(new Message(HDArray.create(new double[]{0.8, 1.8}), b), marginalized);
+
+        assertEquals(Precision.FLOAT, Message.createUniform(true, Precision.FLOAT, List.of(a)).getPrecision());
+    }
+
+    @Test
+    void testProductMarginalization() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 3);
+        Variable<String> c = new Variable<>("c", 4);
+        Random random = new Random(0);
+        Message factor = new Message(new HDArray(new int[]{2, 3, 4}, random.doubles(24).toArray()), a, b, c);
+        Message messageB = new Message(HDArray.create(new double[]{0.2, 0.3, 0.5}), b);
+        Message messageCA = new Message(new HDArray(new int[]{4, 2}, random.doubles(8).toArray()), c, a);
+
+        // Sum out all but one variable
+        for (Variable<?> target : List.of(a, b, c)) {
+            List<Variable<?>> sumVariables = new ArrayList<>(List.of(a, b, c));
+            sumVariables.remove(target);
+            Message expected = Message.messageMarginalization(
+                    Message.messageProduct(factor, messageB, messageCA), sumVariables);
+            Message result = Message.messageProductMarginalization(factor, List.of(messageB, messageCA),
+                    sumVariables);
+            assertEquals(List.of(target), result.getVariables());
+            assertArrayEquals(expected.getProbability().toArray(), result.getProbability().toArray(), 1e-12);
+
+            // Log domain gives the logarithm of the same result
+            Message logResult = Message.messageProductMarginalization(factor.toLogDomain(),
+                    List.of(messageB.toLogDomain(), messageCA.toLogDomain()), sumVariables);
+            assertTrue(logResult.isLogDomain());
+            assertArrayEquals(expected.getProbability().toArray(),
+                    logResult.toProbabilityDomain().getProbability().toArray(), 1e-12);
+        }
+
+        // Remaining variables keep the order of the message
+        Message result = Message.messageProductMarginalization(factor, List.of(messageB), List.of(b));
+        assertEquals(List.of(a, c), result.getVariables());
+        for (int i = 0; i < 2; i++) {
+            for (int k = 0; k < 4; k++) {
+                double expected = 0.0d;
+                for (int j = 0; j < 3; j++) {
+                    expected += factor.getProbability().get(i, j, k) * messageB.getProbability().get(j);
+                }
+                assertEquals(expected, result.getProbability().get(i, k), 1e-12);
+            }
+        }
+
+        // Without incoming message, it is a marginalization
+        assertEquals(Message.messageMarginalization(factor, b, c),
+                Message.messageProductMarginalization(factor, List.of(), List.of(b, c)));
+    }
+
+    @Test
+    void testProductMarginalizationWithSparseTable() {
+        Variable<String> a = new Variable<>("a", 4);
+        Variable<String> b = new Variable<>("b", 4);
+        Variable<String> c = new Variable<>("c", 8);
+        double[] values = new double[128];
+        for (int i = 0; i < values.length; i += 11) {
+            values[i] = i + 1;
+        }
+        Message factor = new Message(new Factor(new HDArray(new int[]{4, 4, 8}, values), a, b, c));
+        assertInstanceOf(SparseHDArray.class, factor.getProbability());
+        Message messageA = new Message(HDArray.create(new double[]{0.1, 0.2, 0.3, 0.4}), a);
+        Message messageC = new Message(HDArray.create(new double[]{1, 2, 3, 4, 5, 6, 7, 8}), c);
+        Message expected = Message.messageMarginalization(Message.messageProduct(factor, messageA, messageC), a, c);
+        Message result = Message.messageProductMarginalization(factor, List.of(messageA, messageC), List.of(a, c));
+        assertArrayEquals(expected.getProbability().toArray(), result.getProbability().toArray(), 1e-12);
+    }
+
+    @Test
+    void testStorageSelection() {
+        // Only factors pick their storage, since the zeros of a log message are probability one
+        Variable<String> a = new Variable<>("a", 100);
+        Message uniform = Message.createUniform(true, a);
+        assertEquals(HDArray.class, uniform.getProbability().getClass());
+        assertEquals(HDArray.class, new Message(HDArray.createBySize(100), a).getProbability().getClass());
+        assertInstanceOf(SparseHDArray.class, new Factor(HDArray.createBySize(100), a).getProbability());
+    }
+
+    @Test
+    void testAdopt() {
+        Variable<String> a = new Variable<>("a", 2);
+        HDArray probability = new HDArray(new int[]{2}, new double[]{0.25, 0.75});
+        assertNotSame(probability, new Message(probability, List.of(a), false).getProbability());
+        Message adopted = Message.adopt(probability, List.of(a), true);
+        assertSame(probability, adopted.getProbability());
+        assertTrue(adopted.isLogDomain());
+        assertThrows(IllegalArgumentException.class, () -> Message.adopt(probability, List.of(a, a), false));
+    }
+
+    @Test
+    void testProductMarginalizationWithInvalidArgument() {
+        Variable<String> a = new Variable<>("a", 2);
+        Variable<String> b = new Variable<>("b", 2);
+        Variable<String> c = new Variable<>("c", 2);
+        Message factor = new Message(HDArray.create(new double[][]{{0.1, 0.2}, {0.3, 0.4}}), a, b);
+        Message messageA = new Message(a);
+        assertThrows(NullPointerException.class, () -> Message.messageProductMarginalization(null, List.of(), List.of(a)));
+        assertThrows(NullPointerException.class, () -> Message.messageProductMarginalization(factor, null, List.of(a)));
+        assertThrows(NullPointerException.class, () -> Message.messageProductMarginalization(factor, List.of(), null));
+        assertThrows(IllegalArgumentException.class, () ->
+                Message.messageProductMarginalization(factor, List.of(new Message(c)), List.of(a)));
+        assertThrows(IllegalArgumentException.class, () ->
+                Message.messageProductMarginalization(factor, List.of(messageA), List.of(c)));
+        assertThrows(IllegalArgumentException.class, () ->
+                Message.messageProductMarginalization(factor, List.of(messageA.toLogDomain()), List.of(a)));
+    }
+}
@@ -0,0 +1,100 @@
+package BeliefPropagation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapHDArrayTest {
+
+    @Test
+    public void testCreate() {
+        HDArray heapArray = HDArray.create(new double[][]{{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}});
+        try (OffHeapHDArray array = OffHeapHDArray.create(heapArray)) {
+            assertArrayEquals(new int[]{2, 3}, array.shape());
+            assertEquals(6.0, array.get(1, 2));
+            assertEquals(heapArray, array);
+            assertEquals(heapArray.hashCode(), array.hashCode());
+            assertNull(array.getArena());
+
+            array.set(10.0, 0, 1);
+            assertEquals(10.0, array.get(0, 1));
+            assertEquals(2.0, heapArray.get(0, 1));
+        }
+    }
+
+    @Test
+    public void testOperationAgainstHeap() {
+        Random random = new Random(6);
+        int[] shape = {3, 4, 5};
+        HDArray heapArray = new HDArray(shape, random.doubles(HDArray.countElement(shape), 0.1, 1.0).toArray());
+        HDArray other = new HDArray(new int[]{4, 5}, random.doubles(20, 0.1, 1.0).toArray());
+
+        // Use tiny chunks so that the positions cross chunk boundaries
+        try (OffHeapArena arena = new OffHeapArena(3)) {
+            OffHeapHDArray array = arena.copyOf(heapArray);
+            assertEquals(heapArray, array);
+            assertEquals(heapArray.sum(), array.sum(), 1e-9);
+            assertEquals(heapArray.mul(other), array.mul(other));
+            assertEquals(heapArray.div(2.0), array.div(2.0));
+            assertEquals(heapArray.sumAlongAxis(0, 2), array.sumAlongAxis(0, 2));
+            assertEquals(heapArray.logSumExpAlongAxis(1), array.logSumExpAlongAxis(1));
+
+            int[] from = {0, 2};
+            int[] to = {2, 0};
+            HDArray moved = array.moveAxis(from, to);
+            assertInstanceOf(OffHeapHDArray.class, moved);
+            assertEquals(heapArray.moveAxis(from, to), moved);
+            assertEquals(heapArray.moveAxis(from, to).sumAlongAxis(1), moved.sumAlongAxis(1));
+            assertEquals(heapArray.reshape(12, 5), array.reshape(12, 5));
+
+            HDArray result = array.mul(other);
+            assertInstanceOf(OffHeapHDArray.class, result);
+            assertSame(arena, ((OffHeapHDArray) result).getArena());
+
+            array.muli(2.0);
+            heapArray.muli(2.0);
+            assertEquals(heapArray, array);
+        }
+    }
+
+    @Test
+    public void testClose() {
+        OffHeapHDArray result;
+        OffHeapHDArray array;
+        try (OffHeapArena arena = new OffHeapArena()) {
+            array = arena.allocate(2, 2);
+            array.fill(1.0);
+            result = (OffHeapHDArray) array.add(1.0);
+            assertFalse(result.isClosed());
+        }
+        assertTrue(array.isClosed());
+        assertTrue(result.isClosed());
+        assertThrows(IllegalStateException.class, () -> array.get(0, 0));
+        assertThrows(IllegalStateException.class, () -> result.set(0.0, 0, 0));
+
+        OffHeapHDArray standalone = OffHeapHDArray.createBySize(2);
+        HDArray view = standalone.appendDimension(2, true);
+        standalone.close();
+        standalone.close();
+        assertThrows(IllegalStateException.class, view::sum);
+    }
+
+    @Test
+    public void testAllocateInClosedArena() {
+        OffHeapArena arena = new OffHeapArena();
+        arena.close();
+        assertTrue(arena.isClosed());
+        assertThrows(IllegalStateException.class, () -> arena.allocate(2));
+    }
+
+    @Test
+    public void testCountElementOverflow() {
+        int[] shape = {65536, 65536, 4};
+        assertEquals(17179869184L, HDArray.countElementExact(shape));
+        assertThrows(ArithmeticException.class, () -> HDArray.countElement(shape));
+        assertThrows(ArithmeticException.class, () -> HDArray.countElementExact(Integer.MAX_VALUE, Integer.MAX_VALUE, 4));
+        assertThrows(ArithmeticException.class, () -> HDArray.createBySize(shape));
+    }
+}
@@ -0,0 +1,172 @@
+package BeliefPropagation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseHDArrayTest {
+
+    private static HDArray randomSparseDense(Random random, double density, int... shape) {
+        double[] data = new double[HDArray.countElement(shape)];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextDouble() < density ? random.nextDouble() + 0.1 : 0.0;
+        }
+        return new HDArray(shape, data);
+    }
+
+    @Test
+    public void testCreate() {
+        HDArray dense = HDArray.create(new double[][]{{0.0, 2.0, 0.0}, {0.0, 0.0, 6.0}});
+        SparseHDArray sparse = SparseHDArray.create(dense);
+        assertEquals(2, sparse.nonZeroCount());
+        assertEquals(1.0 / 3.0, sparse.density(), 1e-12);
+        assertEquals(dense, sparse);
+        assertEquals(sparse, dense);
+        assertEquals(dense.hashCode(), sparse.hashCode());
+        assertEquals(dense.toString(), sparse.toString());
+        assertEquals(8.0, sparse.sum());
+
+        sparse.set(1.0, 0, 0);
+        sparse.set(0.0, 0, 1);
+        assertEquals(1.0, sparse.get(0, 0));
+        assertEquals(0.0, sparse.get(0, 1));
+        assertEquals(2, sparse.nonZeroCount());
+    }
+
+    @Test
+    public void testKernelsAgainstDense() {
+        Random random = new Random(7);
+        HDArray dense = randomSparseDense(random, 0.2, 3, 4, 5, 2);
+        SparseHDArray sparse = SparseHDArray.create(dense);
+        HDArray other = new HDArray(new int[]{5, 2}, random.doubles(10, 0.1, 1.0).toArray());
+
+        assertEquals(dense.sum(), sparse.sum(), 1e-12);
+        assertEquals(dense.sumAlongAxis(1, 3), sparse.sumAlongAxis(1, 3));
+        assertEquals(dense.sumAlongAxis(0), sparse.sumAlongAxis(0));
+        assertEquals(dense.sumAlongAxis(0, 1, 2, 3), sparse.sumAlongAxis(0, 1, 2, 3));
+        assertEquals(dense.mul(other), sparse.mul(other));
+        assertInstanceOf(SparseHDArray.class, sparse.mul(other));
+        assertEquals(dense.mul(other), other.mul(sparse));
+        assertInstanceOf(SparseHDArray.class, other.mul(sparse));
+        assertEquals(dense.mul(3.0), sparse.mul(3.0));
+        assertInstanceOf(SparseHDArray.class, sparse.mul(3.0));
+        assertEquals(dense.add(1.0), sparse.add(1.0));
+        assertEquals(dense.add(other), sparse.add(other));
+        assertEquals(dense.logSumExpAlongAxis(2), sparse.logSumExpAlongAxis(2));
+
+        // Views of a sparse array
+        int[] from = {0, 1, 3};
+        int[] to = {3, 0, 1};
+        HDArray denseMoved = dense.moveAxis(from, to);
+        HDArray sparseMoved = sparse.moveAxis(from, to);
+        assertInstanceOf(SparseHDArray.class, sparseMoved);
+        assertEquals(denseMoved, sparseMoved);
+        assertEquals(denseMoved.sumAlongAxis(2), sparseMoved.sumAlongAxis(2));
+        HDArray movedOther = new HDArray(new int[]{5, 3}, random.doubles(15, 0.1, 1.0).toArray());
+        assertEquals(denseMoved.mul(movedOther), sparseMoved.mul(movedOther));
+        assertEquals(dense.reshape(12, 10), sparse.reshape(12, 10));
+        HDArray vector = new HDArray(new int[]{2, 3, 1, 1, 1}, new double[]{1, 2, 3, 4, 5, 6});
+        assertEquals(dense.appendDimension(5, true).mul(vector), sparse.appendDimension(5, true).mul(vector));
+    }
+
+    @Test
+    public void testMulSumAlongAxis() {
+        Random random = new Random(11);
+        HDArray dense = randomSparseDense(random, 0.2, 3, 4, 5);
+        SparseHDArray sparse = SparseHDArray.create(dense);
+        HDArray[] operands = {
+                new HDArray(new int[]{5}, random.doubles(5, 0.1, 1.0).toArray()),
+                new HDArray(new int[]{3, 1, 1}, random.doubles(3, 0.1, 1.0).toArray())
+        };
+        for (int[] axis : new int[][]{{}, {1}, {0, 2}, {0, 1, 2}}) {
+            HDArray expected = dense.mulSumAlongAxis(operands, axis);
+            assertArrayEquals(expected.toArray(), sparse.mulSumAlongAxis(operands, axis).toArray(), 1e-12);
+            HDArray out = HDArray.createBySizeWithValue(7.0d, expected.shape());
+            sparse.productAlongAxis(operands, false, out, axis);
+            assertArrayEquals(expected.toArray(), out.toArray(), 1e-12);
+        }
+        HDArray moved = sparse.moveAxis(new int[]{0, 2}, new int[]{2, 0});
+        HDArray[] movedOperands = {new HDArray(new int[]{3}, random.doubles(3, 0.1, 1.0).toArray())};
+        assertArrayEquals(dense.moveAxis(new int[]{0, 2}, new int[]{2, 0}).mulSumAlongAxis(movedOperands, 0).toArray(),
+                moved.mulSumAlongAxis(movedOperands, 0).toArray(), 1e-12);
+    }
+
+    @Test
+    public void testBroadcastSparse() {
+        Random random = new Random(8);
+        HDArray dense = randomSparseDense(random, 0.3, 4, 1, 6);
+        SparseHDArray sparse = SparseHDArray.create(dense);
+        HDArray other = new HDArray(new int[]{3, 1}, new double[]{1.0, 2.0, 3.0});
+        assertEquals(dense.mul(other), sparse.mul(other));
+        assertEquals(dense.sub(other), sparse.sub(other));
+    }
+
+    @Test
+    public void testInPlace() {
+        Random random = new Random(9);
+        HDArray dense = randomSparseDense(random, 0.2, 6, 7);
+        SparseHDArray sparse = SparseHDArray.create(dense);
+        dense.normalize();
+        sparse.normalize();
+        assertEquals(dense, sparse);
+        assertEquals(1.0, sparse.sum(), 1e-12);
+
+        HDArray view = sparse.moveAxis(new int[]{0, 1}, new int[]{1, 0});
+        view.muli(2.0);
+        assertEquals(2.0, sparse.sum(), 1e-12);
+        view.addi(1.0);
+        dense.muli(2.0);
+        dense.addi(1.0);
+        assertEquals(dense, sparse);
+
+        sparse.fill(0.0);
+        assertEquals(0, sparse.nonZeroCount());
+    }
+
+    @Test
+    public void testClone() {
+        SparseHDArray sparse = SparseHDArray.create(HDArray.create(new double[]{0.0, 1.0, 0.0}));
+        SparseHDArray clone = sparse.clone();
+        clone.set(5.0, 0);
+        assertEquals(0.0, sparse.get(0));
+        assertEquals(5.0, clone.get(0));
+    }
+
+    @Test
+    public void testAutoSelect() {
+        Random random = new Random(10);
+        HDArray sparseEnough = randomSparseDense(random, 0.1, 8, 8);
+        assertInstanceOf(SparseHDArray.class, SparseHDArray.autoSelect(sparseEnough));
+
+        HDArray tooSmall = HDArray.create(new double[]{0.0, 0.0, 1.0});
+        assertEquals(HDArray.class, SparseHDArray.autoSelect(tooSmall).getClass());
+
+        HDArray tooDense = HDArray.createBySizeWithValue(1.0, 8, 8);
+        assertEquals(HDArray.class, SparseHDArray.autoSelect(tooDense).getClass());
+        assertEquals(HDArray.class, SparseHDArray.autoSelect(SparseHDArray.create(tooDense)).getClass());
+        assertInstanceOf(SparseHDArray.class, SparseHDArray.autoSelect(tooDense, 1.0));
+
+        HDArray floatArray = FloatHDArray.createBySize(8, 8);
+        assertInstanceOf(FloatHDArray.class, SparseHDArray.autoSelect(floatArray));
+    }
+
+    @Test
+    public void testProbabilityTableSelectStorage() {
+        Variable<String> a = new Variable<>("a", 8);
+        Variable<String> b = new Variable<>("b", 8);
+        double[][] identity = new double[8][8];
+        for (int i = 0; i < 8; i++) {
+            identity[i][i] = 1.0;
+        }
+        Factor factor = new Factor("equal", HDArray.create(identity), a, b);
+        assertInstanceOf(SparseHDArray.class, factor.getProbability());
+
+        Message message = new Message(HDArray.create(new double[]{0.5, 0, 0, 0, 0, 0, 0, 0.5}), a);
+        Message product = Message.messageProduct(new Message(factor), message);
+        assertInstanceOf(SparseHDArray.class, product.getProbability());
+        Message marginal = Message.messageMarginalization(product, a);
+        assertEquals(new Message(HDArray.create(new double[]{0.5, 0, 0, 0, 0, 0, 0, 0.5}), b), marginal);
+    }
+}